@@ -23,6 +23,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
+import com.aliyun.odps.data.SchemaIndex;
+
 /**
  * TableSchema表示ODPS中表的定义
  */
@@ -34,6 +36,8 @@ public class TableSchema {
   private HashMap<String, Integer> nameMap = new HashMap<String, Integer>();
   private HashMap<String, Integer> partitionNameMap = new HashMap<String, Integer>();
 
+  private volatile SchemaIndex schemaIndex;
+
   /**
    * 创建TableSchema对象
    */
@@ -64,6 +68,7 @@ public class TableSchema {
     nameMap.put(c.getName(), columns.size());
 
     columns.add(c);
+    schemaIndex = null;
   }
 
   /**
@@ -140,6 +145,7 @@ public class TableSchema {
   public void setColumns(List<Column> columns) {
     this.nameMap.clear();
     this.columns.clear();
+    this.schemaIndex = null;
     for (Column column : columns) {
       addColumn(column);
     }
@@ -160,6 +166,22 @@ public class TableSchema {
     return (List<Column>) columns.clone();
   }
 
+  /**
+   * 获得列索引，由基于该表结构创建的 {@link com.aliyun.odps.data.ArrayRecord} 共享
+   *
+   * <p>索引在第一次调用时构建并缓存，增加或重设列后重新构建。索引不包含分区列。</p>
+   *
+   * @return {@link SchemaIndex}对象
+   */
+  public SchemaIndex getSchemaIndex() {
+    SchemaIndex index = schemaIndex;
+    if (index == null) {
+      index = SchemaIndex.of(this);
+      schemaIndex = index;
+    }
+    return index;
+  }
+
   public void setPartitionColumns(ArrayList<Column> partitionColumns) {
     this.partitionNameMap.clear();
     this.partitionColumns.clear();
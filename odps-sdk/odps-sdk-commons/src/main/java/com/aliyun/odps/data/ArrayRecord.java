@@ -40,29 +40,89 @@ import com.aliyun.odps.TableSchema;
 public class ArrayRecord implements Record {
   private static final String DEFAULT_CHARSET = "utf-8";
 
-  private Column[] columns;
+  private final SchemaIndex index;
+  private final Column[] columns;
   private final Object[] values;
-
-  private HashMap<String, Integer> nameMap = new HashMap<String, Integer>();
+  private final boolean validating;
 
   public ArrayRecord(Column[] columns) {
+    this(SchemaIndex.of(columns));
+  }
+
+  public ArrayRecord(TableSchema schema) {
+    this(schema.getSchemaIndex());
+  }
+
+  /**
+   * 使用共享的列索引构造记录，不需要为每条记录构建列名映射
+   *
+   * @param index
+   *     列索引
+   */
+  public ArrayRecord(SchemaIndex index) {
+    this(index, true);
+  }
 
-    if (columns == null) {
+  /**
+   * 使用共享的列索引构造记录，并指定 set 时是否校验列值
+   *
+   * <p>validating 为 false 时，set 系列方法直接保存传入的值，不做类型转换和数据范围校验，
+   * 适用于值已经在上游校验过的场景（例如来自类型确定的数据管道或者 tunnel 下载的数据）。
+   * 调用方需要保证值的 Java 类型与列类型一致，必要时可以在写出前调用 {@link #validate()}
+   * 或 {@link RecordValidator} 批量校验。</p>
+   *
+   * @param index
+   *     列索引
+   * @param validating
+   *     set 时是否校验列值
+   */
+  public ArrayRecord(SchemaIndex index, boolean validating) {
+    if (index == null) {
       throw new IllegalArgumentException();
     }
 
-    this.columns = columns;
+    this.index = index;
+    this.columns = index.getColumns();
+    this.values = new Object[columns.length];
+    this.validating = validating;
+  }
 
-    values = new Object[columns.length];
+  /**
+   * 获得记录共享的列索引
+   */
+  public SchemaIndex getSchemaIndex() {
+    return index;
+  }
 
-    for (int i = 0; i < columns.length; i++) {
-      nameMap.put(columns[i].getName(), i);
-    }
+  /**
+   * set 时是否校验列值
+   *
+   * @see #ArrayRecord(SchemaIndex, boolean)
+   */
+  public boolean isValidating() {
+    return validating;
+  }
 
+  /**
+   * 创建一条列定义相同的空记录，与当前记录共享列索引和校验设置
+   *
+   * @return 新的空记录
+   */
+  public ArrayRecord newInstance() {
+    return new ArrayRecord(index, validating);
   }
 
-  public ArrayRecord(TableSchema schema) {
-    this(schema.getColumns().toArray(new Column[0]));
+  /**
+   * 复制当前记录，与当前记录共享列索引
+   *
+   * <p>只复制列值的引用，不复制列值对象本身。复制时不再对值做类型转换</p>
+   *
+   * @return 新的记录
+   */
+  public ArrayRecord copy() {
+    ArrayRecord r = new ArrayRecord(index, validating);
+    System.arraycopy(toArray(), 0, r.values, 0, values.length);
+    return r;
   }
 
   @Override
@@ -77,7 +137,11 @@ public class ArrayRecord implements Record {
 
   @Override
   public void set(int idx, Object value) {
-    values[idx] = OdpsTypeTransformer.transform(value, columns[idx].getTypeInfo());
+    if (validating) {
+      values[idx] = OdpsTypeTransformer.transform(value, columns[idx].getTypeInfo());
+    } else {
+      values[idx] = value;
+    }
   }
 
   @Override
@@ -92,7 +156,7 @@ public class ArrayRecord implements Record {
 
   @Override
   public Object get(String columnName) {
-    return values[getColumnIndex(columnName)];
+    return get(getColumnIndex(columnName));
   }
 
   @Override
@@ -202,7 +266,7 @@ public class ArrayRecord implements Record {
 
   @Override
   public String getString(int idx) {
-    Object obj = values[idx];
+    Object obj = get(idx);
 
     if (obj == null) {
       return null;
@@ -237,7 +301,7 @@ public class ArrayRecord implements Record {
 
   @Override
   public byte[] getBytes(int idx) {
-    Object obj = values[idx];
+    Object obj = get(idx);
 
     if (obj == null) {
       return null;
@@ -294,13 +358,28 @@ public class ArrayRecord implements Record {
   }
 
   private int getColumnIndex(String name) {
-    Integer idx = nameMap.get(name);
-    if (idx == null) {
+    int idx = index.indexOf(name);
+    if (idx < 0) {
       throw new IllegalArgumentException("No such column:" + name);
     }
     return idx;
   }
 
+  /**
+   * 校验并转换所有列值，效果与逐列调用校验模式下的 set 相同
+   *
+   * <p>用于 {@link #isValidating()} 为 false 的记录在写出前做一次性校验</p>
+   *
+   * @throws IllegalArgumentException
+   *     列值类型与列类型不符或者超出范围
+   */
+  public void validate() {
+    Object[] data = toArray();
+    for (int i = 0; i < data.length; i++) {
+      values[i] = OdpsTypeTransformer.validate(data[i], columns[i]);
+    }
+  }
+
   public void clear() {
     for (int i = 0; i < values.length; i++) {
       values[i] = null;
@@ -616,7 +695,7 @@ public class ArrayRecord implements Record {
 
   @Override
   public boolean isNull(int idx) {
-    return values[idx] == null;
+    return get(idx) == null;
   }
 
   @Override
@@ -626,18 +705,14 @@ public class ArrayRecord implements Record {
 
   @Override
   public Record clone() {
-    ArrayRecord record = new ArrayRecord(getColumns());
-    record.set(values);
+    ArrayRecord record = newInstance();
+    record.set(toArray());
     return record;
   }
 
   @SuppressWarnings({"unchecked"})
   private <T> T getInternal(int idx) {
-    if (values[idx] == null) {
-      return null;
-    }
-
-    return (T) values[idx];
+    return (T) get(idx);
   }
 
   @SuppressWarnings({"unchecked"})
@@ -9,6 +9,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import com.aliyun.odps.Column;
 import com.aliyun.odps.OdpsType;
 import com.aliyun.odps.type.ArrayTypeInfo;
 import com.aliyun.odps.type.CharTypeInfo;
@@ -161,6 +162,22 @@ public class OdpsTypeTransformer {
     return new SimpleStruct(typeInfo, elements);
   }
 
+  /**
+   * 校验并转换一个列值，出错时抛出的异常中带有列名
+   */
+  static Object validate(Object value, Column column) {
+    try {
+      return transform(value, column.getTypeInfo());
+    } catch (ClassCastException e) {
+      throw new IllegalArgumentException(
+          "InvalidData: column " + column.getName() + " of type " + column.getTypeInfo()
+          + " can not hold " + value.getClass().getName(), e);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          "Column " + column.getName() + ": " + e.getMessage(), e);
+    }
+  }
+
   static Object transform(Object value, TypeInfo typeInfo) {
     if (value == null) {
       return null;
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.data;
+
+import com.aliyun.odps.Column;
+
+/**
+ * 批量校验记录的列值
+ *
+ * <p>与使用不校验模式的 {@link ArrayRecord}（见 {@link ArrayRecord#ArrayRecord(SchemaIndex, boolean)}）
+ * 配合使用：逐行 set 时只做数组赋值，在一批记录写出前统一调用一次校验。
+ * 校验规则与校验模式下的 {@link ArrayRecord#set(int, Object)} 相同。</p>
+ */
+public class RecordValidator {
+
+  private RecordValidator() {
+
+  }
+
+  /**
+   * 校验一条记录
+   *
+   * <p>对 {@link ArrayRecord} 会同时把值转换为校验模式下 set 得到的形式，例如 STRING 列上的
+   * byte[] 转换为 String；其他 {@link Record} 实现只做校验，不修改记录</p>
+   *
+   * @param record
+   *     待校验的记录
+   * @throws IllegalArgumentException
+   *     列值类型与列类型不符或者超出范围
+   */
+  public static void validate(Record record) {
+    if (record instanceof ArrayRecord) {
+      ((ArrayRecord) record).validate();
+      return;
+    }
+
+    Column[] columns = record.getColumns();
+    for (int i = 0; i < columns.length; i++) {
+      OdpsTypeTransformer.validate(record.get(i), columns[i]);
+    }
+  }
+
+  /**
+   * 校验一批记录
+   *
+   * @param records
+   *     待校验的记录
+   * @throws IllegalArgumentException
+   *     任何一条记录校验失败
+   * @see #validate(Record)
+   */
+  public static void validate(Iterable<? extends Record> records) {
+    for (Record record : records) {
+      validate(record);
+    }
+  }
+}
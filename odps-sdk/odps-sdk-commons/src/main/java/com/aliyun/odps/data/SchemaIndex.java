@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.data;
+
+import java.util.HashMap;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.TableSchema;
+
+/**
+ * 一组列的不可变索引，保存列定义以及列名到列索引的映射
+ *
+ * <p>同一个表结构下的所有 {@link ArrayRecord} 共享同一个 SchemaIndex，创建记录时不再需要逐列构建
+ * 列名映射。{@link TableSchema#getSchemaIndex()} 为每个表结构缓存一个实例；使用列数组逐行创建记录时，
+ * 应该用 {@link #of(Column[])} 构建一次，然后通过 {@link ArrayRecord#ArrayRecord(SchemaIndex)} 传入。</p>
+ *
+ * <p>{@link #getColumns()} 返回的数组被所有共享该索引的记录共用，不要修改。</p>
+ */
+public final class SchemaIndex {
+
+  private final Column[] columns;
+  private final HashMap<String, Integer> nameMap;
+
+  private SchemaIndex(Column[] columns) {
+    this.columns = columns;
+    this.nameMap = new HashMap<String, Integer>(columns.length * 4 / 3 + 1);
+    for (int i = 0; i < columns.length; i++) {
+      nameMap.put(columns[i].getName(), i);
+    }
+  }
+
+  /**
+   * 为列数组构建索引
+   *
+   * @param columns
+   *     列定义
+   * @return 列索引
+   */
+  public static SchemaIndex of(Column[] columns) {
+    if (columns == null) {
+      throw new IllegalArgumentException("Columns is null.");
+    }
+    return new SchemaIndex(columns);
+  }
+
+  /**
+   * 为表结构构建索引，一般通过 {@link TableSchema#getSchemaIndex()} 获取缓存的实例
+   *
+   * @param schema
+   *     表结构
+   * @return 列索引
+   */
+  public static SchemaIndex of(TableSchema schema) {
+    return new SchemaIndex(schema.getColumns().toArray(new Column[0]));
+  }
+
+  public Column[] getColumns() {
+    return columns;
+  }
+
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  /**
+   * 取得列索引
+   *
+   * @param name
+   *     列名
+   * @return 列索引值，列不存在时返回 -1
+   */
+  public int indexOf(String name) {
+    Integer idx = nameMap.get(name);
+    return idx == null ? -1 : idx;
+  }
+}
@@ -411,4 +411,142 @@ public class ArrayRecordTest {
 
     Assert.assertEquals(r.getColumnCount(), count);
   }
+
+  @Test
+  public void testSharedSchemaIndex() {
+    TableSchema schema = new TableSchema();
+    schema.addColumn(new Column("a", OdpsType.BIGINT));
+    schema.addColumn(new Column("b", OdpsType.STRING));
+
+    ArrayRecord r1 = new ArrayRecord(schema);
+    ArrayRecord r2 = new ArrayRecord(schema);
+    Assert.assertSame(r1.getSchemaIndex(), r2.getSchemaIndex());
+    Assert.assertSame(r1.getColumns(), r2.getColumns());
+
+    // a column array is indexed per record and sees in-place changes
+    Column[] columns = schema.getColumns().toArray(new Column[0]);
+    ArrayRecord r4 = new ArrayRecord(columns);
+    columns[1] = new Column("x", OdpsType.STRING);
+    ArrayRecord r5 = new ArrayRecord(columns);
+    Assert.assertNotSame(r4.getSchemaIndex(), r5.getSchemaIndex());
+    r5.setString("x", "v");
+    Assert.assertEquals("v", r5.getString(1));
+
+    // changing the schema builds a new index
+    schema.addColumn(new Column("c", OdpsType.DOUBLE));
+    ArrayRecord r3 = new ArrayRecord(schema);
+    Assert.assertNotSame(r1.getSchemaIndex(), r3.getSchemaIndex());
+    Assert.assertEquals(3, r3.getColumnCount());
+    r3.setDouble("c", 1.0);
+    Assert.assertEquals(1.0, r3.getDouble(2), 0);
+
+    try {
+      r1.get("c");
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains("c"));
+    }
+  }
+
+  @Test
+  public void testCopyAndNewInstance() {
+    TableSchema schema = new TableSchema();
+    schema.addColumn(new Column("a", OdpsType.BIGINT));
+    schema.addColumn(new Column("b", OdpsType.STRING));
+
+    ArrayRecord r = new ArrayRecord(schema);
+    r.setBigint("a", 1L);
+    r.setString("b", "x");
+
+    ArrayRecord copy = r.copy();
+    Assert.assertSame(r.getSchemaIndex(), copy.getSchemaIndex());
+    Assert.assertArrayEquals(r.toArray(), copy.toArray());
+    copy.setBigint("a", 2L);
+    Assert.assertEquals(1L, (long) r.getBigint("a"));
+
+    ArrayRecord empty = r.newInstance();
+    Assert.assertSame(r.getSchemaIndex(), empty.getSchemaIndex());
+    Assert.assertNull(empty.get(0));
+    Assert.assertNull(empty.get("b"));
+  }
+
+  @Test
+  public void testCloneKeepsValidating() {
+    TableSchema schema = new TableSchema();
+    schema.addColumn(new Column("a", OdpsType.BIGINT));
+
+    ArrayRecord r = new ArrayRecord(schema.getSchemaIndex(), false);
+    // 不校验的记录原样保存，clone 时也不校验
+    r.set(0, "not a bigint");
+    ArrayRecord cloned = (ArrayRecord) r.clone();
+    Assert.assertFalse(cloned.isValidating());
+    Assert.assertEquals("not a bigint", cloned.get(0));
+
+    Assert.assertTrue(((ArrayRecord) new ArrayRecord(schema.getSchemaIndex()).clone())
+                          .isValidating());
+  }
+
+  @Test
+  public void testNotValidating() throws UnsupportedEncodingException {
+    TableSchema schema = new TableSchema();
+    schema.addColumn(new Column("a", OdpsType.BIGINT));
+    schema.addColumn(new Column("b", OdpsType.STRING));
+    schema.addColumn(new Column("c", OdpsType.DATETIME));
+
+    ArrayRecord r = new ArrayRecord(schema.getSchemaIndex(), false);
+    Assert.assertFalse(r.isValidating());
+    Assert.assertFalse(r.newInstance().isValidating());
+    Assert.assertFalse(r.copy().isValidating());
+
+    // stored as is, no transform
+    byte[] bytes = "abc".getBytes(STRING_CHARSET);
+    r.set("b", bytes);
+    Assert.assertSame(bytes, r.get("b"));
+    Assert.assertEquals("abc", r.getString("b"));
+
+    // out of range values are only detected by validate()
+    r.setBigint("a", Long.MIN_VALUE);
+    try {
+      r.validate();
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("a"));
+    }
+
+    r.setBigint("a", 1L);
+    r.validate();
+    Assert.assertEquals("abc", r.get("b"));
+
+    // wrong java type
+    r.set("c", "2017-01-01");
+    try {
+      RecordValidator.validate(r);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("column c"));
+    }
+  }
+
+  @Test
+  public void testValidateBatch() {
+    TableSchema schema = new TableSchema();
+    schema.addColumn(new Column("a", OdpsType.BIGINT));
+
+    List<Record> records = new ArrayList<Record>();
+    ArrayRecord prototype = new ArrayRecord(schema.getSchemaIndex(), false);
+    for (int i = 0; i < 10; ++i) {
+      ArrayRecord r = prototype.newInstance();
+      r.setBigint(0, (long) i);
+      records.add(r);
+    }
+    RecordValidator.validate(records);
+
+    ((ArrayRecord) records.get(5)).setBigint(0, Long.MIN_VALUE);
+    try {
+      RecordValidator.validate(records);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
 }
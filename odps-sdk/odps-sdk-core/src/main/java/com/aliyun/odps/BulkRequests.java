@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.aliyun.odps.rest.AsyncRequestExecutor;
+import com.aliyun.odps.rest.RestClient;
+
+/**
+ * 批量加载元数据时并发执行多个请求
+ *
+ * 请求在 {@link RestClient#submitAsync(Callable)} 中执行，同时执行的请求不超过
+ * {@link RestClient#getBulkLoadParallelism()}，结果按任务的顺序返回。
+ * 已经在 {@link AsyncRequestExecutor} 的线程中时依次在当前线程执行，避免等待同一个线程池而死锁。
+ */
+final class BulkRequests {
+
+  private BulkRequests() {
+  }
+
+  /**
+   * 执行任务，任意一个任务失败时取消还没有完成的任务并抛出它的异常
+   *
+   * @param client
+   *     执行请求的 {@link RestClient}
+   * @param tasks
+   *     任务列表
+   * @return 与 tasks 顺序一致的结果
+   * @throws OdpsException
+   */
+  static <T> List<T> run(RestClient client, List<Callable<T>> tasks) throws OdpsException {
+    List<T> results = new ArrayList<T>(tasks.size());
+    if (tasks.size() == 1 || AsyncRequestExecutor.isExecutorThread()) {
+      for (Callable<T> task : tasks) {
+        results.add(call(task));
+      }
+      return results;
+    }
+
+    int parallelism = client.getBulkLoadParallelism();
+    LinkedList<Future<T>> running = new LinkedList<Future<T>>();
+    try {
+      for (Callable<T> task : tasks) {
+        if (running.size() >= parallelism) {
+          results.add(await(running.removeFirst()));
+        }
+        running.addLast(client.submitAsync(task));
+      }
+      while (!running.isEmpty()) {
+        results.add(await(running.removeFirst()));
+      }
+    } finally {
+      for (Future<T> f : running) {
+        f.cancel(true);
+      }
+    }
+    return results;
+  }
+
+  private static <T> T call(Callable<T> task) throws OdpsException {
+    try {
+      return task.call();
+    } catch (OdpsException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new OdpsException(e.getMessage(), e);
+    }
+  }
+
+  private static <T> T await(Future<T> future) throws OdpsException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OdpsException("Interrupted while loading metadata.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof OdpsException) {
+        throw (OdpsException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new OdpsException(cause.getMessage(), cause);
+    }
+  }
+}
@@ -280,7 +280,8 @@ public class Function extends LazyLoad {
   @Override
   public void reload() throws OdpsException {
     String resource = ResourceBuilder.buildFunctionResource(project, model.name);
-    model = client.request(FunctionModel.class, resource, "GET", null);
+    model = getMeta(client, MetaCache.ObjectType.FUNCTION, project, model.name, resource, null,
+                    FunctionModel.class);
   }
 
   public void updateOwner(String newOwner) throws OdpsException {
@@ -292,6 +293,7 @@ public class Function extends LazyLoad {
     headers.put(Headers.ODPS_OWNER, newOwner);
     FunctionModel model = new FunctionModel();
     client.request(resource, method, params, headers, null);
+    invalidateMeta(client, MetaCache.ObjectType.FUNCTION, project, this.model.name);
     this.model.owner = newOwner;
   }
 }
@@ -145,6 +145,7 @@ public class Functions implements Iterable<Function> {
       throw new OdpsException(e);
     }
     client.stringRequest(resource, "PUT", null, header, ret);
+    LazyLoad.invalidateMeta(client, MetaCache.ObjectType.FUNCTION, projectName, func.getName());
   }
 
   /**
@@ -181,6 +182,7 @@ public class Functions implements Iterable<Function> {
       throw new OdpsException(e);
     }
     client.stringRequest(resource, "POST", null, header, ret);
+    LazyLoad.invalidateMeta(client, MetaCache.ObjectType.FUNCTION, projectName, func.getName());
   }
 
   /**
@@ -208,6 +210,7 @@ public class Functions implements Iterable<Function> {
   public void delete(String projectName, String name) throws OdpsException {
     String resource = ResourceBuilder.buildFunctionResource(projectName, name);
     client.request(resource, "DELETE", null, null, null);
+    LazyLoad.invalidateMeta(client, MetaCache.ObjectType.FUNCTION, projectName, name);
   }
 
   /**
@@ -277,6 +280,7 @@ public class Functions implements Iterable<Function> {
 
     public FunctionListIterator(final String projectName) {
       this.projectName = projectName;
+      configure(client);
     }
 
     @Override
@@ -290,6 +294,10 @@ public class Functions implements Iterable<Function> {
         return null;
       }
 
+      if (getPageSize() > 0) {
+        params.put("maxitems", String.valueOf(getPageSize()));
+      }
+
       String resource = ResourceBuilder.buildFunctionsResource(projectName);
       try {
 
@@ -988,10 +988,7 @@ public class Instance extends com.aliyun.odps.LazyLoad {
     try {
       if (hooks != null) {
         if (status == Status.TERMINATED) {
-          if (!hookInvoked) {
-            hookInvoked = true;
-            hooks.after(this, odps);
-          }
+          invokeHookOnce();
         }
       }
     } catch (OdpsException e) {
@@ -1000,6 +997,14 @@ public class Instance extends com.aliyun.odps.LazyLoad {
     return status;
   }
 
+  // 多个线程同时查询状态时（例如 InstanceWatcher 与用户线程），保证 hook 只调用一次
+  private synchronized void invokeHookOnce() throws OdpsException {
+    if (!hookInvoked) {
+      hookInvoked = true;
+      hooks.after(this, odps);
+    }
+  }
+
   /**
    * 获得Instance状态
    *
@@ -1176,11 +1181,11 @@ public class Instance extends com.aliyun.odps.LazyLoad {
     this.hooks = hooks;
   }
 
-  public boolean isHookInvoked() {
+  public synchronized boolean isHookInvoked() {
     return hookInvoked;
   }
 
-  public void setHookInvoked(boolean hookInvoked) {
+  public synchronized void setHookInvoked(boolean hookInvoked) {
     this.hookInvoked = hookInvoked;
   }
 
@@ -0,0 +1,417 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aliyun.odps.commons.util.DaemonThreadFactory;
+
+/**
+ * 同时等待大量 {@link Instance} 结束
+ *
+ * <p>
+ * 所有注册的 instance 由少量调度线程轮流查询状态，不再需要为每个 instance 占用一个线程调用
+ * {@link Instance#waitForSuccess()}。刚注册的 instance 使用 {@link Instance#getStatus(boolean)}
+ * 的 block 模式查询，短作业结束后很快就能得到通知；超过 longPollingPeriod 仍在运行的 instance
+ * 改用普通查询，查询间隔从 minInterval 开始逐次翻倍，直到 maxInterval，减少长作业对服务端的压力。
+ * </p>
+ *
+ * <p>
+ * block 模式的查询会占用调度线程直到服务端超时，为了不阻塞其他 instance 的查询和回调，
+ * 同时进行的 block 查询不超过调度线程数的一半；等待的 instance 数超过调度线程数时，
+ * 新注册的 instance 也使用普通查询（间隔保持 minInterval）。
+ * </p>
+ *
+ * <p>
+ * instance 结束时，调用 {@link Callback#onTerminated(Instance)} 之后返回的 {@link Future} 完成，
+ * {@link OdpsHooks#after(Instance, Odps)} 由 {@link Instance#getStatus(boolean)} 调用，只调用一次。
+ * 连续查询失败 maxFailures 次后，调用 {@link Callback#onFailure(Instance, Exception)}，
+ * 之后 Future 以最后一次的异常结束。取消 Future 即停止等待该 instance。
+ * </p>
+ *
+ * <pre>
+ * InstanceWatcher watcher = new InstanceWatcher();
+ * Future&lt;Instance&gt; f = watcher.watch(instance);
+ * f.get();
+ * instance.isSuccessful();
+ * </pre>
+ */
+public class InstanceWatcher {
+
+  /**
+   * instance 状态变化的回调，在调度线程中执行，不应该长时间阻塞
+   */
+  public interface Callback {
+
+    /**
+     * instance 结束
+     */
+    void onTerminated(Instance instance);
+
+    /**
+     * 查询 instance 状态失败，不再继续等待
+     */
+    void onFailure(Instance instance, Exception e);
+  }
+
+  /**
+   * 默认调度线程数
+   */
+  public static final int DEFAULT_THREADS = 4;
+
+  /**
+   * 默认最小查询间隔，毫秒
+   */
+  public static final long DEFAULT_MIN_INTERVAL = 1000L;
+
+  /**
+   * 默认最大查询间隔，毫秒
+   */
+  public static final long DEFAULT_MAX_INTERVAL = 30 * 1000L;
+
+  /**
+   * 默认使用 block 模式查询的时长，毫秒
+   */
+  public static final long DEFAULT_LONG_POLLING_PERIOD = 60 * 1000L;
+
+  /**
+   * 默认允许连续失败的查询次数
+   */
+  public static final int DEFAULT_MAX_FAILURES = 10;
+
+  /**
+   * 统计查询频率的窗口，秒
+   */
+  static final int RATE_WINDOW = 60;
+
+  private static final Callable<Instance> NOOP = new Callable<Instance>() {
+    @Override
+    public Instance call() throws Exception {
+      return null;
+    }
+  };
+
+  private class Watch extends FutureTask<Instance> {
+
+    final Instance instance;
+    final Callback callback;
+    final long startTime;
+    long interval;
+    int failures;
+
+    Watch(Instance instance, Callback callback) {
+      super(NOOP);
+      this.instance = instance;
+      this.callback = callback;
+      this.startTime = now();
+    }
+
+    @Override
+    public void run() {
+      poll(this);
+    }
+
+    @Override
+    protected void done() {
+      watches.remove(this);
+    }
+
+    // 先调用回调并移出等待队列再完成 Future，Future.get() 返回时回调已经执行完
+    void terminated() {
+      if (callback != null) {
+        try {
+          callback.onTerminated(instance);
+        } catch (RuntimeException ignore) {
+          // 回调的异常不影响其他 instance
+        }
+      }
+      watches.remove(this);
+      set(instance);
+    }
+
+    void failed(Exception e) {
+      if (callback != null) {
+        try {
+          callback.onFailure(instance, e);
+        } catch (RuntimeException ignore) {
+        }
+      }
+      watches.remove(this);
+      setException(e);
+    }
+  }
+
+  private final ScheduledThreadPoolExecutor scheduler;
+  private final int threads;
+  private final Semaphore longPolls;
+  private final ConcurrentHashMap<Watch, Boolean> watches = new ConcurrentHashMap<Watch, Boolean>();
+
+  private volatile long minInterval = DEFAULT_MIN_INTERVAL;
+  private volatile long maxInterval = DEFAULT_MAX_INTERVAL;
+  private volatile long longPollingPeriod = DEFAULT_LONG_POLLING_PERIOD;
+  private volatile int maxFailures = DEFAULT_MAX_FAILURES;
+
+  private final AtomicLong pollCount = new AtomicLong(0);
+  private final AtomicLong failedPollCount = new AtomicLong(0);
+  private final long[] rateBuckets = new long[RATE_WINDOW];
+  private final long[] rateSeconds = new long[RATE_WINDOW];
+
+  public InstanceWatcher() {
+    this(DEFAULT_THREADS);
+  }
+
+  /**
+   * @param threads
+   *     调度线程数，同时进行的查询数不超过线程数，block 模式的查询不超过线程数的一半
+   */
+  public InstanceWatcher(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must >= 1, now: " + threads);
+    }
+    scheduler = new ScheduledThreadPoolExecutor(threads,
+                                                new DaemonThreadFactory("odps-instance-watcher"));
+    this.threads = threads;
+    this.longPolls = new Semaphore(threads / 2);
+  }
+
+  /**
+   * 设置查询间隔
+   *
+   * @param minInterval
+   *     最小查询间隔，毫秒，至少为 1
+   * @param maxInterval
+   *     最大查询间隔，毫秒
+   */
+  public void setInterval(long minInterval, long maxInterval) {
+    if (minInterval < 1) {
+      throw new IllegalArgumentException("min interval must >= 1, now: " + minInterval);
+    }
+    if (maxInterval < minInterval) {
+      throw new IllegalArgumentException(
+          "max interval must >= min interval, now: " + maxInterval);
+    }
+    this.minInterval = minInterval;
+    this.maxInterval = maxInterval;
+  }
+
+  public long getMinInterval() {
+    return minInterval;
+  }
+
+  public long getMaxInterval() {
+    return maxInterval;
+  }
+
+  /**
+   * 设置注册后使用 block 模式查询的时长，为 0 时不使用 block 模式
+   *
+   * @param longPollingPeriod
+   *     时长，毫秒
+   */
+  public void setLongPollingPeriod(long longPollingPeriod) {
+    if (longPollingPeriod < 0) {
+      throw new IllegalArgumentException(
+          "long polling period must >= 0, now: " + longPollingPeriod);
+    }
+    this.longPollingPeriod = longPollingPeriod;
+  }
+
+  public long getLongPollingPeriod() {
+    return longPollingPeriod;
+  }
+
+  /**
+   * 设置允许连续失败的查询次数
+   */
+  public void setMaxFailures(int maxFailures) {
+    if (maxFailures < 1) {
+      throw new IllegalArgumentException("max failures must >= 1, now: " + maxFailures);
+    }
+    this.maxFailures = maxFailures;
+  }
+
+  public int getMaxFailures() {
+    return maxFailures;
+  }
+
+  /**
+   * 等待 instance 结束
+   *
+   * @see #watch(Instance, Callback)
+   */
+  public Future<Instance> watch(Instance instance) {
+    return watch(instance, null);
+  }
+
+  /**
+   * 等待 instance 结束
+   *
+   * @param instance
+   *     等待的 instance
+   * @param callback
+   *     instance 结束或者查询失败时的回调，可以为 null
+   * @return instance 结束时完成，结果为 instance 本身
+   * @throws RejectedExecutionException
+   *     已经调用过 {@link #shutdown()}
+   */
+  public Future<Instance> watch(Instance instance, Callback callback) {
+    if (instance == null) {
+      throw new IllegalArgumentException("instance is null");
+    }
+    if (scheduler.isShutdown()) {
+      throw new RejectedExecutionException("InstanceWatcher is shut down.");
+    }
+    Watch w = new Watch(instance, callback);
+    watches.put(w, Boolean.TRUE);
+    schedule(w, 0);
+    return w;
+  }
+
+  /**
+   * 获取正在等待的 instance 数
+   */
+  public int getQueueDepth() {
+    return watches.size();
+  }
+
+  /**
+   * 获取查询次数，包括失败的查询
+   */
+  public long getPollCount() {
+    return pollCount.get();
+  }
+
+  /**
+   * 获取失败的查询次数
+   */
+  public long getFailedPollCount() {
+    return failedPollCount.get();
+  }
+
+  /**
+   * 获取最近 60 秒平均每秒的查询次数
+   */
+  public synchronized double getPollRate() {
+    long second = now() / 1000;
+    long polls = 0;
+    for (int i = 0; i < RATE_WINDOW; ++i) {
+      long age = second - rateSeconds[i];
+      if (age >= 1 && age <= RATE_WINDOW) {
+        polls += rateBuckets[i];
+      }
+    }
+    return (double) polls / RATE_WINDOW;
+  }
+
+  /**
+   * 停止等待，所有未结束的 Future 被取消
+   */
+  public void shutdown() {
+    scheduler.shutdownNow();
+    for (Watch w : new ArrayList<Watch>(watches.keySet())) {
+      w.cancel(false);
+    }
+  }
+
+  /**
+   * 查询 instance 状态，block 模式的查询最多等待服务端的超时时间
+   */
+  protected Instance.Status getStatus(Instance instance, boolean longPolling) {
+    return instance.getStatus(longPolling);
+  }
+
+  long now() {
+    return System.currentTimeMillis();
+  }
+
+  private void poll(Watch w) {
+    if (w.isDone()) {
+      return;
+    }
+    boolean newlyWatched = now() - w.startTime < longPollingPeriod;
+    boolean longPolling = newlyWatched && watches.size() <= threads && longPolls.tryAcquire();
+    Instance.Status status;
+    try {
+      status = getStatus(w.instance, longPolling);
+    } catch (RuntimeException e) {
+      recordPoll(true);
+      // 状态已经是 TERMINATED，异常来自 OdpsHooks，重试也不会再调用 hook
+      if (w.instance.isHookInvoked() || ++w.failures >= maxFailures) {
+        w.failed(e);
+      } else {
+        schedule(w, nextInterval(w, newlyWatched));
+      }
+      return;
+    } finally {
+      if (longPolling) {
+        longPolls.release();
+      }
+    }
+    recordPoll(false);
+    w.failures = 0;
+    if (status == Instance.Status.TERMINATED) {
+      w.terminated();
+    } else {
+      schedule(w, nextInterval(w, newlyWatched));
+    }
+  }
+
+  private long nextInterval(Watch w, boolean newlyWatched) {
+    if (newlyWatched || w.interval < minInterval) {
+      w.interval = minInterval;
+    } else {
+      w.interval = Math.min(w.interval * 2, maxInterval);
+    }
+    return w.interval;
+  }
+
+  private void schedule(Watch w, long delay) {
+    try {
+      scheduler.schedule(w, delay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      w.cancel(false);
+    }
+  }
+
+  private void recordPoll(boolean failed) {
+    pollCount.incrementAndGet();
+    if (failed) {
+      failedPollCount.incrementAndGet();
+    }
+    long second = now() / 1000;
+    int i = (int) (second % RATE_WINDOW);
+    synchronized (this) {
+      if (rateSeconds[i] != second) {
+        rateSeconds[i] = second;
+        rateBuckets[i] = 0;
+      }
+      rateBuckets[i]++;
+    }
+  }
+}
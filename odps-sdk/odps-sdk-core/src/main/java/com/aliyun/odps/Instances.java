@@ -26,6 +26,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.annotation.XmlElement;
@@ -223,6 +225,61 @@ public class Instances implements Iterable<Instance> {
     }
   }
 
+  /**
+   * 异步判断指定 Instance 是否存在
+   *
+   * @param id
+   *     Instance ID
+   * @return 存在返回true, 否则返回false
+   * @see #existsAsync(String, String)
+   */
+  public Future<Boolean> existsAsync(String id) {
+    return existsAsync(getDefaultProjectName(), id);
+  }
+
+  /**
+   * 异步判断指定 Instance 是否存在
+   *
+   * <p>
+   * 请求在 {@link RestClient#getAsyncExecutor()} 中执行
+   * </p>
+   *
+   * @param projectName
+   *     所在{@link Project}名称
+   * @param id
+   *     Instance ID
+   * @return 存在返回true, 否则返回false
+   */
+  public Future<Boolean> existsAsync(final String projectName, final String id) {
+    return client.submitAsync(new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return exists(projectName, id);
+      }
+    });
+  }
+
+  /**
+   * 异步获取 Instance 状态
+   *
+   * <p>
+   * 请求在 {@link RestClient#getAsyncExecutor()} 中执行，适合同时轮询大量 Instance
+   * </p>
+   *
+   * @param instance
+   *     {@link Instance}对象
+   * @return Instance 状态
+   * @see Instance#getStatus()
+   */
+  public Future<Instance.Status> getStatusAsync(final Instance instance) {
+    return client.submitAsync(new Callable<Instance.Status>() {
+      @Override
+      public Instance.Status call() throws Exception {
+        return instance.getStatus();
+      }
+    });
+  }
+
   /**
    * 为给定的{@link Task}创建Instance
    *
@@ -553,6 +610,7 @@ public class Instances implements Iterable<Instance> {
     InstanceListIterator(String projectName, InstanceFilter filter) {
       this.filter = filter;
       this.project = projectName;
+      configure(client);
     }
 
     @Override
@@ -564,6 +622,10 @@ public class Instances implements Iterable<Instance> {
         return null;
       }
 
+      if (getPageSize() > 0) {
+        params.put("maxitems", String.valueOf(getPageSize()));
+      }
+
       if (filter != null) {
         if (filter.getStatus() != null) {
           params.put("status", filter.getStatus().toString());
@@ -604,15 +666,26 @@ public class Instances implements Iterable<Instance> {
       String resource = ResourceBuilder.buildInstancesResource(project);
       try {
 
-        ListInstanceResponse resp = client.request(
-            ListInstanceResponse.class, resource, "GET", params);
+        List<TaskStatusModel> models;
+        String marker;
+        if (client.isStreamingXmlParser()) {
+          ListResponseParser.Page<TaskStatusModel> page = ListResponseParser.parseInstances(
+              client.request(resource, "GET", params, null, null).getBody());
+          models = page.items;
+          marker = page.marker;
+        } else {
+          ListInstanceResponse resp = client.request(
+              ListInstanceResponse.class, resource, "GET", params);
+          models = resp.instances;
+          marker = resp.marker;
+        }
 
-        for (TaskStatusModel model : resp.instances) {
+        for (TaskStatusModel model : models) {
           Instance t = new Instance(project, model, null, odps);
           instances.add(t);
         }
 
-        params.put("marker", resp.marker);
+        params.put("marker", marker);
       } catch (OdpsException e) {
         throw new RuntimeException(e.getMessage(), e);
       }
@@ -19,6 +19,14 @@
 
 package com.aliyun.odps;
 
+import java.util.Map;
+
+import javax.xml.bind.JAXBException;
+
+import com.aliyun.odps.commons.transport.Response;
+import com.aliyun.odps.rest.JAXBUtils;
+import com.aliyun.odps.rest.RestClient;
+
 /**
  * LazyLoad表示此类型的属性值可能是延迟加载的
  *
@@ -26,6 +34,10 @@ package com.aliyun.odps;
  * 延迟加载的含义是, 对象的属性值可能不存在，在调用gets等方法时视需要通过RESTful API从服务器断获取
  * </p>
  *
+ * <p>
+ * 设置了 {@link MetaCache} 时，子类通过 {@link #getMeta} 读取元数据，缓存中有效的响应不再请求服务端
+ * </p>
+ *
  * @author shenggong.wang@alibaba-inc.com
  */
 public abstract class LazyLoad {
@@ -73,4 +85,116 @@ public abstract class LazyLoad {
    * @throws OdpsException
    */
   public abstract void reload() throws OdpsException;
+
+  /**
+   * 通过 GET 请求获取元数据，client 设置了 {@link MetaCache} 时优先使用缓存
+   *
+   * @param client
+   *     发送请求的 {@link RestClient}
+   * @param type
+   *     对象类型
+   * @param project
+   *     所在 project
+   * @param name
+   *     对象名
+   * @param resource
+   *     请求的资源
+   * @param params
+   *     请求参数
+   * @return 服务端的响应，可能来自缓存，不能修改
+   * @throws NoSuchObjectException
+   *     对象不存在，可能来自缓存
+   */
+  static Response getMeta(RestClient client, MetaCache.ObjectType type, String project,
+                          String name, String resource, Map<String, String> params)
+      throws OdpsException {
+    MetaCache cache = client.getMetaCache();
+    if (cache == null) {
+      return client.request(resource, "GET", params, null, null);
+    }
+
+    project = metaProject(project);
+    name = metaName(type, name);
+    Response resp = cache.get(project, type, name);
+    if (resp == MetaCache.MISSING) {
+      throw new NoSuchObjectException(
+          type.name().toLowerCase() + " not found (cached): " + project + "." + name);
+    } else if (resp != null) {
+      return resp;
+    }
+
+    // 请求前取得代数，请求期间对象被修改并失效时不放入旧的响应
+    long generation = cache.getGeneration();
+    try {
+      resp = client.request(resource, "GET", params, null, null);
+    } catch (NoSuchObjectException e) {
+      cache.put(project, type, name, MetaCache.MISSING, generation);
+      throw e;
+    }
+    cache.put(project, type, name, resp, generation);
+    return resp;
+  }
+
+  /**
+   * 同 {@link #getMeta(RestClient, MetaCache.ObjectType, String, String, String, Map)}，
+   * 并将响应解析为 clazz
+   */
+  static <T> T getMeta(RestClient client, MetaCache.ObjectType type, String project, String name,
+                       String resource, Map<String, String> params, Class<T> clazz)
+      throws OdpsException {
+    Response resp = getMeta(client, type, project, name, resource, params);
+    try {
+      return JAXBUtils.unmarshal(resp, clazz);
+    } catch (JAXBException e) {
+      throw new OdpsException("Can't bind xml to " + clazz.getName(), e);
+    }
+  }
+
+  /**
+   * 修改对象后使它的缓存失效
+   */
+  static void invalidateMeta(RestClient client, MetaCache.ObjectType type, String project,
+                             String name) {
+    MetaCache cache = client.getMetaCache();
+    if (cache != null) {
+      cache.invalidate(metaProject(project), type, metaName(type, name));
+    }
+  }
+
+  /**
+   * 删除表后使它的所有分区的缓存失效
+   */
+  static void invalidatePartitionMeta(RestClient client, String project, String tableName) {
+    MetaCache cache = client.getMetaCache();
+    if (cache != null) {
+      cache.invalidatePrefix(metaProject(project), MetaCache.ObjectType.PARTITION,
+                             metaName(MetaCache.ObjectType.PARTITION,
+                                      partitionName(tableName, "")));
+    }
+  }
+
+  /**
+   * 分区在缓存中的名字
+   */
+  static String partitionName(String tableName, String spec) {
+    return tableName + "/" + spec;
+  }
+
+  // project 和对象名不区分大小写，所有类型的 key 都在这里统一转换
+  private static String metaProject(String project) {
+    return project == null ? null : project.toLowerCase();
+  }
+
+  private static String metaName(MetaCache.ObjectType type, String name) {
+    if (name == null) {
+      return null;
+    }
+    if (type == MetaCache.ObjectType.PARTITION) {
+      // 分区值区分大小写，只转换表名部分
+      int idx = name.indexOf('/');
+      return idx < 0 ? name.toLowerCase()
+                     : name.substring(0, idx).toLowerCase() + name.substring(idx);
+    }
+    return name.toLowerCase();
+  }
 }
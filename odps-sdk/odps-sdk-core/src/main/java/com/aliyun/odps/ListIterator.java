@@ -19,15 +19,34 @@
 
 package com.aliyun.odps;
 
+import java.io.Closeable;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.aliyun.odps.rest.AsyncRequestExecutor;
+import com.aliyun.odps.rest.RestClient;
 
 /**
  * 支持通过{@link list()}自定义的Iterator
+ *
+ * <p>
+ * 默认在缓存的条目用完时同步调用 {@link #list()} 获取下一页。预取页数大于 0 时，由后台线程依次调用
+ * {@link #list()}，最多提前缓存 prefetchDepth 页，调用方处理当前页时下一页已经在请求中。
+ * {@link #list()} 始终按顺序调用，同一时刻只有一个线程在调用。不再使用的迭代器可以调用
+ * {@link #close()} 停止预取，没有关闭时最多多请求 prefetchDepth 页。
+ * </p>
+ *
+ * <p>
+ * 线程池拒绝预取任务，或者迭代发生在线程池自己的线程中（等待预取可能因为并发数被占满而死锁）时，
+ * 退回到在调用线程中同步获取。
+ * </p>
  */
-public abstract class ListIterator<E> implements Iterator<E> {
+public abstract class ListIterator<E> implements Iterator<E>, Closeable {
 
   /**
    * 获取数据
@@ -36,12 +55,75 @@ public abstract class ListIterator<E> implements Iterator<E> {
    */
   protected abstract List<E> list();
 
+  /**
+   * 等待预取结果时检查预取任务状态的间隔，毫秒
+   */
+  private static final long FILLER_CHECK_INTERVAL = 1000L;
+
   private LinkedList<E> cache = new LinkedList<E>();
 
+  private int pageSize = 0;
+  private int prefetchDepth = 0;
+  private RestClient client;
+
+  // 以下字段由 lock 保护，后台任务与调用方共享
+  private final Object lock = new Object();
+  private final LinkedList<List<E>> pages = new LinkedList<List<E>>();
+  private boolean finished = false;
+  private boolean closed = false;
+  private RuntimeException error;
+  private Future<?> filler;
+
+  /**
+   * 使用 client 的列表设置：每页条目数、预取页数以及执行预取的线程池
+   */
+  protected void configure(RestClient client) {
+    this.client = client;
+    this.pageSize = client.getListPageSize();
+    this.prefetchDepth = client.getListPrefetchDepth();
+  }
+
+  /**
+   * 获取每页的条目数，0 表示使用服务端默认值。{@link #list()} 的实现将它作为请求参数 maxitems 发送
+   */
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  /**
+   * 设置每页的条目数，需要在迭代开始前设置
+   *
+   * @param pageSize
+   *     每页条目数，0 表示使用服务端默认值
+   */
+  public void setPageSize(int pageSize) {
+    if (pageSize < 0) {
+      throw new IllegalArgumentException("page size must >= 0, now: " + pageSize);
+    }
+    this.pageSize = pageSize;
+  }
+
+  public int getPrefetchDepth() {
+    return prefetchDepth;
+  }
+
+  /**
+   * 设置在后台预取的页数，需要在迭代开始前设置
+   *
+   * @param prefetchDepth
+   *     预取页数，0 表示不预取
+   */
+  public void setPrefetchDepth(int prefetchDepth) {
+    if (prefetchDepth < 0) {
+      throw new IllegalArgumentException("prefetch depth must >= 0, now: " + prefetchDepth);
+    }
+    this.prefetchDepth = prefetchDepth;
+  }
+
   @Override
   public boolean hasNext() {
     while (cache.size() == 0) {
-      List<E> list = list();
+      List<E> list = nextPage();
       if (list == null) {
         return false;
       } else {
@@ -64,4 +146,116 @@ public abstract class ListIterator<E> implements Iterator<E> {
     throw new RuntimeException("Method not supported.");
   }
 
+  /**
+   * 停止预取并丢弃缓存的条目，之后 {@link #hasNext()} 返回 false
+   */
+  @Override
+  public void close() {
+    cache.clear();
+    synchronized (lock) {
+      closed = true;
+      pages.clear();
+      if (filler != null) {
+        // 还在排队的任务直接取消，正在执行的任务取完当前页后退出
+        filler.cancel(false);
+      }
+    }
+  }
+
+  private List<E> nextPage() {
+    if (prefetchDepth <= 0) {
+      return closed ? null : list();
+    }
+    synchronized (lock) {
+      while (true) {
+        if (closed) {
+          return null;
+        }
+        if (!pages.isEmpty()) {
+          List<E> page = pages.removeFirst();
+          startFiller();
+          return page;
+        }
+        if (error != null) {
+          RuntimeException e = error;
+          error = null;
+          throw e;
+        }
+        if (finished) {
+          return null;
+        }
+        startFiller();
+        if (filler == null) {
+          break;
+        }
+        try {
+          lock.wait(FILLER_CHECK_INTERVAL);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException("Interrupted while waiting for list page.", e);
+        }
+        if (filler != null && filler.isDone()) {
+          // fill() 退出前会清空 filler，说明任务没有执行就结束了（例如被线程池拒绝）
+          filler = null;
+        }
+      }
+    }
+    // 无法在后台预取，在当前线程获取。此时没有其它线程调用 list()
+    List<E> page = list();
+    if (page == null) {
+      synchronized (lock) {
+        finished = true;
+      }
+    }
+    return page;
+  }
+
+  // 调用时持有 lock
+  private void startFiller() {
+    if (filler != null || finished || closed || pages.size() >= prefetchDepth
+        || AsyncRequestExecutor.isExecutorThread()) {
+      return;
+    }
+    Callable<Void> task = new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        fill();
+        return null;
+      }
+    };
+    try {
+      filler = client == null ? AsyncRequestExecutor.getDefault().submit(null, task)
+                              : client.submitAsync(task);
+    } catch (RejectedExecutionException e) {
+      filler = null;
+    }
+  }
+
+  private void fill() {
+    while (true) {
+      List<E> page = null;
+      RuntimeException e = null;
+      try {
+        page = list();
+      } catch (Throwable t) {
+        e = t instanceof RuntimeException ? (RuntimeException) t
+                                          : new RuntimeException(t.getMessage(), t);
+      }
+      synchronized (lock) {
+        if (e != null) {
+          error = e;
+          finished = true;
+        } else if (page == null) {
+          finished = true;
+        } else if (!closed) {
+          pages.addLast(page);
+        }
+        lock.notifyAll();
+        if (finished || closed || pages.size() >= prefetchDepth) {
+          filler = null;
+          return;
+        }
+      }
+    }
+  }
 }
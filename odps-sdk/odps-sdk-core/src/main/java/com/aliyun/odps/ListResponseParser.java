@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.aliyun.odps.Instance.TaskStatusModel;
+import com.aliyun.odps.Instance.TaskStatusModel.InstanceTaskModel;
+import com.aliyun.odps.Partition.ColumnModel;
+import com.aliyun.odps.Partition.PartitionModel;
+import com.aliyun.odps.Resource.ResourceModel;
+import com.aliyun.odps.Table.TableModel;
+import com.aliyun.odps.commons.util.DateUtils;
+
+/**
+ * 列表接口返回结果的流式（StAX）解析器
+ *
+ * <p>直接从 XML 事件构造 SDK 使用的模型对象，不经过 JAXB 的反射绑定和中间的 ListXXXResponse 对象。
+ * 解析结果与 JAXB 绑定的结果一致：未知元素被忽略，同名元素出现多次时以最后一次为准，
+ * 时间格式错误时对应字段为 null。</p>
+ *
+ * <p>是否使用由 {@link com.aliyun.odps.rest.RestClient#setStreamingXmlParser(boolean)} 控制。</p>
+ */
+final class ListResponseParser {
+
+  /**
+   * 一页列表结果
+   */
+  static class Page<T> {
+
+    final List<T> items = new ArrayList<T>();
+    String marker;
+  }
+
+  private interface ItemReader<T> {
+
+    T read(XMLStreamReader reader) throws XMLStreamException;
+  }
+
+  private static final ThreadLocal<XMLInputFactory> factories = new ThreadLocal<XMLInputFactory>() {
+    @Override
+    protected XMLInputFactory initialValue() {
+      XMLInputFactory factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+      factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+      factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+      return factory;
+    }
+  };
+
+  private ListResponseParser() {
+  }
+
+  static Page<TaskStatusModel> parseInstances(byte[] xml) throws OdpsException {
+    return parse(xml, "Instances", "Instance", INSTANCE_READER);
+  }
+
+  static Page<TableModel> parseTables(byte[] xml) throws OdpsException {
+    return parse(xml, "Tables", "Table", TABLE_READER);
+  }
+
+  static Page<PartitionModel> parsePartitions(byte[] xml) throws OdpsException {
+    return parse(xml, "Partitions", "Partition", PARTITION_READER);
+  }
+
+  static Page<ResourceModel> parseResources(byte[] xml) throws OdpsException {
+    return parse(xml, "Resources", "Resource", RESOURCE_READER);
+  }
+
+  private static <T> Page<T> parse(byte[] xml, String root, String item, ItemReader<T> itemReader)
+      throws OdpsException {
+    if (xml == null) {
+      throw new RuntimeException("Invalid XML to unmarshal.");
+    }
+
+    Page<T> page = new Page<T>();
+    XMLStreamReader reader = null;
+    try {
+      reader = factories.get().createXMLStreamReader(new ByteArrayInputStream(xml));
+      if (!nextElement(reader) || !root.equals(reader.getLocalName())) {
+        throw new OdpsException("Can't parse xml, expect root element " + root);
+      }
+      while (nextElement(reader)) {
+        String name = reader.getLocalName();
+        if (item.equals(name)) {
+          page.items.add(itemReader.read(reader));
+        } else if ("Marker".equals(name)) {
+          page.marker = reader.getElementText();
+        } else {
+          skipElement(reader);
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw new OdpsException("Can't parse xml of " + root, e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException ignore) {
+        }
+      }
+    }
+    return page;
+  }
+
+  private static final ItemReader<TaskStatusModel> INSTANCE_READER =
+      new ItemReader<TaskStatusModel>() {
+        @Override
+        public TaskStatusModel read(XMLStreamReader reader) throws XMLStreamException {
+          TaskStatusModel model = new TaskStatusModel();
+          while (nextElement(reader)) {
+            String name = reader.getLocalName();
+            if ("Name".equals(name)) {
+              model.name = reader.getElementText();
+            } else if ("Owner".equals(name)) {
+              model.owner = reader.getElementText();
+            } else if ("StartTime".equals(name)) {
+              model.startTime = rfc822Date(reader.getElementText());
+            } else if ("EndTime".equals(name)) {
+              model.endTime = rfc822Date(reader.getElementText());
+            } else if ("Status".equals(name)) {
+              model.status = reader.getElementText();
+            } else if ("Tasks".equals(name)) {
+              readTasks(reader, "Task", model.tasks);
+            } else {
+              skipElement(reader);
+            }
+          }
+          return model;
+        }
+      };
+
+  private static void readTasks(XMLStreamReader reader, String item, List<InstanceTaskModel> tasks)
+      throws XMLStreamException {
+    while (nextElement(reader)) {
+      if (!item.equals(reader.getLocalName())) {
+        skipElement(reader);
+        continue;
+      }
+
+      InstanceTaskModel task = new InstanceTaskModel();
+      task.type = reader.getAttributeValue(null, "Type");
+      while (nextElement(reader)) {
+        String name = reader.getLocalName();
+        if ("Name".equals(name)) {
+          task.name = reader.getElementText();
+        } else if ("StartTime".equals(name)) {
+          task.startTime = rfc822Date(reader.getElementText());
+        } else if ("EndTime".equals(name)) {
+          task.endTime = rfc822Date(reader.getElementText());
+        } else if ("Status".equals(name)) {
+          task.status = reader.getElementText();
+        } else if ("Histories".equals(name)) {
+          readTasks(reader, "History", task.histories);
+        } else {
+          skipElement(reader);
+        }
+      }
+      tasks.add(task);
+    }
+  }
+
+  private static final ItemReader<TableModel> TABLE_READER = new ItemReader<TableModel>() {
+    @Override
+    public TableModel read(XMLStreamReader reader) throws XMLStreamException {
+      TableModel model = new TableModel();
+      model.format = reader.getAttributeValue(null, "format");
+      while (nextElement(reader)) {
+        String name = reader.getLocalName();
+        if ("Name".equals(name)) {
+          model.name = reader.getElementText();
+        } else if ("TableId".equals(name)) {
+          model.ID = reader.getElementText();
+        } else if ("Schema".equals(name)) {
+          model.schema = new TableModel.Schema();
+          model.schema.content = reader.getElementText();
+        } else if ("Comment".equals(name)) {
+          model.comment = reader.getElementText();
+        } else if ("Owner".equals(name)) {
+          model.owner = reader.getElementText();
+        } else if ("Project".equals(name)) {
+          model.projectName = reader.getElementText();
+        } else if ("TableLabel".equals(name)) {
+          model.tableLabel = reader.getElementText();
+        } else if ("CryptoAlgo".equals(name)) {
+          model.cryptoAlgoName = reader.getElementText();
+        } else if ("CreationTime".equals(name)) {
+          model.createdTime = rfc822Date(reader.getElementText());
+        } else if ("LastModifiedTime".equals(name)) {
+          model.lastModifiedTime = rfc822Date(reader.getElementText());
+        } else {
+          skipElement(reader);
+        }
+      }
+      return model;
+    }
+  };
+
+  private static final ItemReader<PartitionModel> PARTITION_READER =
+      new ItemReader<PartitionModel>() {
+        @Override
+        public PartitionModel read(XMLStreamReader reader) throws XMLStreamException {
+          PartitionModel model = new PartitionModel();
+          while (nextElement(reader)) {
+            String name = reader.getLocalName();
+            if ("Column".equals(name)) {
+              ColumnModel column = new ColumnModel();
+              column.columnName = reader.getAttributeValue(null, "Name");
+              column.columnValue = reader.getAttributeValue(null, "Value");
+              skipElement(reader);
+              model.columns.add(column);
+            } else if ("CreationTime".equals(name)) {
+              model.createdTime = epochDate(reader.getElementText());
+            } else if ("LastDDLTime".equals(name)) {
+              model.lastMetaModifiedTime = epochDate(reader.getElementText());
+            } else if ("LastModifiedTime".equals(name)) {
+              model.lastDataModifiedTime = epochDate(reader.getElementText());
+            } else {
+              skipElement(reader);
+            }
+          }
+          return model;
+        }
+      };
+
+  private static final ItemReader<ResourceModel> RESOURCE_READER =
+      new ItemReader<ResourceModel>() {
+        @Override
+        public ResourceModel read(XMLStreamReader reader) throws XMLStreamException {
+          ResourceModel model = new ResourceModel();
+          while (nextElement(reader)) {
+            String name = reader.getLocalName();
+            if ("Name".equals(name)) {
+              model.name = reader.getElementText();
+            } else if ("Owner".equals(name)) {
+              model.owner = reader.getElementText();
+            } else if ("Comment".equals(name)) {
+              model.comment = reader.getElementText();
+            } else if ("ResourceType".equals(name)) {
+              model.type = reader.getElementText();
+            } else if ("CreationTime".equals(name)) {
+              model.createdTime = rfc822Date(reader.getElementText());
+            } else if ("LastModifiedTime".equals(name)) {
+              model.lastModifiedTime = rfc822Date(reader.getElementText());
+            } else if ("LastUpdator".equals(name)) {
+              model.lastUpdator = reader.getElementText();
+            } else if ("ResourceSize".equals(name)) {
+              model.size = parseLong(reader.getElementText());
+            } else if ("TableName".equals(name)) {
+              model.sourceTableName = reader.getElementText();
+            } else {
+              skipElement(reader);
+            }
+          }
+          return model;
+        }
+      };
+
+  /**
+   * 移动到当前元素的下一个子元素
+   *
+   * @return 移动到子元素时返回 true，遇到当前元素的结束标签时返回 false
+   */
+  private static boolean nextElement(XMLStreamReader reader) throws XMLStreamException {
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        return true;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 跳过当前元素，结束时停在它的结束标签上
+   */
+  private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0 && reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  private static Date rfc822Date(String text) {
+    try {
+      return DateUtils.parseRfc822Date(text);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  private static Date epochDate(String text) {
+    try {
+      return new Date(Long.parseLong(text) * 1000);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  private static Long parseLong(String text) {
+    try {
+      return Long.valueOf(text.trim());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aliyun.odps.commons.transport.Response;
+
+/**
+ * 按有效期和条目数淘汰的 {@link MetaCache}
+ *
+ * <p>
+ * 条目在写入 ttl 毫秒后过期，{@link MetaCache#MISSING} 使用单独的 negativeTtl。
+ * 条目数超过 maxEntries 时淘汰最久没有访问的条目。
+ * </p>
+ *
+ * <p>
+ * 失效代数是整个缓存共用的，任何失效操作之前发出的请求，其响应都不会被放入缓存。
+ * </p>
+ */
+public class LruMetaCache implements MetaCache {
+
+  /**
+   * 默认最大条目数
+   */
+  public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+  /**
+   * 默认有效期，毫秒
+   */
+  public static final long DEFAULT_TTL = 60 * 1000L;
+
+  /**
+   * 对象不存在时默认的有效期，毫秒
+   */
+  public static final long DEFAULT_NEGATIVE_TTL = 10 * 1000L;
+
+  private static class Entry {
+
+    final Response response;
+    final long expireAt;
+
+    Entry(Response response, long expireAt) {
+      this.response = response;
+      this.expireAt = expireAt;
+    }
+  }
+
+  private final int maxEntries;
+  private final long ttl;
+  private final long negativeTtl;
+  private final LinkedHashMap<String, Entry> entries;
+
+  // 由 entries 的锁保护
+  private long generation;
+
+  private final AtomicLong hitCount = new AtomicLong(0);
+  private final AtomicLong missCount = new AtomicLong(0);
+  private final AtomicLong evictionCount = new AtomicLong(0);
+
+  public LruMetaCache() {
+    this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL);
+  }
+
+  /**
+   * @param maxEntries
+   *     最大条目数
+   * @param ttl
+   *     有效期，毫秒
+   * @param negativeTtl
+   *     对象不存在时的有效期，毫秒，为 0 时不缓存不存在的对象
+   */
+  public LruMetaCache(final int maxEntries, long ttl, long negativeTtl) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("max entries must >= 1, now: " + maxEntries);
+    }
+    if (ttl < 0) {
+      throw new IllegalArgumentException("ttl must >= 0, now: " + ttl);
+    }
+    if (negativeTtl < 0) {
+      throw new IllegalArgumentException("negative ttl must >= 0, now: " + negativeTtl);
+    }
+    this.maxEntries = maxEntries;
+    this.ttl = ttl;
+    this.negativeTtl = negativeTtl;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > maxEntries) {
+          evictionCount.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  @Override
+  public Response get(String project, ObjectType type, String name) {
+    String key = key(project, type, name);
+    synchronized (entries) {
+      Entry e = entries.get(key);
+      if (e != null && e.expireAt > now()) {
+        hitCount.incrementAndGet();
+        return e.response;
+      }
+      if (e != null) {
+        entries.remove(key);
+      }
+    }
+    missCount.incrementAndGet();
+    return null;
+  }
+
+  @Override
+  public long getGeneration() {
+    synchronized (entries) {
+      return generation;
+    }
+  }
+
+  @Override
+  public void put(String project, ObjectType type, String name, Response response,
+                 long generation) {
+    long life = response == MISSING ? negativeTtl : ttl;
+    if (life <= 0) {
+      return;
+    }
+    Entry e = new Entry(response, now() + life);
+    synchronized (entries) {
+      if (generation != this.generation) {
+        return;
+      }
+      entries.put(key(project, type, name), e);
+    }
+  }
+
+  @Override
+  public void invalidate(String project, ObjectType type, String name) {
+    synchronized (entries) {
+      generation++;
+      entries.remove(key(project, type, name));
+    }
+  }
+
+  @Override
+  public void invalidatePrefix(String project, ObjectType type, String prefix) {
+    String keyPrefix = key(project, type, prefix);
+    synchronized (entries) {
+      generation++;
+      Iterator<String> it = entries.keySet().iterator();
+      while (it.hasNext()) {
+        if (it.next().startsWith(keyPrefix)) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  @Override
+  public void invalidateAll() {
+    synchronized (entries) {
+      generation++;
+      entries.clear();
+    }
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * 获取缓存中的条目数，包括已经过期还没有清理的条目
+   */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * 获取命中次数，包括命中 {@link MetaCache#MISSING}
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * 获取未命中次数，包括条目已过期
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * 获取因为条目数超过上限被淘汰的次数
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  long now() {
+    return System.currentTimeMillis();
+  }
+
+  private static String key(String project, ObjectType type, String name) {
+    return type.ordinal() + "\u0001" + project + "\u0001" + name;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps;
+
+import com.aliyun.odps.commons.transport.Response;
+
+/**
+ * 元数据缓存
+ *
+ * <p>
+ * 通过 {@link Odps#setMetaCache(MetaCache)} 设置后，{@link Table}、{@link Partition}、{@link Resource}、
+ * {@link Function}、{@link Project} 的 reload 先查缓存，缓存中没有时才请求服务端，并把响应放入缓存。
+ * 对象不存在时缓存 {@link #MISSING}，exists 等检查在缓存有效期内不再请求服务端。
+ * 通过 SDK 执行的 DDL（创建、删除表和分区等）会使相关的缓存失效，其他客户端的修改在缓存过期后才可见。
+ * </p>
+ *
+ * <p>缓存的 {@link Response} 被多个对象共享，不能修改。实现需要是线程安全的，默认实现见 {@link LruMetaCache}。</p>
+ */
+public interface MetaCache {
+
+  /**
+   * 缓存的对象类型
+   */
+  enum ObjectType {
+    PROJECT,
+    TABLE,
+    PARTITION,
+    RESOURCE,
+    FUNCTION
+  }
+
+  /**
+   * 表示对象不存在的缓存值
+   */
+  Response MISSING = new Response() {
+  };
+
+  /**
+   * 查询缓存
+   *
+   * @param project
+   *     所在 project
+   * @param type
+   *     对象类型
+   * @param name
+   *     对象名，分区为 "表名/分区定义"
+   * @return 缓存的响应，对象不存在时返回 {@link #MISSING}，没有缓存或者已经过期时返回 null
+   */
+  Response get(String project, ObjectType type, String name);
+
+  /**
+   * 获取当前的失效代数，每次失效操作（invalidate、invalidatePrefix、invalidateAll）都会使它增加
+   *
+   * <p>在发出请求前取得代数，收到响应后连同代数一起 {@link #put}，
+   * 请求期间发生的失效不会被旧的响应覆盖。</p>
+   */
+  long getGeneration();
+
+  /**
+   * 放入缓存，generation 之后发生过失效时忽略
+   *
+   * @param response
+   *     服务端的响应，对象不存在时为 {@link #MISSING}
+   * @param generation
+   *     发出请求前 {@link #getGeneration()} 的值
+   */
+  void put(String project, ObjectType type, String name, Response response, long generation);
+
+  /**
+   * 使一个对象的缓存失效
+   */
+  void invalidate(String project, ObjectType type, String name);
+
+  /**
+   * 使名字以 prefix 开头的对象的缓存失效，例如删除表时使它的所有分区失效
+   */
+  void invalidatePrefix(String project, ObjectType type, String prefix);
+
+  /**
+   * 清空缓存
+   */
+  void invalidateAll();
+}
@@ -25,6 +25,7 @@ import java.net.URISyntaxException;
 import com.aliyun.odps.account.Account;
 import com.aliyun.odps.account.AccountFormat;
 import com.aliyun.odps.commons.transport.DefaultTransport;
+import com.aliyun.odps.commons.transport.Transport;
 import com.aliyun.odps.ml.OfflineModels;
 import com.aliyun.odps.rest.RestClient;
 
@@ -101,9 +102,26 @@ public class Odps {
    *     认证信息
    */
   public Odps(Account account) {
+    this(account, new DefaultTransport());
+  }
+
+  /**
+   * 指定{@link Account}和{@link Transport}构造Odps对象
+   *
+   * <p>
+   * 可以使用 {@link com.aliyun.odps.commons.transport.PooledTransport} 复用 HTTP 连接，
+   * 通过 {@link #clone()} 得到的对象和 tunnel 共享同一个 transport
+   * </p>
+   *
+   * @param account
+   *     认证信息
+   * @param transport
+   *     发起 HTTP 请求的 transport
+   */
+  public Odps(Account account, Transport transport) {
     this.account = account;
 
-    client = new RestClient(new DefaultTransport());
+    client = new RestClient(transport);
     client.setAccount(account);
     setUserAgent("");
 
@@ -122,12 +140,22 @@ public class Odps {
   }
 
   public Odps(Odps odps) {
-    this(odps.account);
+    this(odps.account, odps.getRestClient().getTransport());
     setDefaultProject(odps.getDefaultProject());
     setUserAgent(odps.getUserAgent());
     setEndpoint(odps.getEndpoint());
     setLogViewHost(odps.getLogViewHost());
     client.setIgnoreCerts(odps.getRestClient().isIgnoreCerts());
+    client.setChunkSize(odps.getRestClient().getChunkSize());
+    client.setContentMD5Enabled(odps.getRestClient().isContentMD5Enabled());
+    client.setBodyBufferSize(odps.getRestClient().getBodyBufferSize());
+    client.setStreamingXmlParser(odps.getRestClient().isStreamingXmlParser());
+    client.setAsyncExecutor(odps.getRestClient().getAsyncExecutor());
+    client.setRetryPolicy(odps.getRestClient().getRetryPolicy());
+    client.setListPageSize(odps.getRestClient().getListPageSize());
+    client.setListPrefetchDepth(odps.getRestClient().getListPrefetchDepth());
+    client.setBulkLoadParallelism(odps.getRestClient().getBulkLoadParallelism());
+    client.setMetaCache(odps.getRestClient().getMetaCache());
     instances.setDefaultRunningCluster(odps.instances.getDefaultRunningCluster());
   }
 
@@ -301,6 +329,35 @@ public class Odps {
     return new Odps(this);
   }
 
+  /**
+   * 获取元数据缓存
+   *
+   * @return 元数据缓存，没有设置时返回 null
+   */
+  public MetaCache getMetaCache() {
+    return client.getMetaCache();
+  }
+
+  /**
+   * 设置元数据缓存
+   *
+   * <p>
+   * 设置后表、分区、资源、函数、project 的元数据优先从缓存读取，例如
+   * odps.tables().get(name).getSchema() 在缓存有效期内不再请求服务端。默认不使用缓存。
+   * 通过 {@link #clone()} 得到的对象共享同一个缓存。
+   * </p>
+   *
+   * <pre>
+   * odps.setMetaCache(new LruMetaCache(10000, 60 * 1000L, 10 * 1000L));
+   * </pre>
+   *
+   * @param metaCache
+   *     元数据缓存，为 null 时不使用缓存
+   */
+  public void setMetaCache(MetaCache metaCache) {
+    client.setMetaCache(metaCache);
+  }
+
   /**
    * 获取ODPS底层传输接口
    *
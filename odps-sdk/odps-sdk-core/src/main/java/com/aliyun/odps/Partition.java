@@ -24,6 +24,8 @@ import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
@@ -45,7 +47,7 @@ public class Partition extends LazyLoad {
   static class PartitionModel {
 
     @XmlElement(name = "Column")
-    private List<ColumnModel> columns = new ArrayList<ColumnModel>();
+    List<ColumnModel> columns = new ArrayList<ColumnModel>();
 
     @XmlElement(name = "CreationTime")
     @XmlJavaTypeAdapter(JAXBUtils.EpochBinding.class)
@@ -64,9 +66,9 @@ public class Partition extends LazyLoad {
   static class ColumnModel {
 
     @XmlAttribute(name = "Name")
-    private String columnName;
+    String columnName;
     @XmlAttribute(name = "Value")
-    private String columnValue;
+    String columnValue;
   }
 
   private PartitionModel model;
@@ -265,8 +267,9 @@ public class Partition extends LazyLoad {
 
     String resource = ResourceBuilder.buildTableResource(project, table);
 
-    PartitionMeta meta = client.request(PartitionMeta.class,
-                                        resource.toString(), "GET", params);
+    PartitionMeta meta = getMeta(client, MetaCache.ObjectType.PARTITION, project,
+                                 partitionName(table, getPartitionSpec().toString()),
+                                 resource, params, PartitionMeta.class);
 
     try {
       JSONObject tree = JSON.parseObject(meta.schema);
@@ -297,6 +300,25 @@ public class Partition extends LazyLoad {
     }
   }
 
+  /**
+   * 异步重新加载分区信息
+   *
+   * <p>
+   * 请求在 {@link RestClient#getAsyncExecutor()} 中执行，完成前不要在其他线程读取这个对象
+   * </p>
+   *
+   * @return 当前对象
+   */
+  public Future<Partition> reloadAsync() {
+    return client.submitAsync(new Callable<Partition>() {
+      @Override
+      public Partition call() throws Exception {
+        reload();
+        return Partition.this;
+      }
+    });
+  }
+
   private void lazyLoadExtendInfo() {
     if (!this.isExtendInfoLoaded) {
       Map<String, String> params = new LinkedHashMap<String, String>();
@@ -216,7 +216,8 @@ public class Project extends LazyLoad {
   @Override
   public void reload() throws OdpsException {
     String resource = ResourceBuilder.buildProjectResource(model.name);
-    Response resp = client.request(resource, "GET", null, null, null);
+    Response resp = getMeta(client, MetaCache.ObjectType.PROJECT, model.name, model.name,
+                            resource, null);
     try {
       model = JAXBUtils.unmarshal(resp, ProjectModel.class);
       Map<String, String> headers = resp.getHeaders();
@@ -335,7 +335,8 @@ public class Resource extends LazyLoad {
     String resource = ResourceBuilder.buildResourceResource(project, model.name);
     HashMap<String, String> params = new HashMap<String, String>();
     params.put("meta", null);
-    Response rp = client.request(resource, "GET", params, null, null);
+    Response rp = getMeta(client, MetaCache.ObjectType.RESOURCE, project, model.name, resource,
+                          params);
     Map<String, String> headers = rp.getHeaders();
     model.owner = headers.get(ResourceHeaders.X_ODPS_OWNER);
     model.type = headers.get(ResourceHeaders.X_ODPS_RESOURCE_TYPE);
@@ -381,6 +382,7 @@ public class Resource extends LazyLoad {
     headers.put(ResourceHeaders.X_ODPS_OWNER, newOwner);
 
     client.request(resource, method, params, headers, null);
+    invalidateMeta(client, MetaCache.ObjectType.RESOURCE, project, model.name);
 
     model.owner = newOwner;
   }
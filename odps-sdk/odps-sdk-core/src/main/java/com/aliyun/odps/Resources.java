@@ -31,6 +31,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -230,7 +232,7 @@ public class Resources implements Iterable<Resource> {
     }
 
     client.request(resource, method, null, headers, null);
-
+    LazyLoad.invalidateMeta(client, MetaCache.ObjectType.RESOURCE, projectName, r.getName());
   }
 
   /**
@@ -349,6 +351,7 @@ public class Resources implements Iterable<Resource> {
     }
 
     client.request(resource, method, null, headers, null);
+    LazyLoad.invalidateMeta(client, MetaCache.ObjectType.RESOURCE, project, r.getName());
   }
 
   private void createFile(String project, Resource res, InputStream in,
@@ -387,6 +390,7 @@ public class Resources implements Iterable<Resource> {
 
     client.request(resource.toString(), method, null, headers,
                    in, IOUtils.getInputStreamLength(in));
+    LazyLoad.invalidateMeta(client, MetaCache.ObjectType.RESOURCE, project, r.getName());
 
   }
 
@@ -463,6 +467,40 @@ public class Resources implements Iterable<Resource> {
     }
   }
 
+  /**
+   * 异步判断指定资源是否存在
+   *
+   * @param resourceName
+   *     资源名称
+   * @return 如果指定资源存在，则返回true，否则返回false
+   * @see #existsAsync(String, String)
+   */
+  public Future<Boolean> existsAsync(String resourceName) {
+    return existsAsync(getDefaultProjectName(), resourceName);
+  }
+
+  /**
+   * 异步判断指定资源是否存在
+   *
+   * <p>
+   * 请求在 {@link RestClient#getAsyncExecutor()} 中执行
+   * </p>
+   *
+   * @param projectName
+   *     所在{@link Project}名称
+   * @param resourceName
+   *     资源名称
+   * @return 如果指定资源存在，则返回true，否则返回false
+   */
+  public Future<Boolean> existsAsync(final String projectName, final String resourceName) {
+    return client.submitAsync(new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return exists(projectName, resourceName);
+      }
+    });
+  }
+
   /**
    * 删除资源
    *
@@ -484,6 +522,7 @@ public class Resources implements Iterable<Resource> {
   public void delete(String projectName, String name) throws OdpsException {
     String resource = ResourceBuilder.buildResourceResource(projectName, name);
     client.request(resource, "DELETE", null, null, null);
+    LazyLoad.invalidateMeta(client, MetaCache.ObjectType.RESOURCE, projectName, name);
   }
 
   /**
@@ -608,6 +647,7 @@ public class Resources implements Iterable<Resource> {
     ResourceListIterator(String projectName, String resourceName) {
       this.project = projectName;
       this.name = resourceName;
+      configure(client);
     }
 
     @Override
@@ -621,21 +661,36 @@ public class Resources implements Iterable<Resource> {
         return null;
       }
 
+      if (getPageSize() > 0) {
+        params.put("maxitems", String.valueOf(getPageSize()));
+      }
+
       if (name != null) {
         params.put("name", name);
       }
 
       String resource = ResourceBuilder.buildResourcesResource(project);
       try {
-        ListResourcesResponse resp = client.request(
-            ListResourcesResponse.class, resource, "GET", params);
+        List<ResourceModel> models;
+        String marker;
+        if (client.isStreamingXmlParser()) {
+          ListResponseParser.Page<ResourceModel> page = ListResponseParser.parseResources(
+              client.request(resource, "GET", params, null, null).getBody());
+          models = page.items;
+          marker = page.marker;
+        } else {
+          ListResourcesResponse resp = client.request(
+              ListResourcesResponse.class, resource, "GET", params);
+          models = resp.resources;
+          marker = resp.marker;
+        }
 
-        for (ResourceModel model : resp.resources) {
+        for (ResourceModel model : models) {
           Resource t = Resource.getResource(model, project, odps);
           resources.add(t);
         }
 
-        params.put("marker", resp.marker);
+        params.put("marker", marker);
       } catch (OdpsException e) {
         throw new RuntimeException(e.getMessage(), e);
       }
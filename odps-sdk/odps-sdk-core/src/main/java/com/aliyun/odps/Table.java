@@ -21,6 +21,7 @@ package com.aliyun.odps;
 
 import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -28,6 +29,7 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
@@ -74,10 +76,10 @@ public class Table extends LazyLoad {
     String ID;
 
     @XmlAttribute(name = "format")
-    private String format;
+    String format;
 
     @XmlElement(name = "Schema")
-    private Schema schema;
+    Schema schema;
 
     @XmlElement(name = "Comment")
     String comment;
@@ -192,7 +194,8 @@ public class Table extends LazyLoad {
   @Override
   public void reload() throws OdpsException {
     String resource = ResourceBuilder.buildTableResource(model.projectName, model.name);
-    reload(client.request(TableModel.class, resource, "GET"));
+    reload(getMeta(client, MetaCache.ObjectType.TABLE, model.projectName, model.name, resource,
+                   null, TableModel.class));
   }
 
   public void reload(TableModel model) throws OdpsException {
@@ -998,6 +1001,10 @@ public class Table extends LazyLoad {
 
       Map<String, String> params = new HashMap<String, String>();
 
+      {
+        configure(client);
+      }
+
       @Override
       protected List<Partition> list() {
         ArrayList<Partition> partitions = new ArrayList<Partition>();
@@ -1013,19 +1020,34 @@ public class Table extends LazyLoad {
           return null;
         }
 
+        if (getPageSize() > 0) {
+          params.put("maxitems", String.valueOf(getPageSize()));
+        }
+
         String resource = ResourceBuilder.buildTableResource(model.projectName, getName());
         try {
 
-          ListPartitionsResponse
-              resp =
-              client.request(ListPartitionsResponse.class, resource, "GET", params);
+          List<PartitionModel> models;
+          String marker;
+          if (client.isStreamingXmlParser()) {
+            ListResponseParser.Page<PartitionModel> page = ListResponseParser.parsePartitions(
+                client.request(resource, "GET", params, null, null).getBody());
+            models = page.items;
+            marker = page.marker;
+          } else {
+            ListPartitionsResponse
+                resp =
+                client.request(ListPartitionsResponse.class, resource, "GET", params);
+            models = resp.partitions;
+            marker = resp.marker;
+          }
 
-          for (PartitionModel partitionModel : resp.partitions) {
+          for (PartitionModel partitionModel : models) {
             Partition t = new Partition(partitionModel, model.projectName, getName(), client);
             partitions.add(t);
           }
 
-          params.put("marker", resp.marker);
+          params.put("marker", marker);
         } catch (OdpsException e) {
           throw new RuntimeException(e.getMessage(), e);
         }
@@ -1060,6 +1082,70 @@ public class Table extends LazyLoad {
     return new Partition(spec, model.projectName, getName(), client);
   }
 
+  /**
+   * 批量加载指定分区的信息
+   *
+   * @param specs
+   *     分区定义 {@link PartitionSpec}
+   * @return 加载后的 {@link Partition} 列表
+   * @throws OdpsException
+   * @see #reloadPartitions(Collection)
+   */
+  public List<Partition> loadPartitions(Collection<PartitionSpec> specs) throws OdpsException {
+    if (specs == null) {
+      throw new IllegalArgumentException("Invalid partition specs.");
+    }
+    List<Partition> partitions = new ArrayList<Partition>(specs.size());
+    for (PartitionSpec spec : specs) {
+      partitions.add(getPartition(spec));
+    }
+    return reloadPartitions(partitions);
+  }
+
+  /**
+   * 批量加载分区信息
+   *
+   * <p>
+   * 每个分区一个请求，多个请求并发执行，并发数见 {@link RestClient#setBulkLoadParallelism(int)}。
+   * 返回的分区按输入的顺序排列，不存在的分区不在结果中。
+   * </p>
+   *
+   * @param partitions
+   *     要加载的分区
+   * @return 加载后的 {@link Partition} 列表
+   * @throws OdpsException
+   */
+  public List<Partition> reloadPartitions(Collection<Partition> partitions) throws OdpsException {
+    if (partitions == null) {
+      throw new IllegalArgumentException("Invalid partitions.");
+    }
+    List<Callable<Partition>> tasks = new ArrayList<Callable<Partition>>(partitions.size());
+    for (final Partition partition : partitions) {
+      tasks.add(new Callable<Partition>() {
+        @Override
+        public Partition call() throws Exception {
+          try {
+            partition.reload();
+          } catch (NoSuchObjectException e) {
+            return null;
+          }
+          return partition;
+        }
+      });
+    }
+
+    List<Partition> loaded = new ArrayList<Partition>(tasks.size());
+    if (tasks.isEmpty()) {
+      return loaded;
+    }
+    for (Partition partition : BulkRequests.run(client, tasks)) {
+      if (partition != null) {
+        loaded.add(partition);
+      }
+    }
+    return loaded;
+  }
+
   /**
    * 判断指定分区是否存在
    *
@@ -1110,7 +1196,13 @@ public class Table extends LazyLoad {
     Instances instances = odps.instances();
     Instance instance = instances.create(task);
 
-    instance.waitForSuccess();
+    try {
+      instance.waitForSuccess();
+    } finally {
+      // 分区的增删、truncate 等都会修改表和分区的元数据
+      invalidateMeta(client, MetaCache.ObjectType.TABLE, getProject(), getName());
+      invalidatePartitionMeta(client, getProject(), getName());
+    }
   }
 
   /* private */
@@ -22,9 +22,14 @@ package com.aliyun.odps;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.annotation.XmlAccessType;
@@ -153,6 +158,64 @@ public class Tables implements Iterable<Table> {
     }
   }
 
+  /**
+   * 异步判断指定表是否存在
+   *
+   * @param tableName
+   *     表名
+   * @return 存在返回true, 否则返回false
+   * @see #exists(String, String)
+   */
+  public Future<Boolean> existsAsync(String tableName) {
+    return existsAsync(getDefaultProjectName(), tableName);
+  }
+
+  /**
+   * 异步判断指定表是否存在
+   *
+   * <p>
+   * 请求在 {@link RestClient#getAsyncExecutor()} 中执行
+   * </p>
+   *
+   * @param projectName
+   *     所在{@link Project}名称
+   * @param tableName
+   *     表名
+   * @return 存在返回true, 否则返回false
+   */
+  public Future<Boolean> existsAsync(final String projectName, final String tableName) {
+    return client.submitAsync(new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return exists(projectName, tableName);
+      }
+    });
+  }
+
+  /**
+   * 异步加载指定表的信息
+   *
+   * <p>
+   * 请求在 {@link RestClient#getAsyncExecutor()} 中执行
+   * </p>
+   *
+   * @param projectName
+   *     所在{@link Project}名称
+   * @param tableName
+   *     表名
+   * @return 已加载的{@link Table}
+   */
+  public Future<Table> loadAsync(final String projectName, final String tableName) {
+    return client.submitAsync(new Callable<Table>() {
+      @Override
+      public Table call() throws Exception {
+        Table t = get(projectName, tableName);
+        t.reload();
+        return t;
+      }
+    });
+  }
+
   /**
    * 获取默认{@link Project}的所有表信息迭代器
    *
@@ -273,6 +336,7 @@ public class Tables implements Iterable<Table> {
     TableListIterator(String projectName, TableFilter filter) {
       this.filter = filter;
       this.projectName = projectName;
+      configure(client);
     }
 
     @Override
@@ -285,6 +349,10 @@ public class Tables implements Iterable<Table> {
         return null;
       }
 
+      if (getPageSize() > 0) {
+        params.put("maxitems", String.valueOf(getPageSize()));
+      }
+
       if (filter != null) {
         if (filter.getName() != null) {
           params.put("name", filter.getName());
@@ -298,15 +366,26 @@ public class Tables implements Iterable<Table> {
       String resource = ResourceBuilder.buildTablesResource(projectName);
       try {
 
-        ListTablesResponse resp = client.request(ListTablesResponse.class, resource, "GET",
-                                                 params);
+        List<TableModel> models;
+        String marker;
+        if (client.isStreamingXmlParser()) {
+          ListResponseParser.Page<TableModel> page = ListResponseParser.parseTables(
+              client.request(resource, "GET", params, null, null).getBody());
+          models = page.items;
+          marker = page.marker;
+        } else {
+          ListTablesResponse resp = client.request(ListTablesResponse.class, resource, "GET",
+                                                   params);
+          models = resp.tables;
+          marker = resp.marker;
+        }
 
-        for (TableModel model : resp.tables) {
+        for (TableModel model : models) {
           Table t = new Table(model, projectName, odps);
           tables.add(t);
         }
 
-        params.put("marker", resp.marker);
+        params.put("marker", marker);
       } catch (OdpsException e) {
         throw new RuntimeException(e.getMessage(), e);
       }
@@ -429,7 +508,11 @@ public class Tables implements Iterable<Table> {
     Instances instances = new Instances(odps);
     Instance instance = instances.create(task);
 
-    instance.waitForSuccess();
+    try {
+      instance.waitForSuccess();
+    } finally {
+      LazyLoad.invalidateMeta(client, MetaCache.ObjectType.TABLE, projectName, tableName);
+    }
   }
 
   /**
@@ -478,7 +561,11 @@ public class Tables implements Iterable<Table> {
     Instances instances = new Instances(odps);
     Instance instance = instances.create(task);
 
-    instance.waitForSuccess();
+    try {
+      instance.waitForSuccess();
+    } finally {
+      LazyLoad.invalidateMeta(client, MetaCache.ObjectType.TABLE, projectName, tableName);
+    }
   }
 
   /**
@@ -549,9 +636,19 @@ public class Tables implements Iterable<Table> {
     Instances instances = new Instances(odps);
     Instance instance = instances.create(task);
 
-    instance.waitForSuccess();
+    try {
+      instance.waitForSuccess();
+    } finally {
+      LazyLoad.invalidateMeta(client, MetaCache.ObjectType.TABLE, projectName, tableName);
+      LazyLoad.invalidatePartitionMeta(client, projectName, tableName);
+    }
   }
 
+  /**
+   * rest api 一次请求最多可查询的表数量
+   */
+  static final int MAX_TABLES_PER_REQUEST = 100;
+
   /**
    * 批量加载表信息
    *
@@ -567,6 +664,12 @@ public class Tables implements Iterable<Table> {
   /**
    * 批量加载表信息
    *
+   * <p>
+   * 表名按 rest api 的上限（每次 100 张）分批请求，多个批次并发执行，并发数见
+   * {@link RestClient#setBulkLoadParallelism(int)}。返回的表按 tableNames 的顺序排列，
+   * 不存在或者没有权限的表不在结果中。
+   * </p>
+   *
    * @param projectName
    *     指定{@link Project}名称
    * @param tableNames
@@ -583,12 +686,35 @@ public class Tables implements Iterable<Table> {
       throw new IllegalArgumentException("Invalid table names.");
     }
 
-    QueryTables queryTables = new QueryTables();
+    List<QueryTables.QueryTable> queries = new ArrayList<QueryTables.QueryTable>();
     for (String name : tableNames) {
-      queryTables.tables.add(new QueryTables.QueryTable(projectName, name));
+      queries.add(new QueryTables.QueryTable(projectName, name));
+    }
+
+    // 各批次按完成的顺序返回，按 tableNames 的顺序重新排列
+    Map<String, List<Table>> queried = new LinkedHashMap<String, List<Table>>();
+    for (Table t : loadTablesInternal(queries)) {
+      String key = tableKey(t.getProject(), t.getName());
+      List<Table> sameName = queried.get(key);
+      if (sameName == null) {
+        sameName = new ArrayList<Table>(1);
+        queried.put(key, sameName);
+      }
+      sameName.add(t);
     }
 
-    return loadTablesInternal(queryTables);
+    List<Table> loadedTables = new ArrayList<Table>();
+    for (String name : tableNames) {
+      List<Table> sameName = queried.remove(tableKey(projectName, name));
+      if (sameName != null) {
+        loadedTables.addAll(sameName);
+      }
+    }
+    // 服务端返回的名字与请求不完全一致时，放在最后
+    for (List<Table> sameName : queried.values()) {
+      loadedTables.addAll(sameName);
+    }
+    return loadedTables;
   }
 
   /**
@@ -610,7 +736,8 @@ public class Tables implements Iterable<Table> {
   /**
    * 批量加载表信息<br />
    *
-   * rest api 对请求数量有限制, 目前一次操作最多可请求 100 张表信息; <br />
+   * rest api 对请求数量有限制, 一次操作最多可请求 100 张表信息, 更多的表自动分批并发请求; <br />
+   * 返回的表按输入的顺序排列, 已经加载过的表不再请求, 同名的表只请求一次, 每个输入都得到加载结果; <br />
    * 返回的表数据,与操作权限有关.<br />
    *
    * @param tables
@@ -623,36 +750,81 @@ public class Tables implements Iterable<Table> {
       throw new IllegalArgumentException("Invalid tables.");
     }
 
-    List<Table> loadedTables = new ArrayList<Table>();
-    if (!tables.hasNext()) {
-      return loadedTables;
-    }
-
-    QueryTables queryTables = new QueryTables();
+    List<Table> inputs = new ArrayList<Table>();
+    List<QueryTables.QueryTable> queries = new ArrayList<QueryTables.QueryTable>();
+    Set<String> requested = new HashSet<String>();
     while (tables.hasNext()) {
       Table t = tables.next();
+      inputs.add(t);
+      // 同名的表只请求一次
+      if (!t.isLoaded() && requested.add(tableKey(t.getProject(), t.getName()))) {
+        queries.add(new QueryTables.QueryTable(t.getProject(), t.getName()));
+      }
+    }
+
+    Map<String, Table> queried = new LinkedHashMap<String, Table>();
+    for (Table t : loadTablesInternal(queries)) {
+      queried.put(tableKey(t.getProject(), t.getName()), t);
+    }
 
+    List<Table> loadedTables = new ArrayList<Table>();
+    Set<String> matched = new HashSet<String>();
+    for (Table t : inputs) {
       if (t.isLoaded()) {
         // table is loaded, do not need to request again
         loadedTables.add(t);
       } else {
-        queryTables.tables.add(new QueryTables.QueryTable(t.getProject(), t.getName()));
+        String key = tableKey(t.getProject(), t.getName());
+        Table loaded = queried.get(key);
+        if (loaded != null) {
+          loadedTables.add(loaded);
+          matched.add(key);
+        }
       }
     }
-
-    if (!queryTables.tables.isEmpty()) {
-      loadedTables.addAll(loadTablesInternal(queryTables));
+    // 服务端返回的名字与请求不完全一致时，放在最后
+    for (Map.Entry<String, Table> entry : queried.entrySet()) {
+      if (!matched.contains(entry.getKey())) {
+        loadedTables.add(entry.getValue());
+      }
     }
 
     return loadedTables;
   }
 
-  private List<Table> loadTablesInternal(QueryTables queryTables) throws OdpsException {
+  private static String tableKey(String projectName, String tableName) {
+    return (projectName + "." + tableName).toLowerCase();
+  }
+
+  private List<Table> loadTablesInternal(List<QueryTables.QueryTable> queries)
+      throws OdpsException {
     ArrayList<Table> reloadTables = new ArrayList<Table>();
-    if (queryTables.tables.isEmpty()) {
+    if (queries.isEmpty()) {
       return reloadTables;
     }
 
+    List<Callable<List<Table>>> tasks = new ArrayList<Callable<List<Table>>>();
+    for (int i = 0; i < queries.size(); i += MAX_TABLES_PER_REQUEST) {
+      final QueryTables queryTables = new QueryTables();
+      queryTables.tables.addAll(
+          queries.subList(i, Math.min(i + MAX_TABLES_PER_REQUEST, queries.size())));
+      tasks.add(new Callable<List<Table>>() {
+        @Override
+        public List<Table> call() throws Exception {
+          return queryTables(queryTables);
+        }
+      });
+    }
+
+    for (List<Table> chunk : BulkRequests.run(client, tasks)) {
+      reloadTables.addAll(chunk);
+    }
+    return reloadTables;
+  }
+
+  private List<Table> queryTables(QueryTables queryTables) throws OdpsException {
+    ArrayList<Table> reloadTables = new ArrayList<Table>();
+
     Map<String, String> params = new HashMap<String, String>();
     params.put("query", null);
 
@@ -167,6 +167,10 @@ public class Volumes implements Iterable<Volume> {
 
       Map<String, String> params = new HashMap<String, String>();
 
+      {
+        configure(client);
+      }
+
       @Override
       protected List<Volume> list() {
         ArrayList<Volume> volumes = new ArrayList<Volume>();
@@ -177,6 +181,10 @@ public class Volumes implements Iterable<Volume> {
           return null;
         }
 
+        if (getPageSize() > 0) {
+          params.put("maxitems", String.valueOf(getPageSize()));
+        }
+
         if (filter != null) {
           if (filter.getName() != null) {
             params.put("name", filter.getName());
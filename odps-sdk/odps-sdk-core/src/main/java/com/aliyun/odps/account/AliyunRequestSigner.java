@@ -24,21 +24,55 @@ import java.net.URLDecoder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
 import org.apache.commons.codec.binary.Base64;
 
+import com.aliyun.odps.commons.proto.Utf8Encoder;
 import com.aliyun.odps.commons.transport.Request;
 
 /**
  * ODPS请求签名工具
+ *
+ * 每个线程持有一个已经用 AccessKey 初始化过的 Mac 以及复用的待签名字符串缓冲区，
+ * 避免每个请求都调用 Mac.getInstance 遍历 provider 列表。签名结果与逐次创建 Mac 时完全一致。
  */
 public class AliyunRequestSigner implements RequestSigner {
 
   private static final Logger log = Logger.getLogger(AliyunRequestSigner.class
                                                          .getName());
 
+  private static final String ALGORITHM = "HmacSHA1";
+
+  /**
+   * 复用的 builder 超过这个长度后丢弃，避免长期持有过大的缓冲区
+   */
+  private static final int MAX_BUILDER_CAPACITY = 64 * 1024;
+
+  private static final ThreadLocal<SignBuffer> buffers = new ThreadLocal<SignBuffer>() {
+    @Override
+    protected SignBuffer initialValue() {
+      return new SignBuffer();
+    }
+  };
+
+  private static class SignBuffer {
+
+    StringBuilder builder = new StringBuilder(512);
+    final Utf8Encoder encoder = new Utf8Encoder();
+  }
+
   private String accessId;
   private String accessKey;
 
+  private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+    @Override
+    protected Mac initialValue() {
+      return newMac();
+    }
+  };
+
   public AliyunRequestSigner(String accessId, String accessKey) {
     if (accessId == null || accessId.length() == 0) {
       throw new IllegalArgumentException("AccessId should not be empty.");
@@ -50,29 +84,49 @@ public class AliyunRequestSigner implements RequestSigner {
     this.accessKey = accessKey;
   }
 
+  private Mac newMac() {
+    try {
+      Mac mac = Mac.getInstance(ALGORITHM);
+      mac.init(new SecretKeySpec(accessKey.getBytes(), ALGORITHM));
+      return mac;
+    } catch (Exception e) {
+      throw new RuntimeException(e.getMessage(), e);
+    }
+  }
+
   @Override
   public void sign(String resource, Request req) {
     req.getHeaders().put("Authorization", getSignature(resource, req));
   }
 
   public String getSignature(String resource, Request req) {
-    try {
-      resource = URLDecoder.decode(resource, "UTF-8");
-    } catch (UnsupportedEncodingException e) {
-      throw new RuntimeException(e.getMessage(), e);
+    resource = decode(resource);
+
+    SignBuffer buffer = buffers.get();
+    StringBuilder builder = buffer.builder;
+    if (builder.capacity() > MAX_BUILDER_CAPACITY) {
+      builder = buffer.builder = new StringBuilder(512);
     }
-    String strToSign = SecurityUtils.buildCanonicalString(resource, req, "x-odps-");
+    builder.setLength(0);
+    SecurityUtils.appendCanonicalString(builder, resource, req, "x-odps-");
 
     if (log.isLoggable(Level.FINE)) {
-      log.fine("String to sign: " + strToSign);
+      log.fine("String to sign: " + builder);
     }
 
-    byte[] crypto = new byte[0];
-    try {
-      crypto = SecurityUtils.hmacsha1Signature(strToSign.getBytes("UTF-8"),
-                                               accessKey.getBytes());
-    } catch (UnsupportedEncodingException e) {
-      throw new RuntimeException(e.getMessage(), e);
+    // doFinal 之后 Mac 会恢复到刚初始化完的状态，可以直接复用
+    Mac mac = macs.get();
+    byte[] crypto;
+    int len = buffer.encoder.encode(builder);
+    if (len >= 0) {
+      mac.update(buffer.encoder.getBuffer(), 0, len);
+      crypto = mac.doFinal();
+    } else {
+      try {
+        crypto = mac.doFinal(builder.toString().getBytes("UTF-8"));
+      } catch (UnsupportedEncodingException e) {
+        throw new RuntimeException(e.getMessage(), e);
+      }
     }
 
     String signature = Base64.encodeBase64String(crypto).trim();
@@ -80,5 +134,15 @@ public class AliyunRequestSigner implements RequestSigner {
     return "ODPS " + accessId + ":" + signature;
   }
 
-
+  private static String decode(String resource) {
+    // 不包含转义字符时 URLDecoder 不会改变 resource，跳过解码
+    if (resource.indexOf('%') < 0 && resource.indexOf('+') < 0) {
+      return resource;
+    }
+    try {
+      return URLDecoder.decode(resource, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e.getMessage(), e);
+    }
+  }
 }
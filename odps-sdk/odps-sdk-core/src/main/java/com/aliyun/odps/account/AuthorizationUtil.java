@@ -28,6 +28,7 @@ import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
@@ -35,6 +36,28 @@ public class AuthorizationUtil {
 
   public static void ignoreHttpsCerts(HttpURLConnection conn) throws IOException {
 
+    SSLSocketFactory factory = getIgnoreCertsSocketFactory();
+
+    HostnameVerifier hv = new HostnameVerifier() {
+      public boolean verify(String urlHostName, SSLSession session) {
+        return true;
+      }
+    };
+
+    if (conn instanceof HttpsURLConnection) {
+      ((HttpsURLConnection) conn).setSSLSocketFactory(factory);
+      ((HttpsURLConnection) conn).setHostnameVerifier(hv);
+    }
+
+  }
+
+  /**
+   * 获取不校验服务端证书的 SSLSocketFactory
+   *
+   * @return SSLSocketFactory
+   * @throws IOException
+   */
+  public static SSLSocketFactory getIgnoreCertsSocketFactory() throws IOException {
     try {
       SSLContext ctx = SSLContext.getInstance("TLS");
       X509TrustManager tm = new X509TrustManager() {
@@ -51,20 +74,10 @@ public class AuthorizationUtil {
         }
       };
 
-      HostnameVerifier hv = new HostnameVerifier() {
-        public boolean verify(String urlHostName, SSLSession session) {
-          return true;
-        }
-      };
-
       ctx.init(null, new TrustManager[]{tm}, null);
-      if (conn instanceof HttpsURLConnection) {
-        ((HttpsURLConnection) conn).setSSLSocketFactory(ctx.getSocketFactory());
-        ((HttpsURLConnection) conn).setHostnameVerifier(hv);
-      }
+      return ctx.getSocketFactory();
     } catch (Exception e) {
       throw new IOException(e.getMessage(), e);
     }
-
   }
 }
@@ -37,15 +37,26 @@ import com.aliyun.odps.commons.transport.Request;
 
 public class SecurityUtils {
 
-  private static final String NEW_LINE = "\n";
-
   protected static void init() {
     //解决多线程并发问题
   }
 
+  private static final String CONTENT_TYPE = Headers.CONTENT_TYPE.toLowerCase();
+  private static final String CONTENT_MD5 = Headers.CONTENT_MD5.toLowerCase();
+  private static final String DATE = Headers.DATE.toLowerCase();
+
   protected static String buildCanonicalString(String resource, Request request, String prefix) {
     StringBuilder builder = new StringBuilder();
-    builder.append(request.getMethod() + NEW_LINE);
+    appendCanonicalString(builder, resource, request, prefix);
+    return builder.toString();
+  }
+
+  /**
+   * 将待签名字符串追加到 builder 中，调用方可以复用同一个 builder，避免中间字符串的拼接
+   */
+  protected static void appendCanonicalString(StringBuilder builder, String resource,
+                                              Request request, String prefix) {
+    builder.append(request.getMethod()).append('\n');
 
     Map<String, String> headers = request.getHeaders();
     TreeMap<String, String> headersToSign = new TreeMap<String, String>();
@@ -58,19 +69,18 @@ public class SecurityUtils {
 
         String lowerKey = header.getKey().toLowerCase();
 
-        if (lowerKey.equals(Headers.CONTENT_TYPE.toLowerCase())
-            || lowerKey.equals(Headers.CONTENT_MD5.toLowerCase())
-            || lowerKey.equals(Headers.DATE.toLowerCase()) || lowerKey.startsWith(prefix)) {
+        if (lowerKey.equals(CONTENT_TYPE) || lowerKey.equals(CONTENT_MD5)
+            || lowerKey.equals(DATE) || lowerKey.startsWith(prefix)) {
           headersToSign.put(lowerKey, header.getValue());
         }
       }
     }
 
-    if (!headersToSign.containsKey(Headers.CONTENT_TYPE.toLowerCase())) {
-      headersToSign.put(Headers.CONTENT_TYPE.toLowerCase(), "");
+    if (!headersToSign.containsKey(CONTENT_TYPE)) {
+      headersToSign.put(CONTENT_TYPE, "");
     }
-    if (!headersToSign.containsKey(Headers.CONTENT_MD5.toLowerCase())) {
-      headersToSign.put(Headers.CONTENT_MD5.toLowerCase(), "");
+    if (!headersToSign.containsKey(CONTENT_MD5)) {
+      headersToSign.put(CONTENT_MD5, "");
     }
 
     // Add params that have the prefix "x-oss-"
@@ -85,8 +95,7 @@ public class SecurityUtils {
     // Add all headers to sign to the builder
     for (Map.Entry<String, String> entry : headersToSign.entrySet()) {
       String key = entry.getKey();
-      Object value = entry.getValue();
-
+      String value = entry.getValue();
 
       if (key.startsWith(prefix)) {
 
@@ -103,19 +112,21 @@ public class SecurityUtils {
         builder.append(value);
       }
 
-      builder.append("\n");
+      builder.append('\n');
     }
 
-
-
     // Add canonical resource
-    builder.append(buildCanonicalizedResource(resource, request.getParameters()));
-
-    return builder.toString();
+    appendCanonicalizedResource(builder, resource, request.getParameters());
   }
 
   protected static String buildCanonicalizedResource(String resource, Map<String, String> params) {
     StringBuilder builder = new StringBuilder();
+    appendCanonicalizedResource(builder, resource, params);
+    return builder.toString();
+  }
+
+  private static void appendCanonicalizedResource(StringBuilder builder, String resource,
+                                                  Map<String, String> params) {
     builder.append(resource);
 
     if (params != null && params.size() > 0) {
@@ -128,14 +139,12 @@ public class SecurityUtils {
         builder.append(name);
         String paramValue = params.get(name);
         if (paramValue != null && paramValue.length() > 0) {
-          builder.append("=").append(paramValue);
+          builder.append('=').append(paramValue);
         }
 
         separater = '&';
       }
     }
-    String str = builder.toString();
-    return str;
   }
 
   protected static byte[] hmacsha1Signature(byte[] data, byte[] key) {
@@ -26,6 +26,7 @@ import com.aliyun.odps.Odps;
 import com.aliyun.odps.OdpsException;
 import com.aliyun.odps.account.Account;
 import com.aliyun.odps.rest.ResourceBuilder;
+import com.aliyun.odps.rest.RestClient;
 
 /**
  * Created by dongxiao.dx on 2015/9/7.
@@ -33,10 +34,9 @@ import com.aliyun.odps.rest.ResourceBuilder;
 public class GeneralConfiguration {
 
   /**
-   * 上传数据的默认块大小(单位字节)。默认值按照MTU-4设置，MTU值1500。
+   * 上传数据的默认块大小(单位字节)，与 {@link RestClient#DEFAULT_CHUNK_SIZE} 一致
    */
-  // MTU - chunk length - \r\n
-  public static int DEFAULT_CHUNK_SIZE = 1500 - 4;
+  public static int DEFAULT_CHUNK_SIZE = RestClient.DEFAULT_CHUNK_SIZE;
 
   /**
    * 底层网络链接的默认超时时间,180秒
@@ -59,6 +59,9 @@ public class GeneralConfiguration {
 
   public GeneralConfiguration(Odps odps) {
     this.odps = odps;
+    if (odps != null) {
+      this.chunkSize = odps.getRestClient().getChunkSize();
+    }
   }
 
   public Account getAccount() {
@@ -154,6 +157,8 @@ public class GeneralConfiguration {
   /**
    * 取得当前配置的数据传输块大小
    *
+   * 默认与创建时 Odps 对象的 {@link RestClient#getChunkSize()} 一致
+   *
    * @return 当前配置的块大小
    * @see GeneralConfiguration#DEFAULT_CHUNK_SIZE
    */
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.proto;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.commons.util.DateUtils;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Binary;
+import com.aliyun.odps.data.Char;
+import com.aliyun.odps.data.IntervalDayTime;
+import com.aliyun.odps.data.IntervalYearMonth;
+import com.aliyun.odps.data.SchemaIndex;
+import com.aliyun.odps.data.Varchar;
+
+/**
+ * 按需解析字段的 {@link ArrayRecord}，由开启了 lazy decode 的 {@link ProtobufRecordStreamReader} 返回
+ *
+ * <p>reader 只把每个字段的原始值保存下来：整数、浮点、布尔、日期类字段保存为 long，字符串、二进制和
+ * DECIMAL 字段保存为原始字节，并照常对这些原始值做 CRC 校验。字段第一次被 get 时才创建对应的 Java 对象，
+ * 只访问少数列的宽表读取可以省去大部分对象分配。ARRAY、MAP、STRUCT 类型的字段仍然在读取时直接解析。</p>
+ *
+ * <p>字符串和二进制字段通过 {@link #getBytes(int)} 读取时直接返回原始字节，不做转换。</p>
+ */
+public class LazyRecord extends ArrayRecord {
+
+  private static final String CHARSET = "utf-8";
+
+  private final Column[] columns;
+  private final long[] longs;
+  private final int[] nanos;
+  private final byte[][] bytes;
+  private final boolean[] present;
+  private final boolean[] materialized;
+
+  public LazyRecord(Column[] columns) {
+    this(SchemaIndex.of(columns));
+  }
+
+  public LazyRecord(SchemaIndex index) {
+    super(index);
+    this.columns = index.getColumns();
+    this.longs = new long[columns.length];
+    this.nanos = new int[columns.length];
+    this.bytes = new byte[columns.length][];
+    this.present = new boolean[columns.length];
+    this.materialized = new boolean[columns.length];
+  }
+
+  void reset() {
+    super.clear();
+    Arrays.fill(present, false);
+    Arrays.fill(materialized, false);
+    Arrays.fill(bytes, null);
+  }
+
+  void setRawLong(int idx, long v) {
+    longs[idx] = v;
+    present[idx] = true;
+  }
+
+  void setRawTime(int idx, long seconds, int nano) {
+    longs[idx] = seconds;
+    nanos[idx] = nano;
+    present[idx] = true;
+  }
+
+  void setRawBytes(int idx, byte[] v) {
+    bytes[idx] = v;
+    present[idx] = true;
+  }
+
+  void setDecoded(int idx, Object v) {
+    super.setWithoutValidation(idx, v);
+    materialized[idx] = true;
+  }
+
+  @Override
+  public Object get(int idx) {
+    if (!materialized[idx]) {
+      materialized[idx] = true;
+      if (present[idx]) {
+        super.setWithoutValidation(idx, decode(idx));
+        bytes[idx] = null;
+      }
+    }
+    return super.get(idx);
+  }
+
+  @Override
+  public byte[] getBytes(int idx) {
+    if (!materialized[idx] && present[idx]) {
+      switch (columns[idx].getTypeInfo().getOdpsType()) {
+        case STRING:
+        case VARCHAR:
+        case CHAR:
+        case BINARY:
+          return bytes[idx];
+        default:
+          break;
+      }
+    }
+    return super.getBytes(idx);
+  }
+
+  @Override
+  public boolean isNull(int idx) {
+    if (!materialized[idx]) {
+      return !present[idx];
+    }
+    return super.isNull(idx);
+  }
+
+  @Override
+  public void set(int idx, Object value) {
+    super.set(idx, value);
+    materialized[idx] = true;
+    bytes[idx] = null;
+  }
+
+  @Override
+  public void setWithoutValidation(int idx, Object o) {
+    super.setWithoutValidation(idx, o);
+    materialized[idx] = true;
+    bytes[idx] = null;
+  }
+
+  @Override
+  public Object[] toArray() {
+    for (int i = 0; i < columns.length; ++i) {
+      get(i);
+    }
+    return super.toArray();
+  }
+
+  @Override
+  public ArrayRecord newInstance() {
+    return new LazyRecord(getSchemaIndex());
+  }
+
+  @Override
+  public void clear() {
+    super.clear();
+    Arrays.fill(materialized, true);
+    Arrays.fill(bytes, null);
+  }
+
+  private Object decode(int idx) {
+    OdpsType type = columns[idx].getTypeInfo().getOdpsType();
+    long v = longs[idx];
+    switch (type) {
+      case DOUBLE:
+        return Double.longBitsToDouble(v);
+      case FLOAT:
+        return Float.intBitsToFloat((int) v);
+      case BOOLEAN:
+        return v != 0;
+      case BIGINT:
+        return v;
+      case INTERVAL_YEAR_MONTH:
+        return new IntervalYearMonth((int) v);
+      case INT:
+        return (int) v;
+      case SMALLINT:
+        return (short) v;
+      case TINYINT:
+        return (byte) v;
+      case STRING:
+        return string(idx);
+      case VARCHAR:
+        return new Varchar(string(idx));
+      case CHAR:
+        return new Char(string(idx));
+      case BINARY:
+        return new Binary(bytes[idx]);
+      case DATETIME:
+        return DateUtils.ms2date(v);
+      case DATE:
+        return DateUtils.fromDayOffset(v);
+      case INTERVAL_DAY_TIME:
+        return new IntervalDayTime(v, nanos[idx]);
+      case TIMESTAMP: {
+        Timestamp t = new Timestamp(v * 1000);
+        t.setNanos(nanos[idx]);
+        return t;
+      }
+      case DECIMAL:
+        return new BigDecimal(string(idx));
+      default:
+        throw new IllegalStateException("Unexpected lazy field type " + type);
+    }
+  }
+
+  private String string(int idx) {
+    try {
+      return new String(bytes[idx], CHARSET);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalArgumentException(e.getMessage(), e);
+    }
+  }
+}
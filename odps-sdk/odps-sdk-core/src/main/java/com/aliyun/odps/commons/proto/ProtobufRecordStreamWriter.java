@@ -0,0 +1,634 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.proto;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.xerial.snappy.SnappyFramedOutputStream;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.commons.util.DateUtils;
+import com.aliyun.odps.data.AbstractChar;
+import com.aliyun.odps.data.Binary;
+import com.aliyun.odps.data.IntervalDayTime;
+import com.aliyun.odps.data.IntervalYearMonth;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.RecordPack;
+import com.aliyun.odps.data.RecordReader;
+import com.aliyun.odps.data.RecordWriter;
+import com.aliyun.odps.data.Struct;
+import com.aliyun.odps.tunnel.io.Checksum;
+import com.aliyun.odps.tunnel.io.ColumnarBatch;
+import com.aliyun.odps.tunnel.io.CompressOption;
+import com.aliyun.odps.tunnel.io.ProtobufRecordPack;
+import com.aliyun.odps.type.ArrayTypeInfo;
+import com.aliyun.odps.type.MapTypeInfo;
+import com.aliyun.odps.type.StructTypeInfo;
+import com.aliyun.odps.type.TypeInfo;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+/**
+ * @author chao.liu
+ */
+public class ProtobufRecordStreamWriter implements RecordWriter {
+
+  private CountingOutputStream bou;
+  private Column[] columns;
+  private CodedOutputStream out;
+  private long count;
+
+  private Checksum crc = new Checksum();
+  private Checksum crccrc = new Checksum();
+  private Deflater def;
+  private Utf8Encoder utf8 = new Utf8Encoder();
+
+  public ProtobufRecordStreamWriter(TableSchema schema, OutputStream out) throws IOException {
+    this(schema, out, new CompressOption());
+  }
+
+  public ProtobufRecordStreamWriter(TableSchema schema, OutputStream out, CompressOption option)
+      throws IOException {
+    columns = schema.getColumns().toArray(new Column[0]);
+    OutputStream tmpOut;
+    if (option != null) {
+      if (option.algorithm.equals(CompressOption.CompressAlgorithm.ODPS_ZLIB)) {
+        def = new Deflater();
+        def.setLevel(option.level);
+        def.setStrategy(option.strategy);
+        tmpOut = new DeflaterOutputStream(out, def);
+      } else if (option.algorithm.equals(CompressOption.CompressAlgorithm.ODPS_SNAPPY)) {
+        tmpOut = new SnappyFramedOutputStream(out);
+      } else if (option.algorithm.equals(CompressOption.CompressAlgorithm.ODPS_RAW)) {
+        tmpOut = out;
+      } else {
+        throw new IOException("invalid compression option.");
+      }
+    } else {
+      tmpOut = out;
+    }
+    bou = new CountingOutputStream(tmpOut);
+    this.out = CodedOutputStream.newInstance(bou);
+  }
+
+  static void writeRawBytes(byte[] value, CodedOutputStream out)
+      throws IOException {
+    out.writeRawVarint32(value.length);
+    out.writeRawBytes(value);
+  }
+
+  /**
+   * 将字符串以 UTF-8 编码写出并更新 crc，编码使用可复用的缓冲区，不为每个值分配字节数组
+   */
+  private void writeUtf8(CharSequence value) throws IOException {
+    int length = utf8.encode(value);
+    if (length < 0) {
+      byte[] bytes = value.toString().getBytes("UTF-8");
+      crc.update(bytes, 0, bytes.length);
+      writeRawBytes(bytes, out);
+      return;
+    }
+
+    byte[] buffer = utf8.getBuffer();
+    crc.update(buffer, 0, length);
+    out.writeRawVarint32(length);
+    out.writeRawBytes(buffer, 0, length);
+  }
+
+  @Override
+  public void write(Record r) throws IOException {
+
+    int recordValues = r.getColumnCount();
+    int columnCount = columns.length;
+    if (recordValues > columnCount) {
+      throw new IOException("record values more than schema.");
+    }
+
+    int i = 0;
+    for (; i < columnCount && i < recordValues; i++) {
+
+      Object v = r.get(i);
+      if (v == null) {
+        continue;
+      }
+
+      int pbIdx = i + 1;
+
+      crc.update(pbIdx);
+
+      TypeInfo typeInfo = columns[i].getTypeInfo();
+      writeFieldTag(pbIdx, typeInfo);
+      writeField(v, typeInfo);
+    }
+
+    int checksum = (int) crc.getValue();
+    out.writeUInt32(ProtoWireConstant.TUNNEL_END_RECORD, checksum);
+
+    crc.reset();
+    crccrc.update(checksum);
+
+    count++;
+  }
+
+  /**
+   * 写入一批按列组织的记录
+   *
+   * <p>编码结果与逐条调用 {@link #write(Record)} 完全相同，但不需要为每个值创建 Java 对象</p>
+   *
+   * <p>写出之前会先检查整个 batch（向量类型、向量长度、整数取值范围），检查失败时不写出任何记录，
+   * writer 可以继续使用</p>
+   *
+   * @param batch
+   *     {@link ColumnarBatch}
+   * @throws IOException
+   *     列向量与表结构不匹配，或写出失败
+   */
+  public void write(ColumnarBatch batch) throws IOException {
+    int batchColumns = batch.getColumnCount();
+    int columnCount = columns.length;
+    if (batchColumns > columnCount) {
+      throw new IOException("batch columns more than schema.");
+    }
+
+    int n = Math.min(batchColumns, columnCount);
+    OdpsType[] types = new OdpsType[n];
+    for (int i = 0; i < n; i++) {
+      types[i] = columns[i].getTypeInfo().getOdpsType();
+      checkVectorType(columns[i], batch.getVectorType(i));
+    }
+
+    int rows = batch.getRowCount();
+    for (int i = 0; i < n; i++) {
+      checkVector(columns[i], batch, i, rows);
+    }
+
+    for (int row = 0; row < rows; row++) {
+      for (int i = 0; i < n; i++) {
+        if (batch.isNull(i, row)) {
+          continue;
+        }
+
+        int pbIdx = i + 1;
+        crc.update(pbIdx);
+        writeFieldTag(pbIdx, columns[i].getTypeInfo());
+
+        switch (batch.getVectorType(i)) {
+          case LONG: {
+            long value = batch.getLongs(i)[row];
+            crc.update(value);
+            out.writeSInt64NoTag(value);
+            break;
+          }
+          case DOUBLE: {
+            double value = batch.getDoubles(i)[row];
+            if (types[i] == OdpsType.FLOAT) {
+              float floatValue = (float) value;
+              crc.update(floatValue);
+              out.writeFloatNoTag(floatValue);
+            } else {
+              crc.update(value);
+              out.writeDoubleNoTag(value);
+            }
+            break;
+          }
+          case BOOLEAN: {
+            boolean value = batch.getBooleans(i)[row];
+            crc.update(value);
+            out.writeBoolNoTag(value);
+            break;
+          }
+          case BYTES: {
+            byte[] bytes = batch.getBytes(i)[row];
+            int start = batch.getStarts(i)[row];
+            int length = batch.getLengths(i)[row];
+            crc.update(bytes, start, length);
+            out.writeRawVarint32(length);
+            out.writeRawBytes(bytes, start, length);
+            break;
+          }
+          default:
+            throw new IOException("Invalid vector type: " + batch.getVectorType(i));
+        }
+      }
+
+      int checksum = (int) crc.getValue();
+      out.writeUInt32(ProtoWireConstant.TUNNEL_END_RECORD, checksum);
+
+      crc.reset();
+      crccrc.update(checksum);
+
+      count++;
+    }
+  }
+
+  private static void checkVectorType(Column column, ColumnarBatch.VectorType vectorType)
+      throws IOException {
+    if (vectorType == null) {
+      return;
+    }
+
+    boolean match;
+    switch (column.getTypeInfo().getOdpsType()) {
+      case BIGINT:
+      case INT:
+      case SMALLINT:
+      case TINYINT:
+      case DATETIME:
+      case DATE:
+        match = vectorType == ColumnarBatch.VectorType.LONG;
+        break;
+      case DOUBLE:
+      case FLOAT:
+        match = vectorType == ColumnarBatch.VectorType.DOUBLE;
+        break;
+      case BOOLEAN:
+        match = vectorType == ColumnarBatch.VectorType.BOOLEAN;
+        break;
+      case STRING:
+      case VARCHAR:
+      case CHAR:
+      case BINARY:
+      case DECIMAL:
+        match = vectorType == ColumnarBatch.VectorType.BYTES;
+        break;
+      default:
+        match = false;
+    }
+
+    if (!match) {
+      throw new IOException("Column " + column.getName() + " of type " + column.getTypeInfo()
+                            + " can not be written from " + vectorType + " vector");
+    }
+  }
+
+  /**
+   * 检查列向量的长度和取值，保证写出过程中不会因为数据错误而中断
+   */
+  private static void checkVector(Column column, ColumnarBatch batch, int idx, int rows)
+      throws IOException {
+    ColumnarBatch.VectorType vectorType = batch.getVectorType(idx);
+    if (vectorType == null) {
+      return;
+    }
+
+    int length;
+    switch (vectorType) {
+      case LONG:
+        length = batch.getLongs(idx) == null ? 0 : batch.getLongs(idx).length;
+        break;
+      case DOUBLE:
+        length = batch.getDoubles(idx) == null ? 0 : batch.getDoubles(idx).length;
+        break;
+      case BOOLEAN:
+        length = batch.getBooleans(idx) == null ? 0 : batch.getBooleans(idx).length;
+        break;
+      default:
+        length = batch.getBytes(idx) == null || batch.getStarts(idx) == null
+                 || batch.getLengths(idx) == null ? 0
+                 : Math.min(batch.getBytes(idx).length,
+                            Math.min(batch.getStarts(idx).length, batch.getLengths(idx).length));
+    }
+    if (batch.getNulls(idx) != null) {
+      length = Math.min(length, batch.getNulls(idx).length);
+    }
+    if (length < rows) {
+      throw new IOException("Column " + column.getName() + " has " + length
+                            + " values, less than row count " + rows);
+    }
+
+    long min;
+    long max;
+    switch (column.getTypeInfo().getOdpsType()) {
+      case INT:
+        min = Integer.MIN_VALUE;
+        max = Integer.MAX_VALUE;
+        break;
+      case SMALLINT:
+        min = Short.MIN_VALUE;
+        max = Short.MAX_VALUE;
+        break;
+      case TINYINT:
+        min = Byte.MIN_VALUE;
+        max = Byte.MAX_VALUE;
+        break;
+      default:
+        min = Long.MIN_VALUE;
+        max = Long.MAX_VALUE;
+    }
+
+    for (int row = 0; row < rows; row++) {
+      if (batch.isNull(idx, row)) {
+        continue;
+      }
+      if (vectorType == ColumnarBatch.VectorType.LONG) {
+        long value = batch.getLongs(idx)[row];
+        if (value < min || value > max) {
+          throw new IOException("Value " + value + " of column " + column.getName() + " at row "
+                                + row + " out of range for " + column.getTypeInfo());
+        }
+      } else if (vectorType == ColumnarBatch.VectorType.BYTES) {
+        byte[] bytes = batch.getBytes(idx)[row];
+        int start = batch.getStarts(idx)[row];
+        int len = batch.getLengths(idx)[row];
+        if (bytes == null || start < 0 || len < 0 || start > bytes.length - len) {
+          throw new IOException("Invalid bytes of column " + column.getName() + " at row " + row);
+        }
+      }
+    }
+  }
+
+  private void writeFieldTag(int pbIdx, TypeInfo typeInfo) throws IOException {
+    switch (typeInfo.getOdpsType()) {
+      case DATETIME:
+      case BOOLEAN:
+      case BIGINT:
+      case TINYINT:
+      case SMALLINT:
+      case INT:
+      case DATE:
+      case INTERVAL_YEAR_MONTH: {
+        out.writeTag(pbIdx, WireFormat.WIRETYPE_VARINT);
+        break;
+      }
+      case DOUBLE: {
+        out.writeTag(pbIdx, WireFormat.WIRETYPE_FIXED64);
+        break;
+      }
+      case FLOAT: {
+        out.writeTag(pbIdx, WireFormat.WIRETYPE_FIXED32);
+        break;
+      }
+      case INTERVAL_DAY_TIME:
+      case TIMESTAMP:
+      case STRING:
+      case CHAR:
+      case VARCHAR:
+      case BINARY:
+      case DECIMAL:
+      case ARRAY:
+      case MAP:
+      case STRUCT:{
+        out.writeTag(pbIdx, com.google.protobuf.WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        break;
+      }
+      default:
+        throw new IOException("Invalid data type: " + typeInfo);
+    }
+  }
+
+  private void writeField(Object v, TypeInfo typeInfo) throws IOException {
+    switch (typeInfo.getOdpsType()) {
+      case BOOLEAN: {
+        boolean value = (Boolean) v;
+        crc.update(value);
+        out.writeBoolNoTag(value);
+        break;
+      }
+      case DATETIME: {
+        Date value = (Date) v;
+        Long longValue = DateUtils.date2ms(value);
+        crc.update(longValue);
+        out.writeSInt64NoTag(longValue);
+        break;
+      }
+      case DATE: {
+        Long longValue = DateUtils.getDayOffset((java.sql.Date) v);
+        crc.update(longValue);
+        out.writeSInt64NoTag(longValue);
+        break;
+      }
+      case TIMESTAMP: {
+        Integer nano = ((Timestamp) v).getNanos();
+        Long value = (((Timestamp) v).getTime() - (nano / 1000000)) / 1000;
+        crc.update(value);
+        crc.update(nano);
+        out.writeSInt64NoTag(value);
+        out.writeSInt32NoTag(nano);
+        break;
+      }
+      case INTERVAL_DAY_TIME: {
+        Long value = ((IntervalDayTime) v).getTotalSeconds();
+        Integer nano = ((IntervalDayTime) v).getNanos();
+        crc.update(value);
+        crc.update(nano);
+        out.writeSInt64NoTag(value);
+        out.writeSInt32NoTag(nano);
+        break;
+      }
+      case VARCHAR:
+      case CHAR: {
+        writeUtf8(((AbstractChar) v).getValue());
+        break;
+      }
+      case STRING: {
+        if (v instanceof String) {
+          writeUtf8((String) v);
+        } else {
+          byte[] bytes = (byte[]) v;
+          crc.update(bytes, 0, bytes.length);
+          writeRawBytes(bytes, out);
+        }
+        break;
+      }
+      case BINARY: {
+        byte[] bytes = ((Binary) v).data();
+
+        crc.update(bytes, 0, bytes.length);
+        writeRawBytes(bytes, out);
+        break;
+      }
+      case DOUBLE: {
+        double value = (Double) v;
+        crc.update(value);
+        out.writeDoubleNoTag(value);
+        break;
+      }
+      case FLOAT: {
+        float value = (Float) v;
+        crc.update(value);
+        out.writeFloatNoTag(value);
+        break;
+      }
+      case BIGINT: {
+        long value = (Long) v;
+        crc.update(value);
+        out.writeSInt64NoTag(value);
+        break;
+      }
+      case INTERVAL_YEAR_MONTH: {
+        long value = ((IntervalYearMonth) v).getTotalMonths();
+        crc.update(value);
+        out.writeSInt64NoTag(value);
+        break;
+      }
+      case INT: {
+        long value = ((Integer) v).longValue();
+        crc.update(value);
+        out.writeSInt64NoTag(value);
+        break;
+      }
+      case SMALLINT: {
+        long value = ((Short) v).longValue();
+        crc.update(value);
+        out.writeSInt64NoTag(value);
+        break;
+      }
+      case TINYINT: {
+        long value = ((Byte) v).longValue();
+        crc.update(value);
+        out.writeSInt64NoTag(value);
+        break;
+      }
+      case DECIMAL: {
+        writeUtf8(((BigDecimal) v).toPlainString());
+        break;
+      }
+      case ARRAY: {
+        writeArray((List) v, ((ArrayTypeInfo) typeInfo).getElementTypeInfo());
+        break;
+      }
+      case MAP: {
+        MapTypeInfo mapTypeInfo = (MapTypeInfo) typeInfo;
+
+        writeMap((Map) v, mapTypeInfo.getKeyTypeInfo(),
+                 mapTypeInfo.getValueTypeInfo());
+        break;
+      }
+      case STRUCT: {
+        writeStruct((Struct) v, (StructTypeInfo) typeInfo);
+        break;
+      }
+      default:
+        throw new IOException("Invalid data type: " + typeInfo);
+    }
+  }
+
+  private void writeStruct(Struct object, StructTypeInfo typeInfo) throws IOException {
+    List<TypeInfo> fieldTypeInfos = typeInfo.getFieldTypeInfos();
+
+    for (int i = 0; i < fieldTypeInfos.size(); ++i) {
+      if (object.getFieldValue(i) == null) {
+        out.writeBoolNoTag(true);
+      } else {
+        out.writeBoolNoTag(false);
+        writeField(object.getFieldValue(i), fieldTypeInfos.get(i));
+      }
+    }
+  }
+
+  private void writeArray(List v, TypeInfo type) throws IOException {
+    out.writeInt32NoTag(v.size());
+    for (int i = 0; i < v.size(); i++) {
+      if (v.get(i) == null) {
+        out.writeBoolNoTag(true);
+      } else {
+        out.writeBoolNoTag(false);
+        writeField(v.get(i), type);
+      }
+    }
+  }
+
+  private void writeMap(Map v, TypeInfo keyType, TypeInfo valueType) throws IOException {
+    // note: storage will check the availability of key and value
+    List keyList = new ArrayList();
+    List valueList = new ArrayList();
+    Iterator iter = v.entrySet().iterator();
+    while (iter.hasNext()) {
+      Map.Entry entry = (Map.Entry) iter.next();
+
+      keyList.add(entry.getKey());
+      valueList.add(entry.getValue());
+    }
+
+    writeArray(keyList, keyType);
+    writeArray(valueList, valueType);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      out.writeSInt64(ProtoWireConstant.TUNNEL_META_COUNT, count);
+      out.writeUInt32(ProtoWireConstant.TUNNEL_META_CHECKSUM, (int) crccrc.getValue());
+      out.flush();
+      bou.close();
+    } finally {
+      if (def != null) {
+        def.end();
+      }
+    }
+  }
+
+  /**
+   * 返回已经写出的 protobuf 序列化后的字节数。
+   *
+   * 这个数字不包含已经存在于 buffer 中，但是尚未 flush 的内容。
+   * 如果需要全部序列化过的字节数，需要在调用本方法前先调用 flush()
+   *
+   * @return 字节数
+   */
+  public long getTotalBytes() {
+    return bou.getByteCount();
+  }
+  
+  @Deprecated
+  public void write(RecordPack pack) throws IOException {
+    if (pack instanceof ProtobufRecordPack) {
+      ProtobufRecordPack pbPack = (ProtobufRecordPack) pack;
+      pbPack.writeTo(bou);
+      count += pbPack.getSize();
+      setCheckSum(pbPack.getCheckSum());
+    } else {
+      RecordReader reader = pack.getRecordReader();
+      Record record;
+      while ((record = reader.read()) != null) {
+        write(record);
+      }
+    }
+  }
+
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  /**
+   * 获取已经写出的 CheckSum
+   */
+  public Checksum getCheckSum() {
+    return crccrc;
+  }
+
+  public void setCheckSum(Checksum checkSum) {
+    crccrc = checkSum;
+  }
+
+}
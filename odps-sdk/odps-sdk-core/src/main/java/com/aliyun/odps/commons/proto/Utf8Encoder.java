@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.proto;
+
+/**
+ * 将字符串编码为 UTF-8 写入一个可复用的缓冲区，避免每个值都分配新的字节数组
+ *
+ * 编码结果与 String.getBytes("UTF-8") 一致，不成对的代理字符编码为 '?'。
+ * 非线程安全，每个 writer 持有自己的实例。
+ */
+public class Utf8Encoder {
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  /**
+   * 缓冲区的上限，更长的字符串直接使用 String.getBytes，避免长期持有过大的缓冲区
+   */
+  static final int MAX_CAPACITY = 4 * 1024 * 1024;
+
+  private byte[] buffer = new byte[INITIAL_CAPACITY];
+
+  /**
+   * 编码字符串
+   *
+   * @param s
+   *     字符串
+   * @return 编码后的字节数，结果保存在 {@link #getBuffer()} 的 [0, length) 中；
+   *     字符串过长时返回 -1，调用方需要自行编码
+   */
+  public int encode(CharSequence s) {
+    int len = s.length();
+    if (len > MAX_CAPACITY / 3) {
+      return -1;
+    }
+
+    // ASCII fast path
+    byte[] buf = ensureCapacity(len, 0);
+    int i = 0;
+    for (; i < len; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x80) {
+        break;
+      }
+      buf[i] = (byte) c;
+    }
+    if (i == len) {
+      return len;
+    }
+
+    buf = ensureCapacity(len * 3, i);
+    int pos = i;
+    for (; i < len; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        buf[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        buf[pos++] = (byte) (0xc0 | (c >> 6));
+        buf[pos++] = (byte) (0x80 | (c & 0x3f));
+      } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+        int cp = -1;
+        if (Character.isHighSurrogate(c) && i + 1 < len) {
+          char low = s.charAt(i + 1);
+          if (Character.isLowSurrogate(low)) {
+            cp = Character.toCodePoint(c, low);
+          }
+        }
+        if (cp < 0) {
+          buf[pos++] = (byte) '?';
+        } else {
+          i++;
+          buf[pos++] = (byte) (0xf0 | (cp >> 18));
+          buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+          buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+          buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+        }
+      } else {
+        buf[pos++] = (byte) (0xe0 | (c >> 12));
+        buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        buf[pos++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+    return pos;
+  }
+
+  /**
+   * 获取保存编码结果的缓冲区，内容在下一次 encode 时被覆盖
+   */
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+  private byte[] ensureCapacity(int capacity, int keep) {
+    if (buffer.length < capacity) {
+      int newCapacity = buffer.length;
+      while (newCapacity < capacity) {
+        newCapacity <<= 1;
+      }
+      byte[] newBuffer = new byte[Math.min(newCapacity, MAX_CAPACITY)];
+      System.arraycopy(buffer, 0, newBuffer, 0, keep);
+      buffer = newBuffer;
+    }
+    return buffer;
+  }
+}
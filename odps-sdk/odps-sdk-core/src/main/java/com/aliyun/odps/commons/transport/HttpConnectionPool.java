@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.transport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * {@link PooledTransport} 使用的连接池
+ *
+ * <p>按 (scheme, host, port) 分组管理连接，每组同时借出和空闲的连接数之和不超过上限。
+ * 空闲超时的连接在借出或归还时被关闭；空闲较久的连接在借出前会检查是否已被服务端关闭。</p>
+ */
+class HttpConnectionPool {
+
+  /**
+   * 池中的一条 socket 连接
+   */
+  static class PooledSocket {
+
+    final Route route;
+    final Socket socket;
+    final InputStream in;
+    final OutputStream out;
+    long lastUsed;
+    long expiry;
+    boolean reused;
+
+    PooledSocket(Route route, Socket socket) throws IOException {
+      this.route = route;
+      this.socket = socket;
+      this.in = new BufferedInputStream(socket.getInputStream(), 8192);
+      this.out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+    }
+
+    void close() {
+      try {
+        socket.close();
+      } catch (IOException ignore) {
+      }
+    }
+
+    /**
+     * 检查连接是否已被对端关闭，空闲连接上不应该有可读的数据
+     */
+    boolean isStale() {
+      if (socket.isClosed() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+        return true;
+      }
+      try {
+        int timeout = socket.getSoTimeout();
+        try {
+          socket.setSoTimeout(1);
+          // 读到数据或者 EOF 都说明连接不能再用
+          in.read();
+          return true;
+        } finally {
+          socket.setSoTimeout(timeout);
+        }
+      } catch (SocketTimeoutException e) {
+        return false;
+      } catch (IOException e) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * 连接的目标
+   */
+  static class Route {
+
+    final boolean https;
+    final String host;
+    final int port;
+    final boolean ignoreCerts;
+
+    Route(boolean https, String host, int port, boolean ignoreCerts) {
+      this.https = https;
+      this.host = host;
+      this.port = port;
+      this.ignoreCerts = ignoreCerts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Route)) {
+        return false;
+      }
+      Route r = (Route) o;
+      return https == r.https && port == r.port && ignoreCerts == r.ignoreCerts
+             && host.equals(r.host);
+    }
+
+    @Override
+    public int hashCode() {
+      return (host.hashCode() * 31 + port) * 4 + (https ? 2 : 0) + (ignoreCerts ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+      return (https ? "https://" : "http://") + host + ":" + port;
+    }
+  }
+
+  private static class RouteState {
+
+    final LinkedList<PooledSocket> idle = new LinkedList<PooledSocket>();
+    int leased;
+  }
+
+  private final PooledTransport transport;
+  private final Map<Route, RouteState> routes = new HashMap<Route, RouteState>();
+  private long created;
+  private boolean closed;
+
+  HttpConnectionPool(PooledTransport transport) {
+    this.transport = transport;
+  }
+
+  /**
+   * 借出一条连接，没有可用连接且已达到上限时等待
+   *
+   * @param connectTimeout
+   *     新建连接的超时时间，单位毫秒
+   */
+  PooledSocket lease(Route route, int connectTimeout) throws IOException {
+    long deadline = System.currentTimeMillis() + transport.getLeaseTimeout();
+    PooledSocket socket = null;
+    synchronized (this) {
+      while (true) {
+        if (closed) {
+          throw new IOException("Transport is closed.");
+        }
+        long now = System.currentTimeMillis();
+        evictExpired(now);
+        RouteState state = getState(route);
+        if (!state.idle.isEmpty()) {
+          socket = state.idle.removeFirst();
+          state.leased++;
+          break;
+        }
+        if (state.leased < transport.getMaxConnectionsPerHost()) {
+          state.leased++;
+          break;
+        }
+        long wait = deadline - now;
+        if (wait <= 0) {
+          throw new IOException("Timeout waiting for connection to " + route);
+        }
+        try {
+          wait(wait);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted waiting for connection to " + route);
+        }
+      }
+    }
+
+    try {
+      if (socket != null) {
+        if (System.currentTimeMillis() - socket.lastUsed < transport.getValidateAfterInactivity()
+            || !socket.isStale()) {
+          socket.reused = true;
+          return socket;
+        }
+        socket.close();
+      }
+      socket = transport.createSocket(route, connectTimeout);
+      synchronized (this) {
+        created++;
+      }
+      return socket;
+    } catch (IOException e) {
+      release(route, null, 0);
+      throw e;
+    } catch (RuntimeException e) {
+      release(route, null, 0);
+      throw e;
+    }
+  }
+
+  /**
+   * 为已借出的名额新建一条连接，用于替换已经失效的连接
+   */
+  PooledSocket renew(Route route, int connectTimeout) throws IOException {
+    PooledSocket socket = transport.createSocket(route, connectTimeout);
+    synchronized (this) {
+      created++;
+    }
+    return socket;
+  }
+
+  /**
+   * 归还连接
+   *
+   * @param socket
+   *     连接，为 null 或者 keepAlive 不大于 0 时关闭连接
+   * @param keepAlive
+   *     连接还可以空闲的时间，单位毫秒
+   */
+  void release(Route route, PooledSocket socket, long keepAlive) {
+    synchronized (this) {
+      getState(route).leased--;
+      if (socket != null) {
+        if (keepAlive > 0 && !closed && !socket.socket.isClosed()) {
+          long now = System.currentTimeMillis();
+          socket.lastUsed = now;
+          socket.expiry = now + keepAlive;
+          getState(route).idle.addFirst(socket);
+          socket = null;
+        }
+      }
+      notifyAll();
+    }
+    if (socket != null) {
+      socket.close();
+    }
+  }
+
+  /**
+   * 关闭所有空闲连接
+   */
+  void closeIdle() {
+    LinkedList<PooledSocket> toClose = new LinkedList<PooledSocket>();
+    synchronized (this) {
+      for (RouteState state : routes.values()) {
+        toClose.addAll(state.idle);
+        state.idle.clear();
+      }
+    }
+    for (PooledSocket s : toClose) {
+      s.close();
+    }
+  }
+
+  void close() {
+    synchronized (this) {
+      closed = true;
+      notifyAll();
+    }
+    closeIdle();
+  }
+
+  synchronized int getIdleCount() {
+    int count = 0;
+    for (RouteState state : routes.values()) {
+      count += state.idle.size();
+    }
+    return count;
+  }
+
+  synchronized int getLeasedCount() {
+    int count = 0;
+    for (RouteState state : routes.values()) {
+      count += state.leased;
+    }
+    return count;
+  }
+
+  synchronized long getCreatedCount() {
+    return created;
+  }
+
+  private RouteState getState(Route route) {
+    RouteState state = routes.get(route);
+    if (state == null) {
+      state = new RouteState();
+      routes.put(route, state);
+    }
+    return state;
+  }
+
+  private void evictExpired(long now) {
+    Iterator<RouteState> states = routes.values().iterator();
+    while (states.hasNext()) {
+      RouteState state = states.next();
+      Iterator<PooledSocket> it = state.idle.iterator();
+      while (it.hasNext()) {
+        PooledSocket s = it.next();
+        if (s.expiry <= now) {
+          it.remove();
+          s.close();
+        }
+      }
+      if (state.idle.isEmpty() && state.leased == 0) {
+        states.remove();
+      }
+    }
+  }
+}
@@ -0,0 +1,752 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import javax.mail.internet.MimeUtility;
+
+import com.aliyun.odps.commons.transport.HttpConnectionPool.PooledSocket;
+import com.aliyun.odps.commons.transport.HttpConnectionPool.Route;
+import com.aliyun.odps.commons.transport.Request.Method;
+
+/**
+ * PooledConnection 在 {@link PooledTransport} 连接池中的 socket 上实现一次 HTTP/1.1 请求
+ *
+ * <p>请求结束后（响应数据读完、关闭输入流或者 {@link #disconnect()}），可以复用的连接被放回连接池，
+ * 否则关闭。</p>
+ */
+class PooledConnection implements Connection {
+
+  private static final Logger log = Logger.getLogger(PooledConnection.class.getName());
+
+  private static final String CHARSET = "UTF-8";
+  private static final byte[] CRLF = {'\r', '\n'};
+  private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+  /**
+   * disconnect 或者关闭输入流时最多读取这么多剩余的响应数据，以便复用连接
+   */
+  static final int DRAIN_LIMIT = 64 * 1024;
+
+  private enum BodyMode {
+    NONE, FIXED, CHUNKED, BUFFERED
+  }
+
+  private final PooledTransport transport;
+  private final HttpConnectionPool pool;
+
+  private Request req;
+  private Route route;
+  private PooledSocket socket;
+  private int connectTimeout;
+  private boolean released;
+
+  private BodyMode bodyMode;
+  private long contentLength;
+  private boolean headSent;
+  private OutputStream bodyOut;
+  private ByteArrayOutputStream buffered;
+  private boolean requestDone;
+
+  private boolean responseStarted;
+  private DefaultResponse response;
+  private BodyInputStream bodyIn;
+  private InputStream userIn;
+  private boolean keepAlive;
+  private long keepAliveTimeout;
+
+  PooledConnection(PooledTransport transport) {
+    this.transport = transport;
+    this.pool = transport.getPool();
+  }
+
+  @Override
+  public void connect(Request req) throws IOException {
+    URI u = req.getURI();
+
+    if (log.isLoggable(Level.FINE)) {
+      log.fine("Connecting to " + u);
+    }
+
+    if (u == null || u.getScheme() == null) {
+      throw new IllegalArgumentException("Request URI(http or https) required.");
+    }
+
+    String scheme = u.getScheme().toLowerCase();
+    boolean https;
+    if ("http".equals(scheme)) {
+      https = false;
+    } else if ("https".equals(scheme)) {
+      https = true;
+    } else {
+      throw new IOException("Protocol not supported: " + u.getScheme());
+    }
+    if (u.getHost() == null) {
+      throw new IllegalArgumentException("Invalid request URI: " + u);
+    }
+    int port = u.getPort() == -1 ? (https ? 443 : 80) : u.getPort();
+
+    this.req = req;
+    this.route = new Route(https, u.getHost(), port, https && req.getRestClient().isIgnoreCerts());
+    this.connectTimeout = req.getRestClient().getConnectTimeout() * 1000;
+
+    if (req.getBody() != null) {
+      bodyMode = BodyMode.FIXED;
+      contentLength = req.getBodyLength();
+    } else if (Headers.CHUNKED.equalsIgnoreCase(header(req.getHeaders(),
+                                                       Headers.TRANSFER_ENCODING))) {
+      bodyMode = BodyMode.CHUNKED;
+    } else if (header(req.getHeaders(), Headers.CONTENT_LENGTH) != null) {
+      bodyMode = BodyMode.FIXED;
+      try {
+        contentLength = Long.parseLong(header(req.getHeaders(), Headers.CONTENT_LENGTH).trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid Content-Length: "
+                                           + header(req.getHeaders(), Headers.CONTENT_LENGTH));
+      }
+    } else if (req.getMethod() == Method.POST || req.getMethod() == Method.PUT) {
+      bodyMode = BodyMode.BUFFERED;
+    } else {
+      bodyMode = BodyMode.NONE;
+    }
+
+    socket = pool.lease(route, connectTimeout);
+    socket.socket.setSoTimeout(req.getRestClient().getReadTimeout() * 1000);
+  }
+
+  @Override
+  public OutputStream getOutputStream() throws IOException {
+    checkConnection();
+    if (response != null) {
+      throw new IOException("Cannot write request body after response has been read.");
+    }
+    if (bodyOut == null) {
+      switch (bodyMode) {
+        case FIXED:
+          sendHead();
+          bodyOut = new FixedLengthOutputStream(contentLength);
+          break;
+        case CHUNKED:
+          sendHead();
+          bodyOut = new ChunkedBodyOutputStream(req.getRestClient().getChunkSize());
+          break;
+        default:
+          bodyMode = BodyMode.BUFFERED;
+          buffered = new ByteArrayOutputStream();
+          bodyOut = buffered;
+      }
+    }
+    return bodyOut;
+  }
+
+  @Override
+  public Response getResponse() throws IOException {
+    checkConnection();
+    if (response != null) {
+      return response;
+    }
+
+    try {
+      finishRequest();
+      readResponseHead();
+    } catch (IOException e) {
+      if (!canRetry(e)) {
+        abort();
+        throw e;
+      }
+      // 复用的连接可能刚好被服务端关闭，幂等请求换一个新连接重发
+      if (log.isLoggable(Level.FINE)) {
+        log.fine("Retry on new connection: " + e.getMessage());
+      }
+      try {
+        socket.close();
+        socket = pool.renew(route, connectTimeout);
+        socket.socket.setSoTimeout(req.getRestClient().getReadTimeout() * 1000);
+        headSent = false;
+        requestDone = false;
+        responseStarted = false;
+        finishRequest();
+        readResponseHead();
+      } catch (IOException e1) {
+        abort();
+        throw e1;
+      }
+    }
+    return response;
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    getResponse();
+    if (userIn == null) {
+      userIn = bodyIn;
+      String encoding = header(response.getHeaders(), Headers.CONTENT_ENCODING);
+      if (encoding != null && encoding.equalsIgnoreCase("gzip")) {
+        userIn = new GZIPInputStream(bodyIn);
+      }
+    }
+    return userIn;
+  }
+
+  @Override
+  public void disconnect() throws IOException {
+    checkConnection();
+    if (released) {
+      return;
+    }
+    if (bodyIn != null) {
+      bodyIn.close();
+    } else {
+      abort();
+    }
+  }
+
+  private void checkConnection() throws IOException {
+    if (socket == null) {
+      throw new IOException("Invalid connection.");
+    }
+  }
+
+  /**
+   * 只有复用的连接在收到任何响应数据之前被关闭或者重置时，才能确定服务端没有处理请求；
+   * 读超时等其它错误时请求可能已经被处理，非幂等的请求也不能重发
+   */
+  private boolean canRetry(IOException e) {
+    return socket.reused && response == null && !responseStarted
+           && (e instanceof EOFException || e instanceof SocketException)
+           && (req.getMethod() == Method.GET || req.getMethod() == Method.HEAD)
+           && bodyMode == BodyMode.NONE;
+  }
+
+  private void sendHead() throws IOException {
+    if (headSent) {
+      return;
+    }
+    URI u = req.getURI();
+    StringBuilder sb = new StringBuilder(256);
+    sb.append(req.getMethod().toString()).append(' ');
+    String path = u.getRawPath();
+    sb.append(path == null || path.length() == 0 ? "/" : path);
+    if (u.getRawQuery() != null) {
+      sb.append('?').append(u.getRawQuery());
+    }
+    sb.append(" HTTP/1.1\r\n");
+
+    sb.append("Host: ").append(route.host);
+    if (route.port != (route.https ? 443 : 80)) {
+      sb.append(':').append(route.port);
+    }
+    sb.append("\r\n");
+
+    if (req.getHeaders() != null) {
+      for (Entry<String, String> kv : req.getHeaders().entrySet()) {
+        String name = kv.getKey();
+        if (name == null || kv.getValue() == null
+            || "Host".equalsIgnoreCase(name)
+            || Headers.CONTENT_LENGTH.equalsIgnoreCase(name)
+            || Headers.TRANSFER_ENCODING.equalsIgnoreCase(name)) {
+          continue;
+        }
+        sb.append(name).append(": ").append(kv.getValue()).append("\r\n");
+      }
+    }
+
+    switch (bodyMode) {
+      case FIXED:
+        sb.append(Headers.CONTENT_LENGTH).append(": ").append(contentLength).append("\r\n");
+        break;
+      case CHUNKED:
+        sb.append(Headers.TRANSFER_ENCODING).append(": ").append(Headers.CHUNKED).append("\r\n");
+        break;
+      case BUFFERED:
+        sb.append(Headers.CONTENT_LENGTH).append(": ")
+            .append(buffered == null ? 0 : buffered.size()).append("\r\n");
+        break;
+      default:
+        break;
+    }
+    sb.append("\r\n");
+
+    socket.out.write(sb.toString().getBytes(CHARSET));
+    headSent = true;
+  }
+
+  private void finishRequest() throws IOException {
+    if (requestDone) {
+      return;
+    }
+    if (bodyOut != null && bodyOut != buffered) {
+      // 调用方没有关闭输出流
+      bodyOut.close();
+    } else {
+      if (bodyMode == BodyMode.FIXED && contentLength > 0) {
+        throw new IOException("Request body is not written, expect " + contentLength + " bytes.");
+      }
+      sendHead();
+      if (buffered != null) {
+        buffered.writeTo(socket.out);
+      }
+    }
+    socket.out.flush();
+    requestDone = true;
+  }
+
+  private void readResponseHead() throws IOException {
+    String statusLine;
+    Map<String, List<String>> fields;
+    int status;
+    do {
+      statusLine = readLine();
+      if (statusLine == null) {
+        throw new EOFException("Unexpected end of stream from " + route);
+      }
+      if (!statusLine.startsWith("HTTP/")) {
+        throw new IOException("Invalid HTTP status line: " + statusLine);
+      }
+      int sp1 = statusLine.indexOf(' ');
+      int sp2 = sp1 < 0 ? -1 : statusLine.indexOf(' ', sp1 + 1);
+      try {
+        status = Integer.parseInt(sp2 < 0 ? statusLine.substring(sp1 + 1)
+                                          : statusLine.substring(sp1 + 1, sp2));
+      } catch (RuntimeException e) {
+        throw new IOException("Invalid HTTP status line: " + statusLine);
+      }
+      fields = readHeaders();
+      // 跳过 1xx 中间响应
+    } while (status / 100 == 1 && status != 101);
+
+    DefaultResponse resp = new DefaultResponse();
+    resp.setStatus(status);
+    int sp2 = statusLine.indexOf(' ', statusLine.indexOf(' ') + 1);
+    resp.setMessage(sp2 < 0 ? "" : statusLine.substring(sp2 + 1));
+    Map<String, String> headers = resp.getHeaders();
+    for (Entry<String, List<String>> kv : fields.entrySet()) {
+      StringBuilder sb = new StringBuilder();
+      String pad = "";
+      for (String v : kv.getValue()) {
+        sb.append(pad).append(MimeUtility.decodeText(v));
+        pad = ",";
+      }
+      headers.put(kv.getKey(), sb.toString());
+    }
+
+    String connection = header(headers, "Connection");
+    if (statusLine.startsWith("HTTP/1.0")) {
+      keepAlive = connection != null && connection.toLowerCase().contains("keep-alive");
+    } else {
+      keepAlive = connection == null || !connection.toLowerCase().contains("close");
+    }
+    String reqConnection = header(req.getHeaders(), "Connection");
+    if (reqConnection != null && reqConnection.toLowerCase().contains("close")) {
+      keepAlive = false;
+    }
+    keepAliveTimeout = transport.getIdleTimeout();
+    String keepAliveHeader = header(headers, "Keep-Alive");
+    if (keepAliveHeader != null) {
+      for (String param : keepAliveHeader.split(",")) {
+        param = param.trim();
+        if (param.startsWith("timeout=")) {
+          try {
+            keepAliveTimeout = Math.min(keepAliveTimeout,
+                                        Long.parseLong(param.substring(8).trim()) * 1000);
+          } catch (NumberFormatException ignore) {
+          }
+        }
+      }
+    }
+
+    String transferEncoding = header(headers, Headers.TRANSFER_ENCODING);
+    String length = header(headers, Headers.CONTENT_LENGTH);
+    if (req.getMethod() == Method.HEAD || status == 204 || status == 304) {
+      bodyIn = new BodyInputStream(0);
+    } else if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+      bodyIn = new BodyInputStream(-1);
+    } else if (length != null) {
+      try {
+        bodyIn = new BodyInputStream(Long.parseLong(length.trim()));
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid Content-Length: " + length);
+      }
+    } else {
+      // 读到连接关闭为止
+      keepAlive = false;
+      bodyIn = new BodyInputStream(Long.MAX_VALUE);
+    }
+
+    response = resp;
+  }
+
+  private Map<String, List<String>> readHeaders() throws IOException {
+    Map<String, List<String>> fields = new LinkedHashMap<String, List<String>>();
+    String line;
+    while ((line = readLine()) != null && line.length() > 0) {
+      int idx = line.indexOf(':');
+      if (idx <= 0) {
+        continue;
+      }
+      String name = line.substring(0, idx).trim();
+      String value = line.substring(idx + 1).trim();
+      List<String> values = fields.get(name);
+      if (values == null) {
+        values = new ArrayList<String>(1);
+        fields.put(name, values);
+      }
+      values.add(value);
+    }
+    if (line == null) {
+      throw new IOException("Unexpected end of stream from " + route);
+    }
+    return fields;
+  }
+
+  /**
+   * 读一行 ISO-8859-1 文本，去掉行尾的 CRLF，流结束时返回 null
+   */
+  private String readLine() throws IOException {
+    StringBuilder sb = new StringBuilder(64);
+    int b;
+    while ((b = socket.in.read()) != -1) {
+      responseStarted = true;
+      if (b == '\n') {
+        int len = sb.length();
+        if (len > 0 && sb.charAt(len - 1) == '\r') {
+          sb.setLength(len - 1);
+        }
+        return sb.toString();
+      }
+      if (sb.length() >= MAX_LINE_LENGTH) {
+        throw new IOException("HTTP line too long from " + route);
+      }
+      sb.append((char) b);
+    }
+    return sb.length() == 0 ? null : sb.toString();
+  }
+
+  private static String header(Map<String, String> headers, String name) {
+    if (headers == null) {
+      return null;
+    }
+    String value = headers.get(name);
+    if (value != null) {
+      return value;
+    }
+    for (Entry<String, String> kv : headers.entrySet()) {
+      if (name.equalsIgnoreCase(kv.getKey())) {
+        return kv.getValue();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 关闭连接，不再复用
+   */
+  private void abort() {
+    if (!released) {
+      released = true;
+      pool.release(route, socket, 0);
+    }
+  }
+
+  private void release() {
+    if (!released) {
+      released = true;
+      pool.release(route, socket, keepAlive && requestDone ? keepAliveTimeout : 0);
+    }
+  }
+
+  private class FixedLengthOutputStream extends OutputStream {
+
+    private final long length;
+    private long written;
+    private boolean closed;
+
+    FixedLengthOutputStream(long length) {
+      this.length = length;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      check(1);
+      socket.out.write(b);
+      written++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      check(len);
+      socket.out.write(b, off, len);
+      written += len;
+    }
+
+    private void check(int len) throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed.");
+      }
+      if (written + len > length) {
+        abort();
+        throw new IOException("Too many bytes written, expect " + length + " bytes.");
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (!closed) {
+        socket.out.flush();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (written != length) {
+        abort();
+        throw new IOException("Insufficient data written, expect " + length + " bytes, now: "
+                              + written);
+      }
+      socket.out.flush();
+      requestDone = true;
+    }
+  }
+
+  private class ChunkedBodyOutputStream extends OutputStream {
+
+    private final byte[] buf;
+    private int count;
+    private boolean closed;
+
+    ChunkedBodyOutputStream(int chunkSize) {
+      buf = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (count == buf.length) {
+        writeChunk();
+      }
+      buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed.");
+      }
+      while (len > 0) {
+        if (count == 0 && len >= buf.length) {
+          writeChunk(b, off, buf.length);
+          off += buf.length;
+          len -= buf.length;
+          continue;
+        }
+        int n = Math.min(len, buf.length - count);
+        System.arraycopy(b, off, buf, count, n);
+        count += n;
+        off += n;
+        len -= n;
+        if (count == buf.length) {
+          writeChunk();
+        }
+      }
+    }
+
+    private void writeChunk() throws IOException {
+      writeChunk(buf, 0, count);
+      count = 0;
+    }
+
+    private void writeChunk(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return;
+      }
+      socket.out.write(Integer.toHexString(len).getBytes(CHARSET));
+      socket.out.write(CRLF);
+      socket.out.write(b, off, len);
+      socket.out.write(CRLF);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (!closed) {
+        writeChunk();
+        socket.out.flush();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      writeChunk();
+      socket.out.write('0');
+      socket.out.write(CRLF);
+      socket.out.write(CRLF);
+      socket.out.flush();
+      closed = true;
+      requestDone = true;
+    }
+  }
+
+  /**
+   * 响应 body 的输入流，按 Content-Length 或者 chunked 编码确定边界，读完后归还连接
+   */
+  private class BodyInputStream extends InputStream {
+
+    private final boolean chunked;
+    private long remaining;
+    private boolean eof;
+    private boolean closed;
+
+    /**
+     * @param length
+     *     body 长度，-1 表示 chunked 编码
+     */
+    BodyInputStream(long length) {
+      this.chunked = length < 0;
+      this.remaining = chunked ? 0 : length;
+      if (!chunked && length == 0) {
+        eof = true;
+        release();
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      int n = read(b, 0, 1);
+      return n == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed.");
+      }
+      if (eof) {
+        return -1;
+      }
+      if (len == 0) {
+        return 0;
+      }
+      try {
+        if (chunked && remaining == 0) {
+          nextChunk();
+          if (eof) {
+            return -1;
+          }
+        }
+        int n = socket.in.read(b, off, (int) Math.min(len, remaining));
+        if (n == -1) {
+          if (remaining == Long.MAX_VALUE) {
+            // 读到连接关闭为止的 body
+            eof = true;
+            abort();
+            return -1;
+          }
+          throw new IOException("Unexpected end of stream from " + route);
+        }
+        remaining -= n;
+        if (remaining == 0) {
+          if (chunked) {
+            readLine();
+          } else {
+            eof = true;
+            release();
+          }
+        }
+        return n;
+      } catch (IOException e) {
+        abort();
+        throw e;
+      }
+    }
+
+    private void nextChunk() throws IOException {
+      String line = readLine();
+      if (line == null) {
+        throw new IOException("Unexpected end of stream from " + route);
+      }
+      int idx = line.indexOf(';');
+      String size = (idx < 0 ? line : line.substring(0, idx)).trim();
+      try {
+        remaining = Long.parseLong(size, 16);
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid chunk size: " + line);
+      }
+      if (remaining == 0) {
+        // trailers
+        String trailer;
+        while ((trailer = readLine()) != null && trailer.length() > 0) {
+        }
+        eof = true;
+        release();
+      }
+    }
+
+    @Override
+    public int available() throws IOException {
+      if (closed || eof) {
+        return 0;
+      }
+      return (int) Math.min(socket.in.available(), remaining);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      if (!eof && !released) {
+        // 读完少量剩余数据使连接可以复用
+        try {
+          byte[] skip = new byte[4096];
+          long drained = 0;
+          while (drained < DRAIN_LIMIT && read(skip, 0, skip.length) != -1) {
+            drained += skip.length;
+          }
+        } catch (IOException ignore) {
+        }
+        if (!eof) {
+          abort();
+        }
+      }
+      closed = true;
+    }
+  }
+}
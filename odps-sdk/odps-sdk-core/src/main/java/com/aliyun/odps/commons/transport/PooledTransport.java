@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import com.aliyun.odps.account.AuthorizationUtil;
+import com.aliyun.odps.commons.transport.HttpConnectionPool.PooledSocket;
+import com.aliyun.odps.commons.transport.HttpConnectionPool.Route;
+import com.aliyun.odps.commons.transport.Request.Method;
+import com.aliyun.odps.commons.util.IOUtils;
+
+/**
+ * PooledTransport 通过连接池复用 HTTP/1.1 keep-alive 连接提供 HTTP 请求功能
+ *
+ * <p>
+ * {@link DefaultTransport} 每次请求都新建 {@link java.net.HttpURLConnection} 并断开，
+ * 每个请求都需要重新建立 TCP 连接和 TLS 握手。PooledTransport 在请求结束后把连接放回池中，
+ * 后续发往同一个 host 的请求直接复用：<br />
+ * 1. 每个 host 同时使用和空闲的连接数不超过 {@link #setMaxConnectionsPerHost(int)}，
+ * 超出时请求等待，最长等待 {@link #setLeaseTimeout(long)}<br />
+ * 2. 空闲超过 {@link #setIdleTimeout(long)} 的连接被关闭<br />
+ * 3. 空闲超过 {@link #setValidateAfterInactivity(long)} 的连接在复用前检查是否已被服务端关闭<br />
+ * 4. {@link Connection#disconnect()} 或者关闭响应的输入流时，未读完的少量响应数据会被读完，
+ * 使连接可以复用<br />
+ * </p>
+ *
+ * <p>
+ * 使用方式：
+ * <pre>
+ * PooledTransport transport = new PooledTransport();
+ * Odps odps = new Odps(account, transport);
+ * ...
+ * transport.close();
+ * </pre>
+ * 同一个 transport 可以被多个 Odps 对象和 tunnel 共享。不支持 HTTP 代理，HTTPS 校验服务端域名需要 Java 7 及以上版本。
+ * </p>
+ */
+public class PooledTransport implements Transport, Closeable {
+
+  /**
+   * 每个 host 的默认最大连接数
+   */
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+  /**
+   * 连接默认最长空闲时间, 60秒
+   */
+  public static final long DEFAULT_IDLE_TIMEOUT = 60 * 1000L;
+
+  /**
+   * 连接空闲超过这个时间后，复用前需要检查是否可用, 2秒
+   */
+  public static final long DEFAULT_VALIDATE_AFTER_INACTIVITY = 2 * 1000L;
+
+  /**
+   * 等待可用连接的默认超时时间, 60秒
+   */
+  public static final long DEFAULT_LEASE_TIMEOUT = 60 * 1000L;
+
+  private volatile int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+  private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+  private volatile long validateAfterInactivity = DEFAULT_VALIDATE_AFTER_INACTIVITY;
+  private volatile long leaseTimeout = DEFAULT_LEASE_TIMEOUT;
+
+  private final HttpConnectionPool pool = new HttpConnectionPool(this);
+  private volatile SSLSocketFactory ignoreCertsFactory;
+
+  public PooledTransport() {
+  }
+
+  @Override
+  public Connection connect(Request req) throws IOException {
+    PooledConnection conn = new PooledConnection(this);
+    conn.connect(req);
+    return conn;
+  }
+
+  @Override
+  public Response request(Request req) throws IOException {
+    Connection conn = connect(req);
+    DefaultResponse resp = null;
+    try {
+      // send request body
+      if (req.getBody() != null) {
+        OutputStream out = conn.getOutputStream();
+        IOUtils.copyLarge(req.getBody(), out);
+        out.close();
+      }
+
+      resp = (DefaultResponse) conn.getResponse();
+
+      if (Method.HEAD != req.getMethod()) {
+        InputStream in = conn.getInputStream();
+        resp.setBody(IOUtils.readFully(in));
+      }
+
+    } finally {
+      conn.disconnect();
+    }
+    return resp;
+  }
+
+  /**
+   * 设置每个 host 的最大连接数，包括正在使用和空闲的连接
+   *
+   * @param maxConnectionsPerHost
+   *     最大连接数
+   */
+  public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+    if (maxConnectionsPerHost < 1) {
+      throw new IllegalArgumentException(
+          "max connections per host must >= 1, now: " + maxConnectionsPerHost);
+    }
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+  }
+
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  /**
+   * 设置连接最长空闲时间，服务端通过 Keep-Alive 头指定了更短的时间时以服务端为准
+   *
+   * @param idleTimeout
+   *     空闲时间，单位毫秒，为 0 时不复用连接
+   */
+  public void setIdleTimeout(long idleTimeout) {
+    if (idleTimeout < 0) {
+      throw new IllegalArgumentException("idle timeout must >= 0, now: " + idleTimeout);
+    }
+    this.idleTimeout = idleTimeout;
+  }
+
+  public long getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  /**
+   * 设置复用前需要检查连接是否可用的空闲时间
+   *
+   * @param validateAfterInactivity
+   *     空闲时间，单位毫秒，为 0 时每次复用前都检查
+   */
+  public void setValidateAfterInactivity(long validateAfterInactivity) {
+    if (validateAfterInactivity < 0) {
+      throw new IllegalArgumentException(
+          "validate after inactivity must >= 0, now: " + validateAfterInactivity);
+    }
+    this.validateAfterInactivity = validateAfterInactivity;
+  }
+
+  public long getValidateAfterInactivity() {
+    return validateAfterInactivity;
+  }
+
+  /**
+   * 设置连接数达到上限时等待可用连接的超时时间
+   *
+   * @param leaseTimeout
+   *     超时时间，单位毫秒
+   */
+  public void setLeaseTimeout(long leaseTimeout) {
+    if (leaseTimeout < 0) {
+      throw new IllegalArgumentException("lease timeout must >= 0, now: " + leaseTimeout);
+    }
+    this.leaseTimeout = leaseTimeout;
+  }
+
+  public long getLeaseTimeout() {
+    return leaseTimeout;
+  }
+
+  /**
+   * 获取池中空闲连接数
+   */
+  public int getIdleConnectionCount() {
+    return pool.getIdleCount();
+  }
+
+  /**
+   * 获取正在使用的连接数
+   */
+  public int getLeasedConnectionCount() {
+    return pool.getLeasedCount();
+  }
+
+  /**
+   * 获取累计新建的连接数
+   */
+  public long getCreatedConnectionCount() {
+    return pool.getCreatedCount();
+  }
+
+  /**
+   * 关闭所有空闲连接，正在使用的连接不受影响
+   */
+  public void closeIdleConnections() {
+    pool.closeIdle();
+  }
+
+  /**
+   * 关闭 transport，空闲连接立即关闭，正在使用的连接在请求结束后关闭
+   */
+  @Override
+  public void close() {
+    pool.close();
+  }
+
+  HttpConnectionPool getPool() {
+    return pool;
+  }
+
+  PooledSocket createSocket(Route route, int connectTimeout) throws IOException {
+    Socket socket = new Socket();
+    try {
+      socket.setTcpNoDelay(true);
+      socket.setKeepAlive(true);
+      socket.connect(new InetSocketAddress(route.host, route.port), connectTimeout);
+      if (route.https) {
+        socket = startHandshake(route, socket);
+      }
+      return new PooledSocket(route, socket);
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  private Socket startHandshake(Route route, Socket plain) throws IOException {
+    SSLSocketFactory factory;
+    if (route.ignoreCerts) {
+      if (ignoreCertsFactory == null) {
+        ignoreCertsFactory = AuthorizationUtil.getIgnoreCertsSocketFactory();
+      }
+      factory = ignoreCertsFactory;
+    } else {
+      factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+    }
+
+    SSLSocket socket = (SSLSocket) factory.createSocket(plain, route.host, route.port, true);
+    if (!route.ignoreCerts) {
+      // 校验证书中的域名，等同于 HttpsURLConnection 的默认行为
+      SSLParameters params = socket.getSSLParameters();
+      try {
+        java.lang.reflect.Method method =
+            SSLParameters.class.getMethod("setEndpointIdentificationAlgorithm", String.class);
+        method.invoke(params, "HTTPS");
+      } catch (Exception e) {
+        throw new IOException("HTTPS hostname verification requires Java 7 or later.", e);
+      }
+      socket.setSSLParameters(params);
+    }
+    socket.startHandshake();
+    return socket;
+  }
+}
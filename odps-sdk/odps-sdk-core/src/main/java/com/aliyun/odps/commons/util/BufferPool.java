@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 固定大小内存块的复用池，供 {@link ChunkedOutputStream} 使用
+ *
+ * 内存块可以是堆内的，也可以是堆外（direct）的。归还的内存块在池中的总大小超过上限后直接丢弃，交给 GC 回收。
+ * 线程安全。
+ */
+public class BufferPool {
+
+  /**
+   * 默认内存块大小：256 KB
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+  /**
+   * 默认池中最多保留的字节数：256 MB
+   */
+  public static final long DEFAULT_MAX_POOLED_BYTES = 256L * 1024 * 1024;
+
+  private static volatile BufferPool defaultPool =
+      new BufferPool(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_POOLED_BYTES, false);
+
+  private final int chunkSize;
+  private final long maxPooledBytes;
+  private final boolean direct;
+  private final ConcurrentLinkedQueue<ByteBuffer> chunks = new ConcurrentLinkedQueue<ByteBuffer>();
+  private final AtomicLong pooledBytes = new AtomicLong(0);
+
+  /**
+   * 构造一个内存池
+   *
+   * @param chunkSize
+   *     每个内存块的大小
+   * @param maxPooledBytes
+   *     池中最多保留的字节数，为 0 表示不复用
+   * @param direct
+   *     是否使用堆外内存
+   */
+  public BufferPool(int chunkSize, long maxPooledBytes, boolean direct) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunk size must >= 1, now: " + chunkSize);
+    }
+    if (maxPooledBytes < 0) {
+      throw new IllegalArgumentException("max pooled bytes must >= 0, now: " + maxPooledBytes);
+    }
+    this.chunkSize = chunkSize;
+    this.maxPooledBytes = maxPooledBytes;
+    this.direct = direct;
+  }
+
+  /**
+   * 获取全局默认的内存池，默认为堆内存，块大小 {@link #DEFAULT_CHUNK_SIZE}
+   */
+  public static BufferPool getDefault() {
+    return defaultPool;
+  }
+
+  /**
+   * 替换全局默认的内存池，只影响之后创建的对象
+   */
+  public static void setDefault(BufferPool pool) {
+    if (pool == null) {
+      throw new IllegalArgumentException("pool must not be null");
+    }
+    defaultPool = pool;
+  }
+
+  /**
+   * 取出一个内存块，池中没有空闲的块时新分配
+   *
+   * @return position 为 0、limit 为块大小的内存块
+   */
+  public ByteBuffer allocate() {
+    ByteBuffer chunk = chunks.poll();
+    if (chunk == null) {
+      return direct ? ByteBuffer.allocateDirect(chunkSize) : ByteBuffer.allocate(chunkSize);
+    }
+    pooledBytes.addAndGet(-chunkSize);
+    chunk.clear();
+    return chunk;
+  }
+
+  /**
+   * 归还内存块，归还后调用方不能再使用它
+   */
+  public void release(ByteBuffer chunk) {
+    if (chunk == null || chunk.capacity() != chunkSize || chunk.isDirect() != direct) {
+      return;
+    }
+    if (pooledBytes.addAndGet(chunkSize) > maxPooledBytes) {
+      pooledBytes.addAndGet(-chunkSize);
+      return;
+    }
+    chunks.offer(chunk);
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public boolean isDirect() {
+    return direct;
+  }
+
+  /**
+   * 获取池中空闲内存块的总字节数
+   */
+  public long getPooledBytes() {
+    return pooledBytes.get();
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 依次读取一组 ByteBuffer 中 [position, limit) 部分的输入流，不拷贝数据
+ *
+ * 支持 mark/reset，可以用于需要重发请求体的场景。读取会移动 ByteBuffer 的 position，
+ * 调用方应当传入 duplicate 之后的 ByteBuffer。非线程安全。
+ */
+public class ByteBufferInputStream extends InputStream {
+
+  private final List<ByteBuffer> buffers;
+  private final int[] starts;
+  private int index = 0;
+  private int markIndex = 0;
+  private int markPosition;
+
+  public ByteBufferInputStream(List<ByteBuffer> buffers) {
+    this.buffers = buffers;
+    this.starts = new int[buffers.size()];
+    for (int i = 0; i < starts.length; ++i) {
+      starts[i] = buffers.get(i).position();
+    }
+    markPosition = starts.length > 0 ? starts[0] : 0;
+  }
+
+  private ByteBuffer current() {
+    while (index < buffers.size()) {
+      ByteBuffer buffer = buffers.get(index);
+      if (buffer.hasRemaining()) {
+        return buffer;
+      }
+      index++;
+    }
+    return null;
+  }
+
+  @Override
+  public int read() {
+    ByteBuffer buffer = current();
+    return buffer == null ? -1 : buffer.get() & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) {
+    if (len == 0) {
+      return 0;
+    }
+    ByteBuffer buffer = current();
+    if (buffer == null) {
+      return -1;
+    }
+    int n = Math.min(len, buffer.remaining());
+    buffer.get(b, off, n);
+    return n;
+  }
+
+  @Override
+  public long skip(long n) {
+    long skipped = 0;
+    ByteBuffer buffer;
+    while (skipped < n && (buffer = current()) != null) {
+      int step = (int) Math.min(n - skipped, buffer.remaining());
+      buffer.position(buffer.position() + step);
+      skipped += step;
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    long remaining = 0;
+    for (int i = index; i < buffers.size(); ++i) {
+      remaining += buffers.get(i).remaining();
+    }
+    return (int) Math.min(remaining, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public synchronized void mark(int readlimit) {
+    ByteBuffer buffer = current();
+    markIndex = index;
+    markPosition = buffer == null ? 0 : buffer.position();
+  }
+
+  /**
+   * 回到上一次 mark 的位置，没有 mark 过时回到起始位置
+   */
+  @Override
+  public synchronized void reset() {
+    for (int i = markIndex + 1; i < buffers.size(); ++i) {
+      buffers.get(i).position(starts[i]);
+    }
+    if (markIndex < buffers.size()) {
+      buffers.get(markIndex).position(markPosition);
+    }
+    index = markIndex;
+  }
+}
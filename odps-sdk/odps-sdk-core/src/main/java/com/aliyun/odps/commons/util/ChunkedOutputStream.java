@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 由一组从 {@link BufferPool} 借来的内存块组成的输出流
+ *
+ * 和 ByteArrayOutputStream 不同，写满一个块后直接申请下一个块，扩容时不拷贝已有数据；
+ * 读取时通过 {@link #writeTo(OutputStream)} 或 {@link #getInputStream()} 逐块输出，不合并成一个大数组。
+ * {@link #reset()} 把所有内存块归还给内存池。非线程安全。
+ */
+public class ChunkedOutputStream extends OutputStream {
+
+  private static final int TRANSFER_SIZE = 8192;
+
+  private final BufferPool pool;
+  private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+  private ByteBuffer current;
+  private long size;
+
+  public ChunkedOutputStream() {
+    this(BufferPool.getDefault());
+  }
+
+  public ChunkedOutputStream(BufferPool pool) {
+    this.pool = pool;
+  }
+
+  @Override
+  public void write(int b) {
+    if (current == null || !current.hasRemaining()) {
+      nextChunk();
+    }
+    current.put((byte) b);
+    size++;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    if (off < 0 || len < 0 || off + len > b.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    while (len > 0) {
+      if (current == null || !current.hasRemaining()) {
+        nextChunk();
+      }
+      int n = Math.min(len, current.remaining());
+      current.put(b, off, n);
+      off += n;
+      len -= n;
+      size += n;
+    }
+  }
+
+  private void nextChunk() {
+    current = pool.allocate();
+    chunks.add(current);
+  }
+
+  /**
+   * 已写入的字节数
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * 把已写入的数据逐块写到 out
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    byte[] transfer = null;
+    for (ByteBuffer chunk : chunks) {
+      if (chunk.hasArray()) {
+        out.write(chunk.array(), chunk.arrayOffset(), chunk.position());
+      } else {
+        if (transfer == null) {
+          transfer = new byte[TRANSFER_SIZE];
+        }
+        ByteBuffer data = readView(chunk);
+        while (data.hasRemaining()) {
+          int n = Math.min(transfer.length, data.remaining());
+          data.get(transfer, 0, n);
+          out.write(transfer, 0, n);
+        }
+      }
+    }
+  }
+
+  /**
+   * 用已写入的数据更新摘要
+   */
+  public void updateDigest(MessageDigest digest) {
+    for (ByteBuffer chunk : chunks) {
+      digest.update(readView(chunk));
+    }
+  }
+
+  /**
+   * 返回一个读取已写入数据的输入流，不拷贝数据，支持 mark/reset
+   *
+   * 在输入流读完之前不能调用 {@link #reset()} 或继续写入
+   */
+  public InputStream getInputStream() {
+    return new ByteBufferInputStream(getByteBuffers());
+  }
+
+  /**
+   * 返回已写入数据的只读视图，每个内存块对应一个 ByteBuffer，不拷贝数据
+   *
+   * 在视图使用完之前不能调用 {@link #reset()} 或继续写入
+   */
+  public List<ByteBuffer> getByteBuffers() {
+    List<ByteBuffer> views = new ArrayList<ByteBuffer>(chunks.size());
+    for (ByteBuffer chunk : chunks) {
+      views.add(readView(chunk).asReadOnlyBuffer());
+    }
+    return views;
+  }
+
+  /**
+   * 把已写入的数据拷贝到一个新的字节数组
+   */
+  public byte[] toByteArray() {
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Data too large for a byte array: " + size);
+    }
+    byte[] bytes = new byte[(int) size];
+    int pos = 0;
+    for (ByteBuffer chunk : chunks) {
+      ByteBuffer data = readView(chunk);
+      int n = data.remaining();
+      data.get(bytes, pos, n);
+      pos += n;
+    }
+    return bytes;
+  }
+
+  /**
+   * 清空数据并把所有内存块归还给内存池
+   */
+  public void reset() {
+    for (ByteBuffer chunk : chunks) {
+      pool.release(chunk);
+    }
+    chunks.clear();
+    current = null;
+    size = 0;
+  }
+
+  private static ByteBuffer readView(ByteBuffer chunk) {
+    ByteBuffer view = chunk.duplicate();
+    view.flip();
+    return view;
+  }
+}
@@ -24,10 +24,18 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.GregorianCalendar;
 import java.util.Locale;
 import java.util.SimpleTimeZone;
 import java.util.TimeZone;
 
+/**
+ * DATETIME、DATE 类型与 Java 时间对象之间的转换
+ *
+ * <p>1600 ~ 9999 年范围内的转换使用预先计算的 {@link ZoneOffsetTable} 做纯算术运算，
+ * 不再每次克隆 Calendar，并且无锁线程安全；范围以外的时间（以及默认 Calendar 不是公历的环境）
+ * 仍然使用原来基于 Calendar 的算法。两者的结果完全一致，包括历史上的夏令时特殊处理。</p>
+ */
 public class DateUtils {
 
   private static long TZ = +8;
@@ -35,6 +43,12 @@ public class DateUtils {
   private static Calendar GMT_CAL = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
   private static long MILLIS_OF_DAY = 24 * 60 * 60 * 1000;
 
+  private static final ZoneOffsetTable TABLE = buildTable();
+
+  // 参与运算的秒数和天数的上限，保证换算成毫秒时不会溢出
+  private static final long MAX_SECONDS = 1L << 40;
+  private static final long MAX_DAYS = 1L << 30;
+
   //Java unix time stamp of Current Timezone
   private static final long _0001_01_01 = getTime(1, 1, 1, 0, 0, 0);
   private static final long _0000_03_01 = getTime(0, 3, 1, 0, 0, 0);
@@ -92,7 +106,41 @@ public class DateUtils {
     return c.getTime().getTime();
   }
 
+  private static ZoneOffsetTable buildTable() {
+    if (CAL.getClass() != GregorianCalendar.class) {
+      return null;
+    }
+    try {
+      return ZoneOffsetTable.build(CAL.getTimeZone(), 1600, 10000);
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static boolean inTable(long millis) {
+    return TABLE != null && TABLE.contains(millis);
+  }
+
+  private static long floorDiv(long x, long y) {
+    long r = x / y;
+    if ((x % y != 0) && ((x ^ y) < 0)) {
+      r--;
+    }
+    return r;
+  }
+
+  private static long floorMod(long x, long y) {
+    return x - floorDiv(x, y) * y;
+  }
+
   public static long date2ms(Date date) {
+    long rawtime = date.getTime();
+    if (inTable(rawtime)) {
+      long wall = TABLE.utcToWall(rawtime);
+      return (floorDiv(wall, 1000) - TZ * 3600 - historyOffset(rawtime)) * 1000
+             + floorMod(wall, 1000);
+    }
+
     long ms;
     Calendar c = null;
 
@@ -104,6 +152,16 @@ public class DateUtils {
   }
 
   public static Date ms2date(long ms) {
+    long wall = rawtime2wall(ms / 1000);
+    if (inTable(wall)) {
+      long utc = TABLE.wallToUtc(wall);
+      wall = TABLE.utcToWall(utc);
+      wall = wall - floorMod(wall, 1000) + ms % 1000;
+      if (inTable(wall)) {
+        return new Date(TABLE.wallToUtc(wall));
+      }
+    }
+
     Date d = rawtime2date(ms / 1000);
     Calendar c = (Calendar) CAL.clone();
 
@@ -133,11 +191,15 @@ public class DateUtils {
     int year, mon, day, hour, min, sec;
     long ans;
 
+    rawtime = date.getTime();
+    if (inTable(rawtime)) {
+      return floorDiv(TABLE.utcToWall(rawtime), 1000) - TZ * 3600 - historyOffset(rawtime);
+    }
+
     c = (Calendar) CAL.clone();
     c.setTime(date);
     c.set(Calendar.MILLISECOND, 0);
 
-    rawtime = date.getTime();
     year = c.get(Calendar.YEAR);
     if (rawtime < _0001_01_01) {
       year = 0;
@@ -168,27 +230,79 @@ public class DateUtils {
     ans = ans - TZ * 3600;
 
     //adjust for history
+    ans = ans - historyOffset(rawtime);
+
+    return ans;
+  }
+
+  /**
+   * date2rawtime 中对历史时间的修正量，单位秒
+   *
+   * @param rawtime
+   *     Java 时间戳，单位毫秒
+   */
+  private static long historyOffset(long rawtime) {
     if (rawtime < _1928_01_01) {
-      ans = ans - 352;
+      return 352;
     } else if (rawtime >= _1940_06_03_01 && rawtime < _1940_10_01) {
-      ans = ans - 3600;
+      return 3600;
     } else if (rawtime >= _1941_03_16_01 && rawtime < _1941_10_01) {
-      ans = ans - 3600;
+      return 3600;
     } else if (rawtime >= _1986_05_04_01 && rawtime < _1986_09_14) {
-      ans = ans - 3600;
+      return 3600;
     } else if (rawtime >= _1987_04_12_01 && rawtime < _1987_09_13) {
-      ans = ans - 3600;
+      return 3600;
     } else if (rawtime >= _1988_04_10_01 && rawtime < _1988_09_11) {
-      ans = ans - 3600;
+      return 3600;
     } else if (rawtime >= _1989_04_16_01 && rawtime < _1989_09_17) {
-      ans = ans - 3600;
+      return 3600;
     } else if (rawtime >= _1990_04_15_01 && rawtime < _1990_09_16) {
-      ans = ans - 3600;
+      return 3600;
     } else if (rawtime >= _1991_04_14_01 && rawtime < _1991_09_15) {
-      ans = ans - 3600;
+      return 3600;
     }
+    return 0;
+  }
 
-    return ans;
+  /**
+   * rawtime2date 中对夏令时的修正量，单位秒
+   *
+   * @param rawtime
+   *     Unix 时间戳，单位秒
+   */
+  private static long dstOffset(long rawtime) {
+    if (rawtime >= _1940_06_03_01_C && rawtime < _1940_09_30_23_C) {
+      return 3600;
+    } else if (rawtime >= _1941_03_16_01_C && rawtime < _1941_09_30_23_C) {
+      return 3600;
+    } else if (rawtime >= _1986_05_04_01_C && rawtime < _1986_09_13_23_C) {
+      return 3600;
+    } else if (rawtime >= _1987_04_12_01_C && rawtime < _1987_09_12_23_C) {
+      return 3600;
+    } else if (rawtime >= _1988_04_10_01_C && rawtime < _1988_09_10_23_C) {
+      return 3600;
+    } else if (rawtime >= _1989_04_16_01_C && rawtime < _1989_09_16_23_C) {
+      return 3600;
+    } else if (rawtime >= _1990_04_15_01_C && rawtime < _1990_09_15_23_C) {
+      return 3600;
+    } else if (rawtime >= _1991_04_14_01_C && rawtime < _1991_09_14_23_C) {
+      return 3600;
+    }
+    return 0;
+  }
+
+  /**
+   * rawtime2date 得到的本地时间（以 GMT 毫秒数表示的各字段），超出可计算范围时返回 Long.MIN_VALUE
+   */
+  private static long rawtime2wall(long rawtime) {
+    if (rawtime < _0000_03_01_C || rawtime >= MAX_SECONDS) {
+      return Long.MIN_VALUE;
+    }
+    long wall = rawtime + TZ * 3600 + dstOffset(rawtime);
+    if (rawtime <= _1927_12_31_23_59_59_C) {
+      wall = wall + 352;
+    }
+    return wall * 1000;
   }
 
   /**
@@ -205,6 +319,11 @@ public class DateUtils {
     int year, mon, day, hour, min, sec, leap;
     long offset;
 
+    long wall = rawtime2wall(rawtime);
+    if (inTable(wall)) {
+      return new Date(TABLE.wallToUtc(wall));
+    }
+
     Calendar c = (Calendar) CAL.clone();
 
     if (rawtime < _0000_03_01_C) {
@@ -224,23 +343,7 @@ public class DateUtils {
       if (rawtime > _1927_12_31_23_59_59_C) {
         offset = offset - 352;
       }
-      if (rawtime >= _1940_06_03_01_C && rawtime < _1940_09_30_23_C) {
-        offset = offset + 3600;
-      } else if (rawtime >= _1941_03_16_01_C && rawtime < _1941_09_30_23_C) {
-        offset = offset + 3600;
-      } else if (rawtime >= _1986_05_04_01_C && rawtime < _1986_09_13_23_C) {
-        offset = offset + 3600;
-      } else if (rawtime >= _1987_04_12_01_C && rawtime < _1987_09_12_23_C) {
-        offset = offset + 3600;
-      } else if (rawtime >= _1988_04_10_01_C && rawtime < _1988_09_10_23_C) {
-        offset = offset + 3600;
-      } else if (rawtime >= _1989_04_16_01_C && rawtime < _1989_09_16_23_C) {
-        offset = offset + 3600;
-      } else if (rawtime >= _1990_04_15_01_C && rawtime < _1990_09_15_23_C) {
-        offset = offset + 3600;
-      } else if (rawtime >= _1991_04_14_01_C && rawtime < _1991_09_14_23_C) {
-        offset = offset + 3600;
-      }
+      offset = offset + dstOffset(rawtime);
       offset = offset + TZ * 60 * 60;
 
       sec = (int) (offset % 60);
@@ -307,12 +410,19 @@ public class DateUtils {
     return getRfc822DateFormat().parse(dateString);
   }
 
-  private static DateFormat getRfc822DateFormat() {
-    SimpleDateFormat rfc822DateFormat = new SimpleDateFormat(
-        RFC822_DATE_FORMAT, Locale.US);
-    rfc822DateFormat.setTimeZone(new SimpleTimeZone(0, "GMT"));
+  private static final ThreadLocal<DateFormat> RFC822_DATE_FORMATTER =
+      new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+          SimpleDateFormat rfc822DateFormat = new SimpleDateFormat(
+              RFC822_DATE_FORMAT, Locale.US);
+          rfc822DateFormat.setTimeZone(new SimpleTimeZone(0, "GMT"));
+          return rfc822DateFormat;
+        }
+      };
 
-    return rfc822DateFormat;
+  private static DateFormat getRfc822DateFormat() {
+    return RFC822_DATE_FORMATTER.get();
   }
 
   /**
@@ -323,6 +433,11 @@ public class DateUtils {
    * @return 偏移量
    */
   public static long getDayOffset(java.sql.Date date) {
+    long time = date.getTime();
+    if (inTable(time)) {
+      return floorDiv(TABLE.utcToWall(time), MILLIS_OF_DAY);
+    }
+
     Calendar localCal = (Calendar) CAL.clone();
     Calendar gmtCal = (Calendar) GMT_CAL.clone();
     localCal.clear();
@@ -342,6 +457,10 @@ public class DateUtils {
    * @return Date 对象
    */
   public static java.sql.Date fromDayOffset(long offset) {
+    if (offset > -MAX_DAYS && offset < MAX_DAYS && inTable(offset * MILLIS_OF_DAY)) {
+      return new java.sql.Date(TABLE.wallToUtc(offset * MILLIS_OF_DAY));
+    }
+
     Calendar localCal = (Calendar) CAL.clone();
     Calendar gmtCal = (Calendar) GMT_CAL.clone();
     localCal.clear();
@@ -0,0 +1,372 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.util;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重试决策：根据失败的类型决定是否重试，以及重试前的等待时间
+ *
+ * <p>
+ * 一个 RetryPolicy 对象是线程安全的，可以被多个请求共享，重试次数的上限由调用方自己控制。
+ * 被 {@link com.aliyun.odps.rest.RestClient}、{@link RetryStrategy}（tunnel 上传数据块）
+ * 和 {@link com.aliyun.odps.tunnel.io.TunnelRecordReader}（下载重连）使用。
+ * </p>
+ *
+ * <ul>
+ *   <li>等待时间按指数增长：第 n 次重试的上限为 min(maxDelay, baseDelay * 2^(n-1))，
+ *   实际等待时间在 [上限 / 2, 上限] 之间随机选取，避免大量客户端同时重试</li>
+ *   <li>连接失败（请求没有发出）和 429 限流对所有请求都重试；4xx 不重试；
+ *   其它错误（5xx、超时、连接中断等）只对幂等请求重试</li>
+ *   <li>重试预算（默认关闭）：每次重试消耗一个令牌，每次成功返还 budgetRefill 个令牌，令牌耗尽后不再重试，
+ *   避免服务端故障时重试放大请求量。同一个 RetryPolicy 的所有使用者共用预算，
+ *   可以通过 {@link #setBudget(int, double)} 开启</li>
+ * </ul>
+ *
+ * <p>
+ * 需要自定义错误分类或重试条件时，可以继承此类并覆盖 {@link #classify(Throwable, int)}
+ * 和 {@link #isRetryable(ErrorClass, boolean)}。
+ * </p>
+ */
+public class RetryPolicy {
+
+  /**
+   * 失败的分类
+   * CONNECT：建立连接失败，请求没有发出
+   * TIMEOUT：读写超时
+   * NETWORK：其它网络错误，请求可能已经被服务端处理
+   * THROTTLED：服务端限流（HTTP 429）
+   * SERVER：服务端错误（HTTP 5xx）
+   * CLIENT：请求错误（HTTP 4xx），重试不会成功
+   * UNKNOWN：其它错误
+   */
+  public enum ErrorClass {
+    CONNECT,
+    TIMEOUT,
+    NETWORK,
+    THROTTLED,
+    SERVER,
+    CLIENT,
+    UNKNOWN
+  }
+
+  /**
+   * 默认的初始等待时间, 500 毫秒
+   */
+  public static final long DEFAULT_BASE_DELAY = 500;
+
+  /**
+   * 默认的最大等待时间, 30 秒
+   */
+  public static final long DEFAULT_MAX_DELAY = 30 * 1000;
+
+  /**
+   * 开启重试预算时建议的令牌数, 20 次
+   */
+  public static final int DEFAULT_BUDGET = 20;
+
+  /**
+   * 开启重试预算时建议的每次成功返还的令牌数
+   */
+  public static final double DEFAULT_BUDGET_REFILL = 0.1;
+
+  /**
+   * 令牌按千分之一计数
+   */
+  private static final int TOKEN_SCALE = 1000;
+
+  private static final ThreadLocal<Random> RANDOMS = new ThreadLocal<Random>() {
+    @Override
+    protected Random initialValue() {
+      return new Random();
+    }
+  };
+
+  private volatile long baseDelay = DEFAULT_BASE_DELAY;
+  private volatile long maxDelay = DEFAULT_MAX_DELAY;
+  private volatile int budgetCapacity = 0;
+  private volatile int budgetRefill = 0;
+  private final AtomicInteger budget = new AtomicInteger(0);
+
+  private final AtomicLong[] retries = new AtomicLong[ErrorClass.values().length];
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong budgetExhausted = new AtomicLong();
+  private final AtomicLong backoffMillis = new AtomicLong();
+
+  public RetryPolicy() {
+    for (int i = 0; i < retries.length; ++i) {
+      retries[i] = new AtomicLong();
+    }
+  }
+
+  /**
+   * 设置等待时间
+   *
+   * @param baseDelay
+   *     第一次重试前的等待时间上限，单位毫秒
+   * @param maxDelay
+   *     等待时间上限，单位毫秒
+   */
+  public void setDelay(long baseDelay, long maxDelay) {
+    if (baseDelay < 0) {
+      throw new IllegalArgumentException("base delay must >= 0, now: " + baseDelay);
+    }
+    if (maxDelay < baseDelay) {
+      throw new IllegalArgumentException("max delay must >= base delay(" + baseDelay
+                                         + "), now: " + maxDelay);
+    }
+    this.baseDelay = baseDelay;
+    this.maxDelay = maxDelay;
+  }
+
+  public long getBaseDelay() {
+    return baseDelay;
+  }
+
+  public long getMaxDelay() {
+    return maxDelay;
+  }
+
+  /**
+   * 设置重试预算
+   *
+   * @param capacity
+   *     令牌数上限，也是初始的令牌数，为 0 时不限制重试
+   * @param refill
+   *     每次成功返还的令牌数
+   */
+  public void setBudget(int capacity, double refill) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("budget must >= 0, now: " + capacity);
+    }
+    if (refill < 0) {
+      throw new IllegalArgumentException("budget refill must >= 0, now: " + refill);
+    }
+    this.budgetCapacity = capacity * TOKEN_SCALE;
+    this.budgetRefill = (int) (refill * TOKEN_SCALE);
+    this.budget.set(budgetCapacity);
+  }
+
+  /**
+   * 获取剩余的重试预算
+   */
+  public double getRemainingBudget() {
+    return (double) budget.get() / TOKEN_SCALE;
+  }
+
+  /**
+   * 对失败进行分类
+   *
+   * @param error
+   *     失败的异常
+   * @param status
+   *     HTTP 状态码，没有收到响应时为 0
+   * @return 失败的分类
+   */
+  protected ErrorClass classify(Throwable error, int status) {
+    if (status == 429) {
+      return ErrorClass.THROTTLED;
+    }
+    if (status >= 500) {
+      return ErrorClass.SERVER;
+    }
+    if (status >= 400) {
+      return ErrorClass.CLIENT;
+    }
+    for (Throwable t = error; t != null; t = t.getCause()) {
+      if (t instanceof ConnectException || t instanceof NoRouteToHostException) {
+        return ErrorClass.CONNECT;
+      }
+      if (t instanceof SocketTimeoutException) {
+        return ErrorClass.TIMEOUT;
+      }
+      if (t instanceof IOException) {
+        return ErrorClass.NETWORK;
+      }
+    }
+    return ErrorClass.UNKNOWN;
+  }
+
+  /**
+   * 判断某类失败是否可以重试
+   *
+   * @param errorClass
+   *     失败的分类
+   * @param idempotent
+   *     请求是否幂等，即重复执行和执行一次的效果相同
+   * @return 是否可以重试
+   */
+  protected boolean isRetryable(ErrorClass errorClass, boolean idempotent) {
+    switch (errorClass) {
+      case CONNECT:
+      case THROTTLED:
+        return true;
+      case CLIENT:
+        return false;
+      default:
+        return idempotent;
+    }
+  }
+
+  /**
+   * 计算第 attempt 次重试前的等待时间
+   *
+   * @param errorClass
+   *     失败的分类
+   * @param attempt
+   *     第几次重试，从 1 开始
+   * @return 等待时间，单位毫秒
+   */
+  protected long backoff(ErrorClass errorClass, int attempt) {
+    long cap = baseDelay;
+    for (int i = 1; i < attempt && cap < maxDelay; ++i) {
+      cap <<= 1;
+    }
+    cap = Math.min(cap, maxDelay);
+    if (cap <= 1) {
+      return cap;
+    }
+    long half = cap / 2;
+    return half + (long) (RANDOMS.get().nextDouble() * (cap - half));
+  }
+
+  /**
+   * 处理一次失败，决定是否重试
+   *
+   * @param error
+   *     失败的异常
+   * @param status
+   *     HTTP 状态码，没有收到响应时为 0
+   * @param attempt
+   *     即将进行的是第几次重试，从 1 开始
+   * @param idempotent
+   *     请求是否幂等
+   * @return 重试前需要等待的时间，单位毫秒；返回负数表示不应该重试
+   */
+  public long onFailure(Throwable error, int status, int attempt, boolean idempotent) {
+    ErrorClass errorClass = classify(error, status);
+    if (!isRetryable(errorClass, idempotent)) {
+      rejected.incrementAndGet();
+      return -1;
+    }
+    if (!acquireBudget()) {
+      budgetExhausted.incrementAndGet();
+      return -1;
+    }
+    retries[errorClass.ordinal()].incrementAndGet();
+    return backoff(errorClass, attempt);
+  }
+
+  /**
+   * 记录一次成功，返还部分重试预算
+   */
+  public void onSuccess() {
+    int refill = budgetRefill;
+    if (refill == 0) {
+      return;
+    }
+    while (true) {
+      int current = budget.get();
+      int next = Math.min(budgetCapacity, current + refill);
+      if (next == current || budget.compareAndSet(current, next)) {
+        return;
+      }
+    }
+  }
+
+  private boolean acquireBudget() {
+    if (budgetCapacity == 0) {
+      return true;
+    }
+    while (true) {
+      int current = budget.get();
+      if (current < TOKEN_SCALE) {
+        return false;
+      }
+      if (budget.compareAndSet(current, current - TOKEN_SCALE)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * 等待重试，并记录等待的时间
+   *
+   * @param millis
+   *     等待时间，单位毫秒
+   * @throws InterruptedException
+   */
+  public void sleep(long millis) throws InterruptedException {
+    if (millis <= 0) {
+      return;
+    }
+    long start = System.currentTimeMillis();
+    try {
+      Thread.sleep(millis);
+    } finally {
+      backoffMillis.addAndGet(System.currentTimeMillis() - start);
+    }
+  }
+
+  /**
+   * 获取总的重试次数
+   */
+  public long getRetryCount() {
+    long count = 0;
+    for (AtomicLong c : retries) {
+      count += c.get();
+    }
+    return count;
+  }
+
+  /**
+   * 获取某类失败的重试次数
+   */
+  public long getRetryCount(ErrorClass errorClass) {
+    return retries[errorClass.ordinal()].get();
+  }
+
+  /**
+   * 获取因为失败不可重试而放弃重试的次数
+   */
+  public long getRejectedCount() {
+    return rejected.get();
+  }
+
+  /**
+   * 获取因为重试预算耗尽而放弃重试的次数
+   */
+  public long getBudgetExhaustedCount() {
+    return budgetExhausted.get();
+  }
+
+  /**
+   * 获取重试前等待的总时间，单位毫秒
+   */
+  public long getTotalBackoffMillis() {
+    return backoffMillis.get();
+  }
+}
@@ -74,11 +74,18 @@ public class RetryStrategy {
 
   private int initialInterval;
 
+  /**
+   * 不为 null 时由它决定是否重试以及等待时间，interval 和 strategy 不再生效
+   */
+  private RetryPolicy policy;
+
   /**
    * 总共消耗在回避上的时间，秒
    */
   private int totalBackupTime;
 
+  private long totalBackupMillis;
+
   /**
    * 构造重试策略
    *
@@ -101,6 +108,34 @@ public class RetryStrategy {
     this.attempts = 0;
   }
 
+  /**
+   * 以另一个重试策略的配置构造一个新的重试策略，重试次数和回避时间从零开始计算
+   *
+   * @param other 作为模板的重试策略
+   */
+  public RetryStrategy(RetryStrategy other) {
+    this(other.limit, other.initialInterval, other.strategy);
+    this.policy = other.policy;
+  }
+
+  /**
+   * 构造由 {@link RetryPolicy} 决定等待时间的重试策略
+   *
+   * <p>被重试的逻辑视为幂等的，policy 判定不可重试（例如预算耗尽）时 onFailure 直接抛出异常。</p>
+   *
+   * <p>多个 RetryStrategy 可以共享同一个 policy，重试次数各自计算。</p>
+   *
+   * @param limit 尝试次数上限
+   * @param policy 重试决策
+   */
+  public RetryStrategy(int limit, RetryPolicy policy) {
+    this(limit, DEFAULT_BACKOFF_INTERVAL, BackoffStrategy.EXPONENTIAL_BACKOFF);
+    if (policy == null) {
+      throw new IllegalArgumentException("policy must not be null");
+    }
+    this.policy = policy;
+  }
+
   /**
    * 构造重试策略
    *
@@ -131,6 +166,8 @@ public class RetryStrategy {
    * 该方法会忽略一定次数的失败，并策略性地进行回避，然后进入后续的逻辑（重试）
    * 直到达到重试上限时会抛出异常。
    *
+   * <p>等待期间线程被中断时恢复中断标记，并抛出异常结束重试。</p>
+   *
    * @param err 用户 catch 到的异常
    */
   public void onFailure(Exception err) throws RetryExceedLimitException {
@@ -138,6 +175,22 @@ public class RetryStrategy {
       throw new RetryExceedLimitException(attempts, err);
     }
 
+    if (policy != null) {
+      long wait = policy.onFailure(err, 0, attempts, true);
+      if (wait < 0) {
+        throw new RetryExceedLimitException(attempts, err);
+      }
+      try {
+        policy.sleep(wait);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RetryExceedLimitException(attempts, err);
+      }
+      totalBackupMillis += wait;
+      totalBackupTime = (int) (totalBackupMillis / 1000);
+      return;
+    }
+
     try {
       Thread.sleep(interval * 1000);
       totalBackupTime += interval;
@@ -147,7 +200,9 @@ public class RetryStrategy {
       if (strategy.equals(BackoffStrategy.LINEAR_BACKOFF)) {
         interval += initialInterval;
       }
-    } catch (InterruptedException ignore) {
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RetryExceedLimitException(attempts, err);
     }
   }
 
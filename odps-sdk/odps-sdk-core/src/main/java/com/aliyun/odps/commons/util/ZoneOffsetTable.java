@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * 时区偏移表，把一个时区在指定年份范围内的偏移变化预先计算成有序数组，
+ * 之后的 UTC 时间与本地时间（wall time）之间的换算只需要一次二分查找和加减法
+ *
+ * <p>表构建完成后不可变，可以被多个线程无锁共享。</p>
+ *
+ * <p>本地时间换算为 UTC 时的偏移取自 {@link GregorianCalendar} 自身的计算结果，
+ * 因此落在夏令时跳变区间（不存在或者重复的本地时间）内的换算结果与
+ * 用 Calendar 设置各字段后调用 getTime 完全相同。</p>
+ *
+ * <p>构建时以一周为步长探测偏移变化，再二分定位到毫秒，间隔小于一周的两次相互抵消的变化无法被发现。
+ * 不再使用夏令时的时区在 2100 年以后改为以一年为步长探测。</p>
+ */
+public final class ZoneOffsetTable {
+
+  private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+  private static final long PROBE_STEP = 7 * MILLIS_PER_DAY;
+  private static final long SPARSE_PROBE_STEP = 365 * MILLIS_PER_DAY;
+  private static final int SPARSE_PROBE_FROM_YEAR = 2100;
+  private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+
+  private final TimeZone zone;
+  private final long start;
+  private final long end;
+
+  // utcOffsets[i] 从 utcTransitions[i] 开始生效
+  private final long[] utcTransitions;
+  private final int[] utcOffsets;
+
+  // wallOffsets[i] 对 >= wallTransitions[i] 的本地时间生效
+  private final long[] wallTransitions;
+  private final int[] wallOffsets;
+
+  private ZoneOffsetTable(TimeZone zone, long start, long end,
+                          long[] utcTransitions, int[] utcOffsets,
+                          long[] wallTransitions, int[] wallOffsets) {
+    this.zone = zone;
+    this.start = start;
+    this.end = end;
+    this.utcTransitions = utcTransitions;
+    this.utcOffsets = utcOffsets;
+    this.wallTransitions = wallTransitions;
+    this.wallOffsets = wallOffsets;
+  }
+
+  /**
+   * 构建时区偏移表
+   *
+   * @param zone
+   *     时区
+   * @param fromYear
+   *     起始年份（包含），不能早于 1583 年，保证表内只有公历日期
+   * @param toYear
+   *     结束年份（不包含）
+   * @return 偏移表，覆盖 [fromYear-01-01, toYear-01-01) 范围内的 UTC 时间和本地时间
+   */
+  public static ZoneOffsetTable build(TimeZone zone, int fromYear, int toYear) {
+    if (fromYear < 1583 || toYear <= fromYear) {
+      throw new IllegalArgumentException(
+          "Invalid year range: [" + fromYear + ", " + toYear + ")");
+    }
+
+    zone = (TimeZone) zone.clone();
+    Calendar gmt = new GregorianCalendar(GMT);
+    gmt.clear();
+    gmt.set(fromYear, Calendar.JANUARY, 1);
+    long from = gmt.getTimeInMillis();
+    gmt.clear();
+    gmt.set(toYear, Calendar.JANUARY, 1);
+    long to = gmt.getTimeInMillis();
+
+    // 两侧各留出一天，保证范围内的本地时间对应的 UTC 时间也在探测范围内
+    long probeFrom = from - MILLIS_PER_DAY;
+    long probeTo = to + MILLIS_PER_DAY;
+    long sparseFrom = Long.MAX_VALUE;
+    if (!zone.useDaylightTime()) {
+      gmt.clear();
+      gmt.set(SPARSE_PROBE_FROM_YEAR, Calendar.JANUARY, 1);
+      sparseFrom = gmt.getTimeInMillis();
+    }
+
+    List<Long> transitions = new ArrayList<Long>();
+    List<Integer> offsets = new ArrayList<Integer>();
+    int prev = zone.getOffset(probeFrom);
+    transitions.add(Long.MIN_VALUE);
+    offsets.add(prev);
+    long t = probeFrom;
+    while (t < probeTo) {
+      long next = Math.min(t + (t < sparseFrom ? PROBE_STEP : SPARSE_PROBE_STEP), probeTo);
+      int cur = zone.getOffset(next);
+      if (cur == prev) {
+        t = next;
+        continue;
+      }
+      long lo = t;
+      long hi = next;
+      while (hi - lo > 1) {
+        long mid = lo + (hi - lo) / 2;
+        if (zone.getOffset(mid) == prev) {
+          lo = mid;
+        } else {
+          hi = mid;
+        }
+      }
+      prev = zone.getOffset(hi);
+      transitions.add(hi);
+      offsets.add(prev);
+      t = hi;
+    }
+
+    long[] utcTransitions = toLongArray(transitions);
+    int[] utcOffsets = toIntArray(offsets);
+
+    // 本地时间换算 UTC 所用的偏移只会在 UTC 偏移变化点附近改变
+    Calendar local = new GregorianCalendar(zone);
+    transitions.clear();
+    offsets.clear();
+    prev = wallOffset(local, gmt, probeFrom);
+    long last = probeFrom;
+    transitions.add(Long.MIN_VALUE);
+    offsets.add(prev);
+    for (int i = 1; i < utcTransitions.length; ++i) {
+      int before = utcOffsets[i - 1];
+      int after = utcOffsets[i];
+      long lo = Math.max(last, utcTransitions[i] + Math.min(before, after) - MILLIS_PER_DAY);
+      long hi = utcTransitions[i] + Math.max(before, after) + MILLIS_PER_DAY;
+      if (wallOffset(local, gmt, lo) != prev) {
+        throw new IllegalStateException("Unexpected wall offset near " + utcTransitions[i]);
+      }
+      int cur = wallOffset(local, gmt, hi);
+      if (cur == prev) {
+        continue;
+      }
+      while (hi - lo > 1) {
+        long mid = lo + (hi - lo) / 2;
+        if (wallOffset(local, gmt, mid) == prev) {
+          lo = mid;
+        } else {
+          hi = mid;
+        }
+      }
+      prev = cur;
+      last = hi;
+      transitions.add(hi);
+      offsets.add(cur);
+    }
+
+    return new ZoneOffsetTable(zone, from, to, utcTransitions, utcOffsets,
+                               toLongArray(transitions), toIntArray(offsets));
+  }
+
+  /**
+   * Calendar 把本地时间 wall 换算成 UTC 时使用的偏移
+   */
+  private static int wallOffset(Calendar local, Calendar gmt, long wall) {
+    gmt.setTimeInMillis(wall);
+    local.clear();
+    local.set(gmt.get(Calendar.YEAR), gmt.get(Calendar.MONTH), gmt.get(Calendar.DAY_OF_MONTH),
+              gmt.get(Calendar.HOUR_OF_DAY), gmt.get(Calendar.MINUTE), gmt.get(Calendar.SECOND));
+    local.set(Calendar.MILLISECOND, gmt.get(Calendar.MILLISECOND));
+    return (int) (wall - local.getTimeInMillis());
+  }
+
+  private static long[] toLongArray(List<Long> list) {
+    long[] array = new long[list.size()];
+    for (int i = 0; i < array.length; ++i) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
+  private static int[] toIntArray(List<Integer> list) {
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; ++i) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
+  private static int indexOf(long[] transitions, long millis) {
+    int idx = Arrays.binarySearch(transitions, millis);
+    return idx >= 0 ? idx : -idx - 2;
+  }
+
+  public TimeZone getTimeZone() {
+    return (TimeZone) zone.clone();
+  }
+
+  /**
+   * 判断 UTC 时间或本地时间是否在表的覆盖范围内
+   *
+   * @param millis
+   *     UTC 时间或本地时间，单位毫秒
+   * @return 在范围内返回 true
+   */
+  public boolean contains(long millis) {
+    return millis >= start && millis < end;
+  }
+
+  /**
+   * 获取 UTC 时间对应的时区偏移，与 {@link TimeZone#getOffset(long)} 相同
+   *
+   * @param utc
+   *     UTC 时间，需要在表的覆盖范围内
+   * @return 偏移，单位毫秒
+   */
+  public int getOffset(long utc) {
+    return utcOffsets[indexOf(utcTransitions, utc)];
+  }
+
+  /**
+   * UTC 时间换算为本地时间
+   *
+   * @param utc
+   *     UTC 时间，需要在表的覆盖范围内
+   * @return 本地时间，即按公历计算时与本地各字段相同的 GMT 毫秒数
+   */
+  public long utcToWall(long utc) {
+    return utc + getOffset(utc);
+  }
+
+  /**
+   * 本地时间换算为 UTC 时间，结果与 {@link GregorianCalendar} 设置各字段后得到的时间相同
+   *
+   * @param wall
+   *     本地时间，需要在表的覆盖范围内
+   * @return UTC 时间，单位毫秒
+   */
+  public long wallToUtc(long wall) {
+    return wall - wallOffsets[indexOf(wallTransitions, wall)];
+  }
+}
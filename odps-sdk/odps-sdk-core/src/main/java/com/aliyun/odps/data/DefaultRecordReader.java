@@ -45,6 +45,7 @@ public class DefaultRecordReader implements RecordReader {
   private static final String CHARSET = "utf-8";
   private TableSchema tableSchema;
   private Column[] schemaColumns = null;
+  private SchemaIndex schemaIndex = null;
   private InputStream is;
 
   /**
@@ -87,7 +88,7 @@ public class DefaultRecordReader implements RecordReader {
     if (schemaColumns == null) {
       loadSchema();
     }
-    ArrayRecord ret = new ArrayRecord(schemaColumns);
+    ArrayRecord ret = new ArrayRecord(schemaIndex);
     String[] data = load();
     if (data == null) {
       return null;
@@ -165,6 +166,7 @@ public class DefaultRecordReader implements RecordReader {
         schemaColumns[i] = tableSchema.getColumn(schema[i]);
       }
     }
+    schemaIndex = SchemaIndex.of(schemaColumns);
   }
 
   private String[] load() throws IOException {
@@ -3,17 +3,21 @@
  */
 package com.aliyun.odps.data;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Iterator;
 
 import com.aliyun.odps.TableSchema;
 
 /**
  * ResultSet for SQLTask
+ *
+ * 底层迭代器持有网络连接时，没有读完就不再使用的 ResultSet 需要调用 {@link #close()} 释放连接
  * 
  * @author emerson
  *
  */
-public class ResultSet implements Iterable<Record>, Iterator<Record> {
+public class ResultSet implements Iterable<Record>, Iterator<Record>, Closeable {
 
   private Iterator<Record> recordIterator;
   private long recordCount;
@@ -52,4 +56,14 @@ public class ResultSet implements Iterable<Record>, Iterator<Record> {
   public long getRecordCount() {
     return recordCount;
   }
+
+  /**
+   * 释放底层迭代器持有的资源，读完全部记录后会自动释放
+   */
+  @Override
+  public void close() throws IOException {
+    if (recordIterator instanceof Closeable) {
+      ((Closeable) recordIterator).close();
+    }
+  }
 }
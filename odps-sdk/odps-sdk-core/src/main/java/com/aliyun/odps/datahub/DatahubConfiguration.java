@@ -62,6 +62,7 @@ public class DatahubConfiguration extends GeneralConfiguration {
 
     odpsServiceClient.setReadTimeout(getSocketTimeout());
     odpsServiceClient.setConnectTimeout(getSocketConnectTimeout());
+    odpsServiceClient.setChunkSize(getChunkSize());
     odpsServiceClient.setEndpoint(getEndpoint(projectName).toString());
 
     return odpsServiceClient;
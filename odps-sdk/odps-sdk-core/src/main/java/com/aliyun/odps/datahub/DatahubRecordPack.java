@@ -19,17 +19,25 @@
 
 package com.aliyun.odps.datahub;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.List;
 
 import com.aliyun.odps.TableSchema;
 import com.aliyun.odps.commons.proto.ProtobufRecordStreamWriter;
+import com.aliyun.odps.commons.util.BufferPool;
+import com.aliyun.odps.commons.util.ChunkedOutputStream;
 import com.aliyun.odps.data.Record;
 
-
+/**
+ * 数据保存在从 {@link BufferPool} 借来的内存块中，{@link #clear()} 时归还给内存池
+ */
 public class DatahubRecordPack {
 
-  private ByteArrayOutputStream byteArrayOutputStream;
+  private ChunkedOutputStream byteArrayOutputStream;
   private ProtobufRecordStreamWriter protobufRecordStreamWriter;
   private TableSchema recordSchema;
   private long recordCount;
@@ -43,8 +51,20 @@ public class DatahubRecordPack {
    * @throws IOException 
    */
   public DatahubRecordPack(TableSchema recordSchema) throws IOException {
+    this(recordSchema, BufferPool.getDefault());
+  }
+
+  /**
+   * 新建一个DatahubRecordPack，缓冲区从 pool 中申请
+   *
+   * @param recordSchema
+   * @param pool
+   *     {@link BufferPool}
+   * @throws IOException
+   */
+  public DatahubRecordPack(TableSchema recordSchema, BufferPool pool) throws IOException {
     this.recordSchema = recordSchema;
-    this.byteArrayOutputStream = new ByteArrayOutputStream();
+    this.byteArrayOutputStream = new ChunkedOutputStream(pool);
     this.recordCount = 0;
     this.protobufRecordStreamWriter =
         new ProtobufRecordStreamWriter(recordSchema, byteArrayOutputStream);
@@ -89,13 +109,64 @@ public class DatahubRecordPack {
     packSealed = false;
   }
 
+  /**
+   * 获取 pack 数据的一份拷贝，调用后 pack 不能再追加记录
+   */
   public byte[] getByteArray() throws IOException {
+    seal();
+    return byteArrayOutputStream.toByteArray();
+  }
+
+  /**
+   * 获取 pack 数据的字节数，调用后 pack 不能再追加记录
+   */
+  public long getByteSize() throws IOException {
+    seal();
+    return byteArrayOutputStream.size();
+  }
+
+  /**
+   * 把 pack 数据逐块写到 out，不做合并拷贝，调用后 pack 不能再追加记录
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    seal();
+    byteArrayOutputStream.writeTo(out);
+  }
+
+  /**
+   * 返回读取 pack 数据的输入流，不做合并拷贝，调用后 pack 不能再追加记录
+   *
+   * 输入流读完之前不能调用 {@link #clear()}
+   */
+  public InputStream getInputStream() throws IOException {
+    seal();
+    return byteArrayOutputStream.getInputStream();
+  }
+
+  /**
+   * 返回 pack 数据的只读视图，不做合并拷贝，调用后 pack 不能再追加记录
+   *
+   * 视图使用完之前不能调用 {@link #clear()}
+   */
+  public List<ByteBuffer> getByteBuffers() throws IOException {
+    seal();
+    return byteArrayOutputStream.getByteBuffers();
+  }
+
+  /**
+   * 用 pack 数据更新摘要，调用后 pack 不能再追加记录
+   */
+  public void updateDigest(MessageDigest digest) throws IOException {
+    seal();
+    byteArrayOutputStream.updateDigest(digest);
+  }
+
+  private void seal() throws IOException {
     packSealed = true;
     if (protobufRecordStreamWriter != null) {
       protobufRecordStreamWriter.close();
       protobufRecordStreamWriter = null;
     }
-    return byteArrayOutputStream.toByteArray();
   }
 
   public long getRecordCount() {
@@ -167,14 +167,12 @@ public class DatahubWriter {
     HashMap<String, String> headers = new HashMap<String, String>(this.headers);
     headers.put(DatahubHttpHeaders.CONTENT_ENCODING, "deflate");
     try {
-      byte[] bytes = recordPack.getByteArray();
-      
-      if (null == bytes || 0 == bytes.length) {
+      if (0 == recordPack.getByteSize()) {
         throw new DatahubException("record pack is empty.");
       }
 
+      // pack_data 由 XStreamPackBody 直接引用 recordPack 的数据，这里只序列化其余字段
       XStreamPack.Builder pack = XStreamPack.newBuilder();
-      pack.setPackData(ByteString.copyFrom(bytes));
 
       if (null != meta) {
         pack.setPackMeta(ByteString.copyFrom(meta));
@@ -196,17 +194,17 @@ public class DatahubWriter {
       }
       pack.setKvMeta(kvMap);
 
-      bytes = pack.build().toByteArray();
+      XStreamPackBody body = new XStreamPackBody(recordPack, pack.buildPartial().toByteArray());
 
       if (partitionSpec != null && partitionSpec.toString().length() > 0) {
         params.put(DatahubConstants.RES_PARTITION, partitionSpec.toString().replaceAll("'", ""));
       }
       
       params.put(DatahubConstants.RECORD_COUNT, String.valueOf(recordPack.getRecordCount()));
-      headers.put(Headers.CONTENT_MD5, generatorMD5(bytes));
+      headers.put(Headers.CONTENT_MD5, body.getContentMD5(messageDigest));
       Response resp = datahubServiceClient.requestForRawResponse(path, "PUT", params, headers,
-                                                                new ByteArrayInputStream(bytes),
-                                                                bytes.length);
+                                                                body.getInputStream(),
+                                                                body.getLength());
       if (!resp.isOK()) {
         //TODO exception
         DatahubException ex = new DatahubException(new ByteArrayInputStream(resp.getBody()));
@@ -239,14 +237,5 @@ public class DatahubWriter {
     }
   }
 
-  private String generatorMD5(byte[] bytes) {
-    byte[] digest = messageDigest.digest(bytes);
-    StringBuilder sb = new StringBuilder();
-    for (byte b : digest) {
-      sb.append(String.format("%02X", b));
-    }
-    return sb.toString();
-  }
-
 }
 
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.datahub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.aliyun.odps.commons.util.ByteBufferInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+/**
+ * XStreamPack 序列化后的请求体，pack_data 直接引用 {@link DatahubRecordPack} 的内存块，不做拷贝
+ *
+ * 序列化结果与 XStreamPack.newBuilder().setPackData(...) 之后 toByteArray() 一致：
+ * pack_data 是 1 号字段，protobuf 按字段号顺序输出，因此依次输出 pack_data 的 tag 和长度、pack 数据、
+ * 其余字段序列化的结果即可。
+ */
+public class XStreamPackBody {
+
+  private static final int PACK_DATA_FIELD_NUMBER = 1;
+
+  private final List<ByteBuffer> buffers;
+  private final int length;
+
+  /**
+   * @param pack
+   *     {@link DatahubRecordPack}，调用后不能再追加记录，请求发送完成前不能 clear
+   * @param otherFields
+   *     除 pack_data 之外的其余字段序列化后的结果，可以由不设置 pack_data 的
+   *     XStreamPack.Builder 调用 buildPartial().toByteArray() 得到，为 null 表示没有其余字段
+   * @throws IOException
+   */
+  public XStreamPackBody(DatahubRecordPack pack, byte[] otherFields) throws IOException {
+    long size = pack.getByteSize();
+    int otherLength = otherFields == null ? 0 : otherFields.length;
+    // tag 和长度最多占 16 字节
+    if (size + otherLength + 16 > Integer.MAX_VALUE) {
+      throw new IOException("Pack too large: " + size);
+    }
+
+    ByteArrayOutputStream header = new ByteArrayOutputStream(16);
+    CodedOutputStream out = CodedOutputStream.newInstance(header);
+    out.writeTag(PACK_DATA_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    out.writeRawVarint32((int) size);
+    out.flush();
+
+    buffers = new ArrayList<ByteBuffer>();
+    buffers.add(ByteBuffer.wrap(header.toByteArray()));
+    buffers.addAll(pack.getByteBuffers());
+    if (otherLength > 0) {
+      buffers.add(ByteBuffer.wrap(otherFields));
+    }
+    length = header.size() + (int) size + otherLength;
+  }
+
+  /**
+   * 请求体的字节数
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * 计算请求体的 MD5，返回大写的十六进制字符串
+   */
+  public String getContentMD5(MessageDigest digest) {
+    digest.reset();
+    for (ByteBuffer buffer : buffers) {
+      digest.update(buffer.duplicate());
+    }
+    StringBuilder sb = new StringBuilder();
+    for (byte b : digest.digest()) {
+      sb.append(String.format("%02X", b));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * 返回读取请求体的输入流，支持 mark/reset 以便重试时重发
+   */
+  public InputStream getInputStream() {
+    List<ByteBuffer> views = new ArrayList<ByteBuffer>(buffers.size());
+    for (ByteBuffer buffer : buffers) {
+      views.add(buffer.duplicate());
+    }
+    return new ByteBufferInputStream(views);
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.rest;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.aliyun.odps.commons.util.DaemonThreadFactory;
+
+/**
+ * 执行 {@link RestClient} 异步请求的线程池
+ *
+ * <p>
+ * 提交的请求先进入所属 endpoint 的等待队列，同一个 endpoint 同时执行的请求数不超过
+ * maxRequestsPerEndpoint，所有 endpoint 同时执行的请求数不超过线程数。等待中的请求不占用线程，
+ * 因此少量线程可以承载成千上万个未完成的请求。
+ * </p>
+ *
+ * <p>
+ * 通过返回的 {@link Future#cancel(boolean)} 取消请求：还在等待的请求直接移出队列；
+ * 已经开始的请求，mayInterruptIfRunning 为 true 时中断执行线程，结果被丢弃。
+ * </p>
+ *
+ * <p>多个 RestClient 可以共享同一个实例，未指定时使用 {@link #getDefault()}。</p>
+ */
+public class AsyncRequestExecutor {
+
+  /**
+   * 默认线程数
+   */
+  public static final int DEFAULT_THREADS = 8;
+
+  /**
+   * 每个 endpoint 默认最多同时执行的请求数
+   */
+  public static final int DEFAULT_MAX_REQUESTS_PER_ENDPOINT = 8;
+
+  /**
+   * 执行任务的线程在任务期间设置为 true
+   */
+  private static final ThreadLocal<Boolean> IN_TASK = new ThreadLocal<Boolean>();
+
+  private static class DefaultHolder {
+
+    static final AsyncRequestExecutor INSTANCE =
+        new AsyncRequestExecutor(DEFAULT_THREADS, DEFAULT_MAX_REQUESTS_PER_ENDPOINT);
+  }
+
+  private static class EndpointQueue {
+
+    final LinkedList<Task<?>> pending = new LinkedList<Task<?>>();
+    int running;
+  }
+
+  private class Task<T> extends FutureTask<T> {
+
+    final String endpoint;
+
+    Task(String endpoint, Callable<T> callable) {
+      super(callable);
+      this.endpoint = endpoint;
+    }
+
+    @Override
+    public void run() {
+      IN_TASK.set(Boolean.TRUE);
+      try {
+        super.run();
+      } finally {
+        IN_TASK.remove();
+        finished(this);
+      }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled) {
+        removePending(this);
+      }
+      return cancelled;
+    }
+
+    void fail(Throwable t) {
+      setException(t);
+    }
+  }
+
+  private final ThreadPoolExecutor executor;
+  private final int maxRequestsPerEndpoint;
+  private final Map<String, EndpointQueue> queues = new HashMap<String, EndpointQueue>();
+
+  /**
+   * 构造线程池
+   *
+   * @param threads
+   *     线程数，空闲 60 秒的线程会被回收
+   * @param maxRequestsPerEndpoint
+   *     每个 endpoint 最多同时执行的请求数
+   */
+  public AsyncRequestExecutor(int threads, int maxRequestsPerEndpoint) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must >= 1, now: " + threads);
+    }
+    if (maxRequestsPerEndpoint < 1) {
+      throw new IllegalArgumentException(
+          "max requests per endpoint must >= 1, now: " + maxRequestsPerEndpoint);
+    }
+    this.maxRequestsPerEndpoint = maxRequestsPerEndpoint;
+    this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                           new LinkedBlockingQueue<Runnable>(),
+                                           new DaemonThreadFactory("odps-rest-async"));
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * 获取进程内共享的默认实例，使用守护线程
+   */
+  public static AsyncRequestExecutor getDefault() {
+    return DefaultHolder.INSTANCE;
+  }
+
+  /**
+   * 当前线程是否正在执行某个 AsyncRequestExecutor 的任务
+   *
+   * <p>任务中提交并同步等待同一个线程池的其它任务时，如果线程或者 endpoint 并发数已经被等待中的任务占满，
+   * 被等待的任务永远得不到执行。这种情况下调用方应该直接在当前线程执行。</p>
+   */
+  public static boolean isExecutorThread() {
+    return IN_TASK.get() != null;
+  }
+
+  public int getMaxRequestsPerEndpoint() {
+    return maxRequestsPerEndpoint;
+  }
+
+  /**
+   * 提交一个访问指定 endpoint 的任务
+   *
+   * @param endpoint
+   *     任务访问的 endpoint
+   * @param task
+   *     任务
+   * @return 任务结果，任务抛出的异常通过 {@link java.util.concurrent.ExecutionException} 抛出
+   * @throws RejectedExecutionException
+   *     已经调用过 {@link #shutdown()}
+   */
+  public <T> Future<T> submit(String endpoint, Callable<T> task) {
+    if (executor.isShutdown()) {
+      throw new RejectedExecutionException("AsyncRequestExecutor is shut down.");
+    }
+    Task<T> t = new Task<T>(endpoint == null ? "" : endpoint, task);
+    synchronized (this) {
+      getQueue(t.endpoint).pending.addLast(t);
+      dispatch(t.endpoint);
+    }
+    return t;
+  }
+
+  /**
+   * 获取指定 endpoint 正在执行的任务数
+   */
+  public synchronized int getRunningCount(String endpoint) {
+    EndpointQueue queue = queues.get(endpoint);
+    return queue == null ? 0 : queue.running;
+  }
+
+  /**
+   * 获取指定 endpoint 等待执行的任务数
+   */
+  public synchronized int getPendingCount(String endpoint) {
+    EndpointQueue queue = queues.get(endpoint);
+    return queue == null ? 0 : queue.pending.size();
+  }
+
+  /**
+   * 关闭线程池，已提交的任务继续执行，不再接受新任务
+   */
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  private EndpointQueue getQueue(String endpoint) {
+    EndpointQueue queue = queues.get(endpoint);
+    if (queue == null) {
+      queue = new EndpointQueue();
+      queues.put(endpoint, queue);
+    }
+    return queue;
+  }
+
+  private void dispatch(String endpoint) {
+    EndpointQueue queue = getQueue(endpoint);
+    while (queue.running < maxRequestsPerEndpoint && !queue.pending.isEmpty()) {
+      Task<?> t = queue.pending.removeFirst();
+      queue.running++;
+      try {
+        executor.execute(t);
+      } catch (RejectedExecutionException e) {
+        queue.running--;
+        t.fail(e);
+      }
+    }
+    if (queue.running == 0 && queue.pending.isEmpty()) {
+      queues.remove(endpoint);
+    }
+  }
+
+  private synchronized void finished(Task<?> t) {
+    getQueue(t.endpoint).running--;
+    dispatch(t.endpoint);
+  }
+
+  private synchronized void removePending(Task<?> t) {
+    EndpointQueue queue = queues.get(t.endpoint);
+    if (queue != null && queue.pending.remove(t)) {
+      dispatch(t.endpoint);
+    }
+  }
+}
@@ -27,6 +27,9 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 import javax.xml.bind.JAXBContext;
@@ -46,19 +49,102 @@ import com.aliyun.odps.commons.util.DateUtils;
 
 /**
  * Utilities for JAXB marshal and unmarshal
+ *
+ * <p>JAXBContext 是线程安全的，每个类只创建一次并在所有线程间共享；
+ * 非线程安全的 Marshaller、Unmarshaller 和 XMLOutputFactory 按线程缓存复用。
+ * 可以在启动时调用 {@link #warmUp()} 预先创建所有模型类的 JAXBContext，避免第一次请求时的开销。</p>
  */
 public class JAXBUtils {
 
+  private static final Logger log = Logger.getLogger(JAXBUtils.class.getName());
+
   static {
     injectInternalTasks();
   }
 
-  private static final ThreadLocal<Map<String, JAXBContext>>
-      threadLocal =
-      new ThreadLocal<Map<String, JAXBContext>>() {
+  /**
+   * SDK 中通过 JAXB 读写的模型类
+   *
+   * <p>其中大部分是其他包内的私有内部类，无法直接引用类字面量，因此按类名列出，
+   * 由 JAXBUtilsTest 保证每个类名都能加载。</p>
+   */
+  static final String[] MODEL_CLASSES = {
+      "com.aliyun.odps.Function$FunctionModel",
+      "com.aliyun.odps.Functions$ListFunctionsResponse",
+      "com.aliyun.odps.Instance$InstanceDebugModel",
+      "com.aliyun.odps.Instance$InstanceResultModel",
+      "com.aliyun.odps.Instance$InstanceStatusModel",
+      "com.aliyun.odps.Instance$TaskProgress",
+      "com.aliyun.odps.Instance$TaskStatusModel",
+      "com.aliyun.odps.Instances$AnonymousInstance",
+      "com.aliyun.odps.Instances$ListInstanceQueueResponse",
+      "com.aliyun.odps.Instances$ListInstanceResponse",
+      "com.aliyun.odps.Job$JobModel",
+      "com.aliyun.odps.Partition$PartitionMeta",
+      "com.aliyun.odps.Project$ProjectModel",
+      "com.aliyun.odps.Resources$ListResourcesResponse",
+      "com.aliyun.odps.StreamJob$StreamJobModel",
+      "com.aliyun.odps.StreamJobs$ListStreamJobsResponse",
+      "com.aliyun.odps.Table$ListPartitionsResponse",
+      "com.aliyun.odps.Table$TableModel",
+      "com.aliyun.odps.Tables$ListTablesResponse",
+      "com.aliyun.odps.Tables$QueryTables",
+      "com.aliyun.odps.Topologies$ListTopologiesResponse",
+      "com.aliyun.odps.Topology$TopologyModel",
+      "com.aliyun.odps.Volume$ListPartitionsResponse",
+      "com.aliyun.odps.Volume$VolumeModel",
+      "com.aliyun.odps.VolumeFSFile$FileForCreate",
+      "com.aliyun.odps.VolumeFSFile$FileForUpdate",
+      "com.aliyun.odps.VolumeFSFile$VolumeFSFileModel",
+      "com.aliyun.odps.VolumeFSFile$VolumeFSList",
+      "com.aliyun.odps.VolumePartition$ListFilesResponse",
+      "com.aliyun.odps.VolumePartition$VolumePartitionModel",
+      "com.aliyun.odps.Volumes$ListVolumesResponse",
+      "com.aliyun.odps.XFlows$AnnoymousXFlowInstance",
+      "com.aliyun.odps.XFlows$ListXFlowsResponse",
+      "com.aliyun.odps.XFlows$XFlowResult",
+      "com.aliyun.odps.ml.ModelAbTestInfo",
+      "com.aliyun.odps.ml.OfflineModel$OfflineModelDesc",
+      "com.aliyun.odps.ml.OfflineModels$ListOfflineModelsResponse",
+      "com.aliyun.odps.ml.OnlineModel$OnlineModelDesc",
+      "com.aliyun.odps.ml.OnlineModelInfo",
+      "com.aliyun.odps.ml.OnlineModelInfoNew",
+      "com.aliyun.odps.ml.OnlineModels$ListOnlineModelsResponse",
+      "com.aliyun.odps.rest.ErrorMessage",
+      "com.aliyun.odps.security.Role$RoleModel",
+      "com.aliyun.odps.security.SecurityConfiguration$SecurityConfigurationModel",
+      "com.aliyun.odps.security.SecurityManager$AuthorizationQueryRequest",
+      "com.aliyun.odps.security.SecurityManager$AuthorizationQueryResponse",
+      "com.aliyun.odps.security.SecurityManager$CheckPermissionResponse",
+      "com.aliyun.odps.security.SecurityManager$ListRolesResponse",
+      "com.aliyun.odps.security.SecurityManager$ListUsersResponse",
+      "com.aliyun.odps.security.User$UserModel"
+  };
+
+  private static final ConcurrentMap<Class<?>, JAXBContext> contexts =
+      new ConcurrentHashMap<Class<?>, JAXBContext>();
+
+  private static final ThreadLocal<Map<Class<?>, Marshaller>> marshallers =
+      new ThreadLocal<Map<Class<?>, Marshaller>>() {
+        @Override
+        protected Map<Class<?>, Marshaller> initialValue() {
+          return new HashMap<Class<?>, Marshaller>();
+        }
+      };
+
+  private static final ThreadLocal<Map<Class<?>, Unmarshaller>> unmarshallers =
+      new ThreadLocal<Map<Class<?>, Unmarshaller>>() {
         @Override
-        protected Map<String, JAXBContext> initialValue() {
-          return new HashMap<String, JAXBContext>();
+        protected Map<Class<?>, Unmarshaller> initialValue() {
+          return new HashMap<Class<?>, Unmarshaller>();
+        }
+      };
+
+  private static final ThreadLocal<XMLOutputFactory> outputFactory =
+      new ThreadLocal<XMLOutputFactory>() {
+        @Override
+        protected XMLOutputFactory initialValue() {
+          return XMLOutputFactory.newInstance();
         }
       };
 
@@ -254,13 +340,17 @@ public class JAXBUtils {
   }
 
   public static <T> String marshal(T obj, Class<T> clazz) throws JAXBException {
-    JAXBContext jc = getJAXBContext(clazz);
-    Marshaller m = jc.createMarshaller();
+    // 从缓存中取出后再放回，嵌套调用时各自使用独立的 Marshaller
+    Map<Class<?>, Marshaller> cache = marshallers.get();
+    Marshaller m = cache.remove(clazz);
+    if (m == null) {
+      m = getJAXBContext(clazz).createMarshaller();
+    }
 
     StringWriter out = new StringWriter();
 
     try {
-      XMLOutputFactory xof = XMLOutputFactory.newInstance();
+      XMLOutputFactory xof = outputFactory.get();
       XMLStreamWriter writer = new CDATAXMLStreamWriter(
           xof.createXMLStreamWriter(out));
       m.marshal(obj, writer);
@@ -269,6 +359,7 @@ public class JAXBUtils {
       throw new RuntimeException(e);
     }
 
+    cache.put(clazz, m);
     return out.toString();
   }
 
@@ -277,9 +368,14 @@ public class JAXBUtils {
       throw new RuntimeException("Invalid XML to unmarshal.");
     }
 
-    JAXBContext jc = getJAXBContext(clazz);
-    Unmarshaller um = jc.createUnmarshaller();
-    return (T) um.unmarshal(new ByteArrayInputStream(xml));
+    Map<Class<?>, Unmarshaller> cache = unmarshallers.get();
+    Unmarshaller um = cache.remove(clazz);
+    if (um == null) {
+      um = getJAXBContext(clazz).createUnmarshaller();
+    }
+    T result = (T) um.unmarshal(new ByteArrayInputStream(xml));
+    cache.put(clazz, um);
+    return result;
   }
 
   @SuppressWarnings("unchecked")
@@ -293,15 +389,54 @@ public class JAXBUtils {
 
   private static JAXBContext getJAXBContext(Class<?> clazz)
       throws JAXBException {
-    Map<String, JAXBContext> cache = threadLocal.get();
-    JAXBContext jc = cache.get(clazz.getName());
+    JAXBContext jc = contexts.get(clazz);
     if (jc == null) {
       jc = JAXBContext.newInstance(clazz);
-      cache.put(clazz.getName(), jc);
+      JAXBContext old = contexts.putIfAbsent(clazz, jc);
+      if (old != null) {
+        jc = old;
+      }
     }
     return jc;
   }
 
+  /**
+   * 预先创建 SDK 中所有模型类的 JAXBContext
+   *
+   * <p>JAXBContext 的创建开销较大，可以在应用启动时调用，之后任何线程上的请求都直接复用。
+   * 运行环境中不存在的模型类会被跳过并记录警告日志。</p>
+   *
+   * @throws JAXBException
+   *     创建 JAXBContext 失败
+   */
+  public static void warmUp() throws JAXBException {
+    ClassLoader loader = JAXBUtils.class.getClassLoader();
+    for (String name : MODEL_CLASSES) {
+      Class<?> clazz;
+      try {
+        clazz = Class.forName(name, false, loader);
+      } catch (ClassNotFoundException e) {
+        log.warning("Skip warming up missing model class: " + name);
+        continue;
+      }
+      getJAXBContext(clazz);
+    }
+  }
+
+  /**
+   * 预先创建指定类的 JAXBContext
+   *
+   * @param classes
+   *     需要通过 JAXB 读写的类
+   * @throws JAXBException
+   *     创建 JAXBContext 失败
+   */
+  public static void warmUp(Class<?>... classes) throws JAXBException {
+    for (Class<?> clazz : classes) {
+      getJAXBContext(clazz);
+    }
+  }
+
   public static class EpochBinding extends DateBinding {
     @Override
     public Date unmarshal(String v) {
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.codec.binary.Hex;
+
+import com.aliyun.odps.commons.util.BufferPool;
+import com.aliyun.odps.commons.util.ChunkedOutputStream;
+
+/**
+ * 计算了 Content-MD5 的请求 body
+ *
+ * <p>
+ * 原始的输入流只读取一次：读取的同时计算 MD5，并把数据缓存到从 {@link BufferPool} 借来的内存块
+ * （不超过阈值时）或临时文件中，发送请求时从缓存读取，因此不要求输入流支持 mark/reset。
+ * 缓存的输入流可以回到起始位置，重试时重新发送缓存的数据。
+ * ByteArrayInputStream 和 FileInputStream 可以可靠地回到起始位置，计算 MD5 后直接发送原始流，不做拷贝。
+ * </p>
+ *
+ * <p>
+ * 使用完后需要调用 {@link #close()} 归还内存块并删除临时文件。
+ * </p>
+ */
+final class RequestBody implements Closeable {
+
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * 每个线程复用的读缓冲区
+   */
+  private static final ThreadLocal<byte[]> COPY_BUFFERS = new ThreadLocal<byte[]>() {
+    @Override
+    protected byte[] initialValue() {
+      return new byte[COPY_BUFFER_SIZE];
+    }
+  };
+
+  private final String contentMD5;
+  private final long length;
+  private final InputStream stream;
+  private ChunkedOutputStream memory;
+  private File spillFile;
+
+  private RequestBody(String contentMD5, long length, InputStream stream,
+                      ChunkedOutputStream memory, File spillFile) {
+    this.contentMD5 = contentMD5;
+    this.length = length;
+    this.stream = stream;
+    this.memory = memory;
+    this.spillFile = spillFile;
+  }
+
+  /**
+   * 计算输入流剩余内容的 MD5
+   *
+   * @param in
+   *     输入流
+   * @param length
+   *     调用方声明的长度，不做拷贝时作为 body 的长度
+   * @param memoryThreshold
+   *     内存缓存的上限，超过后缓存到临时文件
+   * @return 请求 body
+   * @throws IOException
+   */
+  static RequestBody digest(InputStream in, long length, int memoryThreshold) throws IOException {
+    MessageDigest md5 = newMD5();
+    byte[] buffer = COPY_BUFFERS.get();
+
+    if (in instanceof ByteArrayInputStream) {
+      in.mark(Integer.MAX_VALUE);
+      update(md5, in, buffer);
+      in.reset();
+      return new RequestBody(Hex.encodeHexString(md5.digest()), length, in, null, null);
+    }
+
+    if (in instanceof FileInputStream) {
+      FileChannel channel = ((FileInputStream) in).getChannel();
+      long position = channel.position();
+      update(md5, in, buffer);
+      channel.position(position);
+      return new RequestBody(Hex.encodeHexString(md5.digest()), length, in, null, null);
+    }
+
+    ChunkedOutputStream memory = new ChunkedOutputStream(BufferPool.getDefault());
+    OutputStream out = memory;
+    File spill = null;
+    long total = 0;
+    try {
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        md5.update(buffer, 0, n);
+        if (spill == null && total + n > memoryThreshold) {
+          spill = File.createTempFile("odps-body-", ".tmp");
+          out = new FileOutputStream(spill);
+          memory.writeTo(out);
+          memory.reset();
+          memory = null;
+        }
+        out.write(buffer, 0, n);
+        total += n;
+      }
+      if (spill != null) {
+        out.close();
+        return new RequestBody(Hex.encodeHexString(md5.digest()), total,
+                               new FileInputStream(spill), null, spill);
+      }
+      return new RequestBody(Hex.encodeHexString(md5.digest()), total,
+                             memory.getInputStream(), memory, null);
+    } catch (IOException e) {
+      if (memory != null) {
+        memory.reset();
+      }
+      if (spill != null) {
+        try {
+          out.close();
+        } catch (IOException ignore) {
+        }
+        spill.delete();
+      }
+      throw e;
+    }
+  }
+
+  private static MessageDigest newMD5() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e.getMessage(), e);
+    }
+  }
+
+  private static void update(MessageDigest md5, InputStream in, byte[] buffer)
+      throws IOException {
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      md5.update(buffer, 0, n);
+    }
+  }
+
+  /**
+   * 获取 body 内容的 MD5，十六进制编码
+   */
+  String getContentMD5() {
+    return contentMD5;
+  }
+
+  /**
+   * 获取 body 的长度，缓存时为实际读到的字节数
+   */
+  long getLength() {
+    return length;
+  }
+
+  /**
+   * 获取用于发送的输入流
+   */
+  InputStream getStream() {
+    return stream;
+  }
+
+  /**
+   * 是否缓存到了临时文件
+   */
+  boolean isSpilled() {
+    return spillFile != null;
+  }
+
+  /**
+   * 把内存块归还给内存池，关闭缓存的输入流并删除临时文件，原始输入流由调用方关闭
+   */
+  @Override
+  public void close() {
+    if (memory != null) {
+      memory.reset();
+      memory = null;
+    }
+    if (spillFile != null) {
+      try {
+        stream.close();
+      } catch (IOException ignore) {
+      }
+      spillFile.delete();
+      spillFile = null;
+    }
+  }
+}
@@ -20,6 +20,7 @@
 package com.aliyun.odps.rest;
 
 import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -30,12 +31,15 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 import javax.net.ssl.SSLHandshakeException;
 import javax.xml.bind.JAXBException;
 
 import com.alibaba.fastjson.JSON;
+import com.aliyun.odps.MetaCache;
 import com.aliyun.odps.NoSuchObjectException;
 import com.aliyun.odps.OdpsDeprecatedLogger;
 import com.aliyun.odps.OdpsException;
@@ -49,6 +53,7 @@ import com.aliyun.odps.commons.transport.Response;
 import com.aliyun.odps.commons.transport.Transport;
 import com.aliyun.odps.commons.util.DateUtils;
 import com.aliyun.odps.commons.util.IOUtils;
+import com.aliyun.odps.commons.util.RetryPolicy;
 import com.aliyun.odps.commons.util.SvnRevisionUtils;
 
 /**
@@ -66,9 +71,26 @@ public class RestClient {
      * @param retryCount
      *     重试计数
      * @param retrySleepTime
-     *     下次需要的重试时间
+     *     下次重试前的等待时间，单位秒（向上取整）
      */
     public abstract void onRetryLog(Throwable e, long retryCount, long retrySleepTime);
+
+    /**
+     * 当 RestClent 发生重试前的回调函数，等待时间精确到毫秒
+     *
+     * <p>默认将等待时间换算成秒后调用 {@link #onRetryLog(Throwable, long, long)}，
+     * 需要毫秒精度时覆盖此方法</p>
+     *
+     * @param e
+     *     错误异常
+     * @param retryCount
+     *     重试计数
+     * @param retrySleepMillis
+     *     下次重试前的等待时间，单位毫秒，由 {@link RetryPolicy} 决定
+     */
+    public void onRetryLogMillis(Throwable e, long retryCount, long retrySleepMillis) {
+      onRetryLog(e, retryCount, (retrySleepMillis + 999) / 1000);
+    }
   }
 
   /**
@@ -93,11 +115,19 @@ public class RestClient {
    */
   public static final boolean DEFAULT_IGNORE_CERTS = false;
 
+  /**
+   * chunked 方式上传数据时 HTTP 块的默认大小, 64 KB
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
   private final Transport transport;
 
   private Account account;
   private String endpoint;
   private boolean ignoreCerts = DEFAULT_IGNORE_CERTS;
+  private boolean streamingXmlParser = Boolean.getBoolean("odps.rest.xml.streaming");
+  private volatile AsyncRequestExecutor asyncExecutor;
+  private volatile RetryPolicy retryPolicy = new RetryPolicy();
 
   private String defaultProject;
 
@@ -210,6 +240,74 @@ public class RestClient {
     return r;
   }
 
+  /**
+   * 异步请求RESTful API
+   *
+   * <p>
+   * 请求在 {@link #getAsyncExecutor()} 中执行，受 endpoint 并发数限制，
+   * 失败时 {@link Future#get()} 抛出的 ExecutionException 包含 {@link OdpsException}
+   * </p>
+   *
+   * @param clazz
+   *     返回结果绑定的Java类型
+   * @param resource
+   *     API资源标识
+   * @param method
+   *     访问方法
+   * @param params
+   *     请求参数
+   * @return 与API返回结果绑定的clazz类型对象
+   */
+  public <T> Future<T> requestAsync(final Class<T> clazz, final String resource,
+                                    final String method, Map<String, String> params) {
+    final Map<String, String> paramsCopy = copy(params);
+    return submitAsync(new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        return request(clazz, resource, method, paramsCopy);
+      }
+    });
+  }
+
+  /**
+   * 异步请求RESTful API
+   *
+   * @param resource
+   * @param method
+   * @param params
+   * @param headers
+   * @param body
+   * @return 请求的响应
+   * @see #requestAsync(Class, String, String, Map)
+   */
+  public Future<Response> requestAsync(final String resource, final String method,
+                                       Map<String, String> params, Map<String, String> headers,
+                                       final byte[] body) {
+    final Map<String, String> paramsCopy = copy(params);
+    final Map<String, String> headersCopy = copy(headers);
+    return submitAsync(new Callable<Response>() {
+      @Override
+      public Response call() throws Exception {
+        return request(resource, method, paramsCopy, headersCopy, body);
+      }
+    });
+  }
+
+  /**
+   * 在 {@link #getAsyncExecutor()} 中执行访问当前 endpoint 的任务，受 endpoint 并发数限制
+   *
+   * @param task
+   *     任务
+   * @return 任务结果
+   */
+  public <T> Future<T> submitAsync(Callable<T> task) {
+    return getAsyncExecutor().submit(getEndpoint(), task);
+  }
+
+  private static Map<String, String> copy(Map<String, String> map) {
+    return map == null ? null : new HashMap<String, String>(map);
+  }
+
   /**
    * 请求RESTful API
    *
@@ -270,64 +368,89 @@ public class RestClient {
   public Response request(String resource, String method, Map<String, String> params,
                           Map<String, String> headers,
                           InputStream body, long bodyLen) throws OdpsException {
-    int retryTimes = 0;
-    if (method.equalsIgnoreCase(Method.GET.toString()) || method
-        .equalsIgnoreCase(Method.HEAD.toString())) {
-      retryTimes = getRetryTimes();
-      if (body != null && body.markSupported()) {
-        body.mark(0);
+    boolean idempotent = method.equalsIgnoreCase(Method.GET.toString()) || method
+        .equalsIgnoreCase(Method.HEAD.toString());
+
+    // 在重试之前计算 MD5，所有尝试都发送同一份缓存的数据，原始输入流不需要支持 mark/reset
+    RequestBody digested = null;
+    if (body != null && contentMD5Enabled && bodyLen > 0
+        && (headers == null || !headers.containsKey(Headers.CONTENT_MD5))) {
+      try {
+        digested = RequestBody.digest(body, bodyLen, bodyBufferSize);
+      } catch (IOException e) {
+        throw new OdpsException(e.getMessage(), e);
+      }
+      if (headers == null) {
+        headers = new HashMap<String, String>();
       }
+      headers.put(Headers.CONTENT_MD5, digested.getContentMD5());
+      body = digested.getStream();
+      bodyLen = digested.getLength();
     }
 
-    long retryWaitTime = getConnectTimeout() + getReadTimeout();
+    try {
+      return requestWithRetry(resource, method, params, headers, body, bodyLen, idempotent);
+    } finally {
+      if (digested != null) {
+        digested.close();
+      }
+    }
+  }
+
+  private Response requestWithRetry(String resource, String method, Map<String, String> params,
+                                    Map<String, String> headers, InputStream body, long bodyLen,
+                                    boolean idempotent) throws OdpsException {
+    // 请求 body 能够回到起始位置时才可以重试
+    boolean replayable = body == null || body.markSupported() || body instanceof FileInputStream;
+    if (body != null && body.markSupported()) {
+      body.mark(0);
+    }
 
-    long retryCount = 0;
+    RetryPolicy policy = getRetryPolicy();
+    int retryTimes = getRetryTimes();
+    int retryCount = 0;
 
-    while (retryCount <= retryTimes) {
-      long startTime = System.currentTimeMillis();
+    while (true) {
+      Response resp = null;
       try {
-        Response resp = requestWithNoRetry(resource, method, params, headers, body, bodyLen);
+        resp = requestWithNoRetry(resource, method, params, headers, body, bodyLen);
 
         if (resp == null) {
           throw new OdpsException("Response is null.");
         }
 
-        if (resp.getStatus() / 100 == 4) {
-          retryTimes = 0;
-          // IF THE HTTP CODE IS 4XX,
-          // IT SHOULD NOT RETRY IF THE REQUEST NOT CHANGED
-        }
-
         handleErrorResponse(resp);
 
+        policy.onSuccess();
+
         uploadDeprecatedLog();
 
         return resp;
 
       } catch (OdpsException e) {
-        if (retryTimes == retryCount) {
+        if (retryCount >= retryTimes || !replayable) {
           throw e;
         }
 
-        resetBody(body);
+        int status = resp == null ? 0 : resp.getStatus();
+        long retryWaitTime = policy.onFailure(e, status, retryCount + 1, idempotent);
+        if (retryWaitTime < 0 || !resetBody(body)) {
+          throw e;
+        }
         ++retryCount;
 
         if (logger != null) {
-          logger.onRetryLog(e, retryCount, retryWaitTime);
+          logger.onRetryLogMillis(e, retryCount, retryWaitTime);
         }
 
         try {
-          long endTime = System.currentTimeMillis();
-          long sleepTime = retryWaitTime * 1000 - (endTime - startTime);
-          if (sleepTime > 0) {
-            Thread.sleep(sleepTime);
-          }
+          policy.sleep(retryWaitTime);
         } catch (InterruptedException e1) {
+          Thread.currentThread().interrupt();
+          throw e;
         }
-        continue;
       }
     }
-    throw new OdpsException("Failed in Connection Retry.");
   }
 
   private void uploadDeprecatedLog() {
@@ -381,13 +504,16 @@ public class RestClient {
     }
   }
 
-  private void resetBody(InputStream body) {
-    if (body != null && body.markSupported()) {
-      try {
-        body.reset();
-      } catch (IOException e) {
-        // DO NOTHING FOR SUPPORTED MARK STREAM WILL NOT FAILED
-      }
+  private boolean resetBody(InputStream body) {
+    if (body == null) {
+      return true;
+    }
+    try {
+      IOUtils.resetInputStream(body);
+      return true;
+    } catch (IOException e) {
+      // mark 已经失效，不能重发
+      return false;
     }
   }
 
@@ -401,16 +527,18 @@ public class RestClient {
       headers = new HashMap<String, String>();
     }
 
+    RequestBody digested = null;
     try {
       // set Content-Length
       if (body != null) {
-        headers.put(Headers.CONTENT_LENGTH, String.valueOf(bodyLen));
-        if (!headers.containsKey(Headers.CONTENT_MD5) && (bodyLen > 0)) {
-          String contentMd5 = org.apache.commons.codec.binary.Hex
-              .encodeHexString(org.apache.commons.codec.digest.DigestUtils.md5(body));
-          IOUtils.resetInputStream(body);
-          headers.put(Headers.CONTENT_MD5, contentMd5);
+        if (contentMD5Enabled && !headers.containsKey(Headers.CONTENT_MD5) && (bodyLen > 0)) {
+          // 一次读取输入流，同时计算 MD5 并缓存，发送时使用缓存的数据
+          digested = RequestBody.digest(body, bodyLen, bodyBufferSize);
+          body = digested.getStream();
+          bodyLen = digested.getLength();
+          headers.put(Headers.CONTENT_MD5, digested.getContentMD5());
         }
+        headers.put(Headers.CONTENT_LENGTH, String.valueOf(bodyLen));
       }
 
       Request req = buildRequest(resource, method, params, headers);
@@ -429,6 +557,10 @@ public class RestClient {
       throw new RuntimeException(e.getMessage(), e);
     } catch (IOException e) {
       throw new OdpsException(e.getMessage(), e);
+    } finally {
+      if (digested != null) {
+        digested.close();
+      }
     }
   }
 
@@ -659,6 +791,94 @@ public class RestClient {
     this.retryTimes = retryTimes;
   }
 
+  int chunkSize = DEFAULT_CHUNK_SIZE;
+
+  /**
+   * 设置 chunked 方式上传数据时 HTTP 块的大小
+   *
+   * <p>
+   * 块越大，HTTP 分块的帧开销和系统调用次数越少，但每次写网络前在内存中缓存的数据越多
+   * </p>
+   *
+   * @param chunkSize
+   *     块大小，单位字节
+   */
+  public void setChunkSize(int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunk size must >= 1, now: " + chunkSize);
+    }
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * 获取 chunked 方式上传数据时 HTTP 块的大小
+   *
+   * @return 块大小，单位字节
+   */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * 计算 Content-MD5 时在内存中缓存请求 body 的默认上限, 8 MB
+   */
+  public static final int DEFAULT_BODY_BUFFER_SIZE = 8 * 1024 * 1024;
+
+  private boolean contentMD5Enabled = true;
+
+  private int bodyBufferSize = DEFAULT_BODY_BUFFER_SIZE;
+
+  /**
+   * 获取是否为请求 body 计算 Content-MD5
+   *
+   * @return 是否计算 Content-MD5
+   */
+  public boolean isContentMD5Enabled() {
+    return contentMD5Enabled;
+  }
+
+  /**
+   * 设置是否为请求 body 计算 Content-MD5
+   *
+   * <p>
+   * 默认计算。上层协议已经保证数据完整性时（例如 tunnel 的 CRC 校验）可以关闭，
+   * 关闭后输入流直接发送，不做缓存。调用方在 headers 中指定了 Content-MD5 时总是使用指定的值。
+   * </p>
+   *
+   * @param contentMD5Enabled
+   *     是否计算 Content-MD5
+   */
+  public void setContentMD5Enabled(boolean contentMD5Enabled) {
+    this.contentMD5Enabled = contentMD5Enabled;
+  }
+
+  /**
+   * 获取计算 Content-MD5 时在内存中缓存请求 body 的上限
+   *
+   * @return 缓存上限，单位字节
+   */
+  public int getBodyBufferSize() {
+    return bodyBufferSize;
+  }
+
+  /**
+   * 设置计算 Content-MD5 时在内存中缓存请求 body 的上限
+   *
+   * <p>
+   * 不能回到起始位置的输入流在计算 MD5 时被缓存下来，超过上限的部分缓存到临时文件中。
+   * ByteArrayInputStream 和 FileInputStream 不做缓存。
+   * </p>
+   *
+   * @param bodyBufferSize
+   *     缓存上限，单位字节
+   */
+  public void setBodyBufferSize(int bodyBufferSize) {
+    if (bodyBufferSize < 0) {
+      throw new IllegalArgumentException("body buffer size must >= 0, now: " + bodyBufferSize);
+    }
+    this.bodyBufferSize = bodyBufferSize;
+  }
+
   /**
    * 获取是否忽略 Https 验证
    *
@@ -677,4 +897,193 @@ public class RestClient {
     this.ignoreCerts = ignoreCerts;
   }
 
+  /**
+   * 获取重试决策
+   *
+   * @return 重试决策，重试次数和等待时间的统计也可以从它获取
+   */
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  /**
+   * 设置重试决策
+   *
+   * <p>
+   * 请求失败后由 policy 判断是否重试以及重试前的等待时间，重试次数不超过 {@link #getRetryTimes()}。
+   * 只有 GET 和 HEAD 被视为幂等请求。多个 RestClient 可以共享同一个 policy，此时共享重试预算和统计。
+   * </p>
+   *
+   * <p>
+   * Odps 的克隆对象、tunnel 上传数据块和下载重连都使用同一个 policy，
+   * 通过 {@link RetryPolicy#setBudget(int, double)} 开启重试预算时它们共用令牌。
+   * </p>
+   *
+   * @param retryPolicy
+   *     重试决策
+   */
+  public void setRetryPolicy(RetryPolicy retryPolicy) {
+    if (retryPolicy == null) {
+      throw new IllegalArgumentException("retry policy must not be null");
+    }
+    this.retryPolicy = retryPolicy;
+  }
+
+  /**
+   * 获取执行异步请求的线程池
+   *
+   * @return 设置的线程池，没有设置时返回 {@link AsyncRequestExecutor#getDefault()}
+   */
+  public AsyncRequestExecutor getAsyncExecutor() {
+    AsyncRequestExecutor executor = asyncExecutor;
+    return executor == null ? AsyncRequestExecutor.getDefault() : executor;
+  }
+
+  /**
+   * 设置执行异步请求的线程池
+   *
+   * @param asyncExecutor
+   *     线程池，为 null 时使用 {@link AsyncRequestExecutor#getDefault()}
+   */
+  public void setAsyncExecutor(AsyncRequestExecutor asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+  }
+
+  /**
+   * 获取列表接口（instances、tables、partitions、resources）是否使用流式 XML 解析
+   *
+   * @return 是否使用流式解析
+   */
+  public boolean isStreamingXmlParser() {
+    return streamingXmlParser;
+  }
+
+  /**
+   * 设置列表接口（instances、tables、partitions、resources）是否使用流式 XML 解析
+   *
+   * <p>
+   * 流式解析直接从 StAX 事件构造 SDK 对象，不经过 JAXB 绑定，解析结果相同，CPU 开销更低。
+   * 默认值由系统属性 odps.rest.xml.streaming 决定，未设置时使用 JAXB。
+   * </p>
+   *
+   * @param streamingXmlParser
+   *     是否使用流式解析
+   */
+  public void setStreamingXmlParser(boolean streamingXmlParser) {
+    this.streamingXmlParser = streamingXmlParser;
+  }
+
+  private volatile int listPageSize = 0;
+
+  private volatile int listPrefetchDepth = 0;
+
+  /**
+   * 获取列表接口每页返回的条目数
+   *
+   * @return 每页条目数，0 表示使用服务端默认值
+   */
+  public int getListPageSize() {
+    return listPageSize;
+  }
+
+  /**
+   * 设置列表接口每页返回的条目数，作为请求参数 maxitems 发送
+   *
+   * @param listPageSize
+   *     每页条目数，0 表示使用服务端默认值
+   */
+  public void setListPageSize(int listPageSize) {
+    if (listPageSize < 0) {
+      throw new IllegalArgumentException("list page size must >= 0, now: " + listPageSize);
+    }
+    this.listPageSize = listPageSize;
+  }
+
+  /**
+   * 获取列表迭代器在后台预取的页数
+   *
+   * @return 预取页数，0 表示不预取
+   */
+  public int getListPrefetchDepth() {
+    return listPrefetchDepth;
+  }
+
+  /**
+   * 设置列表迭代器在后台预取的页数
+   *
+   * <p>
+   * 大于 0 时，tables、partitions、instances、resources、functions、volumes 的迭代器在
+   * {@link #getAsyncExecutor()} 中提前获取后续的页，调用方处理当前页时下一页已经在请求中。
+   * 不再使用的迭代器可以通过 {@link com.aliyun.odps.ListIterator#close()} 停止预取。
+   * </p>
+   *
+   * @param listPrefetchDepth
+   *     预取页数，0 表示不预取
+   */
+  public void setListPrefetchDepth(int listPrefetchDepth) {
+    if (listPrefetchDepth < 0) {
+      throw new IllegalArgumentException(
+          "list prefetch depth must >= 0, now: " + listPrefetchDepth);
+    }
+    this.listPrefetchDepth = listPrefetchDepth;
+  }
+
+  /**
+   * 批量加载元数据时默认的并发请求数
+   */
+  public static final int DEFAULT_BULK_LOAD_PARALLELISM = 4;
+
+  private volatile int bulkLoadParallelism = DEFAULT_BULK_LOAD_PARALLELISM;
+
+  /**
+   * 获取批量加载元数据时的并发请求数
+   *
+   * @return 并发请求数
+   */
+  public int getBulkLoadParallelism() {
+    return bulkLoadParallelism;
+  }
+
+  /**
+   * 设置批量加载元数据时的并发请求数
+   *
+   * <p>
+   * {@link com.aliyun.odps.Tables#loadTables(String, java.util.Collection)} 按服务端的上限分批请求，
+   * {@link com.aliyun.odps.Table#reloadPartitions(java.util.Collection)} 每个分区一个请求，
+   * 这些请求在 {@link #getAsyncExecutor()} 中并发执行，同时执行的请求数不超过这个值。
+   * </p>
+   *
+   * @param bulkLoadParallelism
+   *     并发请求数
+   */
+  public void setBulkLoadParallelism(int bulkLoadParallelism) {
+    if (bulkLoadParallelism < 1) {
+      throw new IllegalArgumentException(
+          "bulk load parallelism must >= 1, now: " + bulkLoadParallelism);
+    }
+    this.bulkLoadParallelism = bulkLoadParallelism;
+  }
+
+  private volatile MetaCache metaCache;
+
+  /**
+   * 获取元数据缓存
+   *
+   * @return 元数据缓存，没有设置时返回 null
+   */
+  public MetaCache getMetaCache() {
+    return metaCache;
+  }
+
+  /**
+   * 设置元数据缓存
+   *
+   * @param metaCache
+   *     元数据缓存，为 null 时不使用缓存
+   * @see com.aliyun.odps.Odps#setMetaCache(MetaCache)
+   */
+  public void setMetaCache(MetaCache metaCache) {
+    this.metaCache = metaCache;
+  }
+
 }
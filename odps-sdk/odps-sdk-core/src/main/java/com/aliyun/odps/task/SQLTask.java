@@ -19,12 +19,19 @@
 
 package com.aliyun.odps.task;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -43,8 +50,14 @@ import com.aliyun.odps.commons.util.EmptyIterator;
 import com.aliyun.odps.data.ArrayRecord;
 import com.aliyun.odps.data.Record;
 import com.aliyun.odps.data.ResultSet;
+import com.aliyun.odps.data.RecordReader;
+import com.aliyun.odps.data.SchemaIndex;
+import com.aliyun.odps.rest.AsyncRequestExecutor;
+import com.aliyun.odps.rest.RestClient;
 import com.aliyun.odps.tunnel.InstanceTunnel;
 import com.aliyun.odps.tunnel.TunnelException;
+import com.aliyun.odps.tunnel.io.CompressOption;
+import com.aliyun.odps.tunnel.io.ParallelRecordReader;
 import com.aliyun.odps.tunnel.io.TunnelRecordReader;
 import com.aliyun.odps.utils.StringUtils;
 import com.csvreader.CsvReader;
@@ -125,19 +138,20 @@ public class SQLTask extends Task {
       List<Record> records = new ArrayList<Record>();
       int lineCount = 0;
       String[] newline;
-      Column[] columns = new Column[]{};
+      SchemaIndex index = null;
 
       try {
         while (reader.readRecord()) {
           newline = reader.getValues();
           // the first line is column names
           if (lineCount == 0) {
-            columns = new Column[newline.length];
+            Column[] columns = new Column[newline.length];
             for (int i = 0; i < newline.length; i++) {
               columns[i] = new Column(newline[i], OdpsType.STRING);
             }
+            index = SchemaIndex.of(columns);
           } else {
-            Record record = new ArrayRecord(columns);
+            Record record = new ArrayRecord(index);
             for (int i = 0; i < newline.length; i++) {
               record.set(i, newline[i]);
             }
@@ -399,6 +413,29 @@ public class SQLTask extends Task {
    */
   public static ResultSet getResultSet(Instance instance, String taskName, Long limit, boolean limitHint)
       throws OdpsException {
+    return getResultSet(instance, taskName, limit, limitHint, 1);
+  }
+
+  /**
+   * 通过instance获取记录迭代器，并发下载结果
+   *
+   * <p>
+   * 与 {@link #getResultSet(Instance, String, Long, boolean)} 相同，parallelism 大于 1 时把结果切分成多个区间
+   * 并发下载，记录仍然按原始顺序返回。没有读完就不再使用的 ResultSet 需要调用 {@link ResultSet#close()}。
+   * </p>
+   *
+   * @param instance
+   * @param taskName
+   * @param limit
+   * @param limitHint
+   * @param parallelism
+   *     并发下载的区间数
+   * @return
+   * @throws OdpsException
+   */
+  public static ResultSet getResultSet(Instance instance, String taskName, Long limit,
+                                       boolean limitHint, int parallelism)
+      throws OdpsException {
 
     checkTaskName(instance, taskName);
 
@@ -416,7 +453,9 @@ public class SQLTask extends Task {
       recordCount = limit;
     }
 
-    return new ResultSet(new RecordSetIterator(session, recordCount), session.getSchema(), recordCount);
+    return new ResultSet(new RecordSetIterator(session, recordCount, parallelism,
+                                               instance.getOdps().getRestClient()),
+                         session.getSchema(), recordCount);
   }
 
 
@@ -605,64 +644,217 @@ public class SQLTask extends Task {
 }
 
 
-class RecordSetIterator implements Iterator<Record> {
+/**
+ * 流式读取 instance 结果的迭代器
+ *
+ * <p>
+ * 结果按区间读取，区间大小从 {@link #MIN_FETCH_SIZE} 开始逐个翻倍，直到 {@link #MAX_FETCH_SIZE}：
+ * 开头的记录可以很快返回，之后的大区间减少请求次数。当前区间读过一半时，在后台打开下一个区间的 reader，
+ * 切换区间时不需要等待新的请求。parallelism 大于 1 时，整个结果由一个按顺序返回记录的
+ * {@link ParallelRecordReader} 并发下载。
+ * </p>
+ *
+ * <p>
+ * 读完全部记录或者读取出错时关闭所有 reader，提前放弃读取时需要调用 {@link #close()}。
+ * </p>
+ */
+class RecordSetIterator implements Iterator<Record>, Closeable {
 
-  private static final Long FETCH_SIZE = 1000l;
+  static final long MIN_FETCH_SIZE = 1000L;
+  static final long MAX_FETCH_SIZE = 1024L * 1024L;
+
+  private final InstanceTunnel.DownloadSession session;
+  private final RestClient client;
+  private final long recordCount;
+  private final int parallelism;
 
-  private InstanceTunnel.DownloadSession session;
-  private long recordCount;
   private long cursor = 0;
-  private long fetchSize = 0;
-  private int idx = 0;
-  private List<Record> buffer;
+  // 已经打开（包括正在后台打开）的区间覆盖到的位置
+  private long opened = 0;
+  private long fetchSize = MIN_FETCH_SIZE;
+  // 读到这个位置时开始在后台打开下一个区间
+  private long prefetchAt = 0;
+  private RecordReader reader;
+  private Future<RecordReader> prefetch;
+  private boolean closed = false;
 
-  public RecordSetIterator(InstanceTunnel.DownloadSession session, long recordCount) {
+  /**
+   * @param session
+   *     下载会话
+   * @param recordCount
+   *     要读取的记录数
+   * @param parallelism
+   *     并发下载的区间数，为 1 时顺序读取
+   * @param client
+   *     执行后台预取的 {@link RestClient}，预取任务在它的异步线程池中执行
+   */
+  public RecordSetIterator(InstanceTunnel.DownloadSession session, long recordCount,
+                           int parallelism, RestClient client) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must >= 1, now: " + parallelism);
+    }
     this.session = session;
     this.recordCount = recordCount;
+    this.parallelism = parallelism;
+    this.client = client;
   }
 
   @Override
   public boolean hasNext() {
-    return cursor < recordCount;
+    return !closed && cursor < recordCount;
   }
 
   @Override
   public Record next() {
-    if (buffer == null || idx == buffer.size()) {
-      fillBuffer();
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    try {
+      Record r = reader == null ? null : reader.read();
+      while (r == null) {
+        nextRange();
+        r = reader.read();
+      }
+      cursor++;
+      if (cursor == recordCount) {
+        close();
+      } else if (prefetch == null && cursor >= prefetchAt) {
+        startPrefetch();
+      }
+      return r;
+    } catch (IOException e) {
+      closeQuietly();
+      throw new RuntimeException("Read from reader failed:", e);
     }
-    cursor++;
-    return buffer.get(idx++);
   }
-  
+
   @Override
   public void remove() {
     throw new UnsupportedOperationException("remove");
   }
 
-  private void fillBuffer() {
-    idx = 0;
-    TunnelRecordReader reader = openNewReader();
-    buffer = new ArrayList<Record>();
-    Record r = null;
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    Future<RecordReader> pending = prefetch;
+    prefetch = null;
     try {
-      while ((r = reader.read()) != null) {
-        buffer.add(r);
+      closeReader();
+    } finally {
+      // 已经开始执行的预取任务不能取消，等它打开后关闭
+      if (pending != null && !pending.cancel(false)) {
+        try {
+          closeReader(await(pending));
+        } catch (IOException ignore) {
+        }
       }
-    } catch (IOException e) {
-      throw new RuntimeException("Read from reader failed:", e);
     }
   }
 
-  private TunnelRecordReader openNewReader() {
-    fetchSize = recordCount - cursor <= FETCH_SIZE ? recordCount - cursor : FETCH_SIZE;
+  /**
+   * 打开 [start, start + count) 区间的 reader
+   */
+  protected RecordReader openRange(long start, long count) throws IOException {
     try {
-      return session.openRecordReader(cursor, fetchSize);
+      if (parallelism > 1) {
+        return session.openParallelReader(
+            parallelism, start, count,
+            new CompressOption(CompressOption.CompressAlgorithm.ODPS_RAW, 0, 0), null, true);
+      }
+      return session.openRecordReader(start, count);
     } catch (TunnelException e) {
-      throw new RuntimeException("Open reader failed: " + e.getMessage(), e);
-    } catch (IOException e) {
-      throw new RuntimeException("Open reader failed: " + e.getMessage(), e);
+      throw new IOException("Open reader failed: " + e.getMessage(), e);
+    }
+  }
+
+  private void nextRange() throws IOException {
+    closeReader();
+    if (prefetch == null) {
+      if (opened >= recordCount) {
+        throw new IOException("Unexpected end of result set at record " + cursor);
+      }
+      long start = opened;
+      long count = nextFetchSize();
+      reader = openRange(start, count);
+      prefetchAt = start + count / 2;
+    } else {
+      Future<RecordReader> pending = prefetch;
+      prefetch = null;
+      reader = await(pending);
+      prefetchAt = cursor + (opened - cursor) / 2;
     }
   }
 
+  private void startPrefetch() {
+    if (opened >= recordCount) {
+      return;
+    }
+    // 在异步线程池的任务中读取时不预取：等待预取结果会占用线程池，线程数用满时会死锁。
+    // 不预取时由 nextRange 在当前线程打开下一个区间，读到下一个区间时再尝试预取
+    if (AsyncRequestExecutor.isExecutorThread()) {
+      prefetchAt = Long.MAX_VALUE;
+      return;
+    }
+    long lastFetchSize = fetchSize;
+    final long start = opened;
+    final long count = nextFetchSize();
+    try {
+      prefetch = client.submitAsync(new Callable<RecordReader>() {
+        @Override
+        public RecordReader call() throws Exception {
+          return openRange(start, count);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // 线程池已经关闭
+      opened = start;
+      fetchSize = lastFetchSize;
+      prefetchAt = Long.MAX_VALUE;
+    }
+  }
+
+  private long nextFetchSize() {
+    long count;
+    if (parallelism > 1) {
+      count = recordCount - opened;
+    } else {
+      count = Math.min(fetchSize, recordCount - opened);
+      fetchSize = Math.min(fetchSize * 2, MAX_FETCH_SIZE);
+    }
+    opened += count;
+    return count;
+  }
+
+  private static RecordReader await(Future<RecordReader> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while opening reader");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException("Open reader failed: " + cause.getMessage(), cause);
+    }
+  }
+
+  private void closeReader() throws IOException {
+    RecordReader r = reader;
+    reader = null;
+    closeReader(r);
+  }
+
+  private static void closeReader(RecordReader r) throws IOException {
+    if (r != null) {
+      r.close();
+    }
+  }
+
+  private void closeQuietly() {
+    try {
+      close();
+    } catch (IOException ignore) {
+    }
+  }
 }
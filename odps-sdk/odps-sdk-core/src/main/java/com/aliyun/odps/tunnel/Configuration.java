@@ -100,6 +100,7 @@ class Configuration extends GeneralConfiguration {
 
     odpsServiceClient.setReadTimeout(getSocketTimeout());
     odpsServiceClient.setConnectTimeout(getSocketConnectTimeout());
+    odpsServiceClient.setChunkSize(getChunkSize());
     odpsServiceClient.setEndpoint(getEndpoint(projectName).toString());
 
     return odpsServiceClient;
@@ -39,6 +39,7 @@ import com.aliyun.odps.data.RecordReader;
 import com.aliyun.odps.rest.ResourceBuilder;
 import com.aliyun.odps.rest.RestClient;
 import com.aliyun.odps.tunnel.io.CompressOption;
+import com.aliyun.odps.tunnel.io.ParallelRecordReader;
 import com.aliyun.odps.tunnel.io.TunnelRecordReader;
 
 
@@ -289,6 +290,29 @@ public class InstanceTunnel {
       return new TunnelRecordReader(start, count, columns, compress, tunnelServiceClient, this);
     }
 
+    /**
+     * 打开 {@link ParallelRecordReader}，把记录区间切分成若干片并发下载
+     *
+     * @param parallelism
+     *     同时下载的分片数
+     * @param start
+     *     本次要读取记录的起始位置
+     * @param count
+     *     本次要读取记录的数量
+     * @param compress
+     *     数据传输压缩选项
+     * @param columns
+     *     本次需要下载的列，为 null 表示全部列
+     * @param ordered
+     *     是否按原始顺序返回记录；为 false 时按下载完成的顺序返回，吞吐更高
+     */
+    public ParallelRecordReader openParallelReader(int parallelism, long start, long count,
+                                                   CompressOption compress, List<Column> columns,
+                                                   boolean ordered) {
+      return new ParallelRecordReader(this, start, count, compress, columns, parallelism, 0,
+                                      ParallelRecordReader.BUFFER_SIZE_DEFAULT, ordered);
+    }
+
     // initiate a new download session
     private void initiate() throws TunnelException {
       HashMap<String, String> params = new HashMap<String, String>();
@@ -12,13 +12,12 @@ import org.apache.commons.io.IOUtils;
 import com.alibaba.fastjson.JSONObject;
 import com.aliyun.odps.OdpsException;
 import com.aliyun.odps.PartitionSpec;
-import com.aliyun.odps.commons.proto.XstreamPack.XStreamPack;
 import com.aliyun.odps.commons.transport.Connection;
 import com.aliyun.odps.commons.transport.Headers;
 import com.aliyun.odps.commons.transport.Response;
 import com.aliyun.odps.datahub.DatahubRecordPack;
+import com.aliyun.odps.datahub.XStreamPackBody;
 import com.aliyun.odps.rest.RestClient;
-import com.google.protobuf.ByteString;
 
 /**
  * Created by yinyue on 15-6-10.
@@ -147,21 +146,16 @@ public class StreamUploadWriter {
     headers.put(HttpHeaders.CONTENT_ENCODING, "deflate");
 
     try {
-      byte[] bytes = recordPack.getByteArray();
-
-      XStreamPack.Builder pack = XStreamPack.newBuilder();
-      pack.setPackData(ByteString.copyFrom(bytes));
-      
-      bytes = pack.build().toByteArray();
+      XStreamPackBody body = new XStreamPackBody(recordPack, null);
       
       if (null != partitionSpec && partitionSpec.toString().length() > 0) {
         params.put(TunnelConstants.RES_PARTITION, partitionSpec.toString().replace("'", ""));
       }
       params.put(TunnelConstants.RECORD_COUNT, String.valueOf(recordPack.getRecordCount()));
       params.put(TunnelConstants.MODE, TunnelConstants.STREAM_UPLOAD);
-      headers.put(HttpHeaders.CONTENT_MD5, generateMD5(bytes));
+      headers.put(HttpHeaders.CONTENT_MD5, body.getContentMD5(messageDigest));
       Response resp = tunnelServiceClient.requestForRawResponse(path, "PUT", params, headers,
-                                          new ByteArrayInputStream(bytes), bytes.length);
+                                          body.getInputStream(), body.getLength());
 
       if (!resp.isOK()) {
         TunnelException ex = new TunnelException(new ByteArrayInputStream(resp.getBody()));
@@ -178,13 +172,4 @@ public class StreamUploadWriter {
   public TunnelTableSchema getSchema() {
     return schema;
   }
-
-  private String generateMD5(byte[] bytes) {
-    byte[] digest = messageDigest.digest(bytes);
-    StringBuilder sb = new StringBuilder();
-    for (byte b : digest) {
-      sb.append(String.format("%02X", b));
-    }
-    return sb.toString();
-  }
 }
@@ -19,7 +19,6 @@
 
 package com.aliyun.odps.tunnel;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
@@ -40,6 +39,7 @@ import com.aliyun.odps.commons.transport.Connection;
 import com.aliyun.odps.commons.transport.Headers;
 import com.aliyun.odps.commons.transport.Response;
 import com.aliyun.odps.commons.util.IOUtils;
+import com.aliyun.odps.commons.util.RetryPolicy;
 import com.aliyun.odps.data.ArrayRecord;
 import com.aliyun.odps.data.Record;
 import com.aliyun.odps.data.RecordPack;
@@ -48,6 +48,8 @@ import com.aliyun.odps.data.RecordWriter;
 import com.aliyun.odps.rest.RestClient;
 import com.aliyun.odps.tunnel.io.Checksum;
 import com.aliyun.odps.tunnel.io.CompressOption;
+import com.aliyun.odps.tunnel.io.ParallelRecordReader;
+import com.aliyun.odps.tunnel.io.ParallelRecordWriter;
 import com.aliyun.odps.tunnel.io.ProtobufRecordPack;
 import com.aliyun.odps.tunnel.io.TunnelBufferedWriter;
 import com.aliyun.odps.tunnel.io.TunnelRecordReader;
@@ -784,10 +786,8 @@ public class TableTunnel {
         throw new IOException("Invalid connection");
       }
       pack.complete();
-      ByteArrayOutputStream baos = pack.getProtobufStream();
-      baos.writeTo(conn.getOutputStream());
+      pack.writeTo(conn.getOutputStream());
       conn.getOutputStream().close();
-      baos.close();
       Response response = conn.getResponse();
       if (!response.isOK()) {
         TunnelException err = new TunnelException(conn.getInputStream());
@@ -890,6 +890,60 @@ public class TableTunnel {
       }
     }
 
+    /**
+     * 打开异步上传的 {@link TunnelBufferedWriter} 用来写入数据
+     *
+     * <p>
+     * 缓冲区写满后交给后台线程上传，write 调用不再等待网络传输，详见 {@link TunnelBufferedWriter}
+     * </p>
+     *
+     * @param compressOption
+     *     数据传输压缩选项
+     * @param uploadThreads
+     *     后台上传线程数
+     * @param maxPendingBlocks
+     *     同时在上传中的数据块上限
+     */
+    public RecordWriter openBufferedWriter(CompressOption compressOption, int uploadThreads,
+                                           int maxPendingBlocks) throws TunnelException {
+      try {
+        return new TunnelBufferedWriter(this, compressOption, uploadThreads, maxPendingBlocks);
+      } catch (IOException e) {
+        throw new TunnelException(e.getMessage(), e.getCause());
+      }
+    }
+
+    /**
+     * 打开一个无压缩 {@link ParallelRecordWriter}，供多个线程并发写入
+     *
+     * @param parallelism
+     *     同时打开的数据块个数
+     */
+    public ParallelRecordWriter openParallelRecordWriter(int parallelism) {
+      return openParallelRecordWriter(
+          new CompressOption(CompressOption.CompressAlgorithm.ODPS_RAW, 0, 0), parallelism,
+          ParallelRecordWriter.BLOCK_SIZE_DEFAULT);
+    }
+
+    /**
+     * 打开 {@link ParallelRecordWriter}，供多个线程并发写入
+     *
+     * <p>
+     * writer 关闭后，使用 {@link ParallelRecordWriter#getBlockList()} 提交会话
+     * </p>
+     *
+     * @param compressOption
+     *     数据传输压缩选项
+     * @param parallelism
+     *     同时打开的数据块个数
+     * @param blockSize
+     *     单个数据块的字节数上限，达到后自动切换到新的数据块
+     */
+    public ParallelRecordWriter openParallelRecordWriter(CompressOption compressOption,
+                                                         int parallelism, long blockSize) {
+      return new ParallelRecordWriter(this, compressOption, parallelism, blockSize);
+    }
+
     private Connection getConnection(long blockId, CompressOption compress)
         throws OdpsException, IOException {
       HashMap<String, String> params = new HashMap<String, String>();
@@ -1075,6 +1129,13 @@ public class TableTunnel {
       return this.schema;
     }
 
+    /**
+     * 获取上传使用的重试决策，与 tunnel 的 {@link RestClient} 共享
+     */
+    public RetryPolicy getRetryPolicy() {
+      return tunnelServiceClient.getRetryPolicy();
+    }
+
     /**
      * 获取会话状态
      */
@@ -1093,7 +1154,7 @@ public class TableTunnel {
      * @return
      */
     public Record newRecord() {
-      return new ArrayRecord(getSchema().getColumns().toArray(new Column[0]));
+      return new ArrayRecord(getSchema());
     }
 
     public RecordPack newRecordPack() throws IOException {
@@ -1316,6 +1377,41 @@ public class TableTunnel {
       return new TunnelRecordReader(start, count, columns, compress, tunnelServiceClient, this);
     }
 
+    /**
+     * 打开一个按顺序返回记录的 {@link ParallelRecordReader}，并发下载会话中的全部记录
+     *
+     * @param parallelism
+     *     同时下载的分片数
+     */
+    public ParallelRecordReader openParallelReader(int parallelism) {
+      return openParallelReader(parallelism, 0, getRecordCount(),
+                                new CompressOption(CompressOption.CompressAlgorithm.ODPS_RAW, 0, 0),
+                                null, true);
+    }
+
+    /**
+     * 打开 {@link ParallelRecordReader}，把记录区间切分成若干片并发下载
+     *
+     * @param parallelism
+     *     同时下载的分片数
+     * @param start
+     *     本次要读取记录的起始位置
+     * @param count
+     *     本次要读取记录的数量
+     * @param compress
+     *     数据传输压缩选项
+     * @param columns
+     *     本次需要下载的列，为 null 表示全部列
+     * @param ordered
+     *     是否按原始顺序返回记录；为 false 时按下载完成的顺序返回，吞吐更高
+     */
+    public ParallelRecordReader openParallelReader(int parallelism, long start, long count,
+                                                   CompressOption compress, List<Column> columns,
+                                                   boolean ordered) {
+      return new ParallelRecordReader(this, start, count, compress, columns, parallelism, 0,
+                                      ParallelRecordReader.BUFFER_SIZE_DEFAULT, ordered);
+    }
+
     // initiate a new download session
     private void initiate() throws TunnelException {
       HashMap<String, String> params = new HashMap<String, String>();
@@ -19,64 +19,150 @@
 
 package com.aliyun.odps.tunnel.io;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.lang.reflect.Constructor;
 
 import org.xerial.snappy.PureJavaCrc32C;
 
 /**
  * CRC32 checksum util
+ *
+ * 运行在 Java 9 及以上版本时使用 JDK 内置的 java.util.zip.CRC32C（由 JIT 编译为硬件指令），
+ * 否则使用 {@link PureJavaCrc32C}。两者的计算结果完全一致。
+ *
+ * 设置系统属性 odps.tunnel.crc32c.pure=true 可以强制使用纯 Java 实现。
  */
 public class Checksum {
 
-  private static byte[] TRUE = {1};
-  private static byte[] FALSE = {0};
+  private static final byte TRUE = 1;
+  private static final byte FALSE = 0;
+
+  /**
+   * 基本类型的值先攒在 buf 中，再一次性交给 crc 计算，减少对底层实现的小块调用
+   */
+  private static final int BUFFER_SIZE = 64;
+
+  private static final Constructor<? extends java.util.zip.Checksum> JDK_CRC32C = findJdkCrc32C();
 
-  private PureJavaCrc32C crc = new PureJavaCrc32C();
-  private ByteBuffer buf;
+  private final java.util.zip.Checksum crc;
+  private final byte[] buf = new byte[BUFFER_SIZE];
+  private int pos = 0;
 
   public Checksum() {
-    buf = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    this(newCrc32C());
+  }
+
+  /**
+   * 使用指定的 CRC32C 实现构造
+   *
+   * @param crc
+   *     CRC32C 实现
+   */
+  public Checksum(java.util.zip.Checksum crc) {
+    this.crc = crc;
+  }
+
+  /**
+   * 是否在使用 JDK 内置的 CRC32C 实现
+   */
+  public static boolean isJdkCrc32CAvailable() {
+    return JDK_CRC32C != null;
+  }
+
+  /**
+   * 创建一个 CRC32C 实现，优先使用 JDK 内置实现
+   */
+  public static java.util.zip.Checksum newCrc32C() {
+    if (JDK_CRC32C != null) {
+      try {
+        return JDK_CRC32C.newInstance();
+      } catch (Exception ignore) {
+      }
+    }
+    return new PureJavaCrc32C();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Constructor<? extends java.util.zip.Checksum> findJdkCrc32C() {
+    if (Boolean.getBoolean("odps.tunnel.crc32c.pure")) {
+      return null;
+    }
+    try {
+      Class<?> clazz = Class.forName("java.util.zip.CRC32C");
+      Constructor<? extends java.util.zip.Checksum> constructor =
+          ((Class<? extends java.util.zip.Checksum>) clazz).getConstructor();
+      constructor.newInstance();
+      return constructor;
+    } catch (Throwable e) {
+      return null;
+    }
   }
 
   public void update(int v) {
-    buf.clear();
-    buf.putInt(v);
-    crc.update(buf.array(), 0, 4);
+    if (pos + 4 > buf.length) {
+      flush();
+    }
+    buf[pos] = (byte) v;
+    buf[pos + 1] = (byte) (v >>> 8);
+    buf[pos + 2] = (byte) (v >>> 16);
+    buf[pos + 3] = (byte) (v >>> 24);
+    pos += 4;
   }
 
   public void update(long v) {
-    buf.clear();
-    buf.putLong(v);
-    crc.update(buf.array(), 0, 8);
+    if (pos + 8 > buf.length) {
+      flush();
+    }
+    buf[pos] = (byte) v;
+    buf[pos + 1] = (byte) (v >>> 8);
+    buf[pos + 2] = (byte) (v >>> 16);
+    buf[pos + 3] = (byte) (v >>> 24);
+    buf[pos + 4] = (byte) (v >>> 32);
+    buf[pos + 5] = (byte) (v >>> 40);
+    buf[pos + 6] = (byte) (v >>> 48);
+    buf[pos + 7] = (byte) (v >>> 56);
+    pos += 8;
   }
 
   public void update(double v) {
-    buf.clear();
-    buf.putDouble(v);
-    crc.update(buf.array(), 0, 8);
+    update(Double.doubleToRawLongBits(v));
   }
 
   public void update(float v) {
-    buf.clear();
-    buf.putFloat(v);
-    crc.update(buf.array(), 0, 4);
+    update(Float.floatToRawIntBits(v));
   }
 
   public void update(boolean v) {
-    crc.update(v ? TRUE : FALSE, 0, 1);
+    if (pos + 1 > buf.length) {
+      flush();
+    }
+    buf[pos++] = v ? TRUE : FALSE;
   }
 
   public void update(byte[] b, int off, int len) {
+    if (len <= buf.length - pos) {
+      System.arraycopy(b, off, buf, pos, len);
+      pos += len;
+      return;
+    }
+    flush();
     crc.update(b, off, len);
   }
 
   public long getValue() {
+    flush();
     return crc.getValue();
   }
 
   public void reset() {
+    pos = 0;
     crc.reset();
   }
 
+  private void flush() {
+    if (pos > 0) {
+      crc.update(buf, 0, pos);
+      pos = 0;
+    }
+  }
+
 }
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.tunnel.io;
+
+/**
+ * 按列组织的一批记录，用于 {@link com.aliyun.odps.commons.proto.ProtobufRecordStreamWriter#write(ColumnarBatch)}
+ *
+ * <p>每一列由一个原始类型数组和一个可选的 isNull 数组表示，batch 只保存数组的引用，不做拷贝，
+ * 调用方可以在写出后复用同一个 batch 和数组。各类型列对应的向量如下：</p>
+ *
+ * <ul>
+ *   <li>BIGINT、INT、SMALLINT、TINYINT：long 向量</li>
+ *   <li>DATETIME：long 向量，值为 {@link com.aliyun.odps.commons.util.DateUtils#date2ms} 的结果</li>
+ *   <li>DATE：long 向量，值为 {@link com.aliyun.odps.commons.util.DateUtils#getDayOffset} 的结果</li>
+ *   <li>DOUBLE、FLOAT：double 向量</li>
+ *   <li>BOOLEAN：boolean 向量</li>
+ *   <li>STRING、VARCHAR、CHAR、BINARY：字节片段向量，字符串为 UTF-8 编码</li>
+ *   <li>DECIMAL：字节片段向量，值为 BigDecimal.toPlainString() 的 UTF-8 编码</li>
+ * </ul>
+ *
+ * <p>没有设置的列被视为全部为 null。</p>
+ */
+public class ColumnarBatch {
+
+  /**
+   * 列向量的种类
+   */
+  public enum VectorType {
+    LONG,
+    DOUBLE,
+    BOOLEAN,
+    BYTES
+  }
+
+  private final VectorType[] types;
+  private final long[][] longs;
+  private final double[][] doubles;
+  private final boolean[][] booleans;
+  private final byte[][][] bytes;
+  private final int[][] starts;
+  private final int[][] lengths;
+  private final boolean[][] nulls;
+  private int rowCount;
+
+  /**
+   * 构造一个 batch
+   *
+   * @param columnCount
+   *     列数，与表结构的列数一致
+   */
+  public ColumnarBatch(int columnCount) {
+    types = new VectorType[columnCount];
+    longs = new long[columnCount][];
+    doubles = new double[columnCount][];
+    booleans = new boolean[columnCount][];
+    bytes = new byte[columnCount][][];
+    starts = new int[columnCount][];
+    lengths = new int[columnCount][];
+    nulls = new boolean[columnCount][];
+  }
+
+  /**
+   * 设置 batch 中的记录数，每个列向量的长度都不能小于这个值
+   */
+  public void setRowCount(int rowCount) {
+    if (rowCount < 0) {
+      throw new IllegalArgumentException("row count must >= 0, now: " + rowCount);
+    }
+    this.rowCount = rowCount;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  public int getColumnCount() {
+    return types.length;
+  }
+
+  /**
+   * 设置 long 向量列
+   *
+   * @param idx
+   *     列索引
+   * @param values
+   *     列值
+   * @param isNull
+   *     isNull[i] 为 true 表示第 i 行为 null，没有 null 时可以传入 null
+   */
+  public void setLongColumn(int idx, long[] values, boolean[] isNull) {
+    clear(idx);
+    types[idx] = VectorType.LONG;
+    longs[idx] = values;
+    nulls[idx] = isNull;
+  }
+
+  /**
+   * 设置 double 向量列
+   *
+   * @see #setLongColumn(int, long[], boolean[])
+   */
+  public void setDoubleColumn(int idx, double[] values, boolean[] isNull) {
+    clear(idx);
+    types[idx] = VectorType.DOUBLE;
+    doubles[idx] = values;
+    nulls[idx] = isNull;
+  }
+
+  /**
+   * 设置 boolean 向量列
+   *
+   * @see #setLongColumn(int, long[], boolean[])
+   */
+  public void setBooleanColumn(int idx, boolean[] values, boolean[] isNull) {
+    clear(idx);
+    types[idx] = VectorType.BOOLEAN;
+    booleans[idx] = values;
+    nulls[idx] = isNull;
+  }
+
+  /**
+   * 设置字节片段向量列，第 i 行的值为 values[i] 中从 start[i] 开始的 length[i] 个字节
+   *
+   * <p>多行可以共享同一个字节数组的不同片段</p>
+   *
+   * @param idx
+   *     列索引
+   * @param values
+   *     每行所在的字节数组
+   * @param start
+   *     每行在字节数组中的起始位置
+   * @param length
+   *     每行的字节数
+   * @param isNull
+   *     isNull[i] 为 true 表示第 i 行为 null，没有 null 时可以传入 null
+   */
+  public void setBytesColumn(int idx, byte[][] values, int[] start, int[] length,
+                             boolean[] isNull) {
+    clear(idx);
+    types[idx] = VectorType.BYTES;
+    bytes[idx] = values;
+    starts[idx] = start;
+    lengths[idx] = length;
+    nulls[idx] = isNull;
+  }
+
+  /**
+   * 将列设置为全部为 null
+   */
+  public void setNullColumn(int idx) {
+    clear(idx);
+  }
+
+  private void clear(int idx) {
+    types[idx] = null;
+    longs[idx] = null;
+    doubles[idx] = null;
+    booleans[idx] = null;
+    bytes[idx] = null;
+    starts[idx] = null;
+    lengths[idx] = null;
+    nulls[idx] = null;
+  }
+
+  /**
+   * 获取列向量种类，没有设置的列返回 null
+   */
+  public VectorType getVectorType(int idx) {
+    return types[idx];
+  }
+
+  public boolean isNull(int idx, int row) {
+    return types[idx] == null || (nulls[idx] != null && nulls[idx][row]);
+  }
+
+  /**
+   * 获取列的 isNull 数组，没有设置时返回 null
+   */
+  public boolean[] getNulls(int idx) {
+    return nulls[idx];
+  }
+
+  public long[] getLongs(int idx) {
+    return longs[idx];
+  }
+
+  public double[] getDoubles(int idx) {
+    return doubles[idx];
+  }
+
+  public boolean[] getBooleans(int idx) {
+    return booleans[idx];
+  }
+
+  public byte[][] getBytes(int idx) {
+    return bytes[idx];
+  }
+
+  public int[] getStarts(int idx) {
+    return starts[idx];
+  }
+
+  public int[] getLengths(int idx) {
+    return lengths[idx];
+  }
+}
@@ -0,0 +1,481 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.tunnel.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.commons.util.DaemonThreadFactory;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.RecordReader;
+import com.aliyun.odps.tunnel.InstanceTunnel;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.aliyun.odps.tunnel.TunnelException;
+
+/**
+ * <p>ParallelRecordReader 把一个下载会话（表或者 instance 结果）中的记录区间切分成若干片，在后台线程池中为每一片打开一个
+ * {@link TunnelRecordReader} 并发下载。每一片使用 TunnelRecordReader 自身的断点重试逻辑，
+ * 一片失败重连时只从该片已读到的位置继续，不影响其它分片。</p>
+ *
+ * <p>有两种读取方式：</p>
+ * <ul>
+ *   <li>{@link #read()}：ordered 为 true 时按原始顺序返回记录，后台最多同时缓冲 2 * parallelism 片，
+ *   每片最多缓冲 bufferSize 条记录；ordered 为 false 时记录按下载完成的顺序返回，吞吐更高。</li>
+ *   <li>{@link #forEach(RecordHandler)}：在下载线程中直接回调，不经过缓冲队列，记录之间没有顺序，
+ *   handler 会被多个线程并发调用。</li>
+ * </ul>
+ *
+ * <p>两种方式不能混用，任何一片下载失败后 reader 都不可再用。</p>
+ *
+ * <pre>
+ * RecordReader reader = session.openParallelReader(8);
+ * Record r;
+ * while ((r = reader.read()) != null) {
+ *   // ...
+ * }
+ * reader.close();
+ * </pre>
+ */
+public class ParallelRecordReader implements RecordReader {
+
+  /**
+   * {@link #forEach(RecordHandler)} 的回调，会被多个下载线程并发调用
+   */
+  public interface RecordHandler {
+
+    void handle(Record record) throws IOException;
+  }
+
+  /**
+   * 每片默认缓冲的记录数
+   */
+  public static final int BUFFER_SIZE_DEFAULT = 1024;
+
+  /**
+   * 未指定分片大小时，每个线程平均分到的片数
+   */
+  private static final int SLICES_PER_THREAD = 4;
+
+  /**
+   * 分片结束的标记
+   */
+  private static final Object END = new Object();
+
+  private final TableTunnel.DownloadSession session;
+  private final InstanceTunnel.DownloadSession instanceSession;
+  private final CompressOption option;
+  private final List<Column> columns;
+  private final int parallelism;
+  private final int bufferSize;
+  private final boolean ordered;
+  private final List<long[]> slices = new ArrayList<long[]>();
+
+  private final Set<RecordReader> openReaders =
+      Collections.synchronizedSet(new HashSet<RecordReader>());
+  private final AtomicReference<IOException> error = new AtomicReference<IOException>();
+  private ExecutorService downloader;
+  private volatile boolean isClosed = false;
+  private boolean started = false;
+
+  // ordered
+  private List<BlockingQueue<Object>> sliceBuffers;
+  private int currentSlice = 0;
+  private int submittedSlices = 0;
+
+  // unordered
+  private BlockingQueue<Object> sharedBuffer;
+  private boolean finished = false;
+
+  /**
+   * 构造此类对象
+   *
+   * @param session
+   *     {@link TableTunnel.DownloadSession}
+   * @param start
+   *     要读取记录的起始位置
+   * @param count
+   *     要读取记录的数量
+   * @param option
+   *     {@link CompressOption}
+   * @param columns
+   *     需要读取的列，为 null 表示全部列
+   * @param parallelism
+   *     同时下载的分片数
+   * @param sliceSize
+   *     每片的记录数，小于等于 0 时按 parallelism 自动切分
+   * @param bufferSize
+   *     read() 方式下每片最多缓冲的记录数
+   * @param ordered
+   *     read() 是否按原始顺序返回记录
+   */
+  public ParallelRecordReader(TableTunnel.DownloadSession session, long start, long count,
+                              CompressOption option, List<Column> columns, int parallelism,
+                              long sliceSize, int bufferSize, boolean ordered) {
+    this(session, null, start, count, option, columns, parallelism, sliceSize, bufferSize,
+         ordered);
+  }
+
+  /**
+   * 构造此类对象，并发下载 instance 的结果
+   *
+   * @param session
+   *     {@link InstanceTunnel.DownloadSession}
+   * @see #ParallelRecordReader(TableTunnel.DownloadSession, long, long, CompressOption, List,
+   * int, long, int, boolean)
+   */
+  public ParallelRecordReader(InstanceTunnel.DownloadSession session, long start, long count,
+                              CompressOption option, List<Column> columns, int parallelism,
+                              long sliceSize, int bufferSize, boolean ordered) {
+    this(null, session, start, count, option, columns, parallelism, sliceSize, bufferSize,
+         ordered);
+  }
+
+  private ParallelRecordReader(TableTunnel.DownloadSession session,
+                               InstanceTunnel.DownloadSession instanceSession, long start,
+                               long count, CompressOption option, List<Column> columns,
+                               int parallelism, long sliceSize, int bufferSize, boolean ordered) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must >= 1, now: " + parallelism);
+    }
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("buffer size must >= 1, now: " + bufferSize);
+    }
+    if (start < 0 || count < 0) {
+      throw new IllegalArgumentException("invalid range, start: " + start + ", count: " + count);
+    }
+
+    this.session = session;
+    this.instanceSession = instanceSession;
+    this.option = option;
+    this.columns = columns;
+    this.parallelism = parallelism;
+    this.bufferSize = bufferSize;
+    this.ordered = ordered;
+
+    if (sliceSize <= 0) {
+      long sliceCount = (long) parallelism * SLICES_PER_THREAD;
+      sliceSize = Math.max(1, (count + sliceCount - 1) / sliceCount);
+    }
+    for (long s = start; s < start + count; s += sliceSize) {
+      slices.add(new long[]{s, Math.min(sliceSize, start + count - s)});
+    }
+  }
+
+  /**
+   * 获取分片数
+   */
+  public int getSliceCount() {
+    return slices.size();
+  }
+
+  /**
+   * 打开一片的 reader，默认打开一个 {@link TunnelRecordReader}
+   */
+  protected RecordReader openSlice(long start, long count) throws IOException {
+    try {
+      if (instanceSession != null) {
+        return instanceSession.openRecordReader(start, count, option, columns);
+      }
+      return session.openRecordReader(start, count, option, columns);
+    } catch (TunnelException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * 读取下一条记录。读到结尾或者下载出错后下载线程自动退出，调用方没有调用 {@link #close()} 也不会泄漏线程
+   */
+  @Override
+  public Record read() throws IOException {
+    if (isClosed) {
+      throw new IOException("Reader has been closed");
+    }
+    Record r;
+    try {
+      r = readNext();
+    } catch (IOException e) {
+      if (error.get() != null) {
+        // 不再消费缓冲区，中断阻塞在缓冲区上的下载线程
+        downloader.shutdownNow();
+      }
+      throw e;
+    }
+    if (r == null) {
+      downloader.shutdown();
+    }
+    return r;
+  }
+
+  private Record readNext() throws IOException {
+    if (!started) {
+      start();
+    }
+    checkError();
+
+    try {
+      if (ordered) {
+        while (currentSlice < slices.size()) {
+          Object o = sliceBuffers.get(currentSlice).take();
+          if (o == END) {
+            checkError();
+            sliceBuffers.set(currentSlice, null);
+            currentSlice++;
+            submitNextSlice();
+            continue;
+          }
+          return (Record) o;
+        }
+        return null;
+      }
+
+      if (finished) {
+        return null;
+      }
+      Object o = sharedBuffer.take();
+      if (o == END) {
+        finished = true;
+        checkError();
+        return null;
+      }
+      return (Record) o;
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while waiting for records");
+    }
+  }
+
+  /**
+   * 在下载线程中对每条记录回调 handler，阻塞到所有分片下载完成
+   *
+   * @param handler
+   *     {@link RecordHandler}，会被多个线程并发调用
+   * @throws IOException
+   *     任何一片下载失败或者 handler 抛出异常
+   */
+  public void forEach(final RecordHandler handler) throws IOException {
+    if (isClosed) {
+      throw new IOException("Reader has been closed");
+    }
+    if (started) {
+      throw new IllegalStateException("Reader has been started");
+    }
+    started = true;
+    downloader = newDownloader();
+
+    final CountDownLatch done = new CountDownLatch(slices.size());
+    for (final long[] slice : slices) {
+      execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            if (error.get() == null) {
+              readSlice(slice, handler);
+            }
+          } catch (IOException e) {
+            error.compareAndSet(null, e);
+          } catch (Throwable e) {
+            error.compareAndSet(null, new IOException(e.getMessage(), e));
+          } finally {
+            done.countDown();
+          }
+        }
+      });
+    }
+
+    try {
+      done.await();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while waiting for slices");
+    } finally {
+      downloader.shutdown();
+    }
+    checkError();
+  }
+
+  @Override
+  public void close() throws IOException {
+    isClosed = true;
+    if (downloader != null) {
+      downloader.shutdownNow();
+    }
+    synchronized (openReaders) {
+      for (RecordReader reader : openReaders) {
+        try {
+          reader.close();
+        } catch (IOException ignore) {
+        }
+      }
+      openReaders.clear();
+    }
+  }
+
+  /**
+   * 下载线程池是否已经关闭，用于测试
+   */
+  boolean isDownloaderShutdown() {
+    return downloader != null && downloader.isShutdown();
+  }
+
+  private ExecutorService newDownloader() {
+    return Executors.newFixedThreadPool(parallelism,
+                                        new DaemonThreadFactory("odps-tunnel-downloader"));
+  }
+
+  private void start() throws IOException {
+    started = true;
+    downloader = newDownloader();
+
+    if (ordered) {
+      sliceBuffers = new ArrayList<BlockingQueue<Object>>(slices.size());
+      for (int i = 0; i < slices.size(); ++i) {
+        sliceBuffers.add(null);
+      }
+      // 多提交一倍的分片，让 consumer 处理当前分片时其它线程不会空闲
+      int window = Math.min(slices.size(), parallelism * 2);
+      for (int i = 0; i < window; ++i) {
+        submitNextSlice();
+      }
+      return;
+    }
+
+    sharedBuffer = new LinkedBlockingQueue<Object>(bufferSize * parallelism);
+    final AtomicInteger remaining = new AtomicInteger(slices.size());
+    if (slices.isEmpty()) {
+      sharedBuffer.offer(END);
+      return;
+    }
+    for (final long[] slice : slices) {
+      execute(new Runnable() {
+        @Override
+        public void run() {
+          boolean failed = false;
+          try {
+            readSlice(slice, new RecordHandler() {
+              @Override
+              public void handle(Record record) throws IOException {
+                put(sharedBuffer, record);
+              }
+            });
+          } catch (IOException e) {
+            failed = true;
+            error.compareAndSet(null, e);
+          } catch (Throwable e) {
+            failed = true;
+            error.compareAndSet(null, new IOException(e.getMessage(), e));
+          } finally {
+            if (remaining.decrementAndGet() == 0 || failed) {
+              try {
+                put(sharedBuffer, END);
+              } catch (IOException ignore) {
+              }
+            }
+          }
+        }
+      });
+    }
+  }
+
+  private void submitNextSlice() throws IOException {
+    if (submittedSlices >= slices.size()) {
+      return;
+    }
+    final long[] slice = slices.get(submittedSlices);
+    final BlockingQueue<Object> buffer = new LinkedBlockingQueue<Object>(bufferSize);
+    sliceBuffers.set(submittedSlices, buffer);
+    submittedSlices++;
+
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          readSlice(slice, new RecordHandler() {
+            @Override
+            public void handle(Record record) throws IOException {
+              put(buffer, record);
+            }
+          });
+        } catch (IOException e) {
+          error.compareAndSet(null, e);
+        } catch (Throwable e) {
+          error.compareAndSet(null, new IOException(e.getMessage(), e));
+        } finally {
+          try {
+            put(buffer, END);
+          } catch (IOException ignore) {
+          }
+        }
+      }
+    });
+  }
+
+  private void execute(Runnable task) throws IOException {
+    try {
+      downloader.execute(task);
+    } catch (RejectedExecutionException e) {
+      throw new IOException("Reader has been closed.", e);
+    }
+  }
+
+  private void readSlice(long[] slice, RecordHandler handler) throws IOException {
+    if (isClosed) {
+      return;
+    }
+    RecordReader reader = openSlice(slice[0], slice[1]);
+    openReaders.add(reader);
+    try {
+      Record r;
+      while (!isClosed && (r = reader.read()) != null) {
+        handler.handle(r);
+      }
+    } finally {
+      if (openReaders.remove(reader)) {
+        reader.close();
+      }
+    }
+  }
+
+  private static void put(BlockingQueue<Object> queue, Object o) throws IOException {
+    try {
+      queue.put(o);
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while buffering records");
+    }
+  }
+
+  private void checkError() throws IOException {
+    IOException e = error.get();
+    if (e != null) {
+      throw new IOException("Failed to download slice in background: " + e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.tunnel.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.aliyun.odps.commons.proto.ProtobufRecordStreamWriter;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.RecordWriter;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.aliyun.odps.tunnel.TunnelException;
+
+/**
+ * <p>ParallelRecordWriter 在同一个 UploadSession 中同时打开多个数据块，供多个线程并发写入。</p>
+ *
+ * <p>writer 内部维护 parallelism 个相互独立的分片，每个分片持有自己的锁和一个打开的
+ * {@link TunnelRecordWriter}（即一个 HTTP 连接）。写入线程优先使用自己固定的分片，分片被占用时会尝试
+ * 其它空闲分片，因此生产者之间不会在同一把锁上排队。当一个数据块写入的字节数达到 blockSize 时，
+ * 该数据块被关闭，下一次写入会自动申请新的 blockId。</p>
+ *
+ * <p>所有分片关闭后，通过 {@link #getBlockList()} 获得写入成功的数据块列表，用于
+ * {@link TableTunnel.UploadSession#commit(Long[])}。</p>
+ *
+ * <p>注意：数据块以流的方式上传，记录不在内存中保留，任何一个数据块上传失败后 writer 都不可再用，
+ * 需要重新创建会话上传。</p>
+ *
+ * <pre>
+ * ParallelRecordWriter writer = session.openParallelRecordWriter(8);
+ * // 多个线程并发调用 writer.write(record)
+ * writer.close();
+ * session.commit(writer.getBlockList());
+ * </pre>
+ */
+public class ParallelRecordWriter implements RecordWriter {
+
+  /**
+   * 单个数据块的上传统计
+   */
+  public static class BlockStats {
+
+    private final long blockId;
+    private final long recordCount;
+    private final long bytes;
+    private final long elapsedMillis;
+
+    BlockStats(long blockId, long recordCount, long bytes, long elapsedMillis) {
+      this.blockId = blockId;
+      this.recordCount = recordCount;
+      this.bytes = bytes;
+      this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getBlockId() {
+      return blockId;
+    }
+
+    public long getRecordCount() {
+      return recordCount;
+    }
+
+    /**
+     * 获取写出的字节数（压缩后）
+     */
+    public long getBytes() {
+      return bytes;
+    }
+
+    /**
+     * 获取数据块从打开到关闭的时间，毫秒
+     */
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+
+    /**
+     * 获取数据块的上传吞吐，字节/秒
+     */
+    public double getThroughput() {
+      return elapsedMillis == 0 ? bytes * 1000.0 : bytes * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+      return "block " + blockId + ": " + recordCount + " records, " + bytes + " bytes, "
+             + elapsedMillis + " ms";
+    }
+  }
+
+  private class Stripe {
+
+    final ReentrantLock lock = new ReentrantLock();
+    ProtobufRecordStreamWriter writer;
+    long blockId;
+    long recordCount;
+    long startTime;
+
+    void write(Record r) throws IOException {
+      if (writer == null) {
+        blockId = nextBlockId();
+        writer = openBlock(blockId);
+        recordCount = 0;
+        startTime = System.currentTimeMillis();
+      }
+
+      writer.write(r);
+      recordCount++;
+
+      if (writer.getTotalBytes() >= blockSize) {
+        closeBlock();
+      }
+    }
+
+    void closeBlock() throws IOException {
+      if (writer == null) {
+        return;
+      }
+
+      ProtobufRecordStreamWriter w = writer;
+      writer = null;
+      w.close();
+      addStats(new BlockStats(blockId, recordCount, w.getTotalBytes(),
+                              System.currentTimeMillis() - startTime));
+    }
+  }
+
+  public static final long BLOCK_SIZE_DEFAULT = 1024L * 1024 * 1024;
+  private static final long BLOCK_SIZE_MIN = 1024 * 1024;
+  private static final long BLOCK_SIZE_MAX = 100L * 1024 * 1024 * 1024;
+
+  private final TableTunnel.UploadSession session;
+  private final CompressOption option;
+  private final long blockSize;
+  private final Stripe[] stripes;
+
+  private final AtomicInteger nextStripe = new AtomicInteger(0);
+  private final ThreadLocal<Integer> homeStripe = new ThreadLocal<Integer>() {
+    @Override
+    protected Integer initialValue() {
+      return (nextStripe.getAndIncrement() & Integer.MAX_VALUE) % stripes.length;
+    }
+  };
+
+  private final List<BlockStats> finishedBlocks = new ArrayList<BlockStats>();
+  private final AtomicReference<IOException> error = new AtomicReference<IOException>();
+  private volatile boolean isClosed = false;
+
+  /**
+   * 构造此类对象
+   *
+   * @param session
+   *     {@link TableTunnel.UploadSession}
+   * @param option
+   *     {@link CompressOption}
+   * @param parallelism
+   *     同时打开的数据块个数
+   * @param blockSize
+   *     单个数据块的字节数上限，最小 1 MiB，最大 100 GiB
+   */
+  public ParallelRecordWriter(TableTunnel.UploadSession session, CompressOption option,
+                              int parallelism, long blockSize) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must >= 1, now: " + parallelism);
+    }
+    if (blockSize < BLOCK_SIZE_MIN || blockSize > BLOCK_SIZE_MAX) {
+      throw new IllegalArgumentException("block size must in [" + BLOCK_SIZE_MIN + ", "
+                                         + BLOCK_SIZE_MAX + "], now: " + blockSize);
+    }
+
+    this.session = session;
+    this.option = option;
+    this.blockSize = blockSize;
+    this.stripes = new Stripe[parallelism];
+    for (int i = 0; i < parallelism; ++i) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * 写入一条记录，可以被多个线程同时调用
+   *
+   * @param r
+   *     {@link Record}对象
+   * @throws IOException
+   *     任意数据块上传失败后，后续的写入都会抛出异常
+   */
+  @Override
+  public void write(Record r) throws IOException {
+    Stripe stripe = acquireStripe();
+    try {
+      checkState();
+      stripe.write(r);
+    } catch (IOException e) {
+      error.compareAndSet(null, e);
+      throw e;
+    } catch (RuntimeException e) {
+      // 例如分配 blockId 失败，同样需要让其他线程和 close 感知到
+      IOException wrapped = new IOException("Failed to write record: " + e.getMessage(), e);
+      error.compareAndSet(null, wrapped);
+      throw wrapped;
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+  private Stripe acquireStripe() {
+    int home = homeStripe.get();
+    for (int i = 0; i < stripes.length; ++i) {
+      Stripe stripe = stripes[(home + i) % stripes.length];
+      if (stripe.lock.tryLock()) {
+        return stripe;
+      }
+    }
+    Stripe stripe = stripes[home];
+    stripe.lock.lock();
+    return stripe;
+  }
+
+  private void checkState() throws IOException {
+    if (isClosed) {
+      throw new IOException("Writer has been closed.");
+    }
+    IOException e = error.get();
+    if (e != null) {
+      throw new IOException("Writer failed: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * 关闭所有打开的数据块
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+
+    IOException failure = null;
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        stripe.closeBlock();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      } catch (RuntimeException e) {
+        if (failure == null) {
+          failure = new IOException("Failed to close block: " + e.getMessage(), e);
+        }
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+
+    if (failure != null) {
+      error.compareAndSet(null, failure);
+      throw failure;
+    }
+    checkError();
+  }
+
+  private void checkError() throws IOException {
+    IOException e = error.get();
+    if (e != null) {
+      throw new IOException("Writer failed: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * 获取已经上传完成的数据块列表，在 {@link #close()} 之后调用可以得到全部数据块
+   *
+   * @return 按 blockId 排序的数据块列表
+   */
+  public Long[] getBlockList() {
+    List<Long> blocks = new ArrayList<Long>();
+    for (BlockStats stats : getBlockStats()) {
+      blocks.add(stats.getBlockId());
+    }
+    Collections.sort(blocks);
+    return blocks.toArray(new Long[0]);
+  }
+
+  /**
+   * 获取已经上传完成的数据块的统计信息
+   *
+   * @return {@link BlockStats} 列表
+   */
+  public List<BlockStats> getBlockStats() {
+    synchronized (finishedBlocks) {
+      return new ArrayList<BlockStats>(finishedBlocks);
+    }
+  }
+
+  private void addStats(BlockStats stats) {
+    synchronized (finishedBlocks) {
+      finishedBlocks.add(stats);
+    }
+  }
+
+  /**
+   * 申请一个新的 blockId
+   */
+  protected long nextBlockId() {
+    return session.getAvailBlockId();
+  }
+
+  /**
+   * 打开一个数据块的 writer
+   */
+  protected ProtobufRecordStreamWriter openBlock(long blockId) throws IOException {
+    try {
+      return (ProtobufRecordStreamWriter) session.openRecordWriter(blockId, option);
+    } catch (TunnelException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+}
@@ -21,9 +21,12 @@ package com.aliyun.odps.tunnel.io;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 import com.aliyun.odps.TableSchema;
 import com.aliyun.odps.commons.proto.ProtobufRecordStreamWriter;
+import com.aliyun.odps.commons.util.BufferPool;
+import com.aliyun.odps.commons.util.ChunkedOutputStream;
 import com.aliyun.odps.data.Record;
 import com.aliyun.odps.data.RecordPack;
 import com.aliyun.odps.data.RecordReader;
@@ -32,11 +35,13 @@ import com.aliyun.odps.data.RecordReader;
  * 用 Protobuf 序列化存储的 {@link RecordPack}
  * 和 TableTunnel 共同使用
  * 比直接使用 List<Record> 更加节省内存
+ *
+ * 数据保存在从 {@link BufferPool} 借来的内存块中，{@link #reset()} 时归还给内存池
  */
 public class ProtobufRecordPack extends RecordPack {
 
   private ProtobufRecordStreamWriter writer;
-  private ByteArrayOutputStream byteos;
+  private ChunkedOutputStream byteos;
   private long count = 0;
   private TableSchema schema;
   private CompressOption option = null;
@@ -90,7 +95,9 @@ public class ProtobufRecordPack extends RecordPack {
   }
 
   /**
-   * 新建一个 ProtobufRecordPack，用对应的 CheckSum 初始化, 数据压缩方式 option, 并且预设流 buffer 大小为 capacity
+   * 新建一个 ProtobufRecordPack，用对应的 CheckSum 初始化, 数据压缩方式 option
+   *
+   * 缓冲区按块增长，capacity 参数不再需要，仅为兼容保留
    *
    * @param schema
    * @param checksum
@@ -100,12 +107,23 @@ public class ProtobufRecordPack extends RecordPack {
    */
   public ProtobufRecordPack(TableSchema schema, Checksum checksum, int capacity, CompressOption option)
     throws IOException {
+    this(schema, checksum, option, BufferPool.getDefault());
+  }
+
+  /**
+   * 新建一个 ProtobufRecordPack，用对应的 CheckSum 初始化, 数据压缩方式 option, 缓冲区从 pool 中申请
+   *
+   * @param schema
+   * @param checksum
+   * @param option
+   * @param pool
+   *     {@link BufferPool}
+   * @throws IOException
+   */
+  public ProtobufRecordPack(TableSchema schema, Checksum checksum, CompressOption option,
+                            BufferPool pool) throws IOException {
     isComplete = false;
-    if (capacity == 0) {
-      byteos = new ByteArrayOutputStream();
-    } else {
-      byteos = new ByteArrayOutputStream(capacity);
-    }
+    byteos = new ChunkedOutputStream(pool);
 
     this.schema = schema;
     if (null != option) {
@@ -124,6 +142,18 @@ public class ProtobufRecordPack extends RecordPack {
     ++count;
   }
 
+  /**
+   * 追加一批按列组织的记录
+   *
+   * @param batch
+   *     {@link ColumnarBatch}
+   * @throws IOException
+   */
+  public void append(ColumnarBatch batch) throws IOException {
+    writer.write(batch);
+    count += batch.getRowCount();
+  }
+
   /**
    * 获取 RecordReader 对象
    * ProtobufRecordPack 不支持改方法
@@ -135,12 +165,33 @@ public class ProtobufRecordPack extends RecordPack {
     throw new UnsupportedOperationException("PBPack does not supported Read.");
   }
 
-  // FIXME: 返回的并不是 probuf 的 stream，而是 protobuf 输出的那个缓冲区
+  /**
+   * 获取 pack 数据的一份拷贝
+   *
+   * @deprecated 会把数据合并拷贝到一个新的缓冲区，请使用 {@link #writeTo(OutputStream)}
+   */
+  @Deprecated
   public ByteArrayOutputStream getProtobufStream() throws IOException {
     if (!isComplete) {
       writer.flush();
     }
-    return byteos;
+    ByteArrayOutputStream copy = new ByteArrayOutputStream((int) byteos.size());
+    byteos.writeTo(copy);
+    return copy;
+  }
+
+  /**
+   * 把 pack 数据逐块写到 out，不做合并拷贝
+   *
+   * @param out
+   *     输出流
+   * @throws IOException
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    if (!isComplete) {
+      writer.flush();
+    }
+    byteos.writeTo(out);
   }
 
   public void complete() throws IOException {
@@ -186,7 +237,7 @@ public class ProtobufRecordPack extends RecordPack {
   }
 
   /**
-   * 清空 RecordPack
+   * 清空 RecordPack，缓冲区归还给内存池
    */
   public void reset() throws IOException {
     if (byteos != null) {
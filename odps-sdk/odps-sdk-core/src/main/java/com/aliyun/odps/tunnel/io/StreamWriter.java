@@ -33,6 +33,7 @@ import com.aliyun.odps.PartitionSpec;
 import com.aliyun.odps.commons.transport.Headers;
 import com.aliyun.odps.commons.transport.Response;
 import com.aliyun.odps.commons.util.IOUtils;
+import com.aliyun.odps.datahub.XStreamPackBody;
 import com.aliyun.odps.rest.RestClient;
 import com.aliyun.odps.tunnel.HttpHeaders;
 import com.aliyun.odps.tunnel.TunnelConstants;
@@ -131,29 +132,27 @@ public class StreamWriter {
     HashMap<String, String> headers = new HashMap<String, String>(this.headers);
     headers.put(HttpHeaders.CONTENT_ENCODING, "deflate");
     try {
-      byte[] bytes = recordPack.getByteArray();
-      
-      if ((null == bytes || 0 == bytes.length) && null == meta) {
+      if (0 == recordPack.getByteSize() && null == meta) {
         throw new TunnelException("both record pack and meta are empty.");
       }
 
+      // pack_data 由 XStreamPackBody 直接引用 recordPack 的数据，这里只序列化其余字段
       XStreamPack.Builder pack = XStreamPack.newBuilder();
-      pack.setPackData(ByteString.copyFrom(bytes));
       if (null != meta) {
         pack.setPackMeta(ByteString.copyFrom(meta));
       }
-      
-      bytes = pack.build().toByteArray();
+
+      XStreamPackBody body = new XStreamPackBody(recordPack, pack.buildPartial().toByteArray());
       
       if (partitionSpec != null && partitionSpec.toString().length() > 0) {
         params.put(TunnelConstants.RES_PARTITION, partitionSpec.toString().replaceAll("'", ""));
       }
       
       params.put(TunnelConstants.RECORD_COUNT, String.valueOf(recordPack.getRecordCount()));
-      headers.put(Headers.CONTENT_MD5, generatorMD5(bytes));
+      headers.put(Headers.CONTENT_MD5, body.getContentMD5(messageDigest));
       Response resp = tunnelServiceClient.requestForRawResponse(path, "PUT", params, headers,
-                                                                new ByteArrayInputStream(bytes),
-                                                                bytes.length);
+                                                                body.getInputStream(),
+                                                                body.getLength());
       if (!resp.isOK()) {
         //TODO exception
         TunnelException ex = new TunnelException(new ByteArrayInputStream(resp.getBody()));
@@ -185,14 +184,5 @@ public class StreamWriter {
       throw new TunnelException("Invalid json content.", e);
     }
   }
-
-  private String generatorMD5(byte[] bytes) {
-    byte[] digest = messageDigest.digest(bytes);
-    StringBuilder sb = new StringBuilder();
-    for (byte b : digest) {
-      sb.append(String.format("%02X", b));
-    }
-    return sb.toString();
-  }
 }
 
@@ -20,10 +20,21 @@
 package com.aliyun.odps.tunnel.io;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.sound.midi.SysexMessage;
 
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.commons.util.DaemonThreadFactory;
 import com.aliyun.odps.commons.util.RetryExceedLimitException;
+import com.aliyun.odps.commons.util.RetryPolicy;
 import com.aliyun.odps.commons.util.RetryStrategy;
 import com.aliyun.odps.data.Record;
 import com.aliyun.odps.data.RecordWriter;
@@ -94,22 +105,47 @@ import com.aliyun.odps.tunnel.TunnelException;
  *}
  * </pre>
  *
+ * <h3>异步上传</h3>
+ *
+ * <p>通过 {@link TableTunnel.UploadSession#openBufferedWriter(CompressOption, int, int)} 打开的
+ * TunnelBufferedWriter 工作在异步模式下：缓冲区写满后会被封存并交给后台的上传线程，write 调用
+ * 立即切换到一个新的缓冲区继续序列化，使序列化和网络传输可以重叠进行。</p>
+ *
+ * <ul>
+ *   <li>正在上传的数据块数达到 maxPendingBlocks 时，write 会阻塞，直到有数据块上传完成</li>
+ *   <li>后台上传失败（重试超过上限）后，下一次 write 或 close 调用会抛出该异常，
+ *   失败数据块的记录不会被重新上传</li>
+ *   <li>close 会等待所有数据块上传完成，并关闭上传线程</li>
+ *   <li>每个缓冲区都会占用 bufferSize 的内存，异步模式最多占用 (maxPendingBlocks + 1) * bufferSize</li>
+ * </ul>
+ *
  * @author onesuper(yichao.cheng@alibaba-inc.com)
  */
 public class TunnelBufferedWriter implements RecordWriter {
 
   private ProtobufRecordPack bufferedPack;
   private TableTunnel.UploadSession session;
+  private TableSchema schema;
   private RetryStrategy retry;
   private long bufferSize;
-  private long bytesWritten;
+  private AtomicLong bytesWritten;
+  private boolean closed;
+
+  // 以下成员仅在异步模式下使用
+  private CompressOption option;
+  private ExecutorService uploader;
+  private Semaphore pendingBlocks;
+  private int maxPendingBlocks;
+  private LinkedBlockingQueue<ProtobufRecordPack> idlePacks;
+  private AtomicReference<IOException> uploadError;
 
   private static final long BUFFER_SIZE_DEFAULT = 64 * 1024 * 1024;
   private static final long BUFFER_SIZE_MIN = 1024 * 1024;
   private static final long BUFFER_SIZE_MAX = 1000 * 1024 * 1024;
 
   /**
-   * 构造此类对象，使用默认缓冲区大小为 10 MiB，和默认的回退策略：4s、8s、16s、32s、64s、128s
+   * 构造此类对象，使用默认缓冲区大小为 64 MiB，默认最多重试 6 次，
+   * 等待时间由 session 的 {@link RetryPolicy} 决定（指数增长并带有随机抖动）
    *
    * @param session
    *    {@link  TableTunnel.UploadSession}
@@ -121,11 +157,69 @@ public class TunnelBufferedWriter implements RecordWriter {
    */
   public TunnelBufferedWriter(TableTunnel.UploadSession session, CompressOption option)
       throws IOException {
-    this.bufferedPack = new ProtobufRecordPack(session.getSchema(), new Checksum(), option);
+    this(session, session.getSchema(), new RetryStrategy(6, session.getRetryPolicy()), option);
+  }
+
+  TunnelBufferedWriter(TableTunnel.UploadSession session, TableSchema schema,
+                       RetryStrategy retry, CompressOption option) throws IOException {
+    this.bufferedPack = new ProtobufRecordPack(schema, new Checksum(), option);
     this.session = session;
+    this.schema = schema;
     this.bufferSize = BUFFER_SIZE_DEFAULT;
-    this.retry = new RetryStrategy(6, 4, RetryStrategy.BackoffStrategy.EXPONENTIAL_BACKOFF);
-    this.bytesWritten = 0;
+    this.retry = retry;
+    this.bytesWritten = new AtomicLong(0);
+    this.option = option;
+  }
+
+  /**
+   * 构造一个异步上传的 TunnelBufferedWriter
+   *
+   * @param session
+   *    {@link  TableTunnel.UploadSession}
+   * @param option
+   *    {@link CompressOption}
+   * @param uploadThreads
+   *    后台上传线程数，至少为 1
+   * @param maxPendingBlocks
+   *    同时在上传中的数据块上限，达到上限时 write 将阻塞，不能小于 uploadThreads
+   *
+   * @throws IOException
+   *    Signals that an I/O exception has occurred.
+   */
+  public TunnelBufferedWriter(TableTunnel.UploadSession session, CompressOption option,
+                              int uploadThreads, int maxPendingBlocks) throws IOException {
+    this(session, option);
+    startUploader(uploadThreads, maxPendingBlocks);
+  }
+
+  TunnelBufferedWriter(TableTunnel.UploadSession session, TableSchema schema,
+                       RetryStrategy retry, CompressOption option,
+                       int uploadThreads, int maxPendingBlocks) throws IOException {
+    this(session, schema, retry, option);
+    startUploader(uploadThreads, maxPendingBlocks);
+  }
+
+  private void startUploader(int uploadThreads, int maxPendingBlocks) {
+    if (uploadThreads < 1) {
+      throw new IllegalArgumentException("upload threads must >= 1, now: " + uploadThreads);
+    }
+    if (maxPendingBlocks < uploadThreads) {
+      throw new IllegalArgumentException("max pending blocks must >= upload threads("
+                                         + uploadThreads + "), now: " + maxPendingBlocks);
+    }
+    this.maxPendingBlocks = maxPendingBlocks;
+    this.pendingBlocks = new Semaphore(maxPendingBlocks);
+    this.idlePacks = new LinkedBlockingQueue<ProtobufRecordPack>();
+    this.uploadError = new AtomicReference<IOException>();
+    this.uploader = Executors.newFixedThreadPool(
+        uploadThreads, new DaemonThreadFactory("odps-tunnel-uploader"));
+  }
+
+  /**
+   * 是否工作在异步上传模式
+   */
+  public boolean isAsync() {
+    return uploader != null;
   }
 
   /**
@@ -149,6 +243,8 @@ public class TunnelBufferedWriter implements RecordWriter {
   /**
    * 设置重试策略
    *
+   * 异步模式下，每个数据块使用该策略的一个副本独立计算重试次数
+   *
    * @param strategy
    *     {@link RetryStrategy}
    */
@@ -160,6 +256,8 @@ public class TunnelBufferedWriter implements RecordWriter {
    * 将 record 写入缓冲区，当其大小超过 bufferSize 时，上传缓冲区中的记录过程中如果发生错误将
    * 进行自动重试，这个过程中 write 调用将一直阻塞，直到所有记录上传成功为止。
    *
+   * 异步模式下，缓冲区交给后台线程上传后立即返回，只有上传中的数据块达到上限时才会阻塞。
+   *
    * @param r
    *     {@link Record}对象
    *
@@ -167,6 +265,7 @@ public class TunnelBufferedWriter implements RecordWriter {
    *     Signals that an I/O exception has occurred.
    */
   public void write(Record r) throws IOException {
+    checkUploadError();
     bufferedPack.append(r);
     if (bufferedPack.getTotalBytes() > bufferSize) {
       flush();
@@ -176,42 +275,169 @@ public class TunnelBufferedWriter implements RecordWriter {
   /**
    * 关闭这个 writer，并上传缓存中没有上传过的记录。
    *
+   * 异步模式下会等待所有数据块上传结束（包括发生错误时）。close 失败时缓冲区中的记录被丢弃，
+   * 之后再调用 close 或 getTotalBytes 不会重新上传。
+   *
    * @throws IOException
    *     Signals that an I/O exception has occurred.
    */
   public void close() throws IOException {
-    flush();
+    if (closed) {
+      return;
+    }
+    if (uploader == null) {
+      try {
+        flush();
+      } finally {
+        closed = true;
+      }
+      return;
+    }
+
+    try {
+      checkUploadError();
+      flush();
+    } finally {
+      closed = true;
+      // 即使上传失败也等待其余数据块结束，保证 close 返回后不再有后台上传
+      try {
+        awaitPendingBlocks();
+      } finally {
+        uploader.shutdown();
+        idlePacks.clear();
+      }
+    }
+    checkUploadError();
   }
 
   /**
-   * 获得总共写的字节数（记录序列化）
+   * 获得总共写的字节数（记录序列化），只统计已经上传成功的数据块
+   *
+   * 异步模式下不会等待上传中的数据块，需要准确的数值时请在 close 之后调用。close 之后不再上传，
+   * 直接返回已经统计的字节数
    *
    * @return
    */
   public long getTotalBytes() throws IOException {
     flush();
-    return bytesWritten;
+    return bytesWritten.get();
   }
 
   private void flush() throws IOException {
+    if (closed) {
+      return;
+    }
     // 得到实际序列化的的字节数，如果等于 0，说明没有写，跳过即可
     long delta = bufferedPack.getTotalBytesWritten();
     if (delta > 0) {
-      bytesWritten += delta;
-      Long blockId = session.getAvailBlockId();
-      while (true) {
+      long blockId = nextBlockId();
+      if (uploader == null) {
+        uploadBlock(blockId, bufferedPack, retry);
+        bufferedPack.reset();
+        bytesWritten.addAndGet(delta);
+      } else {
+        submitBlock(blockId, bufferedPack);
+        bufferedPack = nextPack();
+      }
+    }
+  }
+
+  private void uploadBlock(long blockId, ProtobufRecordPack pack, RetryStrategy retry)
+      throws IOException {
+    while (true) {
+      try {
+        writeBlock(blockId, pack);
+        return;
+      } catch (IOException e) {
         try {
-          session.writeBlock(blockId, bufferedPack);
-          bufferedPack.reset();
-          return;
-        } catch (IOException e) {
+          retry.onFailure(e);
+        } catch (RetryExceedLimitException ignore) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * 分配一个新的数据块 ID，单测中可以覆盖
+   */
+  protected long nextBlockId() {
+    return session.getAvailBlockId();
+  }
+
+  /**
+   * 上传一个数据块，单测中可以覆盖
+   */
+  protected void writeBlock(long blockId, ProtobufRecordPack pack) throws IOException {
+    session.writeBlock(blockId, pack);
+  }
+
+  private void submitBlock(final long blockId, final ProtobufRecordPack pack) throws IOException {
+    try {
+      pendingBlocks.acquire();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while waiting for pending blocks");
+    }
+
+    final RetryStrategy blockRetry = new RetryStrategy(retry);
+    try {
+      uploader.execute(new Runnable() {
+        @Override
+        public void run() {
           try {
-            retry.onFailure(e);
-          } catch (RetryExceedLimitException ignore) {
-            throw e;
+            long delta = pack.getTotalBytesWritten();
+            uploadBlock(blockId, pack, blockRetry);
+            bytesWritten.addAndGet(delta);
+          } catch (IOException e) {
+            uploadError.compareAndSet(null, e);
+          } catch (Throwable e) {
+            uploadError.compareAndSet(null, new IOException(e.getMessage(), e));
+          } finally {
+            // 无论成功与否都回收缓冲区，避免上传失败时缓冲区泄漏
+            recyclePack(pack);
+            pendingBlocks.release();
           }
         }
-      }
+      });
+    } catch (RejectedExecutionException e) {
+      pendingBlocks.release();
+      throw new IOException("Writer has been closed.", e);
+    }
+  }
+
+  private ProtobufRecordPack nextPack() throws IOException {
+    ProtobufRecordPack pack = idlePacks.poll();
+    if (pack == null) {
+      pack = new ProtobufRecordPack(schema, new Checksum(), option);
+    }
+    return pack;
+  }
+
+  private void recyclePack(ProtobufRecordPack pack) {
+    try {
+      pack.reset();
+      idlePacks.offer(pack);
+    } catch (IOException ignore) {
+      // 无法复用的缓冲区直接丢弃，由 nextPack 重新分配
+    }
+  }
+
+  private void awaitPendingBlocks() throws IOException {
+    try {
+      pendingBlocks.acquire(maxPendingBlocks);
+      pendingBlocks.release(maxPendingBlocks);
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while waiting for pending blocks");
+    }
+  }
+
+  private void checkUploadError() throws IOException {
+    if (uploadError == null) {
+      return;
+    }
+    IOException e = uploadError.get();
+    if (e != null) {
+      throw new IOException("Failed to upload block in background: " + e.getMessage(), e);
     }
   }
 }
@@ -20,12 +20,16 @@
 package com.aliyun.odps.tunnel.io;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import com.aliyun.odps.Column;
 import com.aliyun.odps.TableSchema;
 import com.aliyun.odps.commons.transport.Connection;
 import com.aliyun.odps.commons.proto.ProtobufRecordStreamReader;
+import com.aliyun.odps.commons.util.RetryPolicy;
 import com.aliyun.odps.data.Record;
 import com.aliyun.odps.rest.RestClient;
 import com.aliyun.odps.tunnel.InstanceTunnel;
@@ -56,15 +60,33 @@ public class TunnelRecordReader extends ProtobufRecordStreamReader {
   private long offset = 0;
   private long bytesReaded = 0;
 
-  private boolean isClosed = false;
+  private volatile boolean isClosed = false;
 
   private List<Column> columnList;
   private CompressOption option;
   private RestClient tunnelServiceClient;
+  private RetryPolicy retryPolicy;
   private TableTunnel.DownloadSession tableSession;
   private InstanceTunnel.DownloadSession instanceSession;
-  private RawTunnelRecordReader reader;
+  private volatile RawTunnelRecordReader reader;
 
+  /**
+   * 预读模式下每个批次的记录数
+   */
+  private static final int READ_AHEAD_BATCH_SIZE = 256;
+
+  /**
+   * close 时等待预读线程退出的最长时间，毫秒
+   */
+  private static final long READ_AHEAD_JOIN_TIMEOUT = 5000L;
+
+  private boolean started = false;
+  private Thread readAheadThread;
+  private BlockingQueue<Record[]> freeBatches;
+  private BlockingQueue<Record[]> filledBatches;
+  private Record[] currentBatch;
+  private int batchPos;
+  private volatile IOException readAheadError;
 
   /**
    * 构造此类对象
@@ -132,6 +154,8 @@ public class TunnelRecordReader extends ProtobufRecordStreamReader {
     this.reader = null;
     this.instanceSession = null;
     this.tunnelServiceClient = tunnelRestClient;
+    this.retryPolicy = tunnelRestClient == null ? new RetryPolicy()
+                                                : tunnelRestClient.getRetryPolicy();
 
     createNewReader();
   }
@@ -165,15 +189,84 @@ public class TunnelRecordReader extends ProtobufRecordStreamReader {
     this.instanceSession = session;
     this.reader = null;
     this.tunnelServiceClient = tunnelRestClient;
+    this.retryPolicy = tunnelRestClient == null ? new RetryPolicy()
+                                                : tunnelRestClient.getRetryPolicy();
 
     createNewReader();
   }
 
+  /**
+   * 开启预读模式，必须在第一次读取之前调用
+   *
+   * <p>
+   * 预读模式下，一个后台线程负责读取网络数据、解压、校验和解析记录，解析好的记录按批次放入一个
+   * 有界的环形队列，read() 只从队列中取出记录。批次数组在两个线程间循环复用，队列满时后台线程暂停读取。
+   * 列裁剪和断点重试逻辑与普通模式相同。
+   * </p>
+   *
+   * <p>
+   * 预读模式下 read(Record reusedRecord) 忽略 reusedRecord，总是返回新的记录对象
+   * </p>
+   *
+   * @param queueDepth
+   *     预读的批次数，每批最多 256 条记录
+   */
+  public void enableReadAhead(int queueDepth) {
+    if (queueDepth < 1) {
+      throw new IllegalArgumentException("queue depth must >= 1, now: " + queueDepth);
+    }
+    if (started) {
+      throw new IllegalStateException("Read ahead must be enabled before the first read");
+    }
+
+    freeBatches = new ArrayBlockingQueue<Record[]>(queueDepth);
+    filledBatches = new ArrayBlockingQueue<Record[]>(queueDepth);
+    for (int i = 0; i < queueDepth; ++i) {
+      freeBatches.add(new Record[READ_AHEAD_BATCH_SIZE]);
+    }
+    readAheadThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        readAhead();
+      }
+    }, "odps-tunnel-read-ahead");
+    readAheadThread.setDaemon(true);
+  }
+
+  /**
+   * 是否开启了预读模式
+   */
+  public boolean isReadAhead() {
+    return readAheadThread != null;
+  }
+
+  /**
+   * 设置是否按需解析字段，对之后读取的记录生效，重连后仍然保持
+   *
+   * @see ProtobufRecordStreamReader#setLazyDecode(boolean)
+   */
+  @Override
+  public void setLazyDecode(boolean lazyDecode) {
+    super.setLazyDecode(lazyDecode);
+    if (reader != null) {
+      reader.setLazyDecode(lazyDecode);
+    }
+  }
+
   @Override
   public void close() throws IOException {
+    isClosed = true;
+    if (readAheadThread != null) {
+      readAheadThread.interrupt();
+      // 等预读线程退出后再关闭 reader，避免它把关闭当作网络错误重连
+      try {
+        readAheadThread.join(READ_AHEAD_JOIN_TIMEOUT);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
     super.close();
     reader.close();
-    isClosed = true;
   }
 
   @Override
@@ -187,6 +280,17 @@ public class TunnelRecordReader extends ProtobufRecordStreamReader {
       throw new IOException("Reader has been closed");
     }
 
+    if (!started) {
+      started = true;
+      if (readAheadThread != null) {
+        readAheadThread.start();
+      }
+    }
+
+    if (readAheadThread != null) {
+      return readFromBatch();
+    }
+
     try {
       return readWithRetry(reusedRecord);
     } catch (TunnelException e) {
@@ -194,6 +298,71 @@ public class TunnelRecordReader extends ProtobufRecordStreamReader {
     }
   }
 
+  /**
+   * 后台线程：填满一个空闲批次后交给 read()，数据读完或出错时以含 null 的批次结尾
+   */
+  private void readAhead() {
+    Record[] batch = null;
+    try {
+      while (!isClosed) {
+        batch = freeBatches.take();
+        int n = 0;
+        while (n < batch.length) {
+          Record r = readWithRetry(null);
+          if (r == null) {
+            return;
+          }
+          batch[n++] = r;
+        }
+        filledBatches.put(batch);
+        batch = null;
+      }
+    } catch (InterruptedException ignore) {
+      // closed
+    } catch (TunnelException e) {
+      readAheadError = new IOException(e);
+    } catch (IOException e) {
+      readAheadError = e;
+    } catch (Throwable t) {
+      readAheadError = new IOException(t.getMessage(), t);
+    } finally {
+      // 回收的批次全部为 null，未填满的批次本身就以 null 结尾；这个线程持有一个批次时
+      // filledBatches 一定有空位，offer 不会失败
+      if (batch == null) {
+        batch = new Record[1];
+      }
+      filledBatches.offer(batch);
+    }
+  }
+
+  private Record readFromBatch() throws IOException {
+    while (true) {
+      if (currentBatch != null) {
+        if (batchPos < currentBatch.length) {
+          Record r = currentBatch[batchPos];
+          if (r == null) {
+            // 数据结束或者出错，保留当前批次，之后的 read() 得到同样的结果
+            if (readAheadError != null) {
+              throw new IOException("Read ahead failed: " + readAheadError.getMessage(),
+                                    readAheadError);
+            }
+            return null;
+          }
+          currentBatch[batchPos++] = null;
+          return r;
+        }
+        freeBatches.offer(currentBatch);
+      }
+
+      try {
+        currentBatch = filledBatches.take();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException("Interrupted while waiting for records");
+      }
+      batchPos = 0;
+    }
+  }
+
   @Override
   public long getTotalBytes() {
     return bytesReaded + reader.getTotalBytes();
@@ -206,9 +375,10 @@ public class TunnelRecordReader extends ProtobufRecordStreamReader {
       offset += 1;
       return record;
     } catch (IOException e) {
-      if (++retryCount > retryTimes || offset > count /* no more data */) {
+      if (isClosed || retryCount >= retryTimes || offset > count /* no more data */) {
         throw e;
       }
+      backoff(e);
 
       createNewReader();
 
@@ -223,43 +393,66 @@ public class TunnelRecordReader extends ProtobufRecordStreamReader {
    */
   private void createNewReader() throws TunnelException, IOException {
     while (retryCount <= retryTimes) {
+      if (isClosed) {
+        throw new IOException("Reader has been closed");
+      }
       try {
         if (reader != null) {
           bytesReaded += reader.getTotalBytes();
           reader.close();
         }
-        if (tableSession != null) {
-          reader = RawTunnelRecordReader
-                  .createTableTunnelReader(start + offset, count - offset, option, columnList,
-                                           tunnelServiceClient, tableSession);
+        RawTunnelRecordReader r = openRawReader(start + offset, count - offset);
+        reader = r;
+        if (isClosed) {
+          // close() 与重连同时发生，新打开的连接由这里关闭
+          r.close();
+          throw new IOException("Reader has been closed");
         }
-
-        if (instanceSession != null) {
-          reader = RawTunnelRecordReader
-                  .createInstanceTunnelReader(start + offset, count - offset, option, columnList,
-                                              tunnelServiceClient, instanceSession);
-        }
-
+        r.setLazyDecode(isLazyDecode());
+        retryPolicy.onSuccess();
         return;
       } catch (TunnelException e) {
-        if (++retryCount == retryTimes) {
+        if (retryCount >= retryTimes) {
           throw e;
         }
-        sleep(DEFAULT_CONNECT_TIMEOUT);
+        backoff(e);
       } catch (IOException e) {
-        if (++retryCount == retryTimes) {
+        if (retryCount >= retryTimes) {
           throw e;
         }
-        sleep(DEFAULT_CONNECT_TIMEOUT);
+        backoff(e);
       }
     }
   }
 
-  private void sleep(long time) {
+  /**
+   * 由 {@link RetryPolicy} 决定是否重试，并等待重试，下载请求是幂等的
+   */
+  private <E extends Exception> void backoff(E e) throws E {
+    long wait = retryPolicy.onFailure(e, 0, ++retryCount, true);
+    if (wait < 0 || isClosed) {
+      throw e;
+    }
     try {
-      Thread.sleep(time);
-    } catch (InterruptedException e1) {
-      // ignore intentionally
+      retryPolicy.sleep(wait);
+    } catch (InterruptedException ignore) {
+      Thread.currentThread().interrupt();
+      throw e;
+    }
+  }
+
+  /**
+   * 打开一个从 start 开始读 count 条记录的 {@link RawTunnelRecordReader}
+   */
+  protected RawTunnelRecordReader openRawReader(long start, long count)
+      throws TunnelException, IOException {
+    if (tableSession != null) {
+      return RawTunnelRecordReader
+          .createTableTunnelReader(start, count, option, columnList, tunnelServiceClient,
+                                   tableSession);
     }
+    return RawTunnelRecordReader
+        .createInstanceTunnelReader(start, count, option, columnList, tunnelServiceClient,
+                                    instanceSession);
   }
 }
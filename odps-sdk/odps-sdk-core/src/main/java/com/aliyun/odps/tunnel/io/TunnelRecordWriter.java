@@ -71,12 +71,33 @@ public class TunnelRecordWriter extends ProtobufRecordStreamWriter {
     try {
       super.write(r);
     } catch (IOException e) {
-      Response resp = conn.getResponse();
-      if (!resp.isOK()) {
-        TunnelException err = new TunnelException(conn.getInputStream());
-        err.setRequestId(resp.getHeader(HttpHeaders.HEADER_ODPS_REQUEST_ID));
-        throw new IOException(err);
-      }
+      checkResponse();
+    }
+  }
+
+  @Override
+  public void write(ColumnarBatch batch) throws IOException {
+    if (isClosed) {
+      throw new IOException("Writer has been closed.");
+    }
+
+    try {
+      super.write(batch);
+    } catch (IOException e) {
+      checkResponse();
+      throw e;
+    }
+  }
+
+  /**
+   * 写入失败时检查服务端的响应，如果服务端返回错误则抛出对应的 {@link TunnelException}
+   */
+  private void checkResponse() throws IOException {
+    Response resp = conn.getResponse();
+    if (!resp.isOK()) {
+      TunnelException err = new TunnelException(conn.getInputStream());
+      err.setRequestId(resp.getHeader(HttpHeaders.HEADER_ODPS_REQUEST_ID));
+      throw new IOException(err);
     }
   }
 
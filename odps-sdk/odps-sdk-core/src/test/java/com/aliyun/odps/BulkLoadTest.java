@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.commons.transport.Request;
+import com.aliyun.odps.commons.transport.Response;
+import com.aliyun.odps.commons.util.IOUtils;
+import com.aliyun.odps.rest.AsyncRequestExecutor;
+import com.aliyun.odps.rest.RestMockTest.MockResponse;
+import com.aliyun.odps.rest.RestMockTest.MockTransport;
+
+public class BulkLoadTest {
+
+  private static final Pattern NAME = Pattern.compile("<Name>([^<]*)</Name>");
+
+  /**
+   * 查询表时按请求的顺序（reverse 时按相反的顺序）返回除 missing 之外的所有表；
+   * 查询分区时 missing 分区返回 404
+   */
+  private static class BulkTransport extends MockTransport {
+
+    final String missing;
+    final List<Integer> chunkSizes = Collections.synchronizedList(new ArrayList<Integer>());
+    final AtomicInteger running = new AtomicInteger(0);
+    final AtomicInteger maxRunning = new AtomicInteger(0);
+    boolean reverse = false;
+
+    BulkTransport(String missing) {
+      this.missing = missing;
+    }
+
+    @Override
+    public Response request(Request req) throws IOException {
+      int now = running.incrementAndGet();
+      synchronized (maxRunning) {
+        maxRunning.set(Math.max(maxRunning.get(), now));
+      }
+      try {
+        Thread.sleep(5);
+        if (req.getParameters().containsKey("query")) {
+          return queryTables(new String(IOUtils.readFully(req.getBody()), "UTF-8"));
+        }
+        String partition = req.getParameters().get("partition");
+        if (missing.equals(partition)) {
+          return new MockResponse(404, "<Error><Code>NoSuchPartition</Code></Error>");
+        }
+        return new MockResponse(200, "<Partition><Schema>{\"createTime\":1}</Schema></Partition>");
+      } catch (InterruptedException e) {
+        throw new IOException(e.getMessage());
+      } finally {
+        running.decrementAndGet();
+      }
+    }
+
+    private Response queryTables(String query) {
+      List<String> tables = new ArrayList<String>();
+      Matcher m = NAME.matcher(query);
+      int count = 0;
+      while (m.find()) {
+        count++;
+        if (!m.group(1).equals(missing)) {
+          tables.add(m.group(1));
+        }
+      }
+      chunkSizes.add(count);
+      if (reverse) {
+        Collections.reverse(tables);
+      }
+      StringBuilder sb = new StringBuilder("<Tables>");
+      for (String name : tables) {
+        sb.append("<Table><Name>").append(name).append("</Name>")
+            .append("<Project>p</Project></Table>");
+      }
+      return new MockResponse(200, sb.append("</Tables>").toString());
+    }
+  }
+
+  private static Odps odps(BulkTransport transport) {
+    Odps odps = new Odps(new AliyunAccount("test", "test"), transport);
+    odps.setEndpoint("http://localhost/api");
+    odps.setDefaultProject("p");
+    odps.getRestClient().setBulkLoadParallelism(3);
+    return odps;
+  }
+
+  @Test
+  public void testLoadTablesInChunks() throws OdpsException {
+    BulkTransport transport = new BulkTransport("t42");
+    Odps odps = odps(transport);
+    List<String> names = new ArrayList<String>();
+    for (int i = 0; i < 1050; ++i) {
+      names.add("t" + i);
+    }
+
+    List<Table> tables = odps.tables().loadTables(names);
+    Assert.assertEquals(1049, tables.size());
+    int i = 0;
+    for (String name : names) {
+      if (!name.equals("t42")) {
+        Assert.assertEquals(name, tables.get(i++).getName());
+      }
+    }
+
+    Assert.assertEquals(11, transport.chunkSizes.size());
+    for (int size : transport.chunkSizes) {
+      Assert.assertTrue(size <= Tables.MAX_TABLES_PER_REQUEST);
+    }
+    Assert.assertTrue(transport.maxRunning.get() <= 3);
+  }
+
+  @Test
+  public void testLoadTablesKeepsOrder() throws OdpsException {
+    BulkTransport transport = new BulkTransport("missing");
+    transport.reverse = true;
+    Odps odps = odps(transport);
+    List<Table> tables = odps.tables().loadTables(Arrays.asList("c", "missing", "a", "B"));
+    Assert.assertEquals(3, tables.size());
+    Assert.assertEquals("c", tables.get(0).getName());
+    Assert.assertEquals("a", tables.get(1).getName());
+    Assert.assertEquals("B", tables.get(2).getName());
+  }
+
+  @Test
+  public void testReloadTablesKeepsOrder() throws OdpsException {
+    BulkTransport transport = new BulkTransport("");
+    Odps odps = odps(transport);
+    Table loaded = odps.tables().loadTables(Arrays.asList("b")).get(0);
+    List<Table> tables = odps.tables().reloadTables(
+        Arrays.asList(odps.tables().get("a"), loaded, odps.tables().get("c")));
+    Assert.assertEquals(3, tables.size());
+    Assert.assertEquals("a", tables.get(0).getName());
+    Assert.assertSame(loaded, tables.get(1));
+    Assert.assertEquals("c", tables.get(2).getName());
+  }
+
+  @Test
+  public void testLoadPartitions() throws OdpsException {
+    BulkTransport transport = new BulkTransport("pt='7'");
+    Odps odps = odps(transport);
+    List<PartitionSpec> specs = new ArrayList<PartitionSpec>();
+    for (int i = 0; i < 20; ++i) {
+      specs.add(new PartitionSpec("pt='" + i + "'"));
+    }
+
+    List<Partition> partitions = odps.tables().get("t").loadPartitions(specs);
+    Assert.assertEquals(19, partitions.size());
+    int i = 0;
+    for (PartitionSpec spec : specs) {
+      if (!spec.toString().equals("pt='7'")) {
+        Assert.assertEquals(spec.toString(), partitions.get(i++).getPartitionSpec().toString());
+      }
+    }
+    Assert.assertTrue(transport.maxRunning.get() <= 3);
+  }
+
+  @Test
+  public void testReloadDuplicateTables() throws OdpsException {
+    BulkTransport transport = new BulkTransport("");
+    Odps odps = odps(transport);
+    List<Table> tables = odps.tables().reloadTables(
+        Arrays.asList(odps.tables().get("a"), odps.tables().get("b"), odps.tables().get("A")));
+    Assert.assertEquals(3, tables.size());
+    Assert.assertEquals("a", tables.get(0).getName());
+    Assert.assertEquals("b", tables.get(1).getName());
+    Assert.assertSame(tables.get(0), tables.get(2));
+    Assert.assertEquals(Arrays.asList(2), transport.chunkSizes);
+  }
+
+  @Test(timeout = 10000)
+  public void testLoadInExecutorThread() throws Exception {
+    BulkTransport transport = new BulkTransport("");
+    final Odps odps = odps(transport);
+    odps.getRestClient().setAsyncExecutor(new AsyncRequestExecutor(1, 1));
+    Future<Integer> future = odps.getRestClient().submitAsync(new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        List<PartitionSpec> specs = new ArrayList<PartitionSpec>();
+        for (int i = 0; i < 5; ++i) {
+          specs.add(new PartitionSpec("pt='" + i + "'"));
+        }
+        return odps.tables().get("t").loadPartitions(specs).size();
+      }
+    });
+    Assert.assertEquals(Integer.valueOf(5), future.get(10, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.account.AliyunAccount;
+
+public class InstanceWatcherTest {
+
+  private static final Odps ODPS = new Odps(new AliyunAccount("test", "test"));
+
+  private static Instance newInstance(String id, String status) {
+    Instance.TaskStatusModel model = new Instance.TaskStatusModel();
+    model.name = id;
+    model.status = status;
+    return new Instance("project", model, null, ODPS);
+  }
+
+  /**
+   * 每个 instance 查询 runningPolls 次后结束
+   */
+  private static class CountingInstanceWatcher extends InstanceWatcher {
+
+    final int runningPolls;
+    final Map<Instance, AtomicInteger> polls = new ConcurrentHashMap<Instance, AtomicInteger>();
+    final AtomicInteger longPolls = new AtomicInteger(0);
+    final AtomicInteger activeLongPolls = new AtomicInteger(0);
+    final AtomicInteger maxActiveLongPolls = new AtomicInteger(0);
+    // block 模式查询的耗时，毫秒
+    long longPollMillis = 0;
+
+    CountingInstanceWatcher(int threads, int runningPolls) {
+      super(threads);
+      this.runningPolls = runningPolls;
+      setInterval(1, 4);
+    }
+
+    CountingInstanceWatcher(int runningPolls) {
+      this(2, runningPolls);
+    }
+
+    @Override
+    protected Instance.Status getStatus(Instance instance, boolean longPolling) {
+      if (longPolling) {
+        longPolls.incrementAndGet();
+        int active = activeLongPolls.incrementAndGet();
+        while (true) {
+          int max = maxActiveLongPolls.get();
+          if (active <= max || maxActiveLongPolls.compareAndSet(max, active)) {
+            break;
+          }
+        }
+        try {
+          Thread.sleep(longPollMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          activeLongPolls.decrementAndGet();
+        }
+      }
+      AtomicInteger count = polls.get(instance);
+      if (count == null) {
+        polls.put(instance, count = new AtomicInteger(0));
+      }
+      return count.incrementAndGet() > runningPolls ? Instance.Status.TERMINATED
+                                                    : Instance.Status.RUNNING;
+    }
+  }
+
+  @Test
+  public void testWatchMany() throws Exception {
+    CountingInstanceWatcher watcher = new CountingInstanceWatcher(3);
+    final AtomicInteger terminated = new AtomicInteger(0);
+    InstanceWatcher.Callback callback = new InstanceWatcher.Callback() {
+      @Override
+      public void onTerminated(Instance instance) {
+        terminated.incrementAndGet();
+      }
+
+      @Override
+      public void onFailure(Instance instance, Exception e) {
+        Assert.fail(e.getMessage());
+      }
+    };
+
+    List<Future<Instance>> futures = new ArrayList<Future<Instance>>();
+    List<Instance> instances = new ArrayList<Instance>();
+    for (int i = 0; i < 200; ++i) {
+      Instance instance = newInstance("i" + i, "Running");
+      instances.add(instance);
+      futures.add(watcher.watch(instance, callback));
+    }
+    for (int i = 0; i < futures.size(); ++i) {
+      Assert.assertSame(instances.get(i), futures.get(i).get(10, TimeUnit.SECONDS));
+    }
+    watcher.shutdown();
+
+    Assert.assertEquals(200, terminated.get());
+    Assert.assertEquals(0, watcher.getQueueDepth());
+    Assert.assertEquals(200 * 4, watcher.getPollCount());
+    // 等待的 instance 数超过线程数时使用普通查询，block 查询最多占用一半的线程
+    Assert.assertTrue(watcher.longPolls.get() < 200 * 4);
+    Assert.assertTrue(watcher.maxActiveLongPolls.get() <= 1);
+    Assert.assertEquals(0, watcher.getFailedPollCount());
+  }
+
+  @Test
+  public void testLongPollingSingleInstance() throws Exception {
+    CountingInstanceWatcher watcher = new CountingInstanceWatcher(3);
+    watcher.watch(newInstance("i", "Running")).get(10, TimeUnit.SECONDS);
+    watcher.shutdown();
+    Assert.assertEquals(4, watcher.longPolls.get());
+  }
+
+  @Test
+  public void testLongPollingDoesNotStarve() throws Exception {
+    // instance 数超过线程数时不使用 block 查询
+    checkNotStarved(20);
+    // instance 数不超过线程数时，block 查询最多占用一半的线程
+    checkNotStarved(3);
+  }
+
+  private static void checkNotStarved(int slowInstances) throws Exception {
+    CountingInstanceWatcher watcher = new CountingInstanceWatcher(4, 3);
+    watcher.longPollMillis = 500;
+    // 刚注册、一直运行的 instance
+    for (int i = 0; i < slowInstances; ++i) {
+      Instance slow = newInstance("slow" + i, "Running");
+      watcher.polls.put(slow, new AtomicInteger(Integer.MIN_VALUE));
+      watcher.watch(slow);
+    }
+    // 如果每个调度线程都被 block 查询占用，需要数秒才能查询 4 次
+    long start = System.currentTimeMillis();
+    watcher.watch(newInstance("fast", "Running")).get(10, TimeUnit.SECONDS);
+    long elapsed = System.currentTimeMillis() - start;
+    watcher.shutdown();
+    Assert.assertTrue("took " + elapsed + " ms", elapsed < 2000);
+    Assert.assertTrue(watcher.maxActiveLongPolls.get() <= 2);
+  }
+
+  @Test
+  public void testBackoffAfterLongPolling() throws Exception {
+    CountingInstanceWatcher watcher = new CountingInstanceWatcher(5);
+    watcher.setLongPollingPeriod(0);
+    watcher.watch(newInstance("i", "Running")).get(10, TimeUnit.SECONDS);
+    watcher.shutdown();
+    Assert.assertEquals(0, watcher.longPolls.get());
+    Assert.assertEquals(6, watcher.getPollCount());
+  }
+
+  @Test
+  public void testHookInvokedOnce() throws Exception {
+    final AtomicInteger after = new AtomicInteger(0);
+    final Instance instance = newInstance("i", "Terminated");
+    instance.setOdpsHooks(new OdpsHooks() {
+      @Override
+      public void after(Instance instance, Odps odps) throws OdpsException {
+        after.incrementAndGet();
+      }
+    });
+
+    InstanceWatcher watcher = new InstanceWatcher();
+    List<Future<Instance>> futures = new ArrayList<Future<Instance>>();
+    for (int i = 0; i < 20; ++i) {
+      futures.add(watcher.watch(instance));
+    }
+    for (int i = 0; i < 20; ++i) {
+      instance.getStatus();
+    }
+    for (Future<Instance> f : futures) {
+      f.get(10, TimeUnit.SECONDS);
+    }
+    watcher.shutdown();
+    Assert.assertEquals(1, after.get());
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    InstanceWatcher watcher = new InstanceWatcher(1) {
+      @Override
+      protected Instance.Status getStatus(Instance instance, boolean longPolling) {
+        throw new ReloadException("mock failure");
+      }
+    };
+    watcher.setInterval(1, 2);
+    watcher.setMaxFailures(3);
+    final CountDownLatch failed = new CountDownLatch(1);
+    Future<Instance> f = watcher.watch(newInstance("i", "Running"), new InstanceWatcher.Callback() {
+      @Override
+      public void onTerminated(Instance instance) {
+      }
+
+      @Override
+      public void onFailure(Instance instance, Exception e) {
+        failed.countDown();
+      }
+    });
+    try {
+      f.get(10, TimeUnit.SECONDS);
+      Assert.fail();
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof ReloadException);
+    }
+    Assert.assertTrue(failed.await(10, TimeUnit.SECONDS));
+    watcher.shutdown();
+    Assert.assertEquals(3, watcher.getFailedPollCount());
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    CountingInstanceWatcher watcher = new CountingInstanceWatcher(Integer.MAX_VALUE);
+    Future<Instance> f = watcher.watch(newInstance("i", "Running"));
+    Assert.assertEquals(1, watcher.getQueueDepth());
+    Assert.assertTrue(f.cancel(false));
+    Assert.assertEquals(0, watcher.getQueueDepth());
+    watcher.shutdown();
+  }
+
+  @Test
+  public void testShutdown() throws Exception {
+    CountingInstanceWatcher watcher = new CountingInstanceWatcher(Integer.MAX_VALUE);
+    Future<Instance> f = watcher.watch(newInstance("i", "Running"));
+    watcher.shutdown();
+    Assert.assertTrue(f.isCancelled());
+    Assert.assertEquals(0, watcher.getQueueDepth());
+  }
+
+  @Test
+  public void testPollRate() throws Exception {
+    final long[] clock = {100 * 1000L};
+    CountingInstanceWatcher watcher = new CountingInstanceWatcher(2) {
+      @Override
+      long now() {
+        return clock[0];
+      }
+    };
+    watcher.watch(newInstance("i", "Running")).get(10, TimeUnit.SECONDS);
+    // 当前这一秒还没有结束，不计入
+    Assert.assertEquals(0.0, watcher.getPollRate(), 0.0);
+    clock[0] += 1000;
+    Assert.assertEquals(3.0 / InstanceWatcher.RATE_WINDOW, watcher.getPollRate(), 1e-9);
+    clock[0] += InstanceWatcher.RATE_WINDOW * 1000L;
+    Assert.assertEquals(0.0, watcher.getPollRate(), 0.0);
+    watcher.shutdown();
+  }
+}
@@ -19,14 +19,24 @@
 
 package com.aliyun.odps;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
+import com.aliyun.odps.rest.AsyncRequestExecutor;
+import com.aliyun.odps.rest.RestClient;
+
 public class ListIteratorTest {
 
   public Iterator<String> getList() {
@@ -60,4 +70,121 @@ public class ListIteratorTest {
     Iterator<String> list = getList();
     assertTrue("not empty".equals(list.next()));
   }
+
+  /**
+   * 共 pages 页，每页 pageSize 个连续整数，failAt 页请求失败
+   */
+  private static class PagedIterator extends ListIterator<Integer> {
+
+    final int pages;
+    final int failAt;
+    final AtomicInteger calls = new AtomicInteger(0);
+
+    PagedIterator(int pages, int failAt) {
+      this.pages = pages;
+      this.failAt = failAt;
+      setPageSize(10);
+    }
+
+    @Override
+    protected List<Integer> list() {
+      int page = calls.getAndIncrement();
+      if (page == failAt) {
+        throw new RuntimeException("mock failure");
+      }
+      if (page >= pages) {
+        return null;
+      }
+      List<Integer> list = new ArrayList<Integer>();
+      for (int i = 0; i < getPageSize(); ++i) {
+        list.add(page * getPageSize() + i);
+      }
+      return list;
+    }
+  }
+
+  @Test
+  public void testPrefetch() {
+    PagedIterator it = new PagedIterator(100, -1);
+    it.setPrefetchDepth(3);
+    int expected = 0;
+    while (it.hasNext()) {
+      assertEquals(Integer.valueOf(expected++), it.next());
+      // 已消费的页 + 预取页 + 正在请求的一页
+      assertTrue(it.calls.get() <= expected / 10 + 1 + 3 + 1);
+    }
+    assertEquals(1000, expected);
+    assertEquals(101, it.calls.get());
+  }
+
+  @Test
+  public void testPrefetchClose() throws Exception {
+    PagedIterator it = new PagedIterator(100, -1);
+    it.setPrefetchDepth(2);
+    assertEquals(Integer.valueOf(0), it.next());
+    it.close();
+    assertFalse(it.hasNext());
+    Thread.sleep(100);
+    int calls = it.calls.get();
+    assertTrue(calls <= 4);
+    Thread.sleep(100);
+    assertEquals(calls, it.calls.get());
+  }
+
+  @Test
+  public void testPrefetchFailure() {
+    PagedIterator it = new PagedIterator(100, 2);
+    it.setPrefetchDepth(2);
+    for (int i = 0; i < 20; ++i) {
+      it.next();
+    }
+    try {
+      it.hasNext();
+      fail();
+    } catch (RuntimeException e) {
+      assertEquals("mock failure", e.getMessage());
+    }
+    assertFalse(it.hasNext());
+  }
+
+  @Test(timeout = 10000)
+  public void testPrefetchRejected() {
+    AsyncRequestExecutor executor = new AsyncRequestExecutor(1, 1);
+    executor.shutdown();
+    RestClient client = new RestClient(null);
+    client.setAsyncExecutor(executor);
+    PagedIterator it = new PagedIterator(10, -1);
+    it.configure(client);
+    it.setPageSize(10);
+    it.setPrefetchDepth(2);
+    int count = 0;
+    while (it.hasNext()) {
+      assertEquals(Integer.valueOf(count++), it.next());
+    }
+    assertEquals(100, count);
+  }
+
+  @Test(timeout = 10000)
+  public void testPrefetchInExecutorThread() throws Exception {
+    AsyncRequestExecutor executor = new AsyncRequestExecutor(1, 1);
+    RestClient client = new RestClient(null);
+    client.setAsyncExecutor(executor);
+    final PagedIterator it = new PagedIterator(10, -1);
+    it.configure(client);
+    it.setPageSize(10);
+    it.setPrefetchDepth(2);
+    Future<Integer> future = client.submitAsync(new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        int count = 0;
+        while (it.hasNext()) {
+          it.next();
+          count++;
+        }
+        return count;
+      }
+    });
+    assertEquals(Integer.valueOf(100), future.get(10, TimeUnit.SECONDS));
+    executor.shutdown();
+  }
 }
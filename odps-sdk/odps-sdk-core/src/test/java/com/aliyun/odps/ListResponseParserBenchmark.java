@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.aliyun.odps.rest.JAXBUtils;
+
+/**
+ * 比较列表接口返回结果的 JAXB 绑定与 {@link ListResponseParser} 流式解析的吞吐
+ *
+ * 每页由 src/test/resources/list_responses 下录制的返回结果中的条目重复到 ITEMS 条组成。
+ * 解析器和模型类都是包级可见的，所以放在 com.aliyun.odps 包下。
+ * 在 test classpath 下运行 main 方法，或者 java org.openjdk.jmh.Main ListResponseParserBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListResponseParserBenchmark {
+
+  private static final int ITEMS = 1000;
+
+  @Param({"instances", "tables", "partitions", "resources"})
+  public String endpoint;
+
+  private byte[] xml;
+  private Class<?> responseClass;
+  private Field listField;
+
+  @Setup
+  public void setup() throws Exception {
+    String root;
+    String item;
+    String listName;
+    if ("instances".equals(endpoint)) {
+      root = "Instances";
+      item = "Instance";
+      listName = "instances";
+      responseClass = Class.forName("com.aliyun.odps.Instances$ListInstanceResponse");
+    } else if ("tables".equals(endpoint)) {
+      root = "Tables";
+      item = "Table";
+      listName = "tables";
+      responseClass = Class.forName("com.aliyun.odps.Tables$ListTablesResponse");
+    } else if ("partitions".equals(endpoint)) {
+      root = "Partitions";
+      item = "Partition";
+      listName = "partitions";
+      responseClass = Class.forName("com.aliyun.odps.Table$ListPartitionsResponse");
+    } else {
+      root = "Resources";
+      item = "Resource";
+      listName = "resources";
+      responseClass = Class.forName("com.aliyun.odps.Resources$ListResourcesResponse");
+    }
+    listField = responseClass.getDeclaredField(listName);
+    listField.setAccessible(true);
+
+    String recorded = new String(ListResponseParserTest.load(endpoint + ".xml"), "UTF-8");
+    Matcher first = Pattern.compile("<" + item + "[ >]").matcher(recorded);
+    first.find();
+    int begin = first.start();
+    int end = recorded.lastIndexOf("</" + root + ">");
+    String items = recorded.substring(begin, end);
+    int count = recorded.split("<" + item + "[ >]", -1).length - 1;
+
+    StringBuilder sb = new StringBuilder(recorded.substring(0, begin));
+    for (int i = 0; i < ITEMS / count; ++i) {
+      sb.append(items);
+    }
+    sb.append(recorded.substring(end));
+    xml = sb.toString().getBytes("UTF-8");
+  }
+
+  @Benchmark
+  public int jaxb() throws Exception {
+    return ((List<?>) listField.get(JAXBUtils.unmarshal(xml, responseClass))).size();
+  }
+
+  @Benchmark
+  public int stax() throws Exception {
+    if ("instances".equals(endpoint)) {
+      return ListResponseParser.parseInstances(xml).items.size();
+    } else if ("tables".equals(endpoint)) {
+      return ListResponseParser.parseTables(xml).items.size();
+    } else if ("partitions".equals(endpoint)) {
+      return ListResponseParser.parsePartitions(xml).items.size();
+    } else {
+      return ListResponseParser.parseResources(xml).items.size();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(ListResponseParserBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.commons.util.IOUtils;
+import com.aliyun.odps.rest.JAXBUtils;
+
+public class ListResponseParserTest {
+
+  static byte[] load(String name) throws IOException {
+    InputStream in = ListResponseParserTest.class.getResourceAsStream("/list_responses/" + name);
+    try {
+      return IOUtils.readFully(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  static Object jaxb(String responseClass, byte[] xml) throws Exception {
+    return JAXBUtils.unmarshal(xml, Class.forName("com.aliyun.odps." + responseClass));
+  }
+
+  private static Object field(Object obj, String name) throws Exception {
+    Field f = obj.getClass().getDeclaredField(name);
+    f.setAccessible(true);
+    return f.get(obj);
+  }
+
+  private static void assertModelEquals(String path, Object expected, Object actual)
+      throws Exception {
+    if (expected == null || actual == null) {
+      Assert.assertEquals(path, expected, actual);
+      return;
+    }
+    if (expected instanceof List) {
+      List<?> e = (List<?>) expected;
+      List<?> a = (List<?>) actual;
+      Assert.assertEquals(path + ".size", e.size(), a.size());
+      for (int i = 0; i < e.size(); ++i) {
+        assertModelEquals(path + "[" + i + "]", e.get(i), a.get(i));
+      }
+      return;
+    }
+    if (!expected.getClass().getName().startsWith("com.aliyun.odps.")) {
+      Assert.assertEquals(path, expected, actual);
+      return;
+    }
+    Assert.assertEquals(path, expected.getClass(), actual.getClass());
+    for (Field f : expected.getClass().getDeclaredFields()) {
+      if (Modifier.isStatic(f.getModifiers()) || f.isSynthetic()) {
+        continue;
+      }
+      f.setAccessible(true);
+      assertModelEquals(path + "." + f.getName(), f.get(expected), f.get(actual));
+    }
+  }
+
+  private static void assertSamePage(String responseClass, String listField, byte[] xml,
+                                     ListResponseParser.Page<?> page) throws Exception {
+    Object resp = jaxb(responseClass, xml);
+    Assert.assertEquals(field(resp, "marker"), page.marker);
+    List<?> expected = (List<?>) field(resp, listField);
+    Assert.assertFalse(expected.isEmpty());
+    assertModelEquals(listField, expected, page.items);
+  }
+
+  @Test
+  public void testInstances() throws Exception {
+    byte[] xml = load("instances.xml");
+    ListResponseParser.Page<Instance.TaskStatusModel> page = ListResponseParser.parseInstances(xml);
+    assertSamePage("Instances$ListInstanceResponse", "instances", xml, page);
+
+    Assert.assertEquals(3, page.items.size());
+    Assert.assertEquals("20170801091523123gqvk2ae5", page.marker);
+    Assert.assertEquals(1, page.items.get(0).tasks.get(0).histories.size());
+    Assert.assertEquals("SQLPlan", page.items.get(1).tasks.get(1).type);
+    Assert.assertNull(page.items.get(2).startTime);
+  }
+
+  @Test
+  public void testTables() throws Exception {
+    byte[] xml = load("tables.xml");
+    ListResponseParser.Page<Table.TableModel> page = ListResponseParser.parseTables(xml);
+    assertSamePage("Tables$ListTablesResponse", "tables", xml, page);
+
+    Assert.assertEquals("", page.marker);
+    Assert.assertEquals("json", page.items.get(1).format);
+    Assert.assertTrue(page.items.get(1).schema.content.startsWith("{\"comment\""));
+    Assert.assertEquals("销售明细 & 退货", page.items.get(0).comment);
+  }
+
+  @Test
+  public void testPartitions() throws Exception {
+    byte[] xml = load("partitions.xml");
+    ListResponseParser.Page<Partition.PartitionModel> page =
+        ListResponseParser.parsePartitions(xml);
+    assertSamePage("Table$ListPartitionsResponse", "partitions", xml, page);
+
+    Assert.assertEquals("shanghai", page.items.get(1).columns.get(1).columnValue);
+    Assert.assertEquals(1501549200000L, page.items.get(0).lastDataModifiedTime.getTime());
+  }
+
+  @Test
+  public void testResources() throws Exception {
+    byte[] xml = load("resources.xml");
+    ListResponseParser.Page<Resource.ResourceModel> page = ListResponseParser.parseResources(xml);
+    assertSamePage("Resources$ListResourcesResponse", "resources", xml, page);
+
+    Assert.assertEquals(Long.valueOf(1048576), page.items.get(0).size);
+    Assert.assertEquals(Long.valueOf(0), page.items.get(1).size);
+  }
+
+  @Test(expected = OdpsException.class)
+  public void testUnexpectedRoot() throws Exception {
+    ListResponseParser.parseTables(load("instances.xml"));
+  }
+
+  @Test(expected = OdpsException.class)
+  public void testMalformed() throws Exception {
+    ListResponseParser.parsePartitions("<Partitions><Partition>".getBytes("UTF-8"));
+  }
+}
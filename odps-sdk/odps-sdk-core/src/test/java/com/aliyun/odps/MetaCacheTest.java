@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.MetaCache.ObjectType;
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.commons.transport.Request;
+import com.aliyun.odps.commons.transport.Response;
+import com.aliyun.odps.rest.RestMockTest.MockResponse;
+import com.aliyun.odps.rest.RestMockTest.MockTransport;
+
+public class MetaCacheTest {
+
+  /**
+   * 表 t 和函数 f 存在，其他对象返回 404
+   */
+  private static class CountingTransport extends MockTransport {
+
+    final AtomicInteger gets = new AtomicInteger(0);
+
+    @Override
+    public Response request(Request req) throws IOException {
+      String path = req.getURI().getPath().toLowerCase();
+      if (req.getMethod() == Request.Method.DELETE) {
+        return new MockResponse(200, "");
+      }
+      gets.incrementAndGet();
+      if (path.endsWith("/tables/t")) {
+        return new MockResponse(200, "<Table><Name>t</Name><Schema><![CDATA["
+                                      + "{\"columns\":[{\"name\":\"c\",\"type\":\"bigint\"}]}"
+                                      + "]]></Schema></Table>");
+      } else if (path.endsWith("/functions/f")) {
+        return new MockResponse(200, "<Function><Alias>f</Alias><Owner>o</Owner></Function>");
+      }
+      return new MockResponse(404, "<Error><Code>NoSuchObject</Code></Error>");
+    }
+  }
+
+  private static class ManualClockMetaCache extends LruMetaCache {
+
+    long clock = 1000000L;
+
+    ManualClockMetaCache(int maxEntries, long ttl, long negativeTtl) {
+      super(maxEntries, ttl, negativeTtl);
+    }
+
+    @Override
+    long now() {
+      return clock;
+    }
+  }
+
+  private static Odps odps(CountingTransport transport, MetaCache cache) {
+    Odps odps = new Odps(new AliyunAccount("test", "test"), transport);
+    odps.setEndpoint("http://localhost/api");
+    odps.setDefaultProject("p");
+    odps.setMetaCache(cache);
+    return odps;
+  }
+
+  @Test
+  public void testTtl() {
+    ManualClockMetaCache cache = new ManualClockMetaCache(10, 1000, 100);
+    Response resp = new MockResponse(200, "");
+    cache.put("p", ObjectType.TABLE, "t", resp, cache.getGeneration());
+    cache.put("p", ObjectType.TABLE, "missing", MetaCache.MISSING, cache.getGeneration());
+    Assert.assertSame(resp, cache.get("p", ObjectType.TABLE, "t"));
+    Assert.assertSame(MetaCache.MISSING, cache.get("p", ObjectType.TABLE, "missing"));
+    Assert.assertNull(cache.get("p", ObjectType.FUNCTION, "t"));
+
+    cache.clock += 100;
+    Assert.assertSame(resp, cache.get("p", ObjectType.TABLE, "t"));
+    Assert.assertNull(cache.get("p", ObjectType.TABLE, "missing"));
+    cache.clock += 900;
+    Assert.assertNull(cache.get("p", ObjectType.TABLE, "t"));
+
+    Assert.assertEquals(3, cache.getHitCount());
+    Assert.assertEquals(3, cache.getMissCount());
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testLruEviction() {
+    LruMetaCache cache = new LruMetaCache(2, 1000000, 1000000);
+    Response resp = new MockResponse(200, "");
+    cache.put("p", ObjectType.TABLE, "a", resp, cache.getGeneration());
+    cache.put("p", ObjectType.TABLE, "b", resp, cache.getGeneration());
+    Assert.assertNotNull(cache.get("p", ObjectType.TABLE, "a"));
+    cache.put("p", ObjectType.TABLE, "c", resp, cache.getGeneration());
+
+    Assert.assertNotNull(cache.get("p", ObjectType.TABLE, "a"));
+    Assert.assertNull(cache.get("p", ObjectType.TABLE, "b"));
+    Assert.assertNotNull(cache.get("p", ObjectType.TABLE, "c"));
+    Assert.assertEquals(1, cache.getEvictionCount());
+  }
+
+  @Test
+  public void testInvalidatePrefix() {
+    LruMetaCache cache = new LruMetaCache();
+    Response resp = new MockResponse(200, "");
+    cache.put("p", ObjectType.PARTITION, "t/pt='1'", resp, cache.getGeneration());
+    cache.put("p", ObjectType.PARTITION, "t/pt='2'", resp, cache.getGeneration());
+    cache.put("p", ObjectType.PARTITION, "t2/pt='1'", resp, cache.getGeneration());
+    cache.invalidatePrefix("p", ObjectType.PARTITION, "t/");
+    Assert.assertNull(cache.get("p", ObjectType.PARTITION, "t/pt='1'"));
+    Assert.assertNull(cache.get("p", ObjectType.PARTITION, "t/pt='2'"));
+    Assert.assertNotNull(cache.get("p", ObjectType.PARTITION, "t2/pt='1'"));
+  }
+
+  @Test
+  public void testStalePutAfterInvalidate() {
+    LruMetaCache cache = new LruMetaCache();
+    Response resp = new MockResponse(200, "");
+    // 请求发出后对象被修改并失效，旧的响应不再放入缓存
+    long generation = cache.getGeneration();
+    cache.invalidate("p", ObjectType.TABLE, "t");
+    cache.put("p", ObjectType.TABLE, "t", resp, generation);
+    Assert.assertNull(cache.get("p", ObjectType.TABLE, "t"));
+
+    cache.put("p", ObjectType.TABLE, "t", resp, cache.getGeneration());
+    Assert.assertSame(resp, cache.get("p", ObjectType.TABLE, "t"));
+  }
+
+  @Test
+  public void testCaseInsensitiveKeys() throws OdpsException {
+    CountingTransport transport = new CountingTransport();
+    Odps odps = odps(transport, new LruMetaCache());
+    Assert.assertTrue(odps.functions().exists("f"));
+    Assert.assertTrue(odps.functions().exists("F"));
+    Assert.assertTrue(odps.functions().exists("P", "f"));
+    Assert.assertEquals(1, transport.gets.get());
+  }
+
+  @Test
+  public void testTableServedFromCache() throws OdpsException {
+    CountingTransport transport = new CountingTransport();
+    LruMetaCache cache = new LruMetaCache();
+    Odps odps = odps(transport, cache);
+
+    for (int i = 0; i < 5; ++i) {
+      Assert.assertEquals("c", odps.tables().get("T").getSchema().getColumn(0).getName());
+    }
+    Assert.assertEquals(1, transport.gets.get());
+    Assert.assertEquals(4, cache.getHitCount());
+
+    // clone 共享缓存
+    Assert.assertTrue(odps.clone().tables().exists("t"));
+    Assert.assertEquals(1, transport.gets.get());
+  }
+
+  @Test
+  public void testNegativeCache() throws OdpsException {
+    CountingTransport transport = new CountingTransport();
+    Odps odps = odps(transport, new LruMetaCache());
+    for (int i = 0; i < 5; ++i) {
+      Assert.assertFalse(odps.tables().exists("missing"));
+      Assert.assertFalse(odps.functions().exists("missing"));
+    }
+    Assert.assertEquals(2, transport.gets.get());
+  }
+
+  @Test
+  public void testInvalidateOnDelete() throws OdpsException {
+    CountingTransport transport = new CountingTransport();
+    Odps odps = odps(transport, new LruMetaCache());
+    Assert.assertTrue(odps.functions().exists("f"));
+    Assert.assertTrue(odps.functions().exists("f"));
+    Assert.assertEquals(1, transport.gets.get());
+
+    odps.functions().delete("f");
+    Assert.assertTrue(odps.functions().exists("f"));
+    Assert.assertEquals(2, transport.gets.get());
+  }
+
+  @Test
+  public void testNoCache() throws OdpsException {
+    CountingTransport transport = new CountingTransport();
+    Odps odps = odps(transport, null);
+    odps.tables().get("t").reload();
+    odps.tables().get("t").reload();
+    Assert.assertEquals(2, transport.gets.get());
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.account;
+
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.commons.transport.Request;
+import com.aliyun.odps.commons.transport.Request.Method;
+
+public class AliyunRequestSignerTest {
+
+  private static final String ACCESS_ID = "test_id";
+  private static final String ACCESS_KEY = "oRd30z7sV4hBX9aYtJgii5qnyhg=";
+
+  private static Request request(int i) {
+    Request request = new Request();
+    request.setMethod(i % 2 == 0 ? Method.GET : Method.POST);
+    request.setHeader("Date", "Tue, 13 May 2014 09:22:20 GMT");
+    request.setHeader("Content-Type", "application/xml");
+    request.setHeader("x-odps-user-agent", "JavaSDK/0.12.0;Linux");
+    request.setHeader("x-odps-comment", "表" + i);
+    request.getParameters().put("marker", "m" + i);
+    request.getParameters().put("x-odps-tag", "t" + i);
+    request.getParameters().put("curr_project", "");
+    return request;
+  }
+
+  /**
+   * 每次创建 Mac 的原始实现
+   */
+  private static String expected(String resource, Request req) throws Exception {
+    resource = URLDecoder.decode(resource, "UTF-8");
+    String strToSign = SecurityUtils.buildCanonicalString(resource, req, "x-odps-");
+    byte[] crypto = SecurityUtils.hmacsha1Signature(strToSign.getBytes("UTF-8"),
+                                                    ACCESS_KEY.getBytes());
+    return "ODPS " + ACCESS_ID + ":" + Base64.encodeBase64String(crypto).trim();
+  }
+
+  @Test
+  public void testSameAsUncached() throws Exception {
+    AliyunRequestSigner signer = new AliyunRequestSigner(ACCESS_ID, ACCESS_KEY);
+    String[] resources = {
+        "/projects/p/instances",
+        "/projects/p/tables/t%E8%A1%A8/partitions",
+        "/projects/p/resources/a+b",
+    };
+    for (int i = 0; i < 10; ++i) {
+      String resource = resources[i % resources.length];
+      Request req = request(i);
+      Assert.assertEquals(expected(resource, req), signer.getSignature(resource, req));
+    }
+  }
+
+  @Test
+  public void testConcurrentSign() throws Exception {
+    final AliyunRequestSigner signer = new AliyunRequestSigner(ACCESS_ID, ACCESS_KEY);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+      for (int t = 0; t < 4; ++t) {
+        futures.add(pool.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            for (int i = 0; i < 500; ++i) {
+              Request req = request(i);
+              String resource = "/projects/p/instances/" + i;
+              if (!expected(resource, req).equals(signer.getSignature(resource, req))) {
+                return false;
+              }
+            }
+            return true;
+          }
+        }));
+      }
+      for (Future<Boolean> f : futures) {
+        Assert.assertTrue(f.get());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testLongStringToSign() throws Exception {
+    AliyunRequestSigner signer = new AliyunRequestSigner(ACCESS_ID, ACCESS_KEY);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 50000; ++i) {
+      sb.append("值");
+    }
+    Request req = request(0);
+    req.setHeader("x-odps-long", sb.toString());
+    String resource = "/projects/p/instances";
+    Assert.assertEquals(expected(resource, req), signer.getSignature(resource, req));
+    // builder 被丢弃后仍然正确
+    req = request(1);
+    Assert.assertEquals(expected(resource, req), signer.getSignature(resource, req));
+  }
+}
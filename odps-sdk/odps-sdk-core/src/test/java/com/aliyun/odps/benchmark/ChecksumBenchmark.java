@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.xerial.snappy.PureJavaCrc32C;
+
+import com.aliyun.odps.tunnel.io.Checksum;
+
+/**
+ * 比较 tunnel {@link Checksum} 在纯 Java 实现和 JDK 内置 CRC32C（Java 9+）下的吞吐
+ *
+ * 在 test classpath 下运行 main 方法，或者 java org.openjdk.jmh.Main ChecksumBenchmark；
+ * 在 Java 8 上 jdk 组与 pure 组使用的是同一个实现
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChecksumBenchmark {
+
+  private static final int CELLS = 1024;
+
+  private long[] longs;
+  private byte[] bytes;
+  private Checksum pure;
+  private Checksum jdk;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0);
+    longs = new long[CELLS];
+    for (int i = 0; i < CELLS; ++i) {
+      longs[i] = random.nextLong();
+    }
+    bytes = new byte[64 * 1024];
+    random.nextBytes(bytes);
+    pure = new Checksum(new PureJavaCrc32C());
+    jdk = new Checksum();
+  }
+
+  private static long updateLongs(Checksum checksum, long[] values) {
+    checksum.reset();
+    for (long v : values) {
+      checksum.update(v);
+    }
+    return checksum.getValue();
+  }
+
+  private static long updateBytes(Checksum checksum, byte[] values) {
+    checksum.reset();
+    checksum.update(values, 0, values.length);
+    return checksum.getValue();
+  }
+
+  @Benchmark
+  public long pureLongs() {
+    return updateLongs(pure, longs);
+  }
+
+  @Benchmark
+  public long jdkLongs() {
+    return updateLongs(jdk, longs);
+  }
+
+  @Benchmark
+  public long pureBytes() {
+    return updateBytes(pure, bytes);
+  }
+
+  @Benchmark
+  public long jdkBytes() {
+    return updateBytes(jdk, bytes);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(ChecksumBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
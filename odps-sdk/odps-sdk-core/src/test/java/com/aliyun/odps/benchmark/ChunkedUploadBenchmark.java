@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.OdpsException;
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.commons.transport.Connection;
+import com.aliyun.odps.commons.transport.Headers;
+import com.aliyun.odps.commons.transport.Response;
+import com.aliyun.odps.rest.RestClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 比较不同 {@link RestClient#setChunkSize(int)} 下 chunked 上传的吞吐
+ *
+ * 服务端是一个本地的 HTTP 服务，读完请求体后返回 200。每次操作像 TunnelRecordWriter 一样以 chunked
+ * 方式上传 8 MB 数据，每次写 4 KB。1496 是原先硬编码的块大小。
+ *
+ * 在 test classpath 下运行 main 方法，或者 java org.openjdk.jmh.Main ChunkedUploadBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkedUploadBenchmark {
+
+  private static final int UPLOAD_SIZE = 8 * 1024 * 1024;
+  private static final int WRITE_SIZE = 4 * 1024;
+
+  @Param({"1496", "65536", "1048576"})
+  public int chunkSize;
+
+  private HttpServer server;
+  private RestClient client;
+  private byte[] data;
+
+  @Setup
+  public void setup() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        byte[] buf = new byte[64 * 1024];
+        while (in.read(buf) != -1) {
+          // discard
+        }
+        in.close();
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+      }
+    });
+    server.start();
+
+    Odps odps = new Odps(new AliyunAccount("benchmark", "benchmark"));
+    odps.setEndpoint("http://127.0.0.1:" + server.getAddress().getPort());
+    client = odps.getRestClient();
+    client.setChunkSize(chunkSize);
+
+    data = new byte[WRITE_SIZE];
+    new Random(0).nextBytes(data);
+  }
+
+  @TearDown
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Benchmark
+  public int upload() throws IOException, OdpsException {
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put(Headers.TRANSFER_ENCODING, Headers.CHUNKED);
+    headers.put(Headers.CONTENT_TYPE, "application/octet-stream");
+    Connection conn = client.connect("/upload", "PUT", new HashMap<String, String>(), headers);
+    try {
+      OutputStream out = conn.getOutputStream();
+      for (int written = 0; written < UPLOAD_SIZE; written += WRITE_SIZE) {
+        out.write(data);
+      }
+      out.close();
+      Response resp = conn.getResponse();
+      return resp.getStatus();
+    } finally {
+      conn.disconnect();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(ChunkedUploadBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.benchmark;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.aliyun.odps.commons.util.DateUtils;
+import com.aliyun.odps.commons.util.LegacyDateUtils;
+
+/**
+ * 比较 {@link DateUtils} 与基于 Calendar 的 {@link LegacyDateUtils} 转换 DATETIME、DATE 值的吞吐
+ *
+ * 每次调用转换 CELLS 个 1900 ~ 2100 年之间的随机时间。
+ * 在 test classpath 下运行 main 方法，或者 java org.openjdk.jmh.Main DateUtilsBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateUtilsBenchmark {
+
+  private static final int CELLS = 1024;
+
+  private Date[] dates;
+  private java.sql.Date[] sqlDates;
+  private long[] millis;
+  private long[] days;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0);
+    long from = -2208988800000L;
+    long range = 4102444800000L - from;
+    dates = new Date[CELLS];
+    sqlDates = new java.sql.Date[CELLS];
+    millis = new long[CELLS];
+    days = new long[CELLS];
+    for (int i = 0; i < CELLS; ++i) {
+      long t = from + (long) (random.nextDouble() * range);
+      dates[i] = new Date(t);
+      sqlDates[i] = new java.sql.Date(t);
+      millis[i] = DateUtils.date2ms(dates[i]);
+      days[i] = DateUtils.getDayOffset(sqlDates[i]);
+    }
+  }
+
+  @Benchmark
+  public long date2ms() {
+    long sum = 0;
+    for (Date d : dates) {
+      sum += DateUtils.date2ms(d);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long legacyDate2ms() {
+    long sum = 0;
+    for (Date d : dates) {
+      sum += LegacyDateUtils.date2ms(d);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long ms2date() {
+    long sum = 0;
+    for (long ms : millis) {
+      sum += DateUtils.ms2date(ms).getTime();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long legacyMs2date() {
+    long sum = 0;
+    for (long ms : millis) {
+      sum += LegacyDateUtils.ms2date(ms).getTime();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long getDayOffset() {
+    long sum = 0;
+    for (java.sql.Date d : sqlDates) {
+      sum += DateUtils.getDayOffset(d);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long legacyGetDayOffset() {
+    long sum = 0;
+    for (java.sql.Date d : sqlDates) {
+      sum += LegacyDateUtils.getDayOffset(d);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long fromDayOffset() {
+    long sum = 0;
+    for (long day : days) {
+      sum += DateUtils.fromDayOffset(day).getTime();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long legacyFromDayOffset() {
+    long sum = 0;
+    for (long day : days) {
+      sum += LegacyDateUtils.fromDayOffset(day).getTime();
+    }
+    return sum;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(DateUtilsBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
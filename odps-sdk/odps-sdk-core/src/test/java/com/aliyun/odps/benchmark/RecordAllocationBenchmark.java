@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.data.ArrayRecord;
+
+/**
+ * 模拟逐行读取 rows 条记录时创建 {@link ArrayRecord} 的开销
+ *
+ * perRowColumns 每行传入新的列数组，与改动前每条记录各自构建列名映射的开销相同；
+ * sharedSchema 和 newInstance 共享表结构缓存的列索引。
+ * 加上 -prof gc 查看 gc.alloc.rate.norm，即读取 rows 条记录分配的总字节数。
+ *
+ * 在 test classpath 下运行 main 方法，或者 java org.openjdk.jmh.Main RecordAllocationBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class RecordAllocationBenchmark {
+
+  @Param({"10000000"})
+  public int rows;
+
+  @Param({"20", "200"})
+  public int columns;
+
+  private TableSchema schema;
+  private ArrayRecord prototype;
+
+  @Setup
+  public void setup() {
+    schema = new TableSchema();
+    for (int i = 0; i < columns; ++i) {
+      schema.addColumn(new Column("c" + i, OdpsType.BIGINT));
+    }
+    prototype = new ArrayRecord(schema);
+  }
+
+  @Benchmark
+  public void perRowColumns(Blackhole bh) {
+    for (int i = 0; i < rows; ++i) {
+      ArrayRecord r = new ArrayRecord(schema.getColumns().toArray(new Column[0]));
+      r.set(0, (long) i);
+      bh.consume(r);
+    }
+  }
+
+  @Benchmark
+  public void sharedSchema(Blackhole bh) {
+    for (int i = 0; i < rows; ++i) {
+      ArrayRecord r = new ArrayRecord(schema);
+      r.set(0, (long) i);
+      bh.consume(r);
+    }
+  }
+
+  @Benchmark
+  public void newInstance(Blackhole bh) {
+    for (int i = 0; i < rows; ++i) {
+      ArrayRecord r = prototype.newInstance();
+      r.set(0, (long) i);
+      bh.consume(r);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(RecordAllocationBenchmark.class.getSimpleName())
+        .addProfiler("gc")
+        .build();
+    new Runner(opt).run();
+  }
+}
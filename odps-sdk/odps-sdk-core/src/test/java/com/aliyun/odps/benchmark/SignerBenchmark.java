@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.aliyun.odps.account.AliyunRequestSigner;
+import com.aliyun.odps.commons.transport.Request;
+
+/**
+ * 比较 {@link AliyunRequestSigner} 的签名吞吐，以及每次请求都 Mac.getInstance 与复用已初始化 Mac 的开销
+ *
+ * 在 test classpath 下运行 main 方法，或者 java org.openjdk.jmh.Main SignerBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignerBenchmark {
+
+  private static final String ACCESS_KEY = "oRd30z7sV4hBX9aYtJgii5qnyhg=";
+
+  private AliyunRequestSigner signer;
+  private Request request;
+  private String resource;
+  private byte[] stringToSign;
+  private Mac cachedMac;
+
+  @Setup
+  public void setup() throws Exception {
+    signer = new AliyunRequestSigner("test_id", ACCESS_KEY);
+    request = new Request();
+    request.setMethod(Request.Method.PUT);
+    request.setHeader("Date", "Tue, 13 May 2014 09:22:20 GMT");
+    request.setHeader("Content-Type", "application/octet-stream");
+    request.setHeader("Content-MD5", "746a0402967096663daa8bd1a2ff5c7c");
+    request.setHeader("User-Agent", "JavaSDK/0.12.0;Linux");
+    request.setHeader("x-odps-user-agent", "JavaSDK/0.12.0;Linux");
+    request.setHeader("x-odps-tunnel-version", "4");
+    request.setParameter("uploadid", "20140513172220bc4e1c0a00000001");
+    request.setParameter("blockid", "12");
+    resource = "/projects/odps_test_tunnel_project/tables/sale_detail";
+    stringToSign = ("PUT\n746a0402967096663daa8bd1a2ff5c7c\napplication/octet-stream\n"
+                    + "Tue, 13 May 2014 09:22:20 GMT\nx-odps-tunnel-version:4\n"
+                    + "x-odps-user-agent:JavaSDK/0.12.0;Linux\n" + resource
+                    + "?blockid=12&uploadid=20140513172220bc4e1c0a00000001").getBytes("UTF-8");
+    cachedMac = Mac.getInstance("HmacSHA1");
+    cachedMac.init(new SecretKeySpec(ACCESS_KEY.getBytes(), "HmacSHA1"));
+  }
+
+  @Benchmark
+  public String signer() {
+    return signer.getSignature(resource, request);
+  }
+
+  @Benchmark
+  public String newMacPerRequest() throws Exception {
+    Mac mac = Mac.getInstance("HmacSHA1");
+    mac.init(new SecretKeySpec(ACCESS_KEY.getBytes(), "HmacSHA1"));
+    return Base64.encodeBase64String(mac.doFinal(stringToSign));
+  }
+
+  @Benchmark
+  public String cachedMac() {
+    return Base64.encodeBase64String(cachedMac.doFinal(stringToSign));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(SignerBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.OdpsException;
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.commons.transport.DefaultTransport;
+import com.aliyun.odps.commons.transport.PooledTransport;
+import com.aliyun.odps.commons.transport.Transport;
+import com.aliyun.odps.rest.RestClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 比较 {@link DefaultTransport} 与 {@link PooledTransport} 发起小请求的延迟和吞吐
+ *
+ * 服务端是一个本地的 HTTP 服务，返回一个约 200 字节的 XML。每次调用通过 RestClient 顺序发起
+ * REQUESTS 个 GET 请求，结果按单个请求计算。
+ * 在 test classpath 下运行 main 方法，或者 java org.openjdk.jmh.Main TransportBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class TransportBenchmark {
+
+  private static final int REQUESTS = 10000;
+
+  private static final byte[] BODY = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                                      + "<Project><Name>benchmark</Name>"
+                                      + "<Owner>ALIYUN$benchmark@aliyun.com</Owner>"
+                                      + "<Comment>small metadata response</Comment>"
+                                      + "<State>AVAILABLE</State></Project>").getBytes();
+
+  @Param({"default", "pooled"})
+  public String transport;
+
+  private HttpServer server;
+  private Transport instance;
+  private RestClient client;
+  private Map<String, String> params = new HashMap<String, String>();
+
+  @Setup
+  public void setup() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        while (in.read() != -1) {
+          // discard
+        }
+        in.close();
+        exchange.sendResponseHeaders(200, BODY.length);
+        exchange.getResponseBody().write(BODY);
+        exchange.close();
+      }
+    });
+    server.start();
+
+    instance = "pooled".equals(transport) ? new PooledTransport() : new DefaultTransport();
+    Odps odps = new Odps(new AliyunAccount("benchmark", "benchmark"), instance);
+    odps.setEndpoint("http://127.0.0.1:" + server.getAddress().getPort());
+    client = odps.getRestClient();
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (instance instanceof PooledTransport) {
+      ((PooledTransport) instance).close();
+    }
+    server.stop(0);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(REQUESTS)
+  public int requests() throws OdpsException {
+    int bytes = 0;
+    for (int i = 0; i < REQUESTS; ++i) {
+      bytes += client.request("/projects/benchmark", "GET", params, null, (byte[]) null)
+          .getBody().length;
+    }
+    return bytes;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(TransportBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.aliyun.odps.commons.proto.Utf8Encoder;
+import com.aliyun.odps.tunnel.io.Checksum;
+import com.google.protobuf.CodedOutputStream;
+
+/**
+ * 比较 String.getBytes("UTF-8") 和 {@link Utf8Encoder} 写出字符串列的开销
+ *
+ * 在 test classpath 下运行 main 方法，或者 java org.openjdk.jmh.Main Utf8EncodingBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Utf8EncodingBenchmark {
+
+  private static final OutputStream NULL_OUTPUT = new OutputStream() {
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+  };
+
+  @Param({"ascii", "cjk"})
+  public String charset;
+
+  @Param({"16", "256"})
+  public int length;
+
+  private String value;
+  private Checksum crc;
+  private CodedOutputStream out;
+  private Utf8Encoder encoder;
+
+  @Setup
+  public void setup() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; ++i) {
+      sb.append("ascii".equals(charset) ? (char) ('a' + i % 26) : (char) ('一' + i));
+    }
+    value = sb.toString();
+    crc = new Checksum();
+    out = CodedOutputStream.newInstance(NULL_OUTPUT);
+    encoder = new Utf8Encoder();
+  }
+
+  @Benchmark
+  public long getBytes() throws IOException {
+    byte[] bytes = value.getBytes("UTF-8");
+    crc.update(bytes, 0, bytes.length);
+    out.writeRawVarint32(bytes.length);
+    out.writeRawBytes(bytes);
+    return crc.getValue();
+  }
+
+  @Benchmark
+  public long reusableBuffer() throws IOException {
+    int len = encoder.encode(value);
+    byte[] bytes = encoder.getBuffer();
+    crc.update(bytes, 0, len);
+    out.writeRawVarint32(len);
+    out.writeRawBytes(bytes, 0, len);
+    return crc.getValue();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(Utf8EncodingBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.proto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Binary;
+import com.aliyun.odps.data.Char;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.Varchar;
+import com.aliyun.odps.tunnel.io.CompressOption;
+import com.aliyun.odps.type.TypeInfoFactory;
+
+public class LazyRecordTest {
+
+  private static final int ROWS = 50;
+
+  private static TableSchema schema() {
+    TableSchema s = new TableSchema();
+    s.addColumn(new Column("c_bigint", OdpsType.BIGINT));
+    s.addColumn(new Column("c_double", OdpsType.DOUBLE));
+    s.addColumn(new Column("c_boolean", OdpsType.BOOLEAN));
+    s.addColumn(new Column("c_string", OdpsType.STRING));
+    s.addColumn(new Column("c_datetime", OdpsType.DATETIME));
+    s.addColumn(new Column("c_decimal", OdpsType.DECIMAL));
+    s.addColumn(new Column("c_int", TypeInfoFactory.INT));
+    s.addColumn(new Column("c_float", TypeInfoFactory.FLOAT));
+    s.addColumn(new Column("c_binary", TypeInfoFactory.BINARY));
+    s.addColumn(new Column("c_varchar", TypeInfoFactory.getVarcharTypeInfo(10)));
+    s.addColumn(new Column("c_char", TypeInfoFactory.getCharTypeInfo(10)));
+    s.addColumn(new Column("c_date", TypeInfoFactory.DATE));
+    s.addColumn(new Column("c_timestamp", TypeInfoFactory.TIMESTAMP));
+    s.addColumn(new Column("c_array",
+                           TypeInfoFactory.getArrayTypeInfo(TypeInfoFactory.BIGINT)));
+    return s;
+  }
+
+  private static byte[] encode(TableSchema schema) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ProtobufRecordStreamWriter writer = new ProtobufRecordStreamWriter(schema, out);
+    ArrayRecord r = new ArrayRecord(schema);
+    for (int i = 0; i < ROWS; ++i) {
+      r.clear();
+      if (i % 5 != 0) {
+        r.setBigint(0, i * 1000L - 3);
+        r.setDouble(1, i / 7.0);
+        r.setBoolean(2, i % 2 == 0);
+        r.setString(3, "行 " + i);
+        r.setDatetime(4, new java.util.Date(1500000000000L + i * 1000L));
+        r.setDecimal(5, new BigDecimal(i).divide(new BigDecimal(4)));
+        r.setInt(6, -i);
+        r.setFloat(7, i / 3.0f);
+        r.setBinary(8, new Binary(new byte[]{(byte) i, 0, -1}));
+        r.setVarchar(9, new Varchar("v" + i));
+        r.setChar(10, new Char("c" + i));
+        r.setDate(11, new java.sql.Date(1500000000000L + i * 86400000L));
+        Timestamp t = new Timestamp(1500000000000L + i * 1000L);
+        t.setNanos(i * 1000);
+        r.setTimestamp(12, t);
+        r.setArray(13, Arrays.asList((long) i, null, (long) -i));
+      }
+      writer.write(r);
+    }
+    writer.close();
+    return out.toByteArray();
+  }
+
+  private static ProtobufRecordStreamReader reader(TableSchema schema, byte[] data, boolean lazy)
+      throws IOException {
+    ProtobufRecordStreamReader reader =
+        new ProtobufRecordStreamReader(schema, new ByteArrayInputStream(data),
+                                       new CompressOption());
+    reader.setLazyDecode(lazy);
+    return reader;
+  }
+
+  @Test
+  public void testSameValues() throws IOException {
+    TableSchema schema = schema();
+    byte[] data = encode(schema);
+    ProtobufRecordStreamReader eager = reader(schema, data, false);
+    ProtobufRecordStreamReader lazy = reader(schema, data, true);
+
+    Record reuse = null;
+    for (int i = 0; i < ROWS; ++i) {
+      Record expected = eager.read();
+      reuse = lazy.read(reuse);
+      Assert.assertTrue(reuse instanceof LazyRecord);
+
+      int n = schema.getColumns().size();
+      for (int c = 0; c < n; ++c) {
+        Assert.assertEquals(expected.isNull(c), reuse.isNull(c));
+      }
+      Assert.assertArrayEquals(expected.getBytes(3), reuse.getBytes(3));
+      // access in reverse order to make sure fields are independent
+      for (int c = n - 1; c >= 0; --c) {
+        Assert.assertEquals("row " + i + " column " + c, expected.get(c), reuse.get(c));
+      }
+      Assert.assertArrayEquals(expected.toArray(), reuse.toArray());
+    }
+    Assert.assertNull(eager.read());
+    Assert.assertNull(lazy.read(reuse));
+  }
+
+  @Test
+  public void testSetOverridesRawValue() throws IOException {
+    TableSchema schema = schema();
+    ProtobufRecordStreamReader lazy = reader(schema, encode(schema), true);
+    lazy.read();
+    Record r = lazy.read();
+    r.setString(3, "changed");
+    Assert.assertEquals("changed", r.getString(3));
+    Assert.assertArrayEquals("changed".getBytes("UTF-8"), r.getBytes(3));
+
+    ((LazyRecord) r).clear();
+    Assert.assertTrue(r.isNull(0));
+    Assert.assertNull(r.get(3));
+  }
+
+  @Test(expected = IOException.class)
+  public void testChecksumStillVerified() throws IOException {
+    TableSchema s = new TableSchema();
+    s.addColumn(new Column("c_string", OdpsType.STRING));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ProtobufRecordStreamWriter writer =
+        new ProtobufRecordStreamWriter(s, out,
+                                       new CompressOption(CompressOption.CompressAlgorithm.ODPS_RAW,
+                                                          0, 0));
+    ArrayRecord r = new ArrayRecord(s);
+    r.setString(0, "abcdef");
+    writer.write(r);
+    writer.close();
+
+    byte[] data = out.toByteArray();
+    // flip a byte inside the string payload
+    data[3] ^= 1;
+    ProtobufRecordStreamReader reader =
+        new ProtobufRecordStreamReader(s, null, new ByteArrayInputStream(data),
+                                       new CompressOption(CompressOption.CompressAlgorithm.ODPS_RAW,
+                                                          0, 0));
+    reader.setLazyDecode(true);
+    reader.read();
+  }
+}
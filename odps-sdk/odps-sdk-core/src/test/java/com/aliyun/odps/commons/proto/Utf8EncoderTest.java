@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.proto;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Utf8EncoderTest {
+
+  private static void assertSameAsJdk(Utf8Encoder encoder, String s) throws Exception {
+    byte[] expected = s.getBytes("UTF-8");
+    int length = encoder.encode(s);
+    Assert.assertEquals(expected.length, length);
+    Assert.assertArrayEquals(expected, Arrays.copyOf(encoder.getBuffer(), length));
+  }
+
+  @Test
+  public void testEncode() throws Exception {
+    Utf8Encoder encoder = new Utf8Encoder();
+    assertSameAsJdk(encoder, "");
+    assertSameAsJdk(encoder, "hello world");
+    assertSameAsJdk(encoder, "abc中文def");
+    assertSameAsJdk(encoder, "é߿ࠀ￿");
+    assertSameAsJdk(encoder, "emoji 😀 end");
+    // unpaired surrogates
+    assertSameAsJdk(encoder, "a\ud83db");
+    assertSameAsJdk(encoder, "a\ude00b");
+    assertSameAsJdk(encoder, "tail\ud83d");
+  }
+
+  @Test
+  public void testGrowKeepsAsciiPrefix() throws Exception {
+    Utf8Encoder encoder = new Utf8Encoder();
+    char[] prefix = new char[200];
+    Arrays.fill(prefix, 'a');
+    assertSameAsJdk(encoder, new String(prefix) + "中中中中中中中中中中中中中中中中中中中中中中中中");
+  }
+
+  @Test
+  public void testRandom() throws Exception {
+    Utf8Encoder encoder = new Utf8Encoder();
+    Random random = new Random(0);
+    for (int i = 0; i < 1000; ++i) {
+      char[] chars = new char[random.nextInt(2000)];
+      for (int j = 0; j < chars.length; ++j) {
+        chars[j] = (char) (random.nextBoolean() ? random.nextInt(0x80) : random.nextInt(0x10000));
+      }
+      assertSameAsJdk(encoder, new String(chars));
+    }
+  }
+
+  @Test
+  public void testTooLong() throws Exception {
+    Utf8Encoder encoder = new Utf8Encoder();
+    char[] chars = new char[Utf8Encoder.MAX_CAPACITY / 3 + 1];
+    Assert.assertEquals(-1, encoder.encode(new String(chars)));
+  }
+}
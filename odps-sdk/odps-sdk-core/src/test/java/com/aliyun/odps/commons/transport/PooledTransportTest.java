@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.commons.util.IOUtils;
+import com.aliyun.odps.rest.RestClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class PooledTransportTest {
+
+  private static final Map<String, String> NO_PARAMS = new HashMap<String, String>();
+
+  static {
+    // HttpServer writes response headers and body separately, avoid the Nagle delay
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private HttpServer server;
+  private int port;
+  private PooledTransport transport;
+  private RestClient client;
+  private final AtomicInteger slowRequests = new AtomicInteger();
+
+  /**
+   * /echo 返回请求体，/big?n 返回 n 字节，/close 返回后关闭连接，/gzip 返回 gzip 压缩的 hello，
+   * /slow 等待 2 秒后返回
+   */
+  private HttpServer startServer(int port) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] body = IOUtils.readFully(exchange.getRequestBody());
+        if (path.startsWith("/big")) {
+          body = new byte[Integer.parseInt(exchange.getRequestURI().getQuery())];
+          Arrays.fill(body, (byte) 'x');
+        } else if (path.startsWith("/close")) {
+          exchange.getResponseHeaders().set("Connection", "close");
+          body = "bye".getBytes("UTF-8");
+        } else if (path.startsWith("/slow")) {
+          slowRequests.incrementAndGet();
+          try {
+            Thread.sleep(2000);
+          } catch (InterruptedException ignore) {
+          }
+        } else if (path.startsWith("/gzip")) {
+          ByteArrayOutputStream bos = new ByteArrayOutputStream();
+          GZIPOutputStream gzip = new GZIPOutputStream(bos);
+          gzip.write("hello".getBytes("UTF-8"));
+          gzip.close();
+          body = bos.toByteArray();
+          exchange.getResponseHeaders().set(Headers.CONTENT_ENCODING, "gzip");
+        } else if (!path.startsWith("/echo")) {
+          body = "hello".getBytes("UTF-8");
+        }
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+          exchange.sendResponseHeaders(200, -1);
+        } else if (path.startsWith("/echo")) {
+          // chunked
+          exchange.sendResponseHeaders(200, 0);
+          exchange.getResponseBody().write(body);
+        } else {
+          exchange.sendResponseHeaders(200, body.length);
+          exchange.getResponseBody().write(body);
+        }
+        exchange.close();
+      }
+    });
+    server.start();
+    return server;
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    server = startServer(0);
+    port = server.getAddress().getPort();
+    transport = new PooledTransport();
+    Odps odps = new Odps(new AliyunAccount("test", "test"), transport);
+    odps.setEndpoint("http://127.0.0.1:" + port);
+    client = odps.getRestClient();
+  }
+
+  @After
+  public void tearDown() {
+    transport.close();
+    server.stop(0);
+  }
+
+  private String get(String resource) throws Exception {
+    Response resp = client.request(resource, "GET", NO_PARAMS, null, (byte[]) null);
+    Assert.assertEquals(200, resp.getStatus());
+    return new String(resp.getBody(), "UTF-8");
+  }
+
+  @Test
+  public void testReuseConnection() throws Exception {
+    for (int i = 0; i < 100; ++i) {
+      Assert.assertEquals("hello", get("/hello"));
+    }
+    Assert.assertEquals(1, transport.getCreatedConnectionCount());
+    Assert.assertEquals(1, transport.getIdleConnectionCount());
+    Assert.assertEquals(0, transport.getLeasedConnectionCount());
+  }
+
+  @Test
+  public void testSharedByClone() throws Exception {
+    Odps odps = new Odps(new AliyunAccount("test", "test"), transport);
+    odps.setEndpoint("http://127.0.0.1:" + port);
+    Assert.assertSame(transport, odps.clone().getRestClient().getTransport());
+  }
+
+  @Test
+  public void testFixedLengthBody() throws Exception {
+    for (int i = 0; i < 3; ++i) {
+      byte[] body = ("body" + i).getBytes("UTF-8");
+      Response resp = client.request("/echo", "POST", NO_PARAMS, null, body);
+      Assert.assertArrayEquals(body, resp.getBody());
+    }
+    Assert.assertEquals(1, transport.getCreatedConnectionCount());
+  }
+
+  @Test
+  public void testChunkedUpload() throws Exception {
+    client.setChunkSize(1000);
+    byte[] data = new byte[200 * 1024 + 17];
+    new Random(0).nextBytes(data);
+    for (int i = 0; i < 3; ++i) {
+      Map<String, String> headers = new HashMap<String, String>();
+      headers.put(Headers.TRANSFER_ENCODING, Headers.CHUNKED);
+      Connection conn = client.connect("/echo", "PUT", NO_PARAMS, headers);
+      try {
+        OutputStream out = conn.getOutputStream();
+        out.write(data, 0, 10);
+        out.write(data, 10, data.length - 10);
+        out.close();
+        Assert.assertEquals(200, conn.getResponse().getStatus());
+        Assert.assertArrayEquals(data, IOUtils.readFully(conn.getInputStream()));
+      } finally {
+        conn.disconnect();
+      }
+    }
+    Assert.assertEquals(1, transport.getCreatedConnectionCount());
+  }
+
+  @Test
+  public void testHeadAndGzip() throws Exception {
+    Response resp = client.request("/hello", "HEAD", NO_PARAMS, null, (byte[]) null);
+    Assert.assertEquals(200, resp.getStatus());
+    Assert.assertNull(resp.getBody());
+    Assert.assertEquals("hello", get("/gzip"));
+    Assert.assertEquals(1, transport.getCreatedConnectionCount());
+  }
+
+  @Test
+  public void testConnectionClose() throws Exception {
+    for (int i = 0; i < 3; ++i) {
+      Assert.assertEquals("bye", get("/close"));
+    }
+    Assert.assertEquals(3, transport.getCreatedConnectionCount());
+    Assert.assertEquals(0, transport.getIdleConnectionCount());
+  }
+
+  @Test
+  public void testDrainOnDisconnect() throws Exception {
+    Connection conn = client.connect("/big", "GET", singleParam("10000"), null);
+    Assert.assertEquals('x', conn.getInputStream().read());
+    conn.disconnect();
+    Assert.assertEquals(1, transport.getIdleConnectionCount());
+
+    // too much left to drain
+    conn = client.connect("/big", "GET", singleParam("10000000"), null);
+    Assert.assertEquals('x', conn.getInputStream().read());
+    conn.disconnect();
+    Assert.assertEquals(0, transport.getIdleConnectionCount());
+
+    Assert.assertEquals("hello", get("/hello"));
+    Assert.assertEquals(2, transport.getCreatedConnectionCount());
+  }
+
+  private static Map<String, String> singleParam(String key) {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put(key, null);
+    return params;
+  }
+
+  @Test
+  public void testMaxConnectionsPerHost() throws Exception {
+    transport.setMaxConnectionsPerHost(1);
+    transport.setLeaseTimeout(100);
+    Connection first = client.connect("/hello", "GET", NO_PARAMS, null);
+    try {
+      client.connect("/hello", "GET", NO_PARAMS, null);
+      Assert.fail();
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("Timeout waiting for connection"));
+    }
+    first.getResponse();
+    first.disconnect();
+    Assert.assertEquals("hello", get("/hello"));
+    Assert.assertEquals(1, transport.getCreatedConnectionCount());
+  }
+
+  @Test
+  public void testIdleTimeout() throws Exception {
+    transport.setIdleTimeout(50);
+    get("/hello");
+    Thread.sleep(100);
+    get("/hello");
+    Assert.assertEquals(2, transport.getCreatedConnectionCount());
+  }
+
+  @Test
+  public void testServerRestart() throws Exception {
+    // stale connection found by validation
+    transport.setValidateAfterInactivity(0);
+    get("/hello");
+    server.stop(0);
+    server = startServer(port);
+    Assert.assertEquals("hello", get("/hello"));
+    Assert.assertEquals(2, transport.getCreatedConnectionCount());
+
+    // stale connection not validated, request is resent on a new connection
+    transport.setValidateAfterInactivity(PooledTransport.DEFAULT_VALIDATE_AFTER_INACTIVITY);
+    server.stop(0);
+    server = startServer(port);
+    Assert.assertEquals("hello", get("/hello"));
+    Assert.assertEquals(3, transport.getCreatedConnectionCount());
+  }
+
+  @Test
+  public void testNoResendOnTimeout() throws Exception {
+    get("/hello");
+    client.setReadTimeout(1);
+    client.setRetryTimes(0);
+    try {
+      get("/slow");
+      Assert.fail("expect timeout");
+    } catch (Exception e) {
+      // expected
+    }
+    Assert.assertEquals(1, slowRequests.get());
+  }
+
+  @Test(expected = IOException.class)
+  public void testClosed() throws Exception {
+    transport.close();
+    client.connect("/hello", "GET", NO_PARAMS, null);
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChunkedOutputStreamTest {
+
+  private static byte[] randomBytes(int n) {
+    byte[] b = new byte[n];
+    new Random(n).nextBytes(b);
+    return b;
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[7];
+    int n;
+    while ((n = in.read(buf)) != -1) {
+      out.write(buf, 0, n);
+    }
+    return out.toByteArray();
+  }
+
+  private void checkRoundTrip(boolean direct) throws IOException {
+    BufferPool pool = new BufferPool(16, 1024, direct);
+    ChunkedOutputStream out = new ChunkedOutputStream(pool);
+    byte[] data = randomBytes(100);
+    out.write(data[0]);
+    out.write(data, 1, data.length - 1);
+    Assert.assertEquals(data.length, out.size());
+
+    Assert.assertArrayEquals(data, out.toByteArray());
+    ByteArrayOutputStream copy = new ByteArrayOutputStream();
+    out.writeTo(copy);
+    Assert.assertArrayEquals(data, copy.toByteArray());
+    Assert.assertArrayEquals(data, readAll(out.getInputStream()));
+  }
+
+  @Test
+  public void testHeapRoundTrip() throws IOException {
+    checkRoundTrip(false);
+  }
+
+  @Test
+  public void testDirectRoundTrip() throws IOException {
+    checkRoundTrip(true);
+  }
+
+  @Test
+  public void testChunksReturnedToPool() {
+    BufferPool pool = new BufferPool(16, 64, false);
+    ChunkedOutputStream out = new ChunkedOutputStream(pool);
+    out.write(randomBytes(100), 0, 100);
+    Assert.assertEquals(0, pool.getPooledBytes());
+
+    out.reset();
+    Assert.assertEquals(0, out.size());
+    // 7 chunks were used, only 4 fit into the pool
+    Assert.assertEquals(64, pool.getPooledBytes());
+
+    out.write(randomBytes(20), 0, 20);
+    Assert.assertEquals(32, pool.getPooledBytes());
+  }
+
+  @Test
+  public void testMarkReset() throws IOException {
+    ChunkedOutputStream out = new ChunkedOutputStream(new BufferPool(16, 1024, false));
+    byte[] data = randomBytes(50);
+    out.write(data, 0, data.length);
+
+    InputStream in = out.getInputStream();
+    Assert.assertTrue(in.markSupported());
+    in.mark(0);
+    Assert.assertArrayEquals(data, readAll(in));
+    in.reset();
+    Assert.assertArrayEquals(data, readAll(in));
+
+    in.reset();
+    Assert.assertEquals(20, in.skip(20));
+    in.mark(0);
+    byte[] rest = readAll(in);
+    in.reset();
+    Assert.assertArrayEquals(rest, readAll(in));
+    Assert.assertEquals(30, rest.length);
+    Assert.assertEquals(data[20], rest[0]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidChunkSize() {
+    new BufferPool(0, 0, false);
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.util;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 比较 {@link DateUtils} 与改造前的 {@link LegacyDateUtils} 在各种输入下的结果
+ */
+public class DateUtilsEquivalenceTest {
+
+  private static final long SECOND = 1000L;
+  private static final long DAY = 24 * 60 * 60 * SECOND;
+  private static final TimeZone SHANGHAI = TimeZone.getTimeZone("Asia/Shanghai");
+
+  private static long utc(int year) {
+    Calendar c = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
+    c.clear();
+    c.set(year, Calendar.JANUARY, 1);
+    return c.getTimeInMillis();
+  }
+
+  private static List<Long> transitions = new ArrayList<Long>();
+
+  @BeforeClass
+  public static void findTransitions() {
+    // every offset change of Asia/Shanghai, by UTC millis
+    long end = utc(2100);
+    int prev = SHANGHAI.getOffset(utc(1600));
+    for (long t = utc(1600); t < end; t += SECOND * 60 * 30) {
+      int cur = SHANGHAI.getOffset(t);
+      if (cur != prev) {
+        transitions.add(t);
+        prev = cur;
+      }
+    }
+    Assert.assertTrue(transitions.size() > 10);
+  }
+
+  private static void checkUtc(long t) {
+    Date d = new Date(t);
+    Assert.assertEquals("date2ms " + t, LegacyDateUtils.date2ms(d), DateUtils.date2ms(d));
+    Assert.assertEquals("date2rawtime " + t,
+                        LegacyDateUtils.date2rawtime(d), DateUtils.date2rawtime(d));
+    java.sql.Date sd = new java.sql.Date(t);
+    Assert.assertEquals("getDayOffset " + t,
+                        LegacyDateUtils.getDayOffset(sd), DateUtils.getDayOffset(sd));
+  }
+
+  private static void checkMs(long ms) {
+    Assert.assertEquals("ms2date " + ms, LegacyDateUtils.ms2date(ms), DateUtils.ms2date(ms));
+  }
+
+  private static void checkRawtime(long rawtime) {
+    Assert.assertEquals("rawtime2date " + rawtime,
+                        LegacyDateUtils.rawtime2date(rawtime), DateUtils.rawtime2date(rawtime));
+  }
+
+  private static void checkDay(long day) {
+    Assert.assertEquals("fromDayOffset " + day,
+                        LegacyDateUtils.fromDayOffset(day), DateUtils.fromDayOffset(day));
+  }
+
+  @Test
+  public void testEveryDay() {
+    // every day of 1800 ~ 2200, and every 7th day of 0001 ~ 9999
+    long from = utc(1800) / DAY;
+    long to = utc(2200) / DAY;
+    long step = 1;
+    for (long day = utc(1) / DAY; day < utc(10000) / DAY; day += step) {
+      step = day >= from && day < to ? 1 : 7;
+      long t = day * DAY + (day * 7919 % DAY);
+      checkUtc(t);
+      checkMs(t);
+      checkRawtime(t / SECOND);
+      checkDay(day);
+    }
+  }
+
+  @Test
+  public void testAroundTransitions() {
+    // every second within an hour (both sides) of each offset change, with a varying millisecond part
+    for (long transition : transitions) {
+      for (long t = transition - 3600 * SECOND; t < transition + 3600 * SECOND;
+           t += SECOND) {
+        long ms = t + (t / SECOND % 1000);
+        checkUtc(ms);
+        checkUtc(-ms % SECOND + t);
+        checkMs(ms);
+        checkMs(t - 1);
+        checkRawtime(t / SECOND);
+        // the same instant interpreted as Shanghai wall time
+        long wall = t + 8 * 3600 * SECOND;
+        checkUtc(wall);
+        checkMs(wall + 999);
+        checkRawtime(wall / SECOND);
+      }
+      long day = transition / DAY;
+      for (long d = day - 2; d <= day + 2; ++d) {
+        checkDay(d);
+      }
+    }
+  }
+
+  @Test
+  public void testNegativeMillis() {
+    // ms2date truncates ms / 1000 toward zero and adds a negative millisecond field
+    for (long t = -DAY; t < DAY; t += 997) {
+      checkMs(t);
+      checkUtc(t);
+    }
+  }
+
+  @Test
+  public void testRandom() {
+    Random random = new Random(20170101);
+    long min = utc(1);
+    long range = utc(10000) - min;
+    for (int i = 0; i < 200000; ++i) {
+      long t = min + (long) (random.nextDouble() * range);
+      checkUtc(t);
+      checkMs(t);
+      checkRawtime(t / SECOND);
+      checkDay(t / DAY);
+    }
+  }
+
+  @Test
+  public void testBoundaries() {
+    long[] values = {utc(1), utc(1) - 1, utc(1600), utc(1600) - 1, utc(1600) + 1,
+                     utc(1600) - DAY, utc(10000), utc(10000) - 1, utc(10000) + DAY,
+                     0, -1, 1, Long.MAX_VALUE / 2, Long.MIN_VALUE / 2};
+    for (long t : values) {
+      checkUtc(t);
+      checkMs(t);
+      checkRawtime(t / SECOND);
+      checkDay(t / DAY);
+    }
+  }
+
+  @Test
+  public void testRfc822() throws Exception {
+    Date d = new Date(1409037766000L);
+    String s = DateUtils.formatRfc822Date(d);
+    Assert.assertEquals(LegacyDateUtils.formatRfc822Date(d), s);
+    Assert.assertEquals(d, DateUtils.parseRfc822Date(s));
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.util;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.OdpsException;
+import com.aliyun.odps.commons.util.RetryPolicy.ErrorClass;
+
+public class RetryPolicyTest {
+
+  @Test
+  public void testClassify() {
+    RetryPolicy policy = new RetryPolicy();
+    Assert.assertEquals(ErrorClass.CONNECT,
+                        policy.classify(new OdpsException("x", new ConnectException()), 0));
+    Assert.assertEquals(ErrorClass.TIMEOUT,
+                        policy.classify(new OdpsException("x", new SocketTimeoutException()), 0));
+    Assert.assertEquals(ErrorClass.NETWORK, policy.classify(new IOException(), 0));
+    Assert.assertEquals(ErrorClass.THROTTLED, policy.classify(new OdpsException("x"), 429));
+    Assert.assertEquals(ErrorClass.SERVER, policy.classify(new OdpsException("x"), 503));
+    Assert.assertEquals(ErrorClass.CLIENT, policy.classify(new OdpsException("x"), 404));
+    Assert.assertEquals(ErrorClass.UNKNOWN, policy.classify(new OdpsException("x"), 0));
+  }
+
+  @Test
+  public void testIdempotency() {
+    RetryPolicy policy = new RetryPolicy();
+    Exception connect = new OdpsException("x", new ConnectException());
+    Exception timeout = new OdpsException("x", new SocketTimeoutException());
+
+    Assert.assertTrue(policy.onFailure(connect, 0, 1, false) >= 0);
+    Assert.assertTrue(policy.onFailure(timeout, 0, 1, true) >= 0);
+    Assert.assertTrue(policy.onFailure(timeout, 0, 1, false) < 0);
+    Assert.assertTrue(policy.onFailure(timeout, 500, 1, false) < 0);
+    Assert.assertTrue(policy.onFailure(timeout, 429, 1, false) >= 0);
+    Assert.assertTrue(policy.onFailure(timeout, 400, 1, true) < 0);
+
+    Assert.assertEquals(3, policy.getRetryCount());
+    Assert.assertEquals(1, policy.getRetryCount(ErrorClass.CONNECT));
+    Assert.assertEquals(1, policy.getRetryCount(ErrorClass.THROTTLED));
+    Assert.assertEquals(3, policy.getRejectedCount());
+  }
+
+  @Test
+  public void testJitteredBackoff() {
+    RetryPolicy policy = new RetryPolicy();
+    policy.setDelay(100, 1000);
+    policy.setBudget(0, 0);
+    Exception e = new IOException();
+    for (int i = 0; i < 100; ++i) {
+      long first = policy.onFailure(e, 0, 1, true);
+      Assert.assertTrue(first >= 50 && first <= 100);
+      long third = policy.onFailure(e, 0, 3, true);
+      Assert.assertTrue(third >= 200 && third <= 400);
+      long capped = policy.onFailure(e, 0, 30, true);
+      Assert.assertTrue(capped >= 500 && capped <= 1000);
+    }
+  }
+
+  @Test
+  public void testBudget() {
+    RetryPolicy policy = new RetryPolicy();
+    policy.setBudget(3, 0.5);
+    Exception e = new IOException();
+    for (int i = 0; i < 3; ++i) {
+      Assert.assertTrue(policy.onFailure(e, 0, 1, true) >= 0);
+    }
+    Assert.assertTrue(policy.onFailure(e, 0, 1, true) < 0);
+    Assert.assertEquals(1, policy.getBudgetExhaustedCount());
+
+    policy.onSuccess();
+    Assert.assertTrue(policy.onFailure(e, 0, 1, true) < 0);
+    policy.onSuccess();
+    Assert.assertTrue(policy.onFailure(e, 0, 1, true) >= 0);
+
+    for (int i = 0; i < 100; ++i) {
+      policy.onSuccess();
+    }
+    Assert.assertEquals(3.0, policy.getRemainingBudget(), 0.0001);
+  }
+
+  @Test
+  public void testBudgetOffByDefault() {
+    RetryPolicy policy = new RetryPolicy();
+    Exception e = new IOException();
+    for (int i = 0; i < RetryPolicy.DEFAULT_BUDGET * 2; ++i) {
+      Assert.assertTrue(policy.onFailure(e, 0, 1, true) >= 0);
+    }
+    Assert.assertEquals(0, policy.getBudgetExhaustedCount());
+  }
+
+  @Test
+  public void testRetryStrategyInterrupted() {
+    RetryPolicy policy = new RetryPolicy();
+    policy.setDelay(10000, 10000);
+    RetryStrategy retry = new RetryStrategy(3, policy);
+    Thread.currentThread().interrupt();
+    try {
+      retry.onFailure(new IOException());
+      Assert.fail();
+    } catch (RetryExceedLimitException ignore) {
+    }
+    Assert.assertTrue(Thread.interrupted());
+  }
+
+  @Test
+  public void testRetryStrategyWithPolicy() throws Exception {
+    RetryPolicy policy = new RetryPolicy();
+    policy.setDelay(10, 20);
+    RetryStrategy retry = new RetryStrategy(3, policy);
+    RetryStrategy copy = new RetryStrategy(retry);
+    for (int i = 0; i < 3; ++i) {
+      retry.onFailure(new IOException());
+    }
+    try {
+      retry.onFailure(new IOException());
+      Assert.fail();
+    } catch (RetryExceedLimitException ignore) {
+    }
+    copy.onFailure(new IOException());
+    Assert.assertEquals(1, copy.getAttempts());
+    Assert.assertEquals(4, policy.getRetryCount());
+    Assert.assertTrue(policy.getTotalBackoffMillis() >= 4 * 5);
+  }
+}
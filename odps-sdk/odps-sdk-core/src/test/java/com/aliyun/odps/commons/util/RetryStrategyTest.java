@@ -140,4 +140,29 @@ public class RetryStrategyTest {
     Assert.assertEquals(1+2+4, retry.getTotalBackupTime());
     Assert.assertEquals(4, trouble);
   }
+
+  /**
+   * 预期：副本使用相同的配置，但重试次数从零开始计算
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testRetryStrategyCopy() throws Exception {
+    RetryStrategy retry = new RetryStrategy(2, 1, RetryStrategy.BackoffStrategy.LINEAR_BACKOFF);
+    retry.onFailure(new RuntimeException());
+    Assert.assertEquals(1, retry.getAttempts());
+
+    RetryStrategy copy = new RetryStrategy(retry);
+    Assert.assertEquals(0, copy.getAttempts());
+    Assert.assertEquals(0, copy.getTotalBackupTime());
+    copy.onFailure(new RuntimeException());
+    copy.onFailure(new RuntimeException());
+    Assert.assertEquals(1 + 2, copy.getTotalBackupTime());
+    try {
+      copy.onFailure(new RuntimeException());
+      Assert.assertFalse(true);
+    } catch (RetryExceedLimitException err) {
+      Assert.assertEquals(3, copy.getAttempts());
+    }
+  }
 }
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.datahub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.commons.proto.XstreamPack.BytesPairPB;
+import com.aliyun.odps.commons.proto.XstreamPack.KVMapPB;
+import com.aliyun.odps.commons.proto.XstreamPack.XStreamPack;
+import com.aliyun.odps.commons.util.BufferPool;
+import com.aliyun.odps.data.ArrayRecord;
+import com.google.protobuf.ByteString;
+
+public class XStreamPackBodyTest {
+
+  private static DatahubRecordPack pack() throws IOException {
+    TableSchema schema = new TableSchema();
+    schema.addColumn(new Column("i", OdpsType.BIGINT));
+    schema.addColumn(new Column("s", OdpsType.STRING));
+    // small chunks so the pack spans many of them
+    DatahubRecordPack pack = new DatahubRecordPack(schema, new BufferPool(64, 0, false));
+    ArrayRecord r = new ArrayRecord(schema);
+    for (int i = 0; i < 100; ++i) {
+      r.setBigint(0, (long) i);
+      r.setString(1, "value " + i);
+      pack.append(r);
+    }
+    return pack;
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[100];
+    int n;
+    while ((n = in.read(buf)) != -1) {
+      out.write(buf, 0, n);
+    }
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testSameAsBuilder() throws Exception {
+    DatahubRecordPack pack = pack();
+
+    KVMapPB.Builder kvMap = KVMapPB.newBuilder();
+    kvMap.addItems(BytesPairPB.newBuilder().setKey(ByteString.copyFromUtf8("k"))
+                       .setValue(ByteString.copyFromUtf8("v")));
+    XStreamPack.Builder builder = XStreamPack.newBuilder();
+    builder.setPackMeta(ByteString.copyFromUtf8("meta"));
+    builder.setKvMeta(kvMap);
+
+    XStreamPackBody body = new XStreamPackBody(pack, builder.buildPartial().toByteArray());
+    byte[] expected = builder.setPackData(ByteString.copyFrom(pack.getByteArray()))
+        .build().toByteArray();
+
+    Assert.assertEquals(expected.length, body.getLength());
+    InputStream in = body.getInputStream();
+    in.mark(0);
+    Assert.assertArrayEquals(expected, readAll(in));
+    in.reset();
+    Assert.assertArrayEquals(expected, readAll(in));
+
+    MessageDigest md5 = MessageDigest.getInstance("MD5");
+    Assert.assertEquals(Hex.encodeHexString(md5.digest(expected)).toUpperCase(),
+                        body.getContentMD5(md5));
+  }
+
+  @Test
+  public void testPackDataOnly() throws Exception {
+    DatahubRecordPack pack = pack();
+    XStreamPackBody body = new XStreamPackBody(pack, null);
+    byte[] expected = XStreamPack.newBuilder()
+        .setPackData(ByteString.copyFrom(pack.getByteArray())).build().toByteArray();
+    Assert.assertArrayEquals(expected, readAll(body.getInputStream()));
+  }
+
+  @Test(expected = IOException.class)
+  public void testAppendAfterSeal() throws Exception {
+    DatahubRecordPack pack = pack();
+    new XStreamPackBody(pack, null);
+    pack.append(new ArrayRecord(new TableSchema()));
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.rest;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.OdpsException;
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.commons.transport.Response;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class AsyncRequestExecutorTest {
+
+  private static class Tracker {
+
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger max = new AtomicInteger();
+
+    void enter() {
+      int n = running.incrementAndGet();
+      while (true) {
+        int m = max.get();
+        if (n <= m || max.compareAndSet(m, n)) {
+          break;
+        }
+      }
+    }
+
+    void exit() {
+      running.decrementAndGet();
+    }
+  }
+
+  private static Callable<Integer> blocking(final Tracker tracker, final CountDownLatch latch,
+                                            final int value) {
+    return new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        tracker.enter();
+        try {
+          latch.await();
+          return value;
+        } finally {
+          tracker.exit();
+        }
+      }
+    };
+  }
+
+  @Test
+  public void testEndpointLimit() throws Exception {
+    AsyncRequestExecutor executor = new AsyncRequestExecutor(8, 2);
+    Tracker a = new Tracker();
+    CountDownLatch latch = new CountDownLatch(1);
+    List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+    for (int i = 0; i < 20; ++i) {
+      futures.add(executor.submit("a", blocking(a, latch, i)));
+    }
+    Assert.assertEquals(18, executor.getPendingCount("a"));
+
+    // another endpoint is not blocked by a
+    Future<String> b = executor.submit("b", new Callable<String>() {
+      @Override
+      public String call() {
+        return "b";
+      }
+    });
+    Assert.assertEquals("b", b.get(5, TimeUnit.SECONDS));
+
+    latch.countDown();
+    for (int i = 0; i < 20; ++i) {
+      Assert.assertEquals(Integer.valueOf(i), futures.get(i).get(5, TimeUnit.SECONDS));
+    }
+    Assert.assertEquals(2, a.max.get());
+    // the slot is released right after the future completes
+    for (int i = 0; i < 500 && executor.getRunningCount("a") > 0; ++i) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(0, executor.getRunningCount("a"));
+    executor.shutdown();
+  }
+
+  @Test
+  public void testCancelPending() throws Exception {
+    AsyncRequestExecutor executor = new AsyncRequestExecutor(1, 1);
+    CountDownLatch latch = new CountDownLatch(1);
+    Future<Integer> first = executor.submit("a", blocking(new Tracker(), latch, 1));
+
+    final AtomicBoolean ran = new AtomicBoolean(false);
+    Future<Integer> second = executor.submit("a", new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        ran.set(true);
+        return 2;
+      }
+    });
+    Assert.assertTrue(second.cancel(false));
+    Assert.assertTrue(second.isCancelled());
+    Assert.assertEquals(0, executor.getPendingCount("a"));
+
+    latch.countDown();
+    Assert.assertEquals(Integer.valueOf(1), first.get(5, TimeUnit.SECONDS));
+    Assert.assertFalse(ran.get());
+    executor.shutdown();
+  }
+
+  @Test
+  public void testCancelRunning() throws Exception {
+    AsyncRequestExecutor executor = new AsyncRequestExecutor(1, 1);
+    Tracker tracker = new Tracker();
+    Future<Integer> first = executor.submit("a", blocking(tracker, new CountDownLatch(1), 1));
+    while (tracker.running.get() == 0) {
+      Thread.sleep(1);
+    }
+    Future<Integer> second = executor.submit("a", blocking(tracker, new CountDownLatch(0), 2));
+    Assert.assertTrue(first.cancel(true));
+    Assert.assertEquals(Integer.valueOf(2), second.get(5, TimeUnit.SECONDS));
+    executor.shutdown();
+  }
+
+  @Test
+  public void testException() throws Exception {
+    AsyncRequestExecutor executor = new AsyncRequestExecutor(1, 1);
+    Future<Object> f = executor.submit("a", new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        throw new OdpsException("failed");
+      }
+    });
+    try {
+      f.get();
+      Assert.fail();
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof OdpsException);
+    }
+    executor.shutdown();
+  }
+
+  @Test(expected = RejectedExecutionException.class)
+  public void testShutdown() {
+    AsyncRequestExecutor executor = new AsyncRequestExecutor(1, 1);
+    executor.shutdown();
+    executor.submit("a", blocking(new Tracker(), new CountDownLatch(0), 1));
+  }
+
+  @Test
+  public void testRequestAsync() throws Exception {
+    final Tracker tracker = new Tracker();
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        tracker.enter();
+        try {
+          Thread.sleep(5);
+        } catch (InterruptedException ignore) {
+        } finally {
+          tracker.exit();
+        }
+        byte[] body = "ok".getBytes("UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+      }
+    });
+    server.start();
+    AsyncRequestExecutor executor = new AsyncRequestExecutor(4, 2);
+    try {
+      Odps odps = new Odps(new AliyunAccount("test", "test"));
+      odps.setEndpoint("http://127.0.0.1:" + server.getAddress().getPort());
+      RestClient client = odps.getRestClient();
+      client.setAsyncExecutor(executor);
+      Assert.assertSame(executor, odps.clone().getRestClient().getAsyncExecutor());
+
+      List<Future<Response>> futures = new ArrayList<Future<Response>>();
+      for (int i = 0; i < 50; ++i) {
+        futures.add(client.requestAsync("/projects/p" + i, "GET",
+                                        new HashMap<String, String>(), null, null));
+      }
+      for (Future<Response> f : futures) {
+        Assert.assertEquals("ok", new String(f.get(10, TimeUnit.SECONDS).getBody(), "UTF-8"));
+      }
+      Assert.assertTrue(tracker.max.get() <= 2);
+    } finally {
+      executor.shutdown();
+      server.stop(0);
+    }
+  }
+}
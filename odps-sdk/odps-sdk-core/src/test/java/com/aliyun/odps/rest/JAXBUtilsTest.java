@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.rest;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JAXBUtilsTest {
+
+  private static final String XML =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>%s</Code>"
+      + "<Message>a &lt; b</Message><RequestId>id</RequestId></Error>";
+
+  @Test
+  public void testModelClassesExist() {
+    Set<String> names = new HashSet<String>();
+    for (String name : JAXBUtils.MODEL_CLASSES) {
+      Assert.assertTrue("Duplicated model class: " + name, names.add(name));
+      Class<?> clazz;
+      try {
+        clazz = Class.forName(name, false, JAXBUtils.class.getClassLoader());
+      } catch (ClassNotFoundException e) {
+        throw new AssertionError("Model class not found: " + name);
+      }
+      Assert.assertTrue("Not a JAXB model class: " + name,
+                        clazz.isAnnotationPresent(XmlRootElement.class));
+    }
+  }
+
+  @Test
+  public void testWarmUp() throws Exception {
+    JAXBUtils.warmUp();
+    JAXBUtils.warmUp(ErrorMessage.class);
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    ErrorMessage msg = JAXBUtils.unmarshal(String.format(XML, "c1").getBytes("UTF-8"),
+                                           ErrorMessage.class);
+    Assert.assertEquals("c1", msg.getErrorcode());
+    Assert.assertEquals("a < b", msg.getMessage());
+
+    String xml = JAXBUtils.marshal(msg, ErrorMessage.class);
+
+    // cached unmarshaller and marshaller are reused
+    ErrorMessage again = JAXBUtils.unmarshal(xml.getBytes("UTF-8"), ErrorMessage.class);
+    Assert.assertEquals("c1", again.getErrorcode());
+    Assert.assertEquals("a < b", again.getMessage());
+    Assert.assertEquals(xml, JAXBUtils.marshal(again, ErrorMessage.class));
+  }
+
+  @Test
+  public void testConcurrentUnmarshal() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try {
+      Future<?>[] futures = new Future<?>[64];
+      for (int i = 0; i < futures.length; ++i) {
+        final String code = "c" + i;
+        futures[i] = pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int j = 0; j < 50; ++j) {
+              ErrorMessage msg = JAXBUtils.unmarshal(
+                  String.format(XML, code).getBytes("UTF-8"), ErrorMessage.class);
+              Assert.assertEquals(code, msg.getErrorcode());
+            }
+            return null;
+          }
+        });
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
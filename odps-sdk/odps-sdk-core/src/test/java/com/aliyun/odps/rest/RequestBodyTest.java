@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.OdpsException;
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.commons.transport.Headers;
+import com.aliyun.odps.commons.transport.Request;
+import com.aliyun.odps.commons.transport.Response;
+import com.aliyun.odps.commons.util.IOUtils;
+import com.aliyun.odps.commons.util.RetryPolicy;
+
+public class RequestBodyTest {
+
+  /**
+   * 不支持 mark/reset 的输入流，并且只能读取一次
+   */
+  private static class OnceInputStream extends FilterInputStream {
+
+    OnceInputStream(byte[] data) {
+      super(new ByteArrayInputStream(data));
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+
+  private static class RecordingTransport extends RestMockTest.MockTransport {
+
+    Map<String, String> headers;
+    byte[] body;
+    int connectFailures;
+
+    @Override
+    public Response request(Request req) throws IOException {
+      headers = new HashMap<String, String>(req.getHeaders());
+      body = req.getBody() == null ? null : IOUtils.readFully(req.getBody());
+      if (connectFailures > 0) {
+        --connectFailures;
+        throw new ConnectException("connection refused");
+      }
+      return new RestMockTest.MockResponse();
+    }
+  }
+
+  private static byte[] data(int size) {
+    byte[] data = new byte[size];
+    new Random(size).nextBytes(data);
+    return data;
+  }
+
+  @Test
+  public void testMemoryBuffer() throws IOException {
+    byte[] data = data(100000);
+    RequestBody body = RequestBody.digest(new OnceInputStream(data), 10, 1024 * 1024);
+    Assert.assertFalse(body.isSpilled());
+    Assert.assertEquals(DigestUtils.md5Hex(data), body.getContentMD5());
+    Assert.assertEquals(data.length, body.getLength());
+    Assert.assertArrayEquals(data, IOUtils.readFully(body.getStream()));
+    body.close();
+  }
+
+  @Test
+  public void testSpillFile() throws IOException {
+    byte[] data = data(300000);
+    RequestBody body = RequestBody.digest(new OnceInputStream(data), data.length, 100000);
+    Assert.assertTrue(body.isSpilled());
+    Assert.assertEquals(DigestUtils.md5Hex(data), body.getContentMD5());
+    Assert.assertEquals(data.length, body.getLength());
+    Assert.assertArrayEquals(data, IOUtils.readFully(body.getStream()));
+    body.close();
+  }
+
+  @Test
+  public void testNoCopyForResettableStreams() throws IOException {
+    byte[] data = data(5000);
+    ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+    Assert.assertEquals(100, bytes.skip(100));
+    RequestBody body = RequestBody.digest(bytes, data.length - 100, 0);
+    Assert.assertSame(bytes, body.getStream());
+    Assert.assertFalse(body.isSpilled());
+    byte[] rest = new byte[data.length - 100];
+    System.arraycopy(data, 100, rest, 0, rest.length);
+    Assert.assertEquals(DigestUtils.md5Hex(rest), body.getContentMD5());
+    Assert.assertArrayEquals(rest, IOUtils.readFully(body.getStream()));
+
+    File file = File.createTempFile("request-body-test", ".tmp");
+    try {
+      FileOutputStream out = new FileOutputStream(file);
+      out.write(data);
+      out.close();
+      FileInputStream in = new FileInputStream(file);
+      Assert.assertEquals(100, in.skip(100));
+      body = RequestBody.digest(in, data.length - 100, 0);
+      Assert.assertSame(in, body.getStream());
+      Assert.assertEquals(DigestUtils.md5Hex(rest), body.getContentMD5());
+      Assert.assertArrayEquals(rest, IOUtils.readFully(body.getStream()));
+      in.close();
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testRestClientSendsBufferedBody() throws OdpsException {
+    RecordingTransport transport = new RecordingTransport();
+    RestClient client = new RestClient(transport);
+    client.setAccount(new AliyunAccount("test", "test"));
+    client.setEndpoint("http://127.0.0.1");
+    client.setBodyBufferSize(1000);
+
+    byte[] data = data(5000);
+    client.request("/projects/p/resources", "POST", null, null, new OnceInputStream(data),
+                   data.length);
+    Assert.assertEquals(DigestUtils.md5Hex(data), transport.headers.get(Headers.CONTENT_MD5));
+    Assert.assertEquals(String.valueOf(data.length),
+                        transport.headers.get(Headers.CONTENT_LENGTH));
+    Assert.assertArrayEquals(data, transport.body);
+  }
+
+  @Test
+  public void testRestClientRetryResendsBufferedBody() throws OdpsException {
+    RecordingTransport transport = new RecordingTransport();
+    transport.connectFailures = 1;
+    RestClient client = new RestClient(transport);
+    client.setAccount(new AliyunAccount("test", "test"));
+    client.setEndpoint("http://127.0.0.1");
+    client.setRetryPolicy(new RetryPolicy() {
+      @Override
+      public void sleep(long millis) {
+      }
+    });
+
+    // 原始输入流只能读取一次，重试时发送缓存的数据
+    byte[] data = data(5000);
+    client.request("/projects/p/resources", "POST", null, null, new OnceInputStream(data),
+                   data.length);
+    Assert.assertEquals(0, transport.connectFailures);
+    Assert.assertEquals(DigestUtils.md5Hex(data), transport.headers.get(Headers.CONTENT_MD5));
+    Assert.assertArrayEquals(data, transport.body);
+  }
+
+  @Test
+  public void testRestClientSkipMD5() throws OdpsException {
+    RecordingTransport transport = new RecordingTransport();
+    RestClient client = new RestClient(transport);
+    client.setAccount(new AliyunAccount("test", "test"));
+    client.setEndpoint("http://127.0.0.1");
+    client.setContentMD5Enabled(false);
+
+    byte[] data = data(5000);
+    client.request("/projects/p/resources", "POST", null, null, data);
+    Assert.assertFalse(transport.headers.containsKey(Headers.CONTENT_MD5));
+    Assert.assertArrayEquals(data, transport.body);
+  }
+}
@@ -19,25 +19,58 @@
 
 package com.aliyun.odps.rest;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.ConnectException;
 import java.util.Map;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 import com.aliyun.odps.OdpsException;
+import com.aliyun.odps.commons.transport.Connection;
+import com.aliyun.odps.commons.transport.Request;
 import com.aliyun.odps.commons.transport.Response;
+import com.aliyun.odps.commons.transport.Transport;
+import com.aliyun.odps.commons.util.RetryPolicy;
 
 public class RestMockTest extends RestClient {
 
   public static class MockResponse extends Response {
 
     public MockResponse() {
-      this.status = 200;
+      this(200);
+    }
+
+    public MockResponse(int status) {
+      this.status = status;
+    }
+
+    /**
+     * 带有 XML body 的响应
+     */
+    public MockResponse(int status, String xml) {
+      this(status);
+      this.body = xml.getBytes();
+      this.headers.put("Content-Type", "application/xml");
+    }
+  }
+
+  /**
+   * 不访问网络的 {@link Transport}，子类根据请求返回 {@link MockResponse}
+   */
+  public abstract static class MockTransport implements Transport {
+
+    @Override
+    public Connection connect(Request req) throws IOException {
+      throw new UnsupportedOperationException();
     }
   }
 
   private long retryTimes = 0;
   private long sleepTime = 0;
+  private int status = 0;
+  private Exception cause = null;
 
   public RestMockTest() {
     super(null);
@@ -57,7 +90,10 @@ public class RestMockTest extends RestClient {
         }
       }
       --retryTimes;
-      throw new OdpsException("Failed in retry test.");
+      if (status > 0) {
+        return new MockResponse(status);
+      }
+      throw new OdpsException("Failed in retry test.", cause);
     }
     MockResponse resp = new MockResponse();
     return resp;
@@ -104,6 +140,60 @@ public class RestMockTest extends RestClient {
     request("", "GET", null, null, null, 0);
   }
 
+  @Test
+  public void testRetryLoggerUnits() throws OdpsException {
+    final long[] waits = new long[2];
+    setRetryLogger(new RetryLogger() {
+      @Override
+      public void onRetryLog(Throwable e, long retryCount, long retrySleepTime) {
+        waits[0] = retrySleepTime;
+      }
+
+      @Override
+      public void onRetryLogMillis(Throwable e, long retryCount, long retrySleepMillis) {
+        waits[1] = retrySleepMillis;
+        super.onRetryLogMillis(e, retryCount, retrySleepMillis);
+      }
+    });
+    getRetryPolicy().setDelay(1500, 1500);
+    retryTimes = 1;
+    status = 503;
+    request("", "GET", null, null, null, 0);
+    Assert.assertTrue(waits[1] >= 750 && waits[1] <= 1500);
+    Assert.assertEquals((waits[1] + 999) / 1000, waits[0]);
+  }
+
+  @Test
+  public void testRetryPostOnConnectFailure() throws OdpsException {
+    retryTimes = 2;
+    cause = new ConnectException("Connection refused");
+    request("", "POST", null, null, null, 0);
+    Assert.assertEquals(2, getRetryPolicy().getRetryCount(RetryPolicy.ErrorClass.CONNECT));
+    Assert.assertTrue(getRetryPolicy().getTotalBackoffMillis() > 0);
+  }
+
+  @Test
+  public void testNoRetryOnClientError() throws OdpsException {
+    retryTimes = 1;
+    status = 403;
+    try {
+      request("", "GET", null, null, null, 0);
+      Assert.fail();
+    } catch (OdpsException e) {
+      Assert.assertEquals(0, retryTimes);
+    }
+    Assert.assertEquals(0, getRetryPolicy().getRetryCount());
+    Assert.assertEquals(1, getRetryPolicy().getRejectedCount());
+  }
+
+  @Test
+  public void testRetryOnServerError() throws OdpsException {
+    retryTimes = 2;
+    status = 503;
+    request("", "GET", null, null, null, 0);
+    Assert.assertEquals(2, getRetryPolicy().getRetryCount(RetryPolicy.ErrorClass.SERVER));
+  }
+
   @Test
   public void testTime() throws OdpsException {
     retryTimes = 1;
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.task;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.RecordReader;
+import com.aliyun.odps.rest.AsyncRequestExecutor;
+import com.aliyun.odps.rest.RestClient;
+
+public class RecordSetIteratorTest {
+
+  private static class SequenceReader implements RecordReader {
+
+    private final long end;
+    private long next;
+    boolean closed = false;
+
+    SequenceReader(long start, long count) {
+      this.next = start;
+      this.end = start + count;
+    }
+
+    @Override
+    public Record read() throws IOException {
+      if (closed) {
+        throw new IOException("read after close");
+      }
+      if (next >= end) {
+        return null;
+      }
+      ArrayRecord r = new ArrayRecord(new Column[]{new Column("i", OdpsType.BIGINT)});
+      r.setBigint(0, next++);
+      return r;
+    }
+
+    @Override
+    public void close() throws IOException {
+      closed = true;
+    }
+  }
+
+  private static class RangeRecordingIterator extends RecordSetIterator {
+
+    final List<long[]> ranges = Collections.synchronizedList(new ArrayList<long[]>());
+    final List<SequenceReader> readers = Collections.synchronizedList(new ArrayList<SequenceReader>());
+
+    RangeRecordingIterator(long recordCount) {
+      this(recordCount, new RestClient(null));
+    }
+
+    RangeRecordingIterator(long recordCount, RestClient client) {
+      super(null, recordCount, 1, client);
+    }
+
+    @Override
+    protected RecordReader openRange(long start, long count) throws IOException {
+      ranges.add(new long[]{start, count});
+      SequenceReader reader = new SequenceReader(start, count);
+      readers.add(reader);
+      return reader;
+    }
+  }
+
+  private static void checkReadInOrder(RangeRecordingIterator it, long total) {
+    long expected = 0;
+    while (it.hasNext()) {
+      Assert.assertEquals(Long.valueOf(expected++), it.next().getBigint(0));
+    }
+    Assert.assertEquals(total, expected);
+
+    // 1000, 2000, 4000, 8000, 5000
+    Assert.assertEquals(5, it.ranges.size());
+    long start = 0;
+    long size = RecordSetIterator.MIN_FETCH_SIZE;
+    for (long[] range : it.ranges) {
+      Assert.assertEquals(start, range[0]);
+      Assert.assertEquals(Math.min(size, total - start), range[1]);
+      start += range[1];
+      size *= 2;
+    }
+    for (SequenceReader reader : it.readers) {
+      Assert.assertTrue(reader.closed);
+    }
+  }
+
+  @Test
+  public void testReadInOrder() throws Exception {
+    checkReadInOrder(new RangeRecordingIterator(20000), 20000);
+  }
+
+  @Test
+  public void testPrefetchRejected() throws Exception {
+    AsyncRequestExecutor executor = new AsyncRequestExecutor(1, 1);
+    executor.shutdown();
+    RestClient client = new RestClient(null);
+    client.setAsyncExecutor(executor);
+    // 线程池关闭后在当前线程打开区间，区间划分不变
+    checkReadInOrder(new RangeRecordingIterator(20000, client), 20000);
+  }
+
+  @Test(timeout = 10000)
+  public void testPrefetchInExecutorThread() throws Exception {
+    AsyncRequestExecutor executor = new AsyncRequestExecutor(1, 1);
+    RestClient client = new RestClient(null);
+    client.setAsyncExecutor(executor);
+    final RangeRecordingIterator it = new RangeRecordingIterator(20000, client);
+    Future<Long> future = client.submitAsync(new Callable<Long>() {
+      @Override
+      public Long call() {
+        long count = 0;
+        while (it.hasNext()) {
+          Assert.assertEquals(Long.valueOf(count++), it.next().getBigint(0));
+        }
+        return count;
+      }
+    });
+    Assert.assertEquals(Long.valueOf(20000), future.get(10, TimeUnit.SECONDS));
+    executor.shutdown();
+  }
+
+  @Test
+  public void testCloseEarly() throws Exception {
+    RangeRecordingIterator it = new RangeRecordingIterator(10000);
+    for (int i = 0; i < 1500; ++i) {
+      it.next();
+    }
+    it.close();
+    Assert.assertFalse(it.hasNext());
+    for (SequenceReader reader : it.readers) {
+      Assert.assertTrue(reader.closed);
+    }
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testNextAfterEnd() {
+    RangeRecordingIterator it = new RangeRecordingIterator(1);
+    it.next();
+    it.next();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidParallelism() {
+    new RecordSetIterator(null, 1, 0, null);
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.tunnel.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xerial.snappy.PureJavaCrc32C;
+
+public class ChecksumTest {
+
+  /**
+   * 原来基于 ByteBuffer 的实现，作为对照
+   */
+  private static class ByteBufferChecksum {
+
+    private PureJavaCrc32C crc = new PureJavaCrc32C();
+    private ByteBuffer buf = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+    void update(int v) {
+      buf.clear();
+      buf.putInt(v);
+      crc.update(buf.array(), 0, 4);
+    }
+
+    void update(long v) {
+      buf.clear();
+      buf.putLong(v);
+      crc.update(buf.array(), 0, 8);
+    }
+
+    void update(double v) {
+      buf.clear();
+      buf.putDouble(v);
+      crc.update(buf.array(), 0, 8);
+    }
+
+    void update(float v) {
+      buf.clear();
+      buf.putFloat(v);
+      crc.update(buf.array(), 0, 4);
+    }
+  }
+
+  private static void feed(Checksum checksum, ByteBufferChecksum expected, Random random) {
+    for (int i = 0; i < 10000; ++i) {
+      if (i % 100 == 0) {
+        Assert.assertEquals(expected.crc.getValue(), checksum.getValue());
+      }
+      switch (random.nextInt(5)) {
+        case 0: {
+          int v = random.nextInt();
+          checksum.update(v);
+          expected.update(v);
+          break;
+        }
+        case 1: {
+          long v = random.nextLong();
+          checksum.update(v);
+          expected.update(v);
+          break;
+        }
+        case 2: {
+          double v = random.nextBoolean() ? random.nextDouble() : Double.NaN;
+          if (random.nextInt(10) == 0) {
+            boolean b = random.nextBoolean();
+            checksum.update(b);
+            expected.crc.update(b ? 1 : 0);
+          }
+          checksum.update(v);
+          expected.update(v);
+          break;
+        }
+        case 3: {
+          float v = random.nextFloat();
+          checksum.update(v);
+          expected.update(v);
+          break;
+        }
+        default: {
+          byte[] b = new byte[random.nextInt(200)];
+          random.nextBytes(b);
+          checksum.update(b, 0, b.length);
+          expected.crc.update(b, 0, b.length);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSameAsByteBuffer() {
+    Checksum checksum = new Checksum();
+    ByteBufferChecksum expected = new ByteBufferChecksum();
+    feed(checksum, expected, new Random(1));
+    Assert.assertEquals(expected.crc.getValue(), checksum.getValue());
+
+    checksum.reset();
+    expected.crc.reset();
+    feed(checksum, expected, new Random(2));
+    Assert.assertEquals(expected.crc.getValue(), checksum.getValue());
+  }
+
+  @Test
+  public void testPureJavaFallback() {
+    Checksum checksum = new Checksum(new PureJavaCrc32C());
+    ByteBufferChecksum expected = new ByteBufferChecksum();
+    feed(checksum, expected, new Random(3));
+    Assert.assertEquals(expected.crc.getValue(), checksum.getValue());
+  }
+
+  @Test
+  public void testImplementation() {
+    boolean jdk9;
+    try {
+      Class.forName("java.util.zip.CRC32C");
+      jdk9 = true;
+    } catch (ClassNotFoundException e) {
+      jdk9 = false;
+    }
+    Assert.assertEquals(jdk9 && !Boolean.getBoolean("odps.tunnel.crc32c.pure"),
+                        Checksum.isJdkCrc32CAvailable());
+    if (!jdk9) {
+      Assert.assertTrue(Checksum.newCrc32C() instanceof PureJavaCrc32C);
+    }
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.tunnel.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.commons.proto.ProtobufRecordStreamWriter;
+import com.aliyun.odps.commons.util.DateUtils;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Binary;
+
+public class ColumnarBatchTest {
+
+  private static final int ROWS = 100;
+
+  private static TableSchema schema() {
+    TableSchema s = new TableSchema();
+    s.addColumn(new Column("c_bigint", OdpsType.BIGINT));
+    s.addColumn(new Column("c_double", OdpsType.DOUBLE));
+    s.addColumn(new Column("c_boolean", OdpsType.BOOLEAN));
+    s.addColumn(new Column("c_string", OdpsType.STRING));
+    s.addColumn(new Column("c_datetime", OdpsType.DATETIME));
+    s.addColumn(new Column("c_decimal", OdpsType.DECIMAL));
+    s.addColumn(new Column("c_binary", OdpsType.BINARY));
+    return s;
+  }
+
+  private static CompressOption raw() {
+    return new CompressOption(CompressOption.CompressAlgorithm.ODPS_RAW, 0, 0);
+  }
+
+  @Test
+  public void testSameEncodingAsRecord() throws IOException {
+    TableSchema schema = schema();
+
+    long[] longs = new long[ROWS];
+    double[] doubles = new double[ROWS];
+    boolean[] booleans = new boolean[ROWS];
+    long[] datetimes = new long[ROWS];
+    boolean[] nulls = new boolean[ROWS];
+
+    // all strings share one buffer
+    ByteArrayOutputStream text = new ByteArrayOutputStream();
+    byte[][] strings = new byte[ROWS][];
+    int[] starts = new int[ROWS];
+    int[] lengths = new int[ROWS];
+    byte[][] decimals = new byte[ROWS][];
+    int[] decimalStarts = new int[ROWS];
+    int[] decimalLengths = new int[ROWS];
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    ProtobufRecordStreamWriter recordWriter =
+        new ProtobufRecordStreamWriter(schema, expected, raw());
+    ArrayRecord r = new ArrayRecord(schema);
+    java.util.Date now = new java.util.Date();
+    for (int i = 0; i < ROWS; ++i) {
+      longs[i] = i * 1000L - 7;
+      doubles[i] = i / 3.0;
+      booleans[i] = i % 2 == 0;
+      nulls[i] = i % 7 == 0;
+      java.util.Date date = new java.util.Date(now.getTime() + i * 1000L);
+      datetimes[i] = DateUtils.date2ms(date);
+      String s = "行" + i;
+      byte[] b = s.getBytes("UTF-8");
+      starts[i] = text.size();
+      lengths[i] = b.length;
+      text.write(b);
+      BigDecimal decimal = new BigDecimal(i).divide(new BigDecimal(8));
+      decimals[i] = decimal.toPlainString().getBytes("UTF-8");
+      decimalLengths[i] = decimals[i].length;
+
+      r.setBigint(0, longs[i]);
+      r.setDouble(1, nulls[i] ? null : doubles[i]);
+      r.setBoolean(2, booleans[i]);
+      r.setString(3, s);
+      r.setDatetime(4, date);
+      r.setDecimal(5, decimal);
+      r.set(6, null);
+      recordWriter.write(r);
+    }
+    recordWriter.close();
+
+    byte[] all = text.toByteArray();
+    for (int i = 0; i < ROWS; ++i) {
+      strings[i] = all;
+    }
+
+    ColumnarBatch batch = new ColumnarBatch(schema.getColumns().size());
+    batch.setLongColumn(0, longs, null);
+    batch.setDoubleColumn(1, doubles, nulls);
+    batch.setBooleanColumn(2, booleans, null);
+    batch.setBytesColumn(3, strings, starts, lengths, null);
+    batch.setLongColumn(4, datetimes, null);
+    batch.setBytesColumn(5, decimals, decimalStarts, decimalLengths, null);
+    batch.setNullColumn(6);
+
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    ProtobufRecordStreamWriter batchWriter =
+        new ProtobufRecordStreamWriter(schema, actual, raw());
+    batch.setRowCount(ROWS);
+    batchWriter.write(batch);
+    batchWriter.close();
+
+    Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+  }
+
+  @Test
+  public void testMultipleBatches() throws IOException {
+    TableSchema schema = new TableSchema();
+    schema.addColumn(new Column("c_bigint", OdpsType.BIGINT));
+    schema.addColumn(new Column("c_binary", OdpsType.BINARY));
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    ProtobufRecordStreamWriter recordWriter =
+        new ProtobufRecordStreamWriter(schema, expected, raw());
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    ProtobufRecordStreamWriter batchWriter =
+        new ProtobufRecordStreamWriter(schema, actual, raw());
+
+    long[] longs = new long[2];
+    byte[][] bytes = new byte[2][];
+    int[] starts = new int[2];
+    int[] lengths = new int[2];
+    ColumnarBatch batch = new ColumnarBatch(2);
+    batch.setLongColumn(0, longs, null);
+    batch.setBytesColumn(1, bytes, starts, lengths, null);
+
+    ArrayRecord r = new ArrayRecord(schema);
+    for (int round = 0; round < 3; ++round) {
+      for (int i = 0; i < 2; ++i) {
+        longs[i] = round * 10 + i;
+        bytes[i] = new byte[]{(byte) round, (byte) i};
+        lengths[i] = 2;
+        r.setBigint(0, longs[i]);
+        r.set(1, new Binary(bytes[i]));
+        recordWriter.write(r);
+      }
+      batch.setRowCount(2);
+      batchWriter.write(batch);
+    }
+    recordWriter.close();
+    batchWriter.close();
+
+    Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+  }
+
+  @Test(expected = IOException.class)
+  public void testVectorTypeMismatch() throws IOException {
+    TableSchema schema = new TableSchema();
+    schema.addColumn(new Column("c_string", OdpsType.STRING));
+    ColumnarBatch batch = new ColumnarBatch(1);
+    batch.setLongColumn(0, new long[1], null);
+    batch.setRowCount(1);
+    new ProtobufRecordStreamWriter(schema, new ByteArrayOutputStream(), raw()).write(batch);
+  }
+
+  @Test
+  public void testIntOutOfRange() throws IOException {
+    TableSchema schema = new TableSchema();
+    schema.addColumn(new Column("c_int", OdpsType.INT));
+    schema.addColumn(new Column("c_tinyint", OdpsType.TINYINT));
+    ProtobufRecordStreamWriter writer =
+        new ProtobufRecordStreamWriter(schema, new ByteArrayOutputStream(), raw());
+
+    ColumnarBatch batch = new ColumnarBatch(2);
+    batch.setLongColumn(0, new long[]{Integer.MAX_VALUE, Integer.MAX_VALUE + 1L}, null);
+    batch.setLongColumn(1, new long[]{Byte.MIN_VALUE, 0}, null);
+    batch.setRowCount(2);
+    try {
+      writer.write(batch);
+      Assert.fail("expect IOException");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("c_int"));
+    }
+
+    // null 值不做检查
+    batch.setLongColumn(0, new long[]{0, Long.MAX_VALUE}, new boolean[]{false, true});
+    batch.setLongColumn(1, new long[]{0, 128}, null);
+    try {
+      writer.write(batch);
+      Assert.fail("expect IOException");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("c_tinyint"));
+    }
+  }
+
+  @Test
+  public void testInvalidBatchWritesNothing() throws IOException {
+    TableSchema schema = new TableSchema();
+    schema.addColumn(new Column("c_bigint", OdpsType.BIGINT));
+    schema.addColumn(new Column("c_smallint", OdpsType.SMALLINT));
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    ProtobufRecordStreamWriter recordWriter =
+        new ProtobufRecordStreamWriter(schema, expected, raw());
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    ProtobufRecordStreamWriter batchWriter =
+        new ProtobufRecordStreamWriter(schema, actual, raw());
+
+    // 最后一行越界，整个 batch 都不写出
+    ColumnarBatch batch = new ColumnarBatch(2);
+    batch.setLongColumn(0, new long[]{1, 2, 3}, null);
+    batch.setLongColumn(1, new long[]{1, 2, Short.MAX_VALUE + 1L}, null);
+    batch.setRowCount(3);
+    try {
+      batchWriter.write(batch);
+      Assert.fail("expect IOException");
+    } catch (IOException e) {
+      // expected
+    }
+
+    // 向量长度小于行数
+    batch.setLongColumn(1, new long[]{1, 2}, null);
+    try {
+      batchWriter.write(batch);
+      Assert.fail("expect IOException");
+    } catch (IOException e) {
+      // expected
+    }
+
+    batch.setLongColumn(1, new long[]{1, 2, 3}, null);
+    batchWriter.write(batch);
+
+    ArrayRecord r = new ArrayRecord(schema);
+    for (int i = 1; i <= 3; ++i) {
+      r.setBigint(0, (long) i);
+      r.set(1, (short) i);
+      recordWriter.write(r);
+    }
+    recordWriter.close();
+    batchWriter.close();
+
+    // 失败的 batch 没有留下半条记录，crc 也没有被污染
+    Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.tunnel.io;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.RecordReader;
+import com.aliyun.odps.tunnel.TableTunnel;
+
+public class ParallelRecordReaderTest {
+
+  private static final TableSchema SCHEMA = new TableSchema();
+
+  static {
+    SCHEMA.addColumn(new Column("i", OdpsType.BIGINT));
+  }
+
+  /**
+   * 每条记录的值等于它在表中的位置，failAt 位置的记录读取失败，
+   * uncheckedFailure 时抛出 RuntimeException
+   */
+  private static class SequenceSliceReader extends ParallelRecordReader {
+
+    final long failAt;
+    boolean uncheckedFailure;
+
+    SequenceSliceReader(long count, int parallelism, long sliceSize, int bufferSize,
+                              boolean ordered, long failAt) {
+      super((TableTunnel.DownloadSession) null, 0, count, null, null, parallelism, sliceSize,
+            bufferSize, ordered);
+      this.failAt = failAt;
+    }
+
+    @Override
+    protected RecordReader openSlice(final long start, final long count) {
+      return new RecordReader() {
+        long next = start;
+
+        @Override
+        public Record read() throws IOException {
+          if (next == start + count) {
+            return null;
+          }
+          if (next == failAt && uncheckedFailure) {
+            throw new IllegalStateException("injected failure at " + next);
+          }
+          if (next == failAt) {
+            throw new IOException("injected failure at " + next);
+          }
+          if (next % 97 == 0) {
+            Thread.yield();
+          }
+          ArrayRecord r = new ArrayRecord(SCHEMA);
+          r.setBigint(0, next++);
+          return r;
+        }
+
+        @Override
+        public void close() {
+        }
+      };
+    }
+  }
+
+  @Test
+  public void testOrdered() throws IOException {
+    ParallelRecordReader reader = new SequenceSliceReader(10007, 4, 0, 16, true, -1);
+    Assert.assertEquals(16, reader.getSliceCount());
+    long expected = 0;
+    Record r;
+    while ((r = reader.read()) != null) {
+      Assert.assertEquals(expected++, r.getBigint(0).longValue());
+    }
+    Assert.assertEquals(10007, expected);
+    Assert.assertNull(reader.read());
+    reader.close();
+  }
+
+  @Test
+  public void testUnordered() throws IOException {
+    ParallelRecordReader reader = new SequenceSliceReader(10007, 4, 100, 16, false, -1);
+    Set<Long> seen = new HashSet<Long>();
+    Record r;
+    while ((r = reader.read()) != null) {
+      Assert.assertTrue(seen.add(r.getBigint(0)));
+    }
+    Assert.assertEquals(10007, seen.size());
+    reader.close();
+  }
+
+  @Test
+  public void testForEach() throws IOException {
+    ParallelRecordReader reader = new SequenceSliceReader(10007, 4, 0, 16, false, -1);
+    final Set<Long> seen = Collections.synchronizedSet(new HashSet<Long>());
+    final AtomicLong sum = new AtomicLong();
+    reader.forEach(new ParallelRecordReader.RecordHandler() {
+      @Override
+      public void handle(Record record) {
+        seen.add(record.getBigint(0));
+        sum.addAndGet(record.getBigint(0));
+      }
+    });
+    Assert.assertEquals(10007, seen.size());
+    Assert.assertEquals(10006L * 10007 / 2, sum.get());
+  }
+
+  @Test
+  public void testEmptyRange() throws IOException {
+    Assert.assertNull(new SequenceSliceReader(0, 4, 0, 16, true, -1).read());
+    Assert.assertNull(new SequenceSliceReader(0, 4, 0, 16, false, -1).read());
+  }
+
+  @Test(expected = IOException.class)
+  public void testOrderedFailure() throws IOException {
+    ParallelRecordReader reader = new SequenceSliceReader(10000, 4, 0, 16, true, 7777);
+    try {
+      while (reader.read() != null) {
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnorderedFailure() throws IOException {
+    ParallelRecordReader reader = new SequenceSliceReader(10000, 4, 0, 16, false, 7777);
+    try {
+      while (reader.read() != null) {
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testUncheckedFailure() throws IOException {
+    for (boolean ordered : new boolean[]{true, false}) {
+      SequenceSliceReader reader =
+          new SequenceSliceReader(10000, 4, 0, 16, ordered, 7777);
+      reader.uncheckedFailure = true;
+      try {
+        while (reader.read() != null) {
+        }
+        Assert.fail("expect IOException");
+      } catch (IOException e) {
+        Assert.assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+      } finally {
+        reader.close();
+      }
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testDownloaderStopsWithoutClose() throws IOException {
+    for (boolean ordered : new boolean[]{true, false}) {
+      // 读到结尾
+      ParallelRecordReader reader = new SequenceSliceReader(10000, 4, 0, 16, ordered, -1);
+      while (reader.read() != null) {
+      }
+      Assert.assertTrue(reader.isDownloaderShutdown());
+
+      // 下载出错
+      reader = new SequenceSliceReader(10000, 4, 0, 16, ordered, 7777);
+      try {
+        while (reader.read() != null) {
+        }
+        Assert.fail("expect IOException");
+      } catch (IOException e) {
+        // expected
+      }
+      Assert.assertTrue(reader.isDownloaderShutdown());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidParallelism() {
+    new SequenceSliceReader(10, 0, 0, 16, true, -1);
+  }
+}
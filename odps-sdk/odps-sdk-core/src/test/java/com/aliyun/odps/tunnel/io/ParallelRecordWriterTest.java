@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.tunnel.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.commons.proto.ProtobufRecordStreamWriter;
+import com.aliyun.odps.data.ArrayRecord;
+
+public class ParallelRecordWriterTest {
+
+  private static final int THREADS = 4;
+  private static final int RECORDS_PER_THREAD = 2000;
+
+  private static TableSchema schema() {
+    TableSchema s = new TableSchema();
+    s.addColumn(new Column("i", OdpsType.BIGINT));
+    s.addColumn(new Column("s", OdpsType.STRING));
+    return s;
+  }
+
+  private static class DiscardingRecordWriter extends ParallelRecordWriter {
+
+    final AtomicLong blockIds = new AtomicLong(0);
+    final TableSchema schema;
+    boolean failBlockId = false;
+
+    DiscardingRecordWriter(TableSchema schema, int parallelism, long blockSize) {
+      super(null, null, parallelism, blockSize);
+      this.schema = schema;
+    }
+
+    @Override
+    protected long nextBlockId() {
+      if (failBlockId) {
+        throw new IllegalStateException("no block id available");
+      }
+      return blockIds.getAndIncrement();
+    }
+
+    @Override
+    protected ProtobufRecordStreamWriter openBlock(long blockId) throws IOException {
+      return new ProtobufRecordStreamWriter(schema, new ByteArrayOutputStream());
+    }
+  }
+
+  @Test
+  public void testConcurrentWrite() throws Exception {
+    final TableSchema schema = schema();
+    final DiscardingRecordWriter writer =
+        new DiscardingRecordWriter(schema, 2, 1024 * 1024);
+    final char[] payload = new char[1000];
+    java.util.Arrays.fill(payload, 'x');
+
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; ++t) {
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          ArrayRecord r = new ArrayRecord(schema);
+          try {
+            for (int i = 0; i < RECORDS_PER_THREAD; ++i) {
+              r.setBigint(0, (long) i);
+              r.setString(1, new String(payload));
+              writer.write(r);
+            }
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    writer.close();
+
+    long records = 0;
+    Set<Long> ids = new HashSet<Long>();
+    for (ParallelRecordWriter.BlockStats stats : writer.getBlockStats()) {
+      records += stats.getRecordCount();
+      Assert.assertTrue(stats.getBytes() > 0);
+      ids.add(stats.getBlockId());
+    }
+    Assert.assertEquals(THREADS * RECORDS_PER_THREAD, records);
+
+    // ~8 MB of data in 1 MB blocks must have rolled over
+    Long[] blocks = writer.getBlockList();
+    Assert.assertTrue(blocks.length > 2);
+    Assert.assertEquals(ids.size(), blocks.length);
+    for (int i = 1; i < blocks.length; ++i) {
+      Assert.assertTrue(blocks[i - 1] < blocks[i]);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testWriteAfterClose() throws Exception {
+    TableSchema schema = schema();
+    ParallelRecordWriter writer = new DiscardingRecordWriter(schema, 2, 1024 * 1024);
+    writer.close();
+    writer.write(new ArrayRecord(schema));
+  }
+
+  @Test
+  public void testUncheckedFailure() throws Exception {
+    TableSchema schema = schema();
+    DiscardingRecordWriter writer = new DiscardingRecordWriter(schema, 2, 1024 * 1024);
+    writer.failBlockId = true;
+    try {
+      writer.write(new ArrayRecord(schema));
+      Assert.fail("expect IOException");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    // 失败后其他写入和 close 都会抛出异常
+    writer.failBlockId = false;
+    try {
+      writer.write(new ArrayRecord(schema));
+      Assert.fail("expect IOException");
+    } catch (IOException e) {
+      // expected
+    }
+    try {
+      writer.close();
+      Assert.fail("expect IOException");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidParallelism() {
+    new DiscardingRecordWriter(schema(), 0, 1024 * 1024);
+  }
+}
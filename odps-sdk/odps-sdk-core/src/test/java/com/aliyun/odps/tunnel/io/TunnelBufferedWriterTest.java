@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.aliyun.odps.tunnel.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.commons.util.RetryPolicy;
+import com.aliyun.odps.commons.util.RetryStrategy;
+import com.aliyun.odps.data.ArrayRecord;
+
+public class TunnelBufferedWriterTest {
+
+  private static final CompressOption RAW =
+      new CompressOption(CompressOption.CompressAlgorithm.ODPS_RAW, 0, 0);
+
+  private static TableSchema schema() {
+    TableSchema s = new TableSchema();
+    s.addColumn(new Column("s", OdpsType.STRING));
+    return s;
+  }
+
+  /**
+   * 不等待的重试策略，每个数据块最多尝试两次
+   */
+  private static RetryStrategy noWaitRetry() {
+    return new RetryStrategy(1, new RetryPolicy() {
+      @Override
+      public void sleep(long millis) {
+      }
+    });
+  }
+
+  /**
+   * 数据块 failBlock 在 failGate 打开后上传失败，其他数据块上传成功
+   */
+  private static class FailingBlockWriter extends TunnelBufferedWriter {
+
+    final AtomicLong blockIds = new AtomicLong(0);
+    final AtomicLong uploadedBytes = new AtomicLong(0);
+    final Set<ProtobufRecordPack> packs =
+        Collections.synchronizedSet(
+            Collections.newSetFromMap(new IdentityHashMap<ProtobufRecordPack, Boolean>()));
+    final long failBlock;
+    final CountDownLatch failGate = new CountDownLatch(1);
+    final CountDownLatch afterFailStarted = new CountDownLatch(1);
+
+    FailingBlockWriter(long failBlock, int threads, int pending) throws IOException {
+      super(null, schema(), noWaitRetry(), RAW, threads, pending);
+      this.failBlock = failBlock;
+      setBufferSize(1024 * 1024);
+    }
+
+    @Override
+    protected long nextBlockId() {
+      return blockIds.getAndIncrement();
+    }
+
+    @Override
+    protected void writeBlock(long blockId, ProtobufRecordPack pack) throws IOException {
+      packs.add(pack);
+      if (blockId == failBlock) {
+        try {
+          failGate.await();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+        throw new IOException("block " + blockId + " failed");
+      }
+      if (blockId == failBlock + 1) {
+        afterFailStarted.countDown();
+      }
+      uploadedBytes.addAndGet(pack.getTotalBytesWritten());
+    }
+  }
+
+  private static ArrayRecord record() {
+    ArrayRecord r = new ArrayRecord(schema());
+    char[] payload = new char[1000];
+    java.util.Arrays.fill(payload, 'x');
+    r.setString(0, new String(payload));
+    return r;
+  }
+
+  private static void writeBlocks(TunnelBufferedWriter writer, int records) throws IOException {
+    ArrayRecord r = record();
+    for (int i = 0; i < records; ++i) {
+      writer.write(r);
+    }
+  }
+
+  @Test
+  public void testAsyncUpload() throws Exception {
+    FailingBlockWriter writer = new FailingBlockWriter(-1, 2, 2);
+    writeBlocks(writer, 10000);
+    writer.close();
+    Assert.assertTrue(writer.blockIds.get() > 2);
+    Assert.assertEquals(writer.uploadedBytes.get(), writer.getTotalBytes());
+    // 缓冲区被复用，最多占用 maxPendingBlocks + 1 个
+    Assert.assertTrue(writer.packs.size() <= 3);
+  }
+
+  @Test
+  public void testAsyncFailedBlock() throws Exception {
+    FailingBlockWriter writer = new FailingBlockWriter(0, 1, 2);
+    ArrayRecord r = record();
+    // 数据块 0 阻塞在上传中，数据块 1 排队等待唯一的上传线程
+    while (writer.blockIds.get() < 2) {
+      writer.write(r);
+    }
+    // 缓冲区中留下一些没有上传的记录
+    for (int i = 0; i < 10; ++i) {
+      writer.write(r);
+    }
+
+    // 上传线程按顺序执行，数据块 1 开始上传时数据块 0 的失败已经被记录
+    writer.failGate.countDown();
+    writer.afterFailStarted.await();
+
+    try {
+      writer.close();
+      Assert.fail("expect IOException");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("block 0 failed"));
+    }
+
+    // 缓冲区中的记录被丢弃，不会再提交；失败的数据块不计入写出的字节数
+    Assert.assertEquals(2, writer.blockIds.get());
+    Assert.assertTrue(writer.uploadedBytes.get() > 0);
+    Assert.assertEquals(writer.uploadedBytes.get(), writer.getTotalBytes());
+    writer.close();
+    Assert.assertEquals(2, writer.blockIds.get());
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.tunnel.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.commons.proto.ProtobufRecordStreamWriter;
+import com.aliyun.odps.commons.transport.Connection;
+import com.aliyun.odps.commons.transport.Request;
+import com.aliyun.odps.commons.transport.Response;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.aliyun.odps.tunnel.TunnelException;
+
+public class TunnelRecordReaderTest {
+
+  private static final TableSchema SCHEMA = new TableSchema();
+  private static final CompressOption RAW =
+      new CompressOption(CompressOption.CompressAlgorithm.ODPS_RAW, 0, 0);
+
+  static {
+    SCHEMA.addColumn(new Column("i", OdpsType.BIGINT));
+    SCHEMA.addColumn(new Column("s", OdpsType.STRING));
+  }
+
+  private static byte[] encode(long start, long count) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ProtobufRecordStreamWriter writer = new ProtobufRecordStreamWriter(SCHEMA, out, RAW);
+    ArrayRecord r = new ArrayRecord(SCHEMA);
+    for (long i = start; i < start + count; ++i) {
+      r.setBigint(0, i);
+      r.setString(1, "value " + i);
+      writer.write(r);
+    }
+    writer.close();
+    return out.toByteArray();
+  }
+
+  private static class StreamConnection implements Connection {
+
+    private final InputStream in;
+
+    StreamConnection(InputStream in) {
+      this.in = in;
+    }
+
+    @Override
+    public void connect(Request req) {
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Response getResponse() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return in;
+    }
+
+    @Override
+    public void disconnect() {
+    }
+  }
+
+  /**
+   * 第一次连接在读到 failAfter 字节后断开，之后的连接正常
+   */
+  private static class FlakyTunnelRecordReader extends TunnelRecordReader {
+
+    static int connections;
+    static int failAfter;
+    static boolean failReconnect;
+
+    FlakyTunnelRecordReader(long start, long count) throws TunnelException, IOException {
+      super(start, count, null, RAW, null, (TableTunnel.DownloadSession) null);
+    }
+
+    @Override
+    protected RawTunnelRecordReader openRawReader(long start, long count) throws IOException {
+      if (connections > 0 && failReconnect) {
+        throw new IllegalStateException("reconnect failed");
+      }
+      byte[] data = encode(start, count);
+      InputStream in = new ByteArrayInputStream(data);
+      if (connections++ == 0 && failAfter > 0) {
+        in = new FailingInputStream(data, failAfter);
+      }
+      return new RawTunnelRecordReader(SCHEMA, null, new StreamConnection(in), RAW);
+    }
+  }
+
+  private static class FailingInputStream extends ByteArrayInputStream {
+
+    private final int failAfter;
+
+    FailingInputStream(byte[] data, int failAfter) {
+      super(data);
+      this.failAfter = failAfter;
+    }
+
+    @Override
+    public synchronized int read() {
+      if (pos >= failAfter) {
+        throw new IllegalStateException("use read(byte[], int, int)");
+      }
+      return super.read();
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) {
+      if (pos >= failAfter) {
+        return -1;
+      }
+      return super.read(b, off, Math.min(len, failAfter - pos));
+    }
+  }
+
+  private static void checkAll(TunnelRecordReader reader, long start, long count)
+      throws IOException {
+    for (long i = start; i < start + count; ++i) {
+      Record r = reader.read();
+      Assert.assertNotNull("missing record " + i, r);
+      Assert.assertEquals(i, r.getBigint(0).longValue());
+      Assert.assertEquals("value " + i, r.getString(1));
+    }
+    Assert.assertNull(reader.read());
+  }
+
+  @Test
+  public void testReadAhead() throws Exception {
+    FlakyTunnelRecordReader.connections = 0;
+    FlakyTunnelRecordReader.failAfter = 0;
+    FlakyTunnelRecordReader.failReconnect = false;
+    TunnelRecordReader reader = new FlakyTunnelRecordReader(100, 10000);
+    reader.enableReadAhead(2);
+    Assert.assertTrue(reader.isReadAhead());
+    checkAll(reader, 100, 10000);
+    reader.close();
+  }
+
+  @Test
+  public void testReadAheadRetry() throws Exception {
+    FlakyTunnelRecordReader.connections = 0;
+    FlakyTunnelRecordReader.failAfter = 50000;
+    FlakyTunnelRecordReader.failReconnect = false;
+    TunnelRecordReader reader = new FlakyTunnelRecordReader(0, 10000);
+    reader.enableReadAhead(4);
+    checkAll(reader, 0, 10000);
+    Assert.assertEquals(2, FlakyTunnelRecordReader.connections);
+    reader.close();
+  }
+
+  @Test
+  public void testWithoutReadAhead() throws Exception {
+    FlakyTunnelRecordReader.connections = 0;
+    FlakyTunnelRecordReader.failAfter = 0;
+    FlakyTunnelRecordReader.failReconnect = false;
+    TunnelRecordReader reader = new FlakyTunnelRecordReader(0, 1000);
+    Assert.assertFalse(reader.isReadAhead());
+    checkAll(reader, 0, 1000);
+    reader.close();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testEnableAfterRead() throws Exception {
+    FlakyTunnelRecordReader.connections = 0;
+    FlakyTunnelRecordReader.failAfter = 0;
+    FlakyTunnelRecordReader.failReconnect = false;
+    TunnelRecordReader reader = new FlakyTunnelRecordReader(0, 10);
+    reader.read();
+    reader.enableReadAhead(2);
+  }
+
+  @Test
+  public void testReadAheadUnexpectedError() throws Exception {
+    FlakyTunnelRecordReader.connections = 0;
+    FlakyTunnelRecordReader.failAfter = 50000;
+    FlakyTunnelRecordReader.failReconnect = true;
+    TunnelRecordReader reader = new FlakyTunnelRecordReader(0, 10000);
+    reader.enableReadAhead(4);
+    try {
+      while (reader.read() != null) {
+      }
+      Assert.fail("expect IOException");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+    }
+    reader.close();
+  }
+}